@@ -0,0 +1,98 @@
+package com.exemplo.benchmarks;
+
+import com.exemplo.Banco;
+import com.exemplo.ConfiguracaoBanco;
+import com.exemplo.Criptografia;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Random;
+
+/**
+ * Banco apontando para um arquivo SQLite temporário, pré-populado com usuários e histórico
+ * A carga usa JDBC direto (batch numa só transação) para não medir o próprio Banco durante o setup
+ */
+public class BancoTemporario implements AutoCloseable {
+    public static final String SENHA = "senha123";
+
+    private final File diretorio;
+    private final Banco banco;
+    private final int usuarios;
+
+    public BancoTemporario(int usuarios, long linhasHistorico) throws IOException, SQLException {
+        this.usuarios = usuarios;
+        this.diretorio = Files.createTempDirectory("brasisco-bench").toFile();
+        String url = "jdbc:sqlite:" + new File(diretorio, "banco.db").getAbsolutePath();
+
+        ConfiguracaoBanco config = new ConfiguracaoBanco();
+        config.setUrl(url);
+        // abre uma vez para aplicar as migrações e fecha antes da carga
+        new Banco(config).close();
+        popular(url, linhasHistorico);
+        this.banco = new Banco(config);
+    }
+
+    private void popular(String url, long linhasHistorico) throws SQLException {
+        String senhaHash = Criptografia.criptografar(SENHA);
+        try (Connection conn = DriverManager.getConnection(url)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO usuarios (email, nome, senha, saldo) VALUES (?, ?, ?, ?)")) {
+                for (int i = 0; i < usuarios; i++) {
+                    stmt.setString(1, email(i));
+                    stmt.setString(2, "Usuário " + i);
+                    stmt.setString(3, senhaHash);
+                    stmt.setDouble(4, 1_000_000_000.0);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            Random random = new Random(42);
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO historico (email_origem, email_destino, tipo, valor, data) " +
+                    "VALUES (?, ?, 'transferencia', ?, datetime('2020-01-01', '+' || ? || ' seconds'))")) {
+                for (long i = 0; i < linhasHistorico; i++) {
+                    stmt.setString(1, email(random.nextInt(usuarios)));
+                    stmt.setString(2, email(random.nextInt(usuarios)));
+                    stmt.setDouble(3, 1 + random.nextInt(1000));
+                    stmt.setLong(4, i);
+                    stmt.addBatch();
+                    if (i % 10_000 == 9_999) {
+                        stmt.executeBatch();
+                    }
+                }
+                stmt.executeBatch();
+            }
+            conn.commit();
+        }
+    }
+
+    public Banco getBanco() {
+        return banco;
+    }
+
+    public int getUsuarios() {
+        return usuarios;
+    }
+
+    public static String email(int i) {
+        return "usuario" + i + "@bench.com";
+    }
+
+    @Override
+    public void close() {
+        banco.close();
+        File[] arquivos = diretorio.listFiles();
+        if (arquivos != null) {
+            for (File arquivo : arquivos) {
+                arquivo.delete();
+            }
+        }
+        diretorio.delete();
+    }
+}
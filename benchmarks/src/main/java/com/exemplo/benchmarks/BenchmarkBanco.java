@@ -0,0 +1,87 @@
+package com.exemplo.benchmarks;
+
+import com.exemplo.Banco;
+import com.exemplo.CursorHistorico;
+import com.exemplo.PaginaHistorico;
+import com.exemplo.Transacao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caminhos quentes do Banco sobre um SQLite temporário com histórico pré-carregado
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BenchmarkBanco {
+    private static final int USUARIOS = 1_000;
+
+    @Param({ "10000", "1000000", "10000000" })
+    public long linhasHistorico;
+
+    private BancoTemporario temporario;
+    private Banco banco;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        temporario = new BancoTemporario(USUARIOS, linhasHistorico);
+        banco = temporario.getBanco();
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() {
+        temporario.close();
+    }
+
+    private static String contaAleatoria() {
+        return BancoTemporario.email(ThreadLocalRandom.current().nextInt(USUARIOS));
+    }
+
+    @Benchmark
+    public boolean autenticar() {
+        return banco.autenticar(contaAleatoria(), BancoTemporario.SENHA);
+    }
+
+    @Benchmark
+    public double consultarSaldo() {
+        return banco.consultarSaldo(contaAleatoria());
+    }
+
+    @Benchmark
+    public void depositar() {
+        banco.depositar(contaAleatoria(), 10.0);
+    }
+
+    @Benchmark
+    public boolean transferir() {
+        return banco.transferir(contaAleatoria(), contaAleatoria(), 1.0);
+    }
+
+    @Benchmark
+    public List<Transacao> consultarHistoricoUsuario() {
+        return banco.consultarHistoricoUsuario(contaAleatoria());
+    }
+
+    @Benchmark
+    public PaginaHistorico consultarHistoricoUsuarioPagina() {
+        return banco.consultarHistoricoUsuario(contaAleatoria(), CursorHistorico.INICIO, 20);
+    }
+}
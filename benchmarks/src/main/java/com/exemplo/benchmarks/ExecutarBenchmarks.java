@@ -0,0 +1,26 @@
+package com.exemplo.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Executa os benchmarks gravando os resultados em JSON (jmh-resultados.json por padrão)
+ * Aceita as mesmas opções de linha de comando do JMH, ex: -p linhasHistorico=10000 BenchmarkBanco;
+ * -rf e -rff sobrescrevem o formato e o arquivo de resultado
+ */
+public class ExecutarBenchmarks {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions linhaComando = new CommandLineOptions(args);
+        ChainedOptionsBuilder opcoes = new OptionsBuilder().parent(linhaComando);
+        if (!linhaComando.getResultFormat().hasValue()) {
+            opcoes.resultFormat(ResultFormatType.JSON);
+        }
+        if (!linhaComando.getResult().hasValue()) {
+            opcoes.result("jmh-resultados.json");
+        }
+        new Runner(opcoes.build()).run();
+    }
+}
@@ -0,0 +1,15 @@
+package com.exemplo;
+
+/**
+ * O que fazer com uma transação avaliada pelo MotorFraude, da mais branda para a mais severa
+ */
+public enum AcaoFraude {
+    /** Segue normalmente */
+    NENHUMA,
+    /** Segue, mas gera um alerta para os ouvintes do motor */
+    SINALIZAR,
+    /** Segue e, depois de confirmada, vira uma denúncia automática */
+    DENUNCIAR,
+    /** Não é executada */
+    RETER
+}
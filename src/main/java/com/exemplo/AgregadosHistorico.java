@@ -0,0 +1,74 @@
+package com.exemplo;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recalcula os agregados diários (agregados_conta_dia e agregados_tipo_dia) a partir do histórico
+ * No dia a dia eles são mantidos pelo trigger trg_historico_agregados, na mesma transação do INSERT em
+ * historico; a reconstrução só é necessária para o preenchimento inicial ou depois de um reparo manual
+ *
+ * Regra de cada linha: depósito (sem destino) é entrada da origem; transferência e reversão são saída
+ * da origem e entrada do destino. Somando entradas - saidas de uma conta chega-se à variação do saldo
+ */
+final class AgregadosHistorico {
+    private AgregadosHistorico() {
+    }
+
+    /**
+     * Apaga e recalcula os agregados a partir da tabela quente e de todas as partições arquivadas,
+     * na transação de quem chamou
+     * @return Quantidade de transações agregadas
+     */
+    static long reconstruir(ConexaoPool conn) throws SQLException {
+        List<String> tabelas = new ArrayList<>();
+        tabelas.add("historico");
+        try (ResultSet rs = conn.preparar("SELECT mes FROM historico_particoes ORDER BY mes").executeQuery()) {
+            while (rs.next()) {
+                tabelas.add(ParticaoHistorico.tabela(rs.getString(1)));
+            }
+        }
+        StringBuilder todas = new StringBuilder();
+        for (String tabela : tabelas) {
+            if (todas.length() > 0) {
+                todas.append(" UNION ALL ");
+            }
+            todas.append("SELECT email_origem, email_destino, tipo, valor, data FROM ").append(tabela);
+        }
+
+        try (Statement stmt = conn.getConexao().createStatement()) {
+            stmt.executeUpdate("DELETE FROM agregados_conta_dia");
+            stmt.executeUpdate("DELETE FROM agregados_tipo_dia");
+            stmt.executeUpdate("INSERT INTO agregados_tipo_dia (dia, tipo, quantidade, volume) " +
+                    "SELECT date(data), tipo, COUNT(*), SUM(valor) FROM (" + todas + ") GROUP BY date(data), tipo");
+            stmt.executeUpdate("INSERT INTO agregados_conta_dia (email, dia, entradas, saidas, qtd_entradas, qtd_saidas) " +
+                    "SELECT email, dia, SUM(entrada), SUM(saida), SUM(entrada_qtd), SUM(saida_qtd) FROM (" +
+                    "SELECT COALESCE(email_destino, email_origem) AS email, date(data) AS dia, " +
+                    "valor AS entrada, 0 AS saida, 1 AS entrada_qtd, 0 AS saida_qtd FROM (" + todas + ") " +
+                    "UNION ALL " +
+                    "SELECT email_origem, date(data), 0, valor, 0, 1 FROM (" + todas + ") " +
+                    "WHERE email_origem IS NOT NULL AND email_destino IS NOT NULL" +
+                    ") WHERE email IS NOT NULL GROUP BY email, dia");
+        }
+        try (ResultSet rs = conn.preparar("SELECT COALESCE(SUM(quantidade), 0) FROM agregados_tipo_dia")
+                .executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Preenche o filtro de dias (inclusivo nas duas pontas) a partir do índice informado
+     * @return Próximo índice livre
+     */
+    static int filtrarDias(PreparedStatement stmt, int indice, Date inicio, Date fim)
+            throws SQLException {
+        stmt.setString(indice++, inicio != null ? inicio.toString() : "");
+        stmt.setString(indice++, fim != null ? fim.toString() : "9999-12-31");
+        return indice;
+    }
+}
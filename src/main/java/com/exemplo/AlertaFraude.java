@@ -0,0 +1,37 @@
+package com.exemplo;
+
+/**
+ * Resultado de uma avaliação que disparou ao menos uma regra
+ */
+public class AlertaFraude {
+    private final EventoTransacao evento;
+    private final AcaoFraude acao;
+    private final String regra;
+
+    public AlertaFraude(EventoTransacao evento, AcaoFraude acao, String regra) {
+        this.evento = evento;
+        this.acao = acao;
+        this.regra = regra;
+    }
+
+    public EventoTransacao getEvento() {
+        return evento;
+    }
+
+    public AcaoFraude getAcao() {
+        return acao;
+    }
+
+    /**
+     * @return Nome da regra que definiu a ação (a mais severa)
+     */
+    public String getRegra() {
+        return regra;
+    }
+
+    @Override
+    public String toString() {
+        return acao + " por " + regra + ": " + evento.getTipo() + " de R$ " + String.format("%.2f", evento.getValor())
+                + " (" + evento.getEmailOrigem() + " -> " + evento.getEmailDestino() + ")";
+    }
+}
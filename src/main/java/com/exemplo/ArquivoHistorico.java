@@ -0,0 +1,187 @@
+package com.exemplo;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registro das partições mensais do histórico arquivado (tabela historico_particoes)
+ * As partições são tabelas historico_AAAA_MM no mesmo arquivo do SQLite, então mover uma linha da
+ * tabela quente para o arquivo é uma única transação atômica
+ *
+ * A lista em memória é trocada inteira a cada mudança e os limites de uma partição são alargados
+ * antes do commit que move as linhas: um leitor pode consultar uma partição à toa, mas nunca deixa
+ * de consultar uma que já tem linhas visíveis para ele
+ */
+class ArquivoHistorico {
+    private static final String COLUNAS = "id, email_origem, email_destino, tipo, valor, data, reversao_de";
+
+    private volatile List<ParticaoHistorico> particoes = Collections.emptyList();
+
+    void carregar(ConexaoPool conn) throws SQLException {
+        List<ParticaoHistorico> lidas = new ArrayList<>();
+        try (ResultSet rs = conn.preparar(
+                "SELECT mes, data_min, data_max, id_min, id_max, linhas FROM historico_particoes ORDER BY mes DESC")
+                .executeQuery()) {
+            while (rs.next()) {
+                lidas.add(new ParticaoHistorico(rs.getString(1), rs.getString(2), rs.getString(3),
+                        rs.getLong(4), rs.getLong(5), rs.getLong(6)));
+            }
+        }
+        particoes = Collections.unmodifiableList(lidas);
+    }
+
+    /**
+     * @return Partições da mais recente para a mais antiga
+     */
+    List<ParticaoHistorico> getParticoes() {
+        return particoes;
+    }
+
+    ParticaoHistorico get(String mes) {
+        for (ParticaoHistorico particao : particoes) {
+            if (particao.getMes().equals(mes)) {
+                return particao;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Substitui (ou inclui) a partição na lista, mantendo a ordem por mês decrescente
+     */
+    synchronized void publicar(ParticaoHistorico atualizada) {
+        List<ParticaoHistorico> nova = new ArrayList<>(particoes.size() + 1);
+        boolean incluida = false;
+        for (ParticaoHistorico particao : particoes) {
+            if (!incluida && atualizada.getMes().compareTo(particao.getMes()) >= 0) {
+                nova.add(atualizada);
+                incluida = true;
+            }
+            if (!particao.getMes().equals(atualizada.getMes())) {
+                nova.add(particao);
+            }
+        }
+        if (!incluida) {
+            nova.add(atualizada);
+        }
+        particoes = Collections.unmodifiableList(nova);
+    }
+
+    /**
+     * Cria a tabela e os índices de uma partição vazia; a partição só é publicada depois do commit
+     */
+    static ParticaoHistorico criar(ConexaoPool conn, String mes) throws SQLException {
+        String tabela = ParticaoHistorico.tabela(mes);
+        try (Statement stmt = conn.getConexao().createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + tabela + " (" +
+                    "id INTEGER PRIMARY KEY," +
+                    "email_origem TEXT," +
+                    "email_destino TEXT," +
+                    "tipo TEXT NOT NULL," +
+                    "valor REAL NOT NULL," +
+                    "data TIMESTAMP," +
+                    "reversao_de INTEGER)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + tabela + "_origem_data ON " + tabela + "(email_origem, data)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + tabela + "_destino_data ON " + tabela + "(email_destino, data)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + tabela + "_data ON " + tabela + "(data)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + tabela + "_reversao ON " + tabela + "(reversao_de) " +
+                    "WHERE reversao_de IS NOT NULL");
+        }
+        PreparedStatement registro = conn.preparar(
+                "INSERT OR IGNORE INTO historico_particoes (mes, linhas) VALUES (?, 0)");
+        registro.setString(1, mes);
+        registro.executeUpdate();
+        return new ParticaoHistorico(mes, null, null, 0, 0, 0);
+    }
+
+    /**
+     * Copia as transações para a partição e as apaga da tabela quente, na transação de quem chamou
+     */
+    static void mover(ConexaoPool conn, ParticaoHistorico particao, List<Integer> ids) throws SQLException {
+        PreparedStatement copia = conn.preparar("INSERT INTO " + particao.getTabela() + " (" + COLUNAS + ") " +
+                "SELECT " + COLUNAS + " FROM historico WHERE id = ?");
+        PreparedStatement remocao = conn.preparar("DELETE FROM historico WHERE id = ?");
+        for (int id : ids) {
+            copia.setInt(1, id);
+            copia.addBatch();
+            remocao.setInt(1, id);
+            remocao.addBatch();
+        }
+        copia.executeBatch();
+        remocao.executeBatch();
+        PreparedStatement registro = conn.preparar(
+                "UPDATE historico_particoes SET " +
+                "data_min = COALESCE(MIN(data_min, ?), ?), data_max = COALESCE(MAX(data_max, ?), ?), " +
+                "id_min = COALESCE(MIN(id_min, ?), ?), id_max = COALESCE(MAX(id_max, ?), ?), " +
+                "linhas = linhas + ? WHERE mes = ?");
+        registro.setString(1, particao.getDataMin());
+        registro.setString(2, particao.getDataMin());
+        registro.setString(3, particao.getDataMax());
+        registro.setString(4, particao.getDataMax());
+        registro.setLong(5, particao.getIdMin());
+        registro.setLong(6, particao.getIdMin());
+        registro.setLong(7, particao.getIdMax());
+        registro.setLong(8, particao.getIdMax());
+        registro.setInt(9, ids.size());
+        registro.setString(10, particao.getMes());
+        registro.executeUpdate();
+    }
+
+    /**
+     * Devolve uma transação arquivada para a tabela quente (antes de ela receber uma denúncia ou ser
+     * revertida), junto com a sua reversão, se houver: a checagem de "já revertida" só olha a tabela quente
+     * @return Linhas restauradas por mês (vazio se a transação não estava arquivada)
+     */
+    Map<String, Integer> restaurar(ConexaoPool conn, int id) throws SQLException {
+        Map<String, Integer> restauradas = new HashMap<>();
+        for (ParticaoHistorico particao : particoes) {
+            if (particao.podeConter(id) && devolver(conn, particao, "id", id)) {
+                restauradas.merge(particao.getMes(), 1, Integer::sum);
+                break;
+            }
+        }
+        if (restauradas.isEmpty()) {
+            return restauradas;
+        }
+        for (ParticaoHistorico particao : particoes) {
+            if (!particao.isVazia() && particao.getIdMax() > id && devolver(conn, particao, "reversao_de", id)) {
+                restauradas.merge(particao.getMes(), 1, Integer::sum);
+                break;
+            }
+        }
+        return restauradas;
+    }
+
+    /**
+     * Os comandos mudam com a partição, então são preparados e fechados aqui em vez de ocupar o cache
+     * de statements da conexão
+     */
+    private static boolean devolver(ConexaoPool conn, ParticaoHistorico particao, String coluna, int valor)
+            throws SQLException {
+        try (PreparedStatement copia = conn.getConexao().prepareStatement(
+                "INSERT INTO historico (" + COLUNAS + ") " +
+                "SELECT " + COLUNAS + " FROM " + particao.getTabela() + " WHERE " + coluna + " = ?")) {
+            copia.setInt(1, valor);
+            if (copia.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        try (PreparedStatement remocao = conn.getConexao().prepareStatement(
+                "DELETE FROM " + particao.getTabela() + " WHERE " + coluna + " = ?")) {
+            remocao.setInt(1, valor);
+            remocao.executeUpdate();
+        }
+        PreparedStatement registro = conn.preparar(
+                "UPDATE historico_particoes SET linhas = linhas - 1 WHERE mes = ?");
+        registro.setString(1, particao.getMes());
+        registro.executeUpdate();
+        return true;
+    }
+}
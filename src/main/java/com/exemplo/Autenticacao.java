@@ -11,16 +11,19 @@ public class Autenticacao {
         this.scanner = scanner;
     }
 
-    public String login() {
+    /**
+     * @return Sessão aberta, ou null se o login falhar
+     */
+    public Sessao login() {
         System.out.print("Digite seu email: ");
         String email = scanner.nextLine();
         System.out.print("Digite sua senha: ");
         String senha = scanner.nextLine();
 
-        if (banco.autenticar(email, senha)) {
-            String nomeUsuario = banco.getNomeUsuario(email);
-            System.out.println("Login realizado com sucesso! Bem-vindo ao Brasisco, " + nomeUsuario + "!");
-            return email;
+        Sessao sessao = banco.login(email, senha);
+        if (sessao != null) {
+            System.out.println("Login realizado com sucesso! Bem-vindo ao Brasisco, " + sessao.getNome() + "!");
+            return sessao;
         } else {
             System.out.println("Email ou senha incorretos.");
             return null;
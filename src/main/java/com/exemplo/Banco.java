@@ -1,197 +1,581 @@
 package com.exemplo;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.sql.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
 
 /**
  * Classe principal que gerencia todas as operações bancárias
  * Implementa operações como depósito, transferência, consulta de saldo e histórico
+ * As conexões vêm de um PoolConexoes de longa duração: um escritor e vários leitores
  */
-public class Banco {
-    private final Criptografia criptografia;
-    private static final String DB_URL = "jdbc:sqlite:banco.db";
-    private static final String TIMEZONE = "America/Sao_Paulo";
+public class Banco implements AutoCloseable {
+    private static final int LOTE_LEITURA_HISTORICO = 500;
+    private static final int INSTRUCOES_POR_TRANSACAO = 50_000;
+    private static final int CONTAS_POR_CONSULTA = 500;
+    private static final int REVERSOES_POR_TRANSACAO = 2_000;
+    private static final int LOTE_REPROCESSAMENTO = 10_000;
+    private static final int LOTE_EXPIRACAO_CHAVES = 5_000;
+    private static final int TENTATIVAS_ESCRITA = 3;
+    private static final int SQLITE_BUSY = 5;
+    // mesmo texto de datetime('now', 'localtime'), com validação de dia e mês
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm:ss")
+            .withResolverStyle(ResolverStyle.STRICT);
+    private static final String SQL_SALDOS_EM_LOTE = "SELECT email, saldo FROM usuarios WHERE email IN ("
+            + String.join(", ", Collections.nCopies(CONTAS_POR_CONSULTA, "?")) + ")";
+    private static final String SQL_TRANSACOES_EM_LOTE = "SELECT id, email_origem, email_destino, tipo, valor, data, " +
+            "NULL as denuncia_id, NULL as denuncia_status " +
+            "FROM historico WHERE id IN (" + String.join(", ", Collections.nCopies(CONTAS_POR_CONSULTA, "?")) + ")";
+    private static final String SQL_REVERTIDAS_EM_LOTE = "SELECT reversao_de FROM historico WHERE reversao_de IN ("
+            + String.join(", ", Collections.nCopies(CONTAS_POR_CONSULTA, "?")) + ")";
+    // denúncia reservada para o revisor (parâmetros: revisor, agora em ms) ou sem reserva válida
+    private static final String RESERVA_DO_REVISOR =
+            "(reservado_por = ? OR reservado_ate IS NULL OR reservado_ate < ?)";
+    // denúncia pendente com reserva válida de outro revisor (parâmetros: agora em ms, revisor ou null)
+    private static final String RESERVADA_POR_OUTRO =
+            "(status = 'PENDENTE' AND COALESCE(reservado_ate, 0) >= ? AND reservado_por IS NOT ?)";
+    private static final String SQL_RESOLVER_DENUNCIAS = "UPDATE denuncias " +
+            "SET status = 'RESOLVIDA', reservado_por = NULL, reservado_ate = NULL " +
+            "WHERE id_transacao = ? AND NOT " + RESERVADA_POR_OUTRO;
+    private static final String SQL_RESERVADAS_EM_LOTE = "SELECT DISTINCT id_transacao FROM denuncias " +
+            "WHERE " + RESERVADA_POR_OUTRO + " AND id_transacao IN ("
+            + String.join(", ", Collections.nCopies(CONTAS_POR_CONSULTA, "?")) + ")";
+    static final String SQL_DENUNCIAS_PENDENTES = "SELECT d.*, h.email_origem, h.email_destino, h.valor, h.tipo, " +
+            "u1.nome as nome_origem, u2.nome as nome_destino " +
+            "FROM denuncias d " +
+            "JOIN historico h ON d.id_transacao = h.id " +
+            "LEFT JOIN usuarios u1 ON h.email_origem = u1.email " +
+            "LEFT JOIN usuarios u2 ON h.email_destino = u2.email " +
+            "WHERE d.status = 'PENDENTE' " +
+            "ORDER BY d.data_denuncia DESC";
+    private static final String SQL_PERFIS_EM_LOTE = "SELECT email, nome, is_admin FROM usuarios WHERE email IN ("
+            + String.join(", ", Collections.nCopies(CONTAS_POR_CONSULTA, "?")) + ")";
+
+    private final PoolConexoes pool;
+    private final MotorEscrita motorEscrita;
+    private final long esperaMaximaCommitMs;
+    private final SaldosMemoria saldosMemoria;
+    private final ChavesIdempotencia chaves;
+    private final HistoricoColunar historicoColunar;
+    private final MetricasBanco metricas;
+    private final GerenciadorSessoes sessoes;
+    private final CachePerfis perfis;
+    private volatile MotorFraude motorFraude;
+    private final ArquivoHistorico arquivo = new ArquivoHistorico();
+    private final int idadeArquivamentoDias;
+    private final int loteArquivamento;
+    private final int loteImportacao;
+    private final int threadsImportacao;
+    private final ScheduledExecutorService agendador;
+    private final List<ExportadorMetricas> exportadores = new CopyOnWriteArrayList<>();
 
     public Banco() {
-        this.criptografia = new Criptografia();
-        inicializarBanco();
+        this(new ConfiguracaoBanco());
+    }
+
+    public Banco(ConfiguracaoBanco config) {
+        this.sessoes = new GerenciadorSessoes(config.getDuracaoSessaoMs());
+        this.perfis = new CachePerfis(config.getTamanhoCachePerfis(), config.getValidadeCachePerfisMs());
+        try {
+            this.pool = new PoolConexoes(config);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Erro ao abrir conexões do Brasisco: " + e.getMessage(), e);
+        }
+        this.metricas = new MetricasBanco(pool.getEstatisticas());
+        try {
+            inicializarBanco();
+        } catch (SQLException e) {
+            // com uma migração pela metade o esquema não é o que o código espera: não sobe
+            pool.close();
+            throw new IllegalStateException("Erro ao inicializar banco de dados do Brasisco: " + e.getMessage(), e);
+        }
+        try {
+            this.saldosMemoria = config.isSaldosEmMemoria() ? new SaldosMemoria(pool, config) : null;
+        } catch (SQLException e) {
+            pool.close();
+            throw new IllegalStateException("Erro ao carregar saldos do Brasisco: " + e.getMessage(), e);
+        }
+        try {
+            this.chaves = new ChavesIdempotencia(pool, metricas, config);
+        } catch (SQLException e) {
+            if (saldosMemoria != null) {
+                saldosMemoria.close();
+            }
+            pool.close();
+            throw new IllegalStateException("Erro ao carregar chaves de idempotência do Brasisco: " + e.getMessage(), e);
+        }
+        try {
+            this.historicoColunar = config.isHistoricoColunar() ? new HistoricoColunar(pool, metricas, arquivo) : null;
+        } catch (SQLException e) {
+            if (saldosMemoria != null) {
+                saldosMemoria.close();
+            }
+            pool.close();
+            throw new IllegalStateException("Erro ao carregar histórico colunar do Brasisco: " + e.getMessage(), e);
+        }
+        this.motorEscrita = config.isEscritaAgrupada() ? new MotorEscrita(pool, config) : null;
+        this.esperaMaximaCommitMs = config.getEsperaMaximaCommitMs();
+        this.idadeArquivamentoDias = config.getIdadeArquivamentoDias();
+        this.loteArquivamento = config.getLoteArquivamento();
+        this.loteImportacao = config.getLoteImportacao();
+        this.threadsImportacao = config.getThreadsImportacao();
+        if (config.getIntervaloArquivamentoMs() > 0 || config.getIntervaloExpiracaoChavesMs() > 0) {
+            this.agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "brasisco-manutencao");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.agendador = null;
+        }
+        if (config.getIntervaloArquivamentoMs() > 0) {
+            agendador.scheduleWithFixedDelay(this::arquivarHistorico, config.getIntervaloArquivamentoMs(),
+                    config.getIntervaloArquivamentoMs(), TimeUnit.MILLISECONDS);
+        }
+        if (config.getIntervaloExpiracaoChavesMs() > 0) {
+            agendador.scheduleWithFixedDelay(this::expirarChavesIdempotencia, config.getIntervaloExpiracaoChavesMs(),
+                    config.getIntervaloExpiracaoChavesMs(), TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
-     * Inicializa o banco de dados criando as tabelas necessárias e a conta de administrador
+     * Inicializa o banco de dados aplicando as migrações pendentes e criando a conta de administrador
+     * O histórico existente é preservado entre reinicializações
      */
-    private void inicializarBanco() {
-        try (Connection conn = conectarBanco()) {
-            criarTabelas(conn);
+    private void inicializarBanco() throws SQLException {
+        try (ConexaoPool conn = pool.obterEscrita()) {
+            MigradorEsquema migrador = new MigradorEsquema();
+            int aplicadas = migrador.migrar(conn.getConexao());
             criarAdmin(conn);
-        } catch (SQLException e) {
-            System.out.println("Erro ao inicializar banco de dados do Brasisco: " + e.getMessage());
+            arquivo.carregar(conn);
+            conn.setAutoCommit(false);
+            // índices e triggers que uma importação interrompida deixou apagados
+            boolean adiados = !ImportacaoCsv.restaurarObjetos(conn).isEmpty();
+            if (adiados || (aplicadas > 0
+                    && migrador.versaoAtual(conn.getConexao()) - aplicadas < MigradorEsquema.VERSAO_AGREGADOS)) {
+                AgregadosHistorico.reconstruir(conn);
+            }
+            conn.commit();
         }
     }
 
-    private Connection conectarBanco() throws SQLException {
-        try {
-            Class.forName("org.sqlite.JDBC");
-            Connection conn = DriverManager.getConnection(DB_URL);
-            // Configurar o fuso horário para o Brasil
-            try (Statement stmt = conn.createStatement()) {
-                stmt.execute("PRAGMA timezone = '" + TIMEZONE + "'");
-            }
-            return conn;
-        } catch (ClassNotFoundException e) {
-            throw new SQLException("Driver SQLite não encontrado: " + e.getMessage());
-        }
-    }
-
-    private void criarTabelas(Connection conn) throws SQLException {
-        try (Statement stmt = conn.createStatement()) {
-            // Primeiro, dropar a tabela historico se ela existir
-            stmt.execute("DROP TABLE IF EXISTS historico");
-            
-            stmt.execute("CREATE TABLE IF NOT EXISTS usuarios (" +
-                    "email TEXT PRIMARY KEY," +
-                    "nome TEXT NOT NULL," +
-                    "senha TEXT NOT NULL," +
-                    "saldo REAL NOT NULL," +
-                    "is_admin INTEGER DEFAULT 0)");
-            
-            stmt.execute("CREATE TABLE historico (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "email_origem TEXT," +
-                    "email_destino TEXT," +
-                    "tipo TEXT NOT NULL," +
-                    "valor REAL NOT NULL," +
-                    "data TIMESTAMP DEFAULT (datetime('now', 'localtime'))," +
-                    "FOREIGN KEY(email_origem) REFERENCES usuarios(email)," +
-                    "FOREIGN KEY(email_destino) REFERENCES usuarios(email))");
-
-            stmt.execute("CREATE TABLE IF NOT EXISTS denuncias (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "id_transacao INTEGER," +
-                    "email_denunciante TEXT," +
-                    "descricao TEXT," +
-                    "status TEXT DEFAULT 'PENDENTE'," +
-                    "data_denuncia TIMESTAMP DEFAULT (datetime('now', 'localtime'))," +
-                    "FOREIGN KEY(id_transacao) REFERENCES historico(id)," +
-                    "FOREIGN KEY(email_denunciante) REFERENCES usuarios(email))");
-        }
-    }
-
-    private void criarAdmin(Connection conn) throws SQLException {
-        String senhaHash = criptografia.criptografar("admin123");
-        try (PreparedStatement stmt = conn.prepareStatement(
-                "INSERT OR IGNORE INTO usuarios (email, nome, senha, saldo, is_admin) VALUES (?, ?, ?, ?, ?)")) {
-            stmt.setString(1, "admin@banco.com");   
-            stmt.setString(2, "Administrador");
-            stmt.setString(3, senhaHash);
-            stmt.setDouble(4, 0.0);
-            stmt.setInt(5, 1);
-            stmt.executeUpdate();
+    /**
+     * @return Métricas do pool de conexões (espera, conexões em uso, cache de statements)
+     */
+    public EstatisticasPool getEstatisticasPool() {
+        return pool.getEstatisticas();
+    }
+
+    /**
+     * @return Cache de perfis (nome e administrador), com acertos, faltas e despejos
+     */
+    public CachePerfis getCachePerfis() {
+        return perfis;
+    }
+
+    /**
+     * @return Latências, sucessos, falhas por causa, linhas e repetições de cada operação
+     */
+    public MetricasBanco getMetricas() {
+        return metricas;
+    }
+
+    /**
+     * @return Histórico em colunas para consultas de análise, ou null se ConfiguracaoBanco.historicoColunar
+     *         estiver desligado
+     */
+    public HistoricoColunar getHistoricoColunar() {
+        return historicoColunar;
+    }
+
+    /**
+     * Passa a avaliar cada depósito e transferência no motor antifraude (null desliga)
+     */
+    public void usarMotorFraude(MotorFraude motor) {
+        this.motorFraude = motor;
+    }
+
+    /**
+     * Inicia um exportador sobre as métricas deste Banco; ele é encerrado junto com o Banco
+     */
+    public void adicionarExportador(ExportadorMetricas exportador) {
+        exportador.iniciar(metricas);
+        exportadores.add(exportador);
+    }
+
+    /**
+     * Para o arquivamento periódico, encerra o motor de escrita (gravando o que estiver na fila),
+     * descarrega os saldos em memória, fecha o pool de conexões e os exportadores de métricas
+     */
+    @Override
+    public void close() {
+        if (agendador != null) {
+            agendador.shutdown();
+            try {
+                agendador.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (motorEscrita != null) {
+            motorEscrita.close();
+        }
+        if (saldosMemoria != null) {
+            saldosMemoria.close();
+        }
+        pool.close();
+        for (ExportadorMetricas exportador : exportadores) {
+            try {
+                exportador.close();
+            } catch (Exception e) {
+                System.out.println("Erro ao encerrar exportador de métricas do Brasisco: " + e.getMessage());
+            }
         }
     }
 
-    public void adicionarUsuario(String email, String nome, String senha) {
-        try (Connection conn = conectarBanco()) {
-            String senhaHash = criptografia.criptografar(senha);
-            try (PreparedStatement stmt = conn.prepareStatement(
-                    "INSERT INTO usuarios (email, nome, senha, saldo) VALUES (?, ?, ?, ?)")) {
-                stmt.setString(1, email);
-                stmt.setString(2, nome);
-                stmt.setString(3, senhaHash);
-                stmt.setDouble(4, 1000.0);
-                stmt.executeUpdate();
+    private void criarAdmin(ConexaoPool conn) throws SQLException {
+        String senhaHash = Criptografia.criptografar("admin123");
+        PreparedStatement stmt = conn.preparar(
+                "INSERT OR IGNORE INTO usuarios (email, nome, senha, saldo, is_admin) VALUES (?, ?, ?, ?, ?)");
+        stmt.setString(1, "admin@banco.com");
+        stmt.setString(2, "Administrador");
+        stmt.setString(3, senhaHash);
+        stmt.setDouble(4, 0.0);
+        stmt.setInt(5, 1);
+        stmt.executeUpdate();
+    }
+
+    /**
+     * @return true se a conta foi criada, false se o email já existe ou houve erro
+     */
+    public boolean adicionarUsuario(String email, String nome, String senha) {
+        long inicio = System.nanoTime();
+        String senhaHash = Criptografia.criptografar(senha);
+        try (ConexaoPool conn = pool.obterEscrita()) {
+            PreparedStatement stmt = conn.preparar(
+                    "INSERT INTO usuarios (email, nome, senha, saldo) VALUES (?, ?, ?, ?)");
+            stmt.setString(1, email);
+            stmt.setString(2, nome);
+            stmt.setString(3, senhaHash);
+            stmt.setDouble(4, 1000.0);
+            stmt.executeUpdate();
+            perfis.invalidar(email);
+            if (saldosMemoria != null) {
+                saldosMemoria.adicionarConta(email, nome, 1000.0);
             }
+            metricas.sucesso(OperacaoBanco.ADICIONAR_USUARIO, inicio);
+            return true;
         } catch (SQLException e) {
+            metricas.falha(OperacaoBanco.ADICIONAR_USUARIO, inicio, e);
             System.out.println("Erro ao adicionar usuário no Brasisco: " + e.getMessage());
+            return false;
         }
     }
 
     public boolean autenticar(String email, String senha) {
-        try (Connection conn = conectarBanco()) {
-            String senhaHash = criptografia.criptografar(senha);
-            try (PreparedStatement stmt = conn.prepareStatement(
-                    "SELECT * FROM usuarios WHERE email = ? AND senha = ?")) {
-                stmt.setString(1, email);
-                stmt.setString(2, senhaHash);
-                return stmt.executeQuery().next();
+        long inicio = System.nanoTime();
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            if (lerCredenciais(conn, email, senha, false) != null) {
+                metricas.sucesso(OperacaoBanco.AUTENTICAR, inicio);
+                return true;
             }
+            metricas.falha(OperacaoBanco.AUTENTICAR, inicio, "CREDENCIAIS_INVALIDAS");
+            return false;
         } catch (SQLException e) {
+            metricas.falha(OperacaoBanco.AUTENTICAR, inicio, e);
             System.out.println("Erro ao autenticar usuário no Brasisco: " + e.getMessage());
             return false;
         }
     }
 
-    public boolean isAdmin(String email) {
-        try (Connection conn = conectarBanco()) {
-            try (PreparedStatement stmt = conn.prepareStatement(
-                    "SELECT is_admin FROM usuarios WHERE email = ?")) {
-                stmt.setString(1, email);
-                ResultSet rs = stmt.executeQuery();
-                return rs.next() && rs.getInt("is_admin") == 1;
+    /**
+     * Autentica o usuário e abre uma sessão
+     * Custa um hash e uma busca pela chave primária; depois disso a sessão é validada só em memória
+     * @return Sessão com token, nome e perfil do usuário, ou null se as credenciais forem inválidas
+     */
+    public Sessao login(String email, String senha) {
+        long inicio = System.nanoTime();
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            Sessao sessao = lerCredenciais(conn, email, senha, true);
+            if (sessao == null) {
+                metricas.falha(OperacaoBanco.LOGIN, inicio, "CREDENCIAIS_INVALIDAS");
+            } else {
+                metricas.sucesso(OperacaoBanco.LOGIN, inicio);
+            }
+            return sessao;
+        } catch (SQLException e) {
+            metricas.falha(OperacaoBanco.LOGIN, inicio, e);
+            System.out.println("Erro ao autenticar usuário no Brasisco: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return A sessão do token, com o prazo renovado, ou null se ela não existir ou tiver expirado
+     */
+    public Sessao validarSessao(String token) {
+        return sessoes.validar(token);
+    }
+
+    public void encerrarSessao(String token) {
+        sessoes.encerrar(token);
+    }
+
+    /**
+     * Busca o usuário pela chave primária e compara o hash da senha
+     * @param abrirSessao Se false, a sessão devolvida não tem token nem é registrada
+     * @return Sessão do usuário se a senha conferir, null caso contrário
+     */
+    private Sessao lerCredenciais(ConexaoPool conn, String email, String senha, boolean abrirSessao)
+            throws SQLException {
+        PreparedStatement stmt = conn.preparar(
+                "SELECT nome, senha, is_admin FROM usuarios WHERE email = ?");
+        stmt.setString(1, email);
+        try (ResultSet rs = stmt.executeQuery()) {
+            if (rs.next() && Criptografia.verificarSenha(senha, rs.getString("senha"))) {
+                String nome = rs.getString("nome");
+                boolean admin = rs.getInt("is_admin") == 1;
+                perfis.guardar(email, new PerfilUsuario(nome, admin));
+                return abrirSessao ? sessoes.criar(email, nome, admin) : new Sessao(null, email, nome, admin, 0);
             }
+        }
+        return null;
+    }
+
+    public boolean isAdmin(String email) {
+        long inicio = System.nanoTime();
+        try {
+            PerfilUsuario perfil = obterPerfil(email);
+            metricas.sucesso(OperacaoBanco.IS_ADMIN, inicio);
+            return perfil != null && perfil.isAdmin();
         } catch (SQLException e) {
+            metricas.falha(OperacaoBanco.IS_ADMIN, inicio, e);
             System.out.println("Erro ao verificar status de administrador no Brasisco: " + e.getMessage());
             return false;
         }
     }
 
     public String getNomeUsuario(String email) {
-        try (Connection conn = conectarBanco()) {
-            try (PreparedStatement stmt = conn.prepareStatement(
-                    "SELECT nome FROM usuarios WHERE email = ?")) {
-                stmt.setString(1, email);
-                ResultSet rs = stmt.executeQuery();
-                if (rs.next()) {
-                    return rs.getString("nome");
-                }
+        long inicio = System.nanoTime();
+        try {
+            PerfilUsuario perfil = obterPerfil(email);
+            if (perfil != null) {
+                metricas.sucesso(OperacaoBanco.NOME_USUARIO, inicio, 1);
+                return perfil.getNome();
             }
+            metricas.falha(OperacaoBanco.NOME_USUARIO, inicio, "CONTA_INEXISTENTE");
         } catch (SQLException e) {
+            metricas.falha(OperacaoBanco.NOME_USUARIO, inicio, e);
             System.out.println("Erro ao obter nome do usuário no Brasisco: " + e.getMessage());
         }
         return null;
     }
 
-    public double consultarSaldo(String email) {
-        try (Connection conn = conectarBanco()) {
-            try (PreparedStatement stmt = conn.prepareStatement(
-                    "SELECT saldo FROM usuarios WHERE email = ?")) {
-                stmt.setString(1, email);
-                ResultSet rs = stmt.executeQuery();
+    /**
+     * @return Perfil do cache ou, na falta, do SQLite (e então guardado no cache); null se a conta não existir
+     */
+    private PerfilUsuario obterPerfil(String email) throws SQLException {
+        PerfilUsuario perfil = perfis.obter(email);
+        if (perfil != null) {
+            return perfil;
+        }
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            PreparedStatement stmt = conn.preparar(
+                    "SELECT nome, is_admin FROM usuarios WHERE email = ?");
+            stmt.setString(1, email);
+            try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getDouble("saldo");
+                    perfil = new PerfilUsuario(rs.getString("nome"), rs.getInt("is_admin") == 1);
+                    perfis.guardar(email, perfil);
+                }
+            }
+        }
+        return perfil;
+    }
+
+    /**
+     * Resolve os perfis de várias contas: o que falta no cache é lido com um único IN de tamanho fixo
+     */
+    private Map<String, PerfilUsuario> obterPerfis(ConexaoPool conn, Collection<String> emails) throws SQLException {
+        Map<String, PerfilUsuario> encontrados = new HashMap<>();
+        List<String> faltantes = new ArrayList<>();
+        for (String email : emails) {
+            PerfilUsuario perfil = perfis.obter(email);
+            if (perfil != null) {
+                encontrados.put(email, perfil);
+            } else {
+                faltantes.add(email);
+            }
+        }
+        if (faltantes.isEmpty()) {
+            return encontrados;
+        }
+        PreparedStatement stmt = conn.preparar(SQL_PERFIS_EM_LOTE);
+        Iterator<String> iterator = faltantes.iterator();
+        while (iterator.hasNext()) {
+            for (int i = 1; i <= CONTAS_POR_CONSULTA; i++) {
+                stmt.setString(i, iterator.hasNext() ? iterator.next() : null);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    PerfilUsuario perfil = new PerfilUsuario(rs.getString("nome"), rs.getInt("is_admin") == 1);
+                    perfis.guardar(rs.getString("email"), perfil);
+                    encontrados.put(rs.getString("email"), perfil);
                 }
             }
+        }
+        return encontrados;
+    }
+
+    /**
+     * Com saldos em memória o valor lido é o do SaldosMemoria, alterado antes do commit da transação que
+     * grava a operação: por um instante pode aparecer o saldo de uma operação que ainda vai ser desfeita
+     * (ou, na escrita agrupada, que espera o commit do grupo). No SQLite só aparece o que foi confirmado
+     * @return Saldo da conta, ou 0.0 se ela não existir
+     */
+    public double consultarSaldo(String email) {
+        long inicio = System.nanoTime();
+        if (saldosMemoria != null) {
+            double saldo = saldosMemoria.consultar(email);
+            metricas.sucesso(OperacaoBanco.CONSULTAR_SALDO, inicio);
+            return saldo;
+        }
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            double saldo = consultarSaldo(conn, email);
+            metricas.sucesso(OperacaoBanco.CONSULTAR_SALDO, inicio);
+            return saldo;
         } catch (SQLException e) {
+            metricas.falha(OperacaoBanco.CONSULTAR_SALDO, inicio, e);
             System.out.println("Erro ao consultar saldo no Brasisco: " + e.getMessage());
         }
         return 0.0;
     }
 
+    private double consultarSaldo(ConexaoPool conn, String email) throws SQLException {
+        PreparedStatement stmt = conn.preparar(
+                "SELECT saldo FROM usuarios WHERE email = ?");
+        stmt.setString(1, email);
+        try (ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                return rs.getDouble("saldo");
+            }
+        }
+        return 0.0;
+    }
+
+    private boolean existeConta(ConexaoPool conn, String email) throws SQLException {
+        PreparedStatement stmt = conn.preparar("SELECT 1 FROM usuarios WHERE email = ?");
+        stmt.setString(1, email);
+        try (ResultSet rs = stmt.executeQuery()) {
+            return rs.next();
+        }
+    }
+
     /**
      * Realiza um depósito na conta do usuário
      * @param email Email do usuário
-     * @param valor Valor a ser depositado
+     * @param valor Valor a ser depositado; zero, negativo ou NaN é recusado
+     * @return true se o depósito foi registrado, false se foi retido pela antifraude ou houve erro
      */
-    public void depositar(String email, double valor) {
-        try (Connection conn = conectarBanco()) {
-            conn.setAutoCommit(false);
-            try {
-                try (PreparedStatement stmt = conn.prepareStatement(
-                        "UPDATE usuarios SET saldo = saldo + ? WHERE email = ?")) {
+    public boolean depositar(String email, double valor) {
+        return efetuarDeposito(null, null, email, valor) != -1;
+    }
+
+    /**
+     * Depósito idempotente: repetir a chamada com a mesma chave (ex: depois de um timeout) não deposita
+     * de novo, devolve o resultado do primeiro depósito
+     * @param chaveIdempotencia Identificador da requisição, escolhido pelo cliente e único por operação
+     * @return ID da transação no histórico, o mesmo em todas as repetições; -1 se o depósito não foi feito
+     *         ou a chave já foi usada em outra operação
+     */
+    public int depositar(String chaveIdempotencia, String email, double valor) {
+        String assinatura = ChavesIdempotencia.assinatura("deposito", null, email, valor);
+        return comChave(chaveIdempotencia, assinatura, () -> efetuarDeposito(chaveIdempotencia, assinatura, email, valor));
+    }
+
+    /**
+     * @param chave Chave de idempotência gravada junto com o depósito, ou null
+     * @return ID da transação no histórico, ou -1
+     */
+    private int efetuarDeposito(String chave, String assinatura, String email, double valor) {
+        long inicio = System.nanoTime();
+        if (!(valor > 0)) {
+            System.out.println("Valor de depósito inválido no Brasisco.");
+            metricas.falha(OperacaoBanco.DEPOSITAR, inicio, ResultadoTransferencia.VALOR_INVALIDO.name());
+            return -1;
+        }
+        MotorFraude fraude = motorFraude;
+        EventoTransacao evento = null;
+        AlertaFraude alerta = null;
+        if (fraude != null) {
+            evento = new EventoTransacao(null, email, "deposito", valor, System.currentTimeMillis());
+            alerta = fraude.avaliar(evento);
+            if (alerta != null && alerta.getAcao() == AcaoFraude.RETER) {
+                System.out.println("Depósito retido pela análise antifraude do Brasisco (" + alerta.getRegra() + ").");
+                metricas.falha(OperacaoBanco.DEPOSITAR, inicio, "RETIDA_ANTIFRAUDE");
+                return -1;
+            }
+        }
+        try {
+            int idTransacao = executarEscrita(OperacaoBanco.DEPOSITAR, conn -> {
+                if (saldosMemoria != null) {
+                    if (!saldosMemoria.ajustar(conn, email, valor)) {
+                        throw new SQLException("Conta não encontrada");
+                    }
+                } else {
+                    PreparedStatement stmt = conn.preparar(
+                            "UPDATE usuarios SET saldo = saldo + ? WHERE email = ?");
                     stmt.setDouble(1, valor);
                     stmt.setString(2, email);
-                    stmt.executeUpdate();
+                    if (stmt.executeUpdate() == 0) {
+                        throw new SQLException("Conta não encontrada");
+                    }
                 }
 
-                registrarTransacao(conn, email, null, "deposito", valor);
-                conn.commit();
-            } catch (SQLException e) {
-                conn.rollback();
-                throw e;
+                int id = registrarTransacao(conn, email, null, "deposito", valor);
+                if (chave != null) {
+                    ChavesIdempotencia.gravar(conn, chave, assinatura, id);
+                }
+                return id;
+            });
+            metricas.sucesso(OperacaoBanco.DEPOSITAR, inicio);
+            if (fraude != null) {
+                confirmarNoMotorFraude(alerta, idTransacao);
             }
-        } catch (SQLException e) {
+            return idTransacao;
+        } catch (SQLException | RuntimeException e) {
+            if (fraude != null) {
+                fraude.remover(evento);
+            }
+            metricas.falha(OperacaoBanco.DEPOSITAR, inicio, e);
             System.out.println("Erro ao realizar depósito no Brasisco: " + e.getMessage());
+            return -1;
         }
     }
 
@@ -203,262 +587,2290 @@ public class Banco {
      * @return true se a transferência foi bem sucedida, false caso contrário
      */
     public boolean transferir(String emailOrigem, String emailDestino, double valor) {
-        try (Connection conn = conectarBanco()) {
-            if (consultarSaldo(emailOrigem) < valor) {
-                System.out.println("Saldo insuficiente no Brasisco.");
-                return false;
+        return efetuarTransferencia(null, null, emailOrigem, emailDestino, valor) != -1;
+    }
+
+    /**
+     * Transferência idempotente: repetir a chamada com a mesma chave (ex: depois de um timeout) não
+     * transfere de novo, devolve o resultado da primeira. Uma transferência recusada (saldo insuficiente)
+     * não guarda a chave, e a repetição tenta de novo
+     * @param chaveIdempotencia Identificador da requisição, escolhido pelo cliente e único por operação
+     * @return ID da transação no histórico, o mesmo em todas as repetições; -1 se a transferência não foi
+     *         feita ou a chave já foi usada em outra operação
+     */
+    public int transferir(String chaveIdempotencia, String emailOrigem, String emailDestino, double valor) {
+        String assinatura = ChavesIdempotencia.assinatura("transferencia", emailOrigem, emailDestino, valor);
+        return comChave(chaveIdempotencia, assinatura,
+                () -> efetuarTransferencia(chaveIdempotencia, assinatura, emailOrigem, emailDestino, valor));
+    }
+
+    /**
+     * @param chave Chave de idempotência gravada junto com a transferência, ou null
+     * @return ID da transação no histórico, ou -1
+     */
+    private int efetuarTransferencia(String chave, String assinatura, String emailOrigem, String emailDestino,
+                                     double valor) {
+        long inicio = System.nanoTime();
+        if (!(valor > 0)) {
+            System.out.println("Valor de transferência inválido no Brasisco.");
+            metricas.falha(OperacaoBanco.TRANSFERIR, inicio, ResultadoTransferencia.VALOR_INVALIDO.name());
+            return -1;
+        }
+        MotorFraude fraude = motorFraude;
+        EventoTransacao evento = null;
+        AlertaFraude alerta = null;
+        if (fraude != null) {
+            evento = new EventoTransacao(emailOrigem, emailDestino, "transferencia", valor, System.currentTimeMillis());
+            alerta = fraude.avaliar(evento);
+            if (alerta != null && alerta.getAcao() == AcaoFraude.RETER) {
+                System.out.println("Transferência retida pela análise antifraude do Brasisco (" + alerta.getRegra() + ").");
+                metricas.falha(OperacaoBanco.TRANSFERIR, inicio, "RETIDA_ANTIFRAUDE");
+                return -1;
             }
+        }
+        int[] idTransacao = { -1 };
+        ResultadoTransferencia[] recusa = { ResultadoTransferencia.SALDO_INSUFICIENTE };
+        try {
+            boolean sucesso = executarEscrita(OperacaoBanco.TRANSFERIR, conn -> {
+                if (saldosMemoria != null) {
+                    ResultadoTransferencia resultado = saldosMemoria.transferir(conn, emailOrigem, emailDestino, valor);
+                    if (resultado != ResultadoTransferencia.SUCESSO) {
+                        System.out.println(resultado == ResultadoTransferencia.SALDO_INSUFICIENTE
+                                ? "Saldo insuficiente no Brasisco." : "Transferência recusada no Brasisco: " + resultado);
+                        recusa[0] = resultado;
+                        return false;
+                    }
+                    idTransacao[0] = registrarTransacao(conn, emailOrigem, emailDestino, "transferencia", valor);
+                    if (idTransacao[0] == -1) {
+                        throw new SQLException("Erro ao registrar transação");
+                    }
+                    if (chave != null) {
+                        ChavesIdempotencia.gravar(conn, chave, assinatura, idTransacao[0]);
+                    }
+                    return true;
+                }
 
-            conn.setAutoCommit(false);
-            try {
-                try (PreparedStatement stmt = conn.prepareStatement(
-                        "UPDATE usuarios SET saldo = saldo - ? WHERE email = ?")) {
-                    stmt.setDouble(1, valor);
-                    stmt.setString(2, emailOrigem);
-                    stmt.executeUpdate();
+                // débito condicional: checagem e alteração do saldo num único passo
+                PreparedStatement debito = conn.preparar(
+                        "UPDATE usuarios SET saldo = saldo - ? WHERE email = ? AND saldo >= ?");
+                debito.setDouble(1, valor);
+                debito.setString(2, emailOrigem);
+                debito.setDouble(3, valor);
+                if (debito.executeUpdate() == 0) {
+                    // nenhuma linha: falta saldo ou a conta de origem não existe
+                    if (!existeConta(conn, emailOrigem)) {
+                        System.out.println("Transferência recusada no Brasisco: "
+                                + ResultadoTransferencia.CONTA_INEXISTENTE);
+                        recusa[0] = ResultadoTransferencia.CONTA_INEXISTENTE;
+                    } else {
+                        System.out.println("Saldo insuficiente no Brasisco.");
+                    }
+                    return false;
                 }
 
-                try (PreparedStatement stmt = conn.prepareStatement(
-                        "UPDATE usuarios SET saldo = saldo + ? WHERE email = ?")) {
-                    stmt.setDouble(1, valor);
-                    stmt.setString(2, emailDestino);
-                    stmt.executeUpdate();
+                PreparedStatement credito = conn.preparar(
+                        "UPDATE usuarios SET saldo = saldo + ? WHERE email = ?");
+                credito.setDouble(1, valor);
+                credito.setString(2, emailDestino);
+                if (credito.executeUpdate() == 0) {
+                    throw new SQLException("Conta de destino não encontrada");
                 }
 
-                int idTransacao = registrarTransacao(conn, emailOrigem, emailDestino, "transferencia", valor);
-                if (idTransacao == -1) {
+                idTransacao[0] = registrarTransacao(conn, emailOrigem, emailDestino, "transferencia", valor);
+                if (idTransacao[0] == -1) {
                     throw new SQLException("Erro ao registrar transação");
                 }
-
-                conn.commit();
+                if (chave != null) {
+                    ChavesIdempotencia.gravar(conn, chave, assinatura, idTransacao[0]);
+                }
                 return true;
-            } catch (SQLException e) {
-                conn.rollback();
-                throw e;
+            });
+            if (sucesso) {
+                metricas.sucesso(OperacaoBanco.TRANSFERIR, inicio);
+                if (fraude != null) {
+                    confirmarNoMotorFraude(alerta, idTransacao[0]);
+                }
+            } else {
+                if (fraude != null) {
+                    fraude.remover(evento);
+                }
+                metricas.falha(OperacaoBanco.TRANSFERIR, inicio, recusa[0].name());
             }
-        } catch (SQLException e) {
+            return sucesso ? idTransacao[0] : -1;
+        } catch (SQLException | RuntimeException e) {
+            if (fraude != null) {
+                fraude.remover(evento);
+            }
+            metricas.falha(OperacaoBanco.TRANSFERIR, inicio, e);
             System.out.println("Erro ao realizar transferência no Brasisco: " + e.getMessage());
-            return false;
+            return -1;
         }
     }
 
     /**
-     * Registra uma transação no histórico
-     * @param conn Conexão com o banco de dados
-     * @param emailOrigem Email da conta de origem
-     * @param emailDestino Email da conta de destino
-     * @param tipo Tipo da transação (deposito, transferencia, etc)
-     * @param valor Valor da transação
-     * @return ID da transação registrada ou -1 em caso de erro
+     * Executa a operação uma vez por chave de idempotência (ver ChavesIdempotencia)
+     * @param chave Chave do cliente; null executa sem idempotência
      */
-    private int registrarTransacao(Connection conn, String emailOrigem, String emailDestino, String tipo, double valor) throws SQLException {
-        try (PreparedStatement stmt = conn.prepareStatement(
-                "INSERT INTO historico (email_origem, email_destino, tipo, valor) VALUES (?, ?, ?, ?)")) {
-            stmt.setString(1, emailOrigem);
-            stmt.setString(2, emailDestino);
-            stmt.setString(3, tipo);
-            stmt.setDouble(4, valor);
-            stmt.executeUpdate();
-            
-            try (Statement stmt2 = conn.createStatement();
-                 ResultSet rs = stmt2.executeQuery("SELECT last_insert_rowid()")) {
-                if (rs.next()) {
-                    return rs.getInt(1);
-                }
-            }
+    private int comChave(String chave, String assinatura, IntSupplier operacao) {
+        if (chave == null) {
+            return operacao.getAsInt();
+        }
+        try {
+            return chaves.executar(chave, assinatura, operacao);
+        } catch (SQLException | IllegalArgumentException e) {
+            System.out.println("Erro ao verificar chave de idempotência no Brasisco: " + e.getMessage());
+            return -1;
         }
-        return -1;
     }
 
     /**
-     * Consulta o histórico completo de transações
-     * @return Lista de todas as transações realizadas
+     * Apaga as chaves de idempotência mais velhas que a validade e refaz o filtro de Bloom sem elas
+     * Roda sozinho a cada intervaloExpiracaoChavesMs; pode ser chamado a qualquer momento
+     * @return Quantidade de chaves apagadas
      */
-    public List<Transacao> consultarHistorico() {
-        List<Transacao> historico = new ArrayList<>();
-        try (Connection conn = conectarBanco()) {
-            try (PreparedStatement stmt = conn.prepareStatement(
-                    "SELECT h.*, u1.nome as nome_origem, u2.nome as nome_destino " +
-                    "FROM historico h " +
-                    "LEFT JOIN usuarios u1 ON h.email_origem = u1.email " +
-                    "LEFT JOIN usuarios u2 ON h.email_destino = u2.email " +
-                    "ORDER BY h.data DESC")) {
-                try (ResultSet rs = stmt.executeQuery()) {
-                    while (rs.next()) {
-                        Transacao t = new Transacao(
-                            rs.getString("email_origem"),
-                            rs.getString("email_destino"),
-                            rs.getString("nome_origem"),
-                            rs.getString("nome_destino"),
-                            rs.getString("tipo"),
-                            rs.getDouble("valor"),
-                            rs.getTimestamp("data")
-                        );
-                        t.setId(rs.getInt("id"));
-                        historico.add(t);
-                    }
-                }
+    public long expirarChavesIdempotencia() {
+        long inicio = System.nanoTime();
+        long apagadas = 0;
+        try {
+            int lote;
+            do {
+                lote = executarEscrita(OperacaoBanco.EXPIRAR_CHAVES,
+                        conn -> chaves.apagarVencidas(conn, LOTE_EXPIRACAO_CHAVES));
+                apagadas += lote;
+            } while (lote == LOTE_EXPIRACAO_CHAVES);
+            if (apagadas > 0) {
+                chaves.reconstruirFiltro();
             }
-        } catch (SQLException e) {
-            System.out.println("Erro ao consultar histórico do Brasisco: " + e.getMessage());
+            metricas.sucesso(OperacaoBanco.EXPIRAR_CHAVES, inicio, apagadas);
+        } catch (SQLException | RuntimeException e) {
+            metricas.falha(OperacaoBanco.EXPIRAR_CHAVES, inicio, e);
+            System.out.println("Erro ao expirar chaves de idempotência no Brasisco: " + e.getMessage());
         }
-        return historico;
+        return apagadas;
     }
 
-    public List<Transacao> consultarHistoricoUsuario(String email) {
-        List<Transacao> historico = new ArrayList<>();
-        try (Connection conn = conectarBanco()) {
-            try (PreparedStatement stmt = conn.prepareStatement(
-                    "SELECT h.*, u1.nome as nome_origem, u2.nome as nome_destino, " +
-                    "d.id as denuncia_id, d.status as denuncia_status " +
-                    "FROM historico h " +
-                    "LEFT JOIN usuarios u1 ON h.email_origem = u1.email " +
-                    "LEFT JOIN usuarios u2 ON h.email_destino = u2.email " +
-                    "LEFT JOIN denuncias d ON h.id = d.id_transacao " +
-                    "WHERE h.email_origem = ? OR h.email_destino = ? " +
-                    "ORDER BY h.data DESC")) {
-                stmt.setString(1, email);
-                stmt.setString(2, email);
-                try (ResultSet rs = stmt.executeQuery()) {
-                    while (rs.next()) {
-                        Transacao t = new Transacao(
-                            rs.getString("email_origem"),
-                            rs.getString("email_destino"),
-                            rs.getString("nome_origem"),
-                            rs.getString("nome_destino"),
-                            rs.getString("tipo"),
-                            rs.getDouble("valor"),
-                            rs.getTimestamp("data")
-                        );
-                        t.setId(rs.getInt("id"));
-                        if (rs.getInt("denuncia_id") > 0) {
-                            t.setDenunciaId(rs.getInt("denuncia_id"));
-                            t.setDenunciaStatus(rs.getString("denuncia_status"));
-                        }
-                        historico.add(t);
-                    }
-                }
-            }
-        } catch (SQLException e) {
-            System.out.println("Erro ao consultar histórico do usuário no Brasisco: " + e.getMessage());
+    /**
+     * Registra a denúncia automática, se uma regra pediu; o evento já entrou na janela da conta em avaliar
+     */
+    private void confirmarNoMotorFraude(AlertaFraude alerta, int idTransacao) {
+        if (alerta != null && alerta.getAcao() == AcaoFraude.DENUNCIAR) {
+            registrarDenuncia(idTransacao, MotorFraude.DENUNCIANTE, "Denúncia automática: regra " + alerta.getRegra());
         }
-        return historico;
     }
 
     /**
-     * Registra uma denúncia relacionada a uma transação
-     * @param idTransacao ID da transação denunciada
-     * @param emailDenunciante Email do usuário que fez a denúncia
-     * @param descricao Descrição da denúncia
-     * @return true se a denúncia foi registrada com sucesso
+     * Executa uma operação de escrita em transação própria ou, com escrita agrupada,
+     * pelo MotorEscrita, aguardando o commit do grupo
+     * A transação é repetida quando o SQLite responde SQLITE_BUSY; alterações nos saldos em memória
+     * são desfeitas pelo rollback (ConexaoPool.aoDesfazer), então a repetição parte do estado anterior
      */
-    public boolean registrarDenuncia(int idTransacao, String emailDenunciante, String descricao) {
-        try (Connection conn = conectarBanco()) {
-            try (PreparedStatement stmt = conn.prepareStatement(
-                    "INSERT INTO denuncias (id_transacao, email_denunciante, descricao) VALUES (?, ?, ?)")) {
-                stmt.setInt(1, idTransacao);
-                stmt.setString(2, emailDenunciante);
-                stmt.setString(3, descricao);
-                return stmt.executeUpdate() > 0;
+    private <T> T executarEscrita(OperacaoBanco tipo, OperacaoEscrita<T> operacao) throws SQLException {
+        if (motorEscrita != null) {
+            return motorEscrita.executarAguardando(operacao, esperaMaximaCommitMs);
+        }
+        for (int tentativa = 1; ; tentativa++) {
+            try (ConexaoPool conn = pool.obterEscrita()) {
+                conn.setAutoCommit(false);
+                try {
+                    T resultado = operacao.executar(conn);
+                    conn.commit();
+                    return resultado;
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                if (tentativa >= TENTATIVAS_ESCRITA || (e.getErrorCode() & 0xff) != SQLITE_BUSY) {
+                    throw e;
+                }
+                metricas.repeticao(tipo);
             }
-        } catch (SQLException e) {
-            System.out.println("Erro ao registrar denúncia no Brasisco: " + e.getMessage());
-            return false;
         }
     }
 
-    public List<Denuncia> consultarDenuncias() {
-        List<Denuncia> denuncias = new ArrayList<>();
-        try (Connection conn = conectarBanco()) {
-            try (PreparedStatement stmt = conn.prepareStatement(
-                    "SELECT d.*, h.email_origem, h.email_destino, h.valor, h.tipo, " +
-                    "u1.nome as nome_origem, u2.nome as nome_destino " +
-                    "FROM denuncias d " +
-                    "JOIN historico h ON d.id_transacao = h.id " +
-                    "LEFT JOIN usuarios u1 ON h.email_origem = u1.email " +
-                    "LEFT JOIN usuarios u2 ON h.email_destino = u2.email " +
-                    "WHERE d.status = 'PENDENTE' " +
-                    "ORDER BY d.data_denuncia DESC")) {
-                try (ResultSet rs = stmt.executeQuery()) {
-                    while (rs.next()) {
-                        denuncias.add(new Denuncia(
-                            rs.getInt("id"),
-                            rs.getInt("id_transacao"),
-                            rs.getString("email_denunciante"),
-                            rs.getString("descricao"),
-                            rs.getString("status"),
-                            rs.getTimestamp("data_denuncia"),
-                            rs.getString("email_origem"),
-                            rs.getString("email_destino"),
-                            rs.getString("nome_origem"),
-                            rs.getString("nome_destino"),
-                            rs.getDouble("valor"),
-                            rs.getString("tipo")
-                        ));
+    /**
+     * Executa um lote de transferências com poucas transações no banco
+     * Os saldos envolvidos são lidos uma vez, as instruções são validadas em memória na ordem
+     * recebida e as alterações são gravadas com JDBC batch: um UPDATE por conta (saldo líquido)
+     * e um INSERT por transferência aceita
+     * @param instrucoes Transferências na ordem em que devem ser aplicadas
+     * @return Resultado de cada instrução, na mesma posição da lista recebida
+     */
+    public List<ResultadoTransferencia> transferirLote(List<InstrucaoTransferencia> instrucoes) {
+        long inicioLote = System.nanoTime();
+        List<ResultadoTransferencia> resultados = new ArrayList<>(instrucoes.size());
+        try (ConexaoPool conn = pool.obterEscrita()) {
+            for (int inicio = 0; inicio < instrucoes.size(); inicio += INSTRUCOES_POR_TRANSACAO) {
+                List<InstrucaoTransferencia> parte = instrucoes.subList(inicio,
+                        Math.min(instrucoes.size(), inicio + INSTRUCOES_POR_TRANSACAO));
+                conn.setAutoCommit(false);
+                try {
+                    resultados.addAll(aplicarLote(conn, parte));
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    System.out.println("Erro ao realizar lote de transferências no Brasisco: " + e.getMessage());
+                    for (int i = 0; i < parte.size(); i++) {
+                        resultados.add(ResultadoTransferencia.ERRO);
                     }
                 }
             }
         } catch (SQLException e) {
-            System.out.println("Erro ao consultar denúncias no Brasisco: " + e.getMessage());
+            System.out.println("Erro ao realizar lote de transferências no Brasisco: " + e.getMessage());
+            while (resultados.size() < instrucoes.size()) {
+                resultados.add(ResultadoTransferencia.ERRO);
+            }
+            metricas.falha(OperacaoBanco.TRANSFERIR_LOTE, inicioLote, e);
+            return resultados;
         }
-        return denuncias;
+        if (resultados.contains(ResultadoTransferencia.ERRO)) {
+            metricas.falha(OperacaoBanco.TRANSFERIR_LOTE, inicioLote, ResultadoTransferencia.ERRO.name());
+        } else {
+            metricas.sucesso(OperacaoBanco.TRANSFERIR_LOTE, inicioLote, instrucoes.size());
+        }
+        return resultados;
+    }
+
+    private List<ResultadoTransferencia> aplicarLote(ConexaoPool conn, List<InstrucaoTransferencia> instrucoes)
+            throws SQLException {
+        if (saldosMemoria != null) {
+            return aplicarLoteEmMemoria(conn, instrucoes);
+        }
+        Set<String> contas = new HashSet<>();
+        for (InstrucaoTransferencia instrucao : instrucoes) {
+            contas.add(instrucao.getEmailOrigem());
+            contas.add(instrucao.getEmailDestino());
+        }
+        Map<String, double[]> saldos = lerSaldos(conn, contas);
+        Map<String, double[]> variacoes = new HashMap<>();
+
+        List<ResultadoTransferencia> resultados = new ArrayList<>(instrucoes.size());
+        PreparedStatement insert = conn.preparar(
+                "INSERT INTO historico (email_origem, email_destino, tipo, valor) VALUES (?, ?, ?, ?)");
+        for (InstrucaoTransferencia instrucao : instrucoes) {
+            double[] saldoOrigem = saldos.get(instrucao.getEmailOrigem());
+            double[] saldoDestino = saldos.get(instrucao.getEmailDestino());
+            double valor = instrucao.getValor();
+            if (!(valor > 0)) {
+                resultados.add(ResultadoTransferencia.VALOR_INVALIDO);
+            } else if (saldoOrigem == null || saldoDestino == null) {
+                resultados.add(ResultadoTransferencia.CONTA_INEXISTENTE);
+            } else if (saldoOrigem[0] < valor) {
+                resultados.add(ResultadoTransferencia.SALDO_INSUFICIENTE);
+            } else {
+                saldoOrigem[0] -= valor;
+                saldoDestino[0] += valor;
+                variacoes.computeIfAbsent(instrucao.getEmailOrigem(), k -> new double[1])[0] -= valor;
+                variacoes.computeIfAbsent(instrucao.getEmailDestino(), k -> new double[1])[0] += valor;
+                insert.setString(1, instrucao.getEmailOrigem());
+                insert.setString(2, instrucao.getEmailDestino());
+                insert.setString(3, "transferencia");
+                insert.setDouble(4, valor);
+                insert.addBatch();
+                resultados.add(ResultadoTransferencia.SUCESSO);
+            }
+        }
+
+        PreparedStatement update = conn.preparar("UPDATE usuarios SET saldo = saldo + ? WHERE email = ?");
+        for (Map.Entry<String, double[]> variacao : variacoes.entrySet()) {
+            if (variacao.getValue()[0] != 0.0) {
+                update.setDouble(1, variacao.getValue()[0]);
+                update.setString(2, variacao.getKey());
+                update.addBatch();
+            }
+        }
+        update.executeBatch();
+        insert.executeBatch();
+        return resultados;
     }
 
     /**
-     * Reverte uma transferência e atualiza o status da denúncia
-     * @param idTransacao ID da transação a ser revertida
-     * @return true se a reversão foi bem sucedida
+     * Variante do lote para saldos em memória: cada instrução é validada e aplicada atomicamente
+     * no SaldosMemoria e só o histórico vai para o SQLite em batch
      */
-    public boolean reverterTransferencia(int idTransacao) {
-        try (Connection conn = conectarBanco()) {
-            conn.setAutoCommit(false);
-            try {
-                String emailOrigem, emailDestino;
-                double valor;
-                try (PreparedStatement stmt = conn.prepareStatement(
-                        "SELECT email_origem, email_destino, valor FROM historico WHERE id = ?")) {
-                    stmt.setInt(1, idTransacao);
-                    try (ResultSet rs = stmt.executeQuery()) {
-                        if (!rs.next()) {
-                            throw new SQLException("Transação não encontrada");
-                        }
-                        emailOrigem = rs.getString("email_origem");
-                        emailDestino = rs.getString("email_destino");
-                        valor = rs.getDouble("valor");
-                    }
+    private List<ResultadoTransferencia> aplicarLoteEmMemoria(ConexaoPool conn, List<InstrucaoTransferencia> instrucoes)
+            throws SQLException {
+        List<ResultadoTransferencia> resultados = new ArrayList<>(instrucoes.size());
+        PreparedStatement insert = conn.preparar(
+                "INSERT INTO historico (email_origem, email_destino, tipo, valor) VALUES (?, ?, ?, ?)");
+        for (InstrucaoTransferencia instrucao : instrucoes) {
+            ResultadoTransferencia resultado = saldosMemoria.transferir(
+                    conn, instrucao.getEmailOrigem(), instrucao.getEmailDestino(), instrucao.getValor());
+            if (resultado == ResultadoTransferencia.SUCESSO) {
+                insert.setString(1, instrucao.getEmailOrigem());
+                insert.setString(2, instrucao.getEmailDestino());
+                insert.setString(3, "transferencia");
+                insert.setDouble(4, instrucao.getValor());
+                insert.addBatch();
+            }
+            resultados.add(resultado);
+        }
+        insert.executeBatch();
+        return resultados;
+    }
+
+    /**
+     * Lê os saldos de várias contas usando um IN de tamanho fixo, para que o statement fique em cache
+     * @return Saldo de cada conta encontrada, em um array mutável de uma posição
+     */
+    private Map<String, double[]> lerSaldos(ConexaoPool conn, Collection<String> emails) throws SQLException {
+        Map<String, double[]> saldos = new HashMap<>();
+        PreparedStatement stmt = conn.preparar(SQL_SALDOS_EM_LOTE);
+        Iterator<String> iterator = emails.iterator();
+        while (iterator.hasNext()) {
+            for (int i = 1; i <= CONTAS_POR_CONSULTA; i++) {
+                stmt.setString(i, iterator.hasNext() ? iterator.next() : null);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    saldos.put(rs.getString(1), new double[] { rs.getDouble(2) });
                 }
+            }
+        }
+        return saldos;
+    }
 
-                try (PreparedStatement stmt = conn.prepareStatement(
-                        "UPDATE usuarios SET saldo = saldo + ? WHERE email = ?")) {
-                    stmt.setDouble(1, valor);
-                    stmt.setString(2, emailOrigem);
-                    stmt.executeUpdate();
+    /**
+     * Registra uma transação no histórico
+     * @param conn Conexão com o banco de dados
+     * @param emailOrigem Email da conta de origem
+     * @param emailDestino Email da conta de destino
+     * @param tipo Tipo da transação (deposito, transferencia, etc)
+     * @param valor Valor da transação
+     * @return ID da transação registrada ou -1 em caso de erro
+     */
+    private int registrarTransacao(ConexaoPool conn, String emailOrigem, String emailDestino, String tipo, double valor) throws SQLException {
+        PreparedStatement stmt = conn.preparar(
+                "INSERT INTO historico (email_origem, email_destino, tipo, valor) VALUES (?, ?, ?, ?)");
+        stmt.setString(1, emailOrigem);
+        stmt.setString(2, emailDestino);
+        stmt.setString(3, tipo);
+        stmt.setDouble(4, valor);
+        stmt.executeUpdate();
+
+        try (ResultSet rs = conn.preparar("SELECT last_insert_rowid()").executeQuery()) {
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Consulta o histórico completo de transações
+     * Carrega tudo em memória: para volumes grandes prefira a versão paginada ou percorrerHistorico
+     * @return Lista de todas as transações realizadas
+     */
+    public List<Transacao> consultarHistorico() {
+        List<Transacao> historico = new ArrayList<>();
+        percorrer(OperacaoBanco.CONSULTAR_HISTORICO, null, historico::add);
+        return historico;
+    }
+
+    public List<Transacao> consultarHistoricoUsuario(String email) {
+        List<Transacao> historico = new ArrayList<>();
+        percorrer(OperacaoBanco.CONSULTAR_HISTORICO_USUARIO, email, historico::add);
+        return historico;
+    }
+
+    /**
+     * Consulta uma página do histórico completo
+     * @param apos Cursor da página anterior, ou CursorHistorico.INICIO para a primeira
+     * @param tamanhoPagina Quantidade máxima de transações na página
+     * @return Página com as transações e o cursor da próxima
+     */
+    public PaginaHistorico consultarHistorico(CursorHistorico apos, int tamanhoPagina) {
+        return consultarPagina(OperacaoBanco.CONSULTAR_HISTORICO, null, apos, tamanhoPagina);
+    }
+
+    /**
+     * Consulta uma página do histórico de um usuário
+     * @param email Email do usuário
+     * @param apos Cursor da página anterior, ou CursorHistorico.INICIO para a primeira
+     * @param tamanhoPagina Quantidade máxima de transações na página
+     * @return Página com as transações e o cursor da próxima
+     */
+    public PaginaHistorico consultarHistoricoUsuario(String email, CursorHistorico apos, int tamanhoPagina) {
+        return consultarPagina(OperacaoBanco.CONSULTAR_HISTORICO_USUARIO, email, apos, tamanhoPagina);
+    }
+
+    /**
+     * Entrega todas as transações, da mais recente para a mais antiga, sem montar uma lista
+     * A leitura é feita em lotes, então a memória usada não depende do tamanho do histórico
+     * @param consumidor Recebe cada transação
+     */
+    public void percorrerHistorico(Consumer<Transacao> consumidor) {
+        percorrer(OperacaoBanco.CONSULTAR_HISTORICO, null, consumidor);
+    }
+
+    /**
+     * Entrega as transações do usuário, da mais recente para a mais antiga, sem montar uma lista
+     * @param email Email do usuário
+     * @param consumidor Recebe cada transação
+     */
+    public void percorrerHistoricoUsuario(String email, Consumer<Transacao> consumidor) {
+        percorrer(OperacaoBanco.CONSULTAR_HISTORICO_USUARIO, email, consumidor);
+    }
+
+    private PaginaHistorico consultarPagina(OperacaoBanco tipo, String email, CursorHistorico apos, int tamanhoPagina) {
+        long inicio = System.nanoTime();
+        List<Transacao> transacoes = new ArrayList<>(tamanhoPagina);
+        CursorHistorico ultimo = null;
+        long[] examinadas = { 0 };
+        try {
+            ultimo = lerHistorico(email, apos, tamanhoPagina, transacoes::add, examinadas);
+            metricas.sucesso(tipo, inicio, transacoes.size(), examinadas[0]);
+        } catch (SQLException e) {
+            metricas.falha(tipo, inicio, e);
+            System.out.println("Erro ao consultar histórico do Brasisco: " + e.getMessage());
+        }
+        return new PaginaHistorico(transacoes, ultimo != null ? ultimo : apos,
+                transacoes.size() == tamanhoPagina);
+    }
+
+    private void percorrer(OperacaoBanco tipo, String email, Consumer<Transacao> consumidor) {
+        long inicio = System.nanoTime();
+        long[] linhas = { 0 };
+        long[] examinadas = { 0 };
+        Consumer<Transacao> contador = t -> {
+            linhas[0]++;
+            consumidor.accept(t);
+        };
+        CursorHistorico cursor = CursorHistorico.INICIO;
+        try {
+            while (cursor != null) {
+                cursor = lerHistorico(email, cursor, LOTE_LEITURA_HISTORICO, contador, examinadas);
+            }
+            metricas.sucesso(tipo, inicio, linhas[0], examinadas[0]);
+        } catch (SQLException e) {
+            metricas.falha(tipo, inicio, e);
+            System.out.println("Erro ao consultar histórico do Brasisco: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lê até 'limite' transações anteriores ao cursor, em ordem (data, id) decrescente
+     * Para um usuário, cada lado (origem/destino) percorre seu próprio índice e os dois são unidos
+     * A tabela quente é lida primeiro; as partições arquivadas, da mais recente para a mais antiga,
+     * só enquanto ainda puderem ter transações mais novas que a última da página
+     * Os nomes vêm do CachePerfis (faltas resolvidas em lote), sem JOIN com usuarios
+     * @return Cursor da última transação lida, ou null se o histórico terminou
+     */
+    private CursorHistorico lerHistorico(String email, CursorHistorico apos, int limite,
+                                         Consumer<Transacao> consumidor, long[] examinadas) throws SQLException {
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            List<ParticaoHistorico> particoes = arquivo.getParticoes();
+            if (!particoes.isEmpty()) {
+                // todas as tabelas lidas no mesmo instantâneo: uma transação movida entre as consultas
+                // não some nem aparece duas vezes
+                conn.setAutoCommit(false);
+            }
+            List<LinhaHistorico> linhas = lerParticaoHistorico(conn, "historico", email, apos, limite);
+            examinadas[0] += linhas.size();
+            for (ParticaoHistorico particao : particoes) {
+                if (particao.isVazia() || particao.getDataMin().compareTo(apos.getData()) > 0) {
+                    continue;
+                }
+                if (linhas.size() == limite
+                        && linhas.get(limite - 1).dataTexto.compareTo(particao.getDataMax()) > 0) {
+                    break;
+                }
+                List<LinhaHistorico> daParticao = lerParticaoHistorico(conn, particao.getTabela(), email, apos,
+                        limite);
+                examinadas[0] += daParticao.size();
+                linhas = intercalar(linhas, daParticao, limite);
+            }
+            if (linhas.isEmpty()) {
+                return null;
+            }
+
+            Set<String> emails = new HashSet<>();
+            for (LinhaHistorico linha : linhas) {
+                if (linha.emailOrigem != null) {
+                    emails.add(linha.emailOrigem);
                 }
+                if (linha.emailDestino != null) {
+                    emails.add(linha.emailDestino);
+                }
+            }
+            Map<String, PerfilUsuario> nomes = obterPerfis(conn, emails);
+            for (LinhaHistorico linha : linhas) {
+                consumidor.accept(linha.paraTransacao(nomes));
+            }
+            LinhaHistorico ultima = linhas.get(linhas.size() - 1);
+            return new CursorHistorico(ultima.dataTexto, ultima.id);
+        }
+    }
 
-                try (PreparedStatement stmt = conn.prepareStatement(
-                        "UPDATE usuarios SET saldo = saldo - ? WHERE email = ?")) {
-                    stmt.setDouble(1, valor);
-                    stmt.setString(2, emailDestino);
-                    stmt.executeUpdate();
+    /**
+     * Página do histórico de uma conta numa tabela (historico ou partição): cada lado (origem e destino)
+     * percorre o seu índice por (email, data) já na ordem da página
+     */
+    static String sqlHistoricoUsuario(String tabela) {
+        return "SELECT h.*, d.id as denuncia_id, d.status as denuncia_status " +
+                "FROM (" +
+                "SELECT * FROM (SELECT * FROM " + tabela + " WHERE email_origem = ? AND (data, id) < (?, ?) " +
+                "ORDER BY data DESC, id DESC LIMIT ?) " +
+                "UNION " +
+                "SELECT * FROM (SELECT * FROM " + tabela + " WHERE email_destino = ? AND (data, id) < (?, ?) " +
+                "ORDER BY data DESC, id DESC LIMIT ?)" +
+                ") h " +
+                "LEFT JOIN denuncias d ON d.id = " +
+                "(SELECT MAX(id) FROM denuncias WHERE id_transacao = h.id) " +
+                "ORDER BY h.data DESC, h.id DESC LIMIT ?";
+    }
+
+    private List<LinhaHistorico> lerParticaoHistorico(ConexaoPool conn, String tabela, String email,
+                                                      CursorHistorico apos, int limite) throws SQLException {
+        PreparedStatement stmt;
+        if (email == null) {
+            stmt = conn.preparar(
+                    "SELECT h.*, NULL as denuncia_id, NULL as denuncia_status " +
+                    "FROM " + tabela + " h " +
+                    "WHERE (h.data, h.id) < (?, ?) " +
+                    "ORDER BY h.data DESC, h.id DESC LIMIT ?");
+            stmt.setString(1, apos.getData());
+            stmt.setLong(2, apos.getId());
+            stmt.setInt(3, limite);
+        } else {
+            stmt = conn.preparar(sqlHistoricoUsuario(tabela));
+            for (int lado = 0; lado < 2; lado++) {
+                stmt.setString(lado * 4 + 1, email);
+                stmt.setString(lado * 4 + 2, apos.getData());
+                stmt.setLong(lado * 4 + 3, apos.getId());
+                stmt.setInt(lado * 4 + 4, limite);
+            }
+            stmt.setInt(9, limite);
+        }
+        List<LinhaHistorico> linhas = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                linhas.add(new LinhaHistorico(rs));
+            }
+        }
+        return linhas;
+    }
+
+    /**
+     * Une duas listas em ordem (data, id) decrescente, mantendo as 'limite' primeiras
+     */
+    private static List<LinhaHistorico> intercalar(List<LinhaHistorico> a, List<LinhaHistorico> b, int limite) {
+        if (b.isEmpty()) {
+            return a;
+        }
+        List<LinhaHistorico> unidas = new ArrayList<>(Math.min(limite, a.size() + b.size()));
+        int i = 0;
+        int j = 0;
+        while (unidas.size() < limite && (i < a.size() || j < b.size())) {
+            if (j >= b.size() || (i < a.size() && a.get(i).posteriorA(b.get(j)))) {
+                unidas.add(a.get(i++));
+            } else {
+                unidas.add(b.get(j++));
+            }
+        }
+        return unidas;
+    }
+
+    /**
+     * Linha do histórico lida do SQLite, antes de os nomes serem resolvidos
+     */
+    private static final class LinhaHistorico {
+        final int id;
+        final String emailOrigem;
+        final String emailDestino;
+        final String tipo;
+        final double valor;
+        final Timestamp data;
+        final String dataTexto;
+        final int denunciaId;
+        final String denunciaStatus;
+
+        LinhaHistorico(ResultSet rs) throws SQLException {
+            this.id = rs.getInt("id");
+            this.emailOrigem = rs.getString("email_origem");
+            this.emailDestino = rs.getString("email_destino");
+            this.tipo = rs.getString("tipo");
+            this.valor = rs.getDouble("valor");
+            this.data = rs.getTimestamp("data");
+            this.dataTexto = rs.getString("data");
+            this.denunciaId = rs.getInt("denuncia_id");
+            this.denunciaStatus = rs.getString("denuncia_status");
+        }
+
+        boolean posteriorA(LinhaHistorico outra) {
+            int comparacao = dataTexto.compareTo(outra.dataTexto);
+            return comparacao > 0 || (comparacao == 0 && id > outra.id);
+        }
+
+        Transacao paraTransacao(Map<String, PerfilUsuario> nomes) {
+            Transacao t = new Transacao(emailOrigem, emailDestino, nome(nomes, emailOrigem),
+                    nome(nomes, emailDestino), tipo, valor, data);
+            t.setId(id);
+            if (denunciaId > 0) {
+                t.setDenunciaId(denunciaId);
+                t.setDenunciaStatus(denunciaStatus);
+            }
+            return t;
+        }
+
+        private static String nome(Map<String, PerfilUsuario> nomes, String email) {
+            PerfilUsuario perfil = email == null ? null : nomes.get(email);
+            return perfil == null ? null : perfil.getNome();
+        }
+    }
+
+    /**
+     * Registra uma denúncia relacionada a uma transação
+     * @param idTransacao ID da transação denunciada
+     * @param emailDenunciante Email do usuário que fez a denúncia
+     * @param descricao Descrição da denúncia
+     * @return true se a denúncia foi registrada com sucesso
+     */
+    public boolean registrarDenuncia(int idTransacao, String emailDenunciante, String descricao) {
+        long inicio = System.nanoTime();
+        List<Map<String, Integer>> restauradas = new ArrayList<>(1);
+        try {
+            boolean registrada = executarEscrita(OperacaoBanco.REGISTRAR_DENUNCIA, conn -> {
+                restauradas.clear();
+                // transação com denúncia pendente fica na tabela quente, que é a lida pela fila
+                restaurarSeArquivada(conn, idTransacao, restauradas);
+                PreparedStatement stmt = conn.preparar(
+                        "INSERT INTO denuncias (id_transacao, email_denunciante, descricao) VALUES (?, ?, ?)");
+                stmt.setInt(1, idTransacao);
+                stmt.setString(2, emailDenunciante);
+                stmt.setString(3, descricao);
+                return stmt.executeUpdate() > 0;
+            });
+            publicarRestauradas(restauradas);
+            metricas.sucesso(OperacaoBanco.REGISTRAR_DENUNCIA, inicio);
+            return registrada;
+        } catch (SQLException e) {
+            metricas.falha(OperacaoBanco.REGISTRAR_DENUNCIA, inicio, e);
+            System.out.println("Erro ao registrar denúncia no Brasisco: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Devolve a transação à tabela quente, junto com a sua reversão, se ela estiver arquivada
+     * As linhas restauradas por mês vão para 'restauradas' e só podem ser publicadas depois do commit
+     * @return true se a transação estava arquivada e foi restaurada
+     */
+    private boolean restaurarSeArquivada(ConexaoPool conn, int idTransacao, List<Map<String, Integer>> restauradas)
+            throws SQLException {
+        if (arquivo.getParticoes().isEmpty()) {
+            return false;
+        }
+        PreparedStatement quente = conn.preparar("SELECT 1 FROM historico WHERE id = ?");
+        quente.setInt(1, idTransacao);
+        try (ResultSet rs = quente.executeQuery()) {
+            if (rs.next()) {
+                return false;
+            }
+        }
+        Map<String, Integer> porMes = arquivo.restaurar(conn, idTransacao);
+        restauradas.add(porMes);
+        return !porMes.isEmpty();
+    }
+
+    /**
+     * Desconta das partições as linhas devolvidas à tabela quente por uma transação já confirmada
+     */
+    private void publicarRestauradas(List<Map<String, Integer>> restauradas) {
+        for (Map<String, Integer> porMes : restauradas) {
+            for (Map.Entry<String, Integer> mes : porMes.entrySet()) {
+                arquivo.publicar(arquivo.get(mes.getKey()).somarLinhas(-mes.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Lista todas as denúncias pendentes de uma vez
+     * Para volumes grandes ou vários revisores use consultarFilaDenuncias e reservarDenuncias
+     */
+    public List<Denuncia> consultarDenuncias() {
+        long inicio = System.nanoTime();
+        List<Denuncia> denuncias = new ArrayList<>();
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            PreparedStatement stmt = conn.preparar(SQL_DENUNCIAS_PENDENTES);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    denuncias.add(new Denuncia(
+                        rs.getInt("id"),
+                        rs.getInt("id_transacao"),
+                        rs.getString("email_denunciante"),
+                        rs.getString("descricao"),
+                        rs.getString("status"),
+                        rs.getTimestamp("data_denuncia"),
+                        rs.getString("email_origem"),
+                        rs.getString("email_destino"),
+                        rs.getString("nome_origem"),
+                        rs.getString("nome_destino"),
+                        rs.getDouble("valor"),
+                        rs.getString("tipo")
+                    ));
                 }
+            }
+            metricas.sucesso(OperacaoBanco.CONSULTAR_DENUNCIAS, inicio, denuncias.size());
+        } catch (SQLException e) {
+            metricas.falha(OperacaoBanco.CONSULTAR_DENUNCIAS, inicio, e);
+            System.out.println("Erro ao consultar denúncias no Brasisco: " + e.getMessage());
+        }
+        return denuncias;
+    }
 
-                registrarTransacao(conn, emailDestino, emailOrigem, "reversao", valor);
+    /**
+     * Consulta uma página da fila de denúncias pendentes, sem reservá-las
+     * @param apos Cursor da página anterior, ou CursorDenuncias.inicio(prioridade) para a primeira
+     * @param tamanhoPagina Quantidade máxima de denúncias na página
+     * @return Página com as denúncias e o cursor da próxima
+     */
+    public PaginaDenuncias consultarFilaDenuncias(CursorDenuncias apos, int tamanhoPagina) {
+        long inicio = System.nanoTime();
+        List<Denuncia> denuncias = new ArrayList<>(tamanhoPagina);
+        CursorDenuncias ultimo = null;
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            ultimo = lerFilaDenuncias(conn, apos, tamanhoPagina, 0, denuncias);
+            metricas.sucesso(OperacaoBanco.CONSULTAR_FILA_DENUNCIAS, inicio, denuncias.size());
+        } catch (SQLException e) {
+            metricas.falha(OperacaoBanco.CONSULTAR_FILA_DENUNCIAS, inicio, e);
+            System.out.println("Erro ao consultar fila de denúncias no Brasisco: " + e.getMessage());
+        }
+        return new PaginaDenuncias(denuncias, ultimo != null ? ultimo : apos, denuncias.size() == tamanhoPagina);
+    }
 
-                try (PreparedStatement stmt = conn.prepareStatement(
-                        "UPDATE denuncias SET status = 'RESOLVIDA' WHERE id_transacao = ?")) {
-                    stmt.setInt(1, idTransacao);
-                    stmt.executeUpdate();
+    /**
+     * Reserva para o revisor as próximas denúncias livres da fila
+     * As denúncias reservadas por outro revisor (com reserva ainda válida) são puladas; como a
+     * seleção e a marcação acontecem na mesma transação de escrita, dois revisores nunca recebem a mesma
+     * @param revisor Identificação do revisor (ex: email do administrador)
+     * @param prioridade Ordem da fila
+     * @param quantidade Quantidade máxima de denúncias reservadas
+     * @param duracaoMs Tempo até a reserva expirar e a denúncia voltar para a fila
+     * @return Denúncias reservadas, na ordem da prioridade
+     */
+    public List<Denuncia> reservarDenuncias(String revisor, PrioridadeDenuncia prioridade, int quantidade,
+                                            long duracaoMs) {
+        long inicio = System.nanoTime();
+        List<Denuncia> denuncias = new ArrayList<>(quantidade);
+        try {
+            executarEscrita(OperacaoBanco.RESERVAR_DENUNCIAS, conn -> {
+                denuncias.clear();
+                long agora = System.currentTimeMillis();
+                long ate = agora + duracaoMs;
+                lerFilaDenuncias(conn, CursorDenuncias.inicio(prioridade), quantidade, agora, denuncias);
+                PreparedStatement reservar = conn.preparar(
+                        "UPDATE denuncias SET reservado_por = ?, reservado_ate = ? WHERE id = ?");
+                for (Denuncia denuncia : denuncias) {
+                    reservar.setString(1, revisor);
+                    reservar.setLong(2, ate);
+                    reservar.setInt(3, denuncia.getId());
+                    reservar.addBatch();
+                    denuncia.setReserva(revisor, ate);
                 }
+                reservar.executeBatch();
+                return denuncias.size();
+            });
+            metricas.sucesso(OperacaoBanco.RESERVAR_DENUNCIAS, inicio, denuncias.size());
+        } catch (SQLException e) {
+            metricas.falha(OperacaoBanco.RESERVAR_DENUNCIAS, inicio, e);
+            System.out.println("Erro ao reservar denúncias no Brasisco: " + e.getMessage());
+            return new ArrayList<>();
+        }
+        return denuncias;
+    }
+
+    /**
+     * Estende a reserva de uma denúncia que ainda pertence ao revisor
+     * @return false se a reserva expirou e foi tomada por outro revisor, ou a denúncia não está pendente
+     */
+    public boolean renovarReserva(String revisor, int idDenuncia, long duracaoMs) {
+        return alterarDenuncia(OperacaoBanco.RENOVAR_RESERVA,
+                "UPDATE denuncias SET reservado_ate = ? WHERE id = ? AND status = 'PENDENTE' AND reservado_por = ?",
+                System.currentTimeMillis() + duracaoMs, idDenuncia, revisor);
+    }
+
+    /**
+     * Devolve a denúncia para a fila sem decidir sobre ela
+     */
+    public boolean liberarReserva(String revisor, int idDenuncia) {
+        return alterarDenuncia(OperacaoBanco.LIBERAR_RESERVA,
+                "UPDATE denuncias SET reservado_por = NULL, reservado_ate = NULL " +
+                "WHERE id = ? AND status = 'PENDENTE' AND reservado_por = ?",
+                idDenuncia, revisor);
+    }
+
+    /**
+     * Fecha a denúncia sem reverter a transação
+     * @return false se a denúncia não estiver pendente ou estiver reservada por outro revisor
+     */
+    public boolean rejeitarDenuncia(String revisor, int idDenuncia) {
+        return alterarDenuncia(OperacaoBanco.REJEITAR_DENUNCIA,
+                "UPDATE denuncias SET status = 'REJEITADA', reservado_por = NULL, reservado_ate = NULL " +
+                "WHERE id = ? AND status = 'PENDENTE' AND " + RESERVA_DO_REVISOR,
+                idDenuncia, revisor, System.currentTimeMillis());
+    }
 
-                conn.commit();
+    /**
+     * Reverte a transferência da denúncia e resolve as denúncias dela
+     * Como em rejeitarDenuncia, a denúncia precisa estar pendente e reservada para o revisor, ou sem
+     * reserva válida; a checagem e a reversão acontecem na mesma transação de escrita
+     * @return false se a denúncia não estiver pendente, estiver reservada por outro revisor ou a reversão falhar
+     */
+    public boolean reverter(String revisor, int idDenuncia) {
+        long inicio = System.nanoTime();
+        List<Map<String, Integer>> restauradas = new ArrayList<>(1);
+        try {
+            boolean revertida = executarEscrita(OperacaoBanco.REVERTER_TRANSFERENCIA, conn -> {
+                restauradas.clear();
+                PreparedStatement consulta = conn.preparar("SELECT id_transacao FROM denuncias " +
+                        "WHERE id = ? AND status = 'PENDENTE' AND " + RESERVA_DO_REVISOR);
+                consulta.setInt(1, idDenuncia);
+                consulta.setString(2, revisor);
+                consulta.setLong(3, System.currentTimeMillis());
+                int idTransacao;
+                try (ResultSet rs = consulta.executeQuery()) {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    idTransacao = rs.getInt(1);
+                }
+                reverterNaTransacao(conn, revisor, idTransacao, restauradas);
                 return true;
-            } catch (SQLException e) {
-                conn.rollback();
-                throw e;
+            });
+            if (!revertida) {
+                metricas.falha(OperacaoBanco.REVERTER_TRANSFERENCIA, inicio, "DENUNCIA_INDISPONIVEL");
+                return false;
+            }
+            publicarRestauradas(restauradas);
+            metricas.sucesso(OperacaoBanco.REVERTER_TRANSFERENCIA, inicio);
+            return true;
+        } catch (SQLException | RuntimeException e) {
+            metricas.falha(OperacaoBanco.REVERTER_TRANSFERENCIA, inicio, e);
+            System.out.println("Erro ao reverter transferência no Brasisco: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean alterarDenuncia(OperacaoBanco tipo, String sql, Object... parametros) {
+        long inicio = System.nanoTime();
+        try {
+            boolean alterada = executarEscrita(tipo, conn -> {
+                PreparedStatement stmt = conn.preparar(sql);
+                for (int i = 0; i < parametros.length; i++) {
+                    stmt.setObject(i + 1, parametros[i]);
+                }
+                return stmt.executeUpdate() > 0;
+            });
+            if (alterada) {
+                metricas.sucesso(tipo, inicio);
+            } else {
+                metricas.falha(tipo, inicio, "DENUNCIA_INDISPONIVEL");
             }
+            return alterada;
         } catch (SQLException e) {
+            metricas.falha(tipo, inicio, e);
+            System.out.println("Erro ao alterar reserva de denúncia no Brasisco: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Lê até 'limite' denúncias pendentes depois do cursor, na ordem da prioridade do cursor
+     * Cada prioridade percorre um índice que começa por status (VALOR: status, valor; IDADE: status, data;
+     * RECORRENCIA: pendentes da origem e depois status, email_origem), sem ordenação; a transação é buscada
+     * pela chave primária e os nomes vêm do CachePerfis
+     * @param livresEm Se maior que zero, pula as denúncias com reserva válida nesse instante (ms desde a época)
+     * @return Cursor da última denúncia lida, ou null se a fila terminou
+     */
+    private CursorDenuncias lerFilaDenuncias(ConexaoPool conn, CursorDenuncias apos, int limite, long livresEm,
+                                             List<Denuncia> destino) throws SQLException {
+        String colunas = "SELECT d.id, d.id_transacao, d.email_denunciante, d.descricao, d.status, d.data_denuncia, " +
+                "d.reservado_por, d.reservado_ate, h.email_origem, h.email_destino, h.valor, h.tipo";
+        String livres = livresEm > 0 ? "AND (d.reservado_ate IS NULL OR d.reservado_ate < ?) " : "";
+        PreparedStatement stmt;
+        int indice = 1;
+        switch (apos.getPrioridade()) {
+            case VALOR:
+                stmt = conn.preparar(colunas + ", d.valor AS chave_numero, NULL AS chave_texto " +
+                        "FROM denuncias d LEFT JOIN historico h ON h.id = d.id_transacao " +
+                        "WHERE d.status = 'PENDENTE' AND (d.valor, d.id) < (?, ?) " + livres +
+                        "ORDER BY d.valor DESC, d.id DESC LIMIT ?");
+                stmt.setDouble(indice++, apos.getNumero());
+                stmt.setLong(indice++, apos.getId());
+                break;
+            case IDADE:
+                stmt = conn.preparar(colunas + ", 0 AS chave_numero, d.data_denuncia AS chave_texto " +
+                        "FROM denuncias d LEFT JOIN historico h ON h.id = d.id_transacao " +
+                        "WHERE d.status = 'PENDENTE' AND (d.data_denuncia, d.id) > (?, ?) " + livres +
+                        "ORDER BY d.data_denuncia, d.id LIMIT ?");
+                stmt.setString(indice++, apos.getTexto());
+                stmt.setLong(indice++, apos.getId());
+                break;
+            case RECORRENCIA:
+            default:
+                // CROSS JOIN fixa a ordem do laço (origens primeiro, na ordem do índice); o primeiro termo
+                // limita a faixa do índice de denuncias_origem e o segundo, a posição exata
+                // o.rowid não muda a ordem (email_origem é único), mas mostra ao SQLite que as linhas de
+                // fora são distintas, e assim as denúncias de cada origem saem do índice já ordenadas
+                stmt = conn.preparar(colunas + ", o.pendentes AS chave_numero, o.email_origem AS chave_texto " +
+                        "FROM denuncias_origem o " +
+                        "CROSS JOIN denuncias d ON d.email_origem = o.email_origem AND d.status = 'PENDENTE' " +
+                        "LEFT JOIN historico h ON h.id = d.id_transacao " +
+                        "WHERE o.pendentes > 0 AND (o.pendentes, o.email_origem) <= (?, ?) " +
+                        "AND (o.pendentes, o.email_origem, d.id) < (?, ?, ?) " + livres +
+                        "ORDER BY o.pendentes DESC, o.email_origem DESC, o.rowid DESC, d.id DESC LIMIT ?");
+                stmt.setDouble(indice++, apos.getNumero());
+                stmt.setString(indice++, apos.getTexto());
+                stmt.setDouble(indice++, apos.getNumero());
+                stmt.setString(indice++, apos.getTexto());
+                stmt.setLong(indice++, apos.getId());
+                break;
+        }
+        if (livresEm > 0) {
+            stmt.setLong(indice++, livresEm);
+        }
+        stmt.setInt(indice, limite);
+
+        List<Denuncia> lidas = new ArrayList<>();
+        Set<String> emails = new HashSet<>();
+        CursorDenuncias ultimo = null;
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                Denuncia denuncia = new Denuncia(
+                    rs.getInt("id"),
+                    rs.getInt("id_transacao"),
+                    rs.getString("email_denunciante"),
+                    rs.getString("descricao"),
+                    rs.getString("status"),
+                    rs.getTimestamp("data_denuncia"),
+                    rs.getString("email_origem"),
+                    rs.getString("email_destino"),
+                    null,
+                    null,
+                    rs.getDouble("valor"),
+                    rs.getString("tipo")
+                );
+                if (rs.getString("reservado_por") != null) {
+                    denuncia.setReserva(rs.getString("reservado_por"), rs.getLong("reservado_ate"));
+                }
+                if (denuncia.getEmailOrigem() != null) {
+                    emails.add(denuncia.getEmailOrigem());
+                }
+                if (denuncia.getEmailDestino() != null) {
+                    emails.add(denuncia.getEmailDestino());
+                }
+                lidas.add(denuncia);
+                ultimo = new CursorDenuncias(apos.getPrioridade(), rs.getDouble("chave_numero"),
+                        rs.getString("chave_texto"), denuncia.getId());
+            }
+        }
+        Map<String, PerfilUsuario> nomes = obterPerfis(conn, emails);
+        for (Denuncia denuncia : lidas) {
+            PerfilUsuario origem = denuncia.getEmailOrigem() == null ? null : nomes.get(denuncia.getEmailOrigem());
+            PerfilUsuario destinoTransacao = denuncia.getEmailDestino() == null ? null : nomes.get(denuncia.getEmailDestino());
+            destino.add(denuncia.comNomes(origem == null ? null : origem.getNome(),
+                    destinoTransacao == null ? null : destinoTransacao.getNome()));
+        }
+        return ultimo;
+    }
+
+    /**
+     * Reverte uma transferência e atualiza o status da denúncia
+     * Falha se a transação tem denúncia pendente reservada por um revisor; para revisar uma denúncia da
+     * fila use reverter(revisor, idDenuncia)
+     * @param idTransacao ID da transação a ser revertida
+     * @return true se a reversão foi bem sucedida
+     */
+    public boolean reverterTransferencia(int idTransacao) {
+        long inicio = System.nanoTime();
+        List<Map<String, Integer>> restauradas = new ArrayList<>(1);
+        try {
+            boolean revertida = executarEscrita(OperacaoBanco.REVERTER_TRANSFERENCIA, conn -> {
+                reverterNaTransacao(conn, null, idTransacao, restauradas);
+                return true;
+            });
+            publicarRestauradas(restauradas);
+            metricas.sucesso(OperacaoBanco.REVERTER_TRANSFERENCIA, inicio);
+            return revertida;
+        } catch (SQLException | RuntimeException e) {
+            metricas.falha(OperacaoBanco.REVERTER_TRANSFERENCIA, inicio, e);
             System.out.println("Erro ao reverter transferência no Brasisco: " + e.getMessage());
             return false;
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Reverte a transferência na transação aberta em 'conn' e resolve as denúncias dela
+     * Uma transação arquivada é devolvida antes à tabela quente; as linhas restauradas vão para 'restauradas'
+     * @param revisor Quem reverte, ou null; uma denúncia pendente da transação reservada por outro revisor
+     *                impede a reversão
+     */
+    private void reverterNaTransacao(ConexaoPool conn, String revisor, int idTransacao,
+                                     List<Map<String, Integer>> restauradas) throws SQLException {
+        restauradas.clear();
+        if (reservadaPorOutro(conn, revisor, idTransacao)) {
+            throw new SQLException("Denúncia da transação reservada por outro revisor");
+        }
+        // a reversão e a checagem de "já revertida" usam a tabela quente
+        restaurarSeArquivada(conn, idTransacao, restauradas);
+        String emailOrigem, emailDestino;
+        double valor;
+        PreparedStatement consulta = conn.preparar(
+                "SELECT email_origem, email_destino, valor FROM historico WHERE id = ?");
+        consulta.setInt(1, idTransacao);
+        try (ResultSet rs = consulta.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("Transação não encontrada");
+            }
+            emailOrigem = rs.getString("email_origem");
+            emailDestino = rs.getString("email_destino");
+            valor = rs.getDouble("valor");
+        }
+        PreparedStatement jaRevertida = conn.preparar("SELECT 1 FROM historico WHERE reversao_de = ?");
+        jaRevertida.setInt(1, idTransacao);
+        try (ResultSet rs = jaRevertida.executeQuery()) {
+            if (rs.next()) {
+                throw new SQLException("Transação já revertida");
+            }
+        }
+
+        if (saldosMemoria != null) {
+            ResultadoTransferencia resultado = saldosMemoria.estornar(conn, emailDestino, emailOrigem, valor);
+            if (resultado != ResultadoTransferencia.SUCESSO) {
+                throw new SQLException("Estorno recusado: " + resultado);
+            }
+        } else {
+            PreparedStatement credito = conn.preparar(
+                    "UPDATE usuarios SET saldo = saldo + ? WHERE email = ?");
+            credito.setDouble(1, valor);
+            credito.setString(2, emailOrigem);
+            if (credito.executeUpdate() == 0) {
+                throw new SQLException("Conta de origem não encontrada");
+            }
+
+            PreparedStatement debito = conn.preparar(
+                    "UPDATE usuarios SET saldo = saldo - ? WHERE email = ?");
+            debito.setDouble(1, valor);
+            debito.setString(2, emailDestino);
+            if (debito.executeUpdate() == 0) {
+                throw new SQLException("Conta de destino não encontrada");
+            }
+        }
+
+        PreparedStatement reversao = conn.preparar(
+                "INSERT INTO historico (email_origem, email_destino, tipo, valor, reversao_de) VALUES (?, ?, ?, ?, ?)");
+        reversao.setString(1, emailDestino);
+        reversao.setString(2, emailOrigem);
+        reversao.setString(3, "reversao");
+        reversao.setDouble(4, valor);
+        reversao.setInt(5, idTransacao);
+        reversao.executeUpdate();
+
+        resolverDenuncias(conn, revisor, idTransacao);
+    }
+
+    /**
+     * @param revisor Quem quer decidir sobre a transação, ou null
+     * @return true se a transação tem denúncia pendente com reserva válida de outro revisor
+     */
+    static boolean reservadaPorOutro(ConexaoPool conn, String revisor, int idTransacao) throws SQLException {
+        PreparedStatement reservada = conn.preparar("SELECT 1 FROM denuncias WHERE id_transacao = ? AND "
+                + RESERVADA_POR_OUTRO);
+        reservada.setInt(1, idTransacao);
+        reservada.setLong(2, System.currentTimeMillis());
+        reservada.setString(3, revisor);
+        try (ResultSet rs = reservada.executeQuery()) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * Resolve as denúncias de uma transação revertida e tira a reserva delas, menos as pendentes
+     * reservadas por outro revisor
+     * @param revisor Quem reverteu, ou null
+     */
+    static void resolverDenuncias(ConexaoPool conn, String revisor, int idTransacao) throws SQLException {
+        PreparedStatement resolver = conn.preparar(SQL_RESOLVER_DENUNCIAS);
+        resolver.setInt(1, idTransacao);
+        resolver.setLong(2, System.currentTimeMillis());
+        resolver.setString(3, revisor);
+        resolver.executeUpdate();
+    }
+
+    /**
+     * Reverte de uma vez as transferências que atendem ao filtro
+     * @param revisor Quem reverte, ou null; ver reverterTransferencias(String, Collection)
+     * @param filtro Conta de origem e/ou janela de tempo das transferências
+     * @return Resumo da reversão
+     */
+    public RelatorioReversao reverterTransferencias(String revisor, FiltroReversao filtro) {
+        long inicio = System.nanoTime();
+        List<Integer> ids = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT id FROM historico WHERE tipo = 'transferencia'");
+        if (filtro.getEmailOrigem() != null) {
+            sql.append(" AND email_origem = ?");
+        }
+        if (filtro.getInicio() != null) {
+            sql.append(" AND data >= ?");
+        }
+        if (filtro.getFim() != null) {
+            sql.append(" AND data < ?");
+        }
+        // a coluna data guarda o texto de datetime('now', 'localtime'), sem fração de segundo
+        String dataInicio = filtro.getInicio() == null ? null : formatarData(filtro.getInicio());
+        String dataFim = filtro.getFim() == null ? null : formatarData(filtro.getFim());
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            List<ParticaoHistorico> particoes = arquivo.getParticoes();
+            List<String> tabelas = new ArrayList<>();
+            tabelas.add("historico");
+            for (ParticaoHistorico particao : particoes) {
+                // partições fora da janela não são lidas; as que sobram são restauradas em reverterLote
+                if (particao.isVazia()
+                        || (dataInicio != null && particao.getDataMax().compareTo(dataInicio) < 0)
+                        || (dataFim != null && particao.getDataMin().compareTo(dataFim) >= 0)) {
+                    continue;
+                }
+                tabelas.add(particao.getTabela());
+            }
+            if (tabelas.size() > 1) {
+                // todas as tabelas lidas no mesmo instantâneo: uma transação movida entre as consultas
+                // não some nem aparece duas vezes
+                conn.setAutoCommit(false);
+            }
+            for (String tabela : tabelas) {
+                PreparedStatement stmt = conn.preparar(sql.toString().replace("FROM historico", "FROM " + tabela));
+                int indice = 1;
+                if (filtro.getEmailOrigem() != null) {
+                    stmt.setString(indice++, filtro.getEmailOrigem());
+                }
+                if (dataInicio != null) {
+                    stmt.setString(indice++, dataInicio);
+                }
+                if (dataFim != null) {
+                    stmt.setString(indice, dataFim);
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getInt(1));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Erro ao buscar transferências para reversão no Brasisco: " + e.getMessage());
+            metricas.falha(OperacaoBanco.REVERTER_LOTE, inicio, e);
+            return new RelatorioReversao();
+        }
+        return reverterTransferencias(revisor, ids);
+    }
+
+    private static String formatarData(Timestamp data) {
+        String texto = data.toString();
+        int ponto = texto.indexOf('.');
+        return ponto < 0 ? texto : texto.substring(0, ponto);
+    }
+
+    /**
+     * Reverte várias transferências em poucas transações
+     * Transações já revertidas, inexistentes ou que não são transferências são puladas; as alterações
+     * de saldo são somadas por conta e gravadas com um UPDATE por conta em cada lote
+     * Transações com denúncia pendente reservada por outro revisor também são puladas (contadas em
+     * RelatorioReversao.getReservadas): quem tem a reserva é quem decide sobre elas
+     * @param revisor Quem reverte; as denúncias reservadas para ele são resolvidas. Com null, só as sem
+     *                reserva válida
+     * @param idsTransacoes IDs das transações a reverter (repetições são ignoradas)
+     * @return Resumo da reversão
+     */
+    public RelatorioReversao reverterTransferencias(String revisor, Collection<Integer> idsTransacoes) {
+        long inicio = System.nanoTime();
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(idsTransacoes));
+        RelatorioReversao relatorio = new RelatorioReversao();
+        relatorio.registrarSolicitadas(ids.size());
+        int processadas = 0;
+        try (ConexaoPool conn = pool.obterEscrita()) {
+            for (int comeco = 0; comeco < ids.size(); comeco += REVERSOES_POR_TRANSACAO) {
+                List<Integer> parte = ids.subList(comeco, Math.min(ids.size(), comeco + REVERSOES_POR_TRANSACAO));
+                RelatorioReversao relatorioLote = new RelatorioReversao();
+                List<Map<String, Integer>> restauradas = new ArrayList<>();
+                conn.setAutoCommit(false);
+                try {
+                    Map<String, Double> variacoes = reverterLote(conn, revisor, parte, relatorioLote, restauradas);
+                    conn.commit();
+                    publicarRestauradas(restauradas);
+                    relatorio.registrarLote(variacoes);
+                    relatorio.mesclar(relatorioLote);
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    relatorio.registrarFalhas(parte.size());
+                    System.out.println("Erro ao reverter lote de transferências no Brasisco: " + e.getMessage());
+                }
+                processadas += parte.size();
+            }
+        } catch (SQLException e) {
+            System.out.println("Erro ao reverter lote de transferências no Brasisco: " + e.getMessage());
+            relatorio.registrarFalhas(ids.size() - processadas);
+        }
+        if (relatorio.getFalhas() > 0) {
+            metricas.falha(OperacaoBanco.REVERTER_LOTE, inicio, "LOTE_COM_FALHA");
+        } else {
+            metricas.sucesso(OperacaoBanco.REVERTER_LOTE, inicio, relatorio.getRevertidas());
+        }
+        return relatorio;
+    }
+
+    /**
+     * Aplica um lote de reversões na transação aberta em 'conn'
+     * Transações arquivadas são devolvidas à tabela quente antes de revertidas; as linhas restauradas por mês
+     * vão para 'restauradas', para quem chama publicar depois do commit
+     * @return Variação líquida do saldo de cada conta
+     */
+    private Map<String, Double> reverterLote(ConexaoPool conn, String revisor, List<Integer> ids,
+                                             RelatorioReversao relatorio, List<Map<String, Integer>> restauradas)
+            throws SQLException {
+        long agora = System.currentTimeMillis();
+        Set<Integer> jaRevertidas = new HashSet<>();
+        PreparedStatement revertidas = conn.preparar(SQL_REVERTIDAS_EM_LOTE);
+        Set<Integer> reservadas = new HashSet<>();
+        PreparedStatement reservadasPorOutro = conn.preparar(SQL_RESERVADAS_EM_LOTE);
+        reservadasPorOutro.setLong(1, agora);
+        reservadasPorOutro.setString(2, revisor);
+        Map<Integer, LinhaHistorico> transacoes = new HashMap<>();
+        PreparedStatement consulta = conn.preparar(SQL_TRANSACOES_EM_LOTE);
+        for (int comeco = 0; comeco < ids.size(); comeco += CONTAS_POR_CONSULTA) {
+            for (int i = 0; i < CONTAS_POR_CONSULTA; i++) {
+                Integer id = comeco + i < ids.size() ? ids.get(comeco + i) : null;
+                if (id == null) {
+                    revertidas.setNull(i + 1, Types.INTEGER);
+                    reservadasPorOutro.setNull(i + 3, Types.INTEGER);
+                    consulta.setNull(i + 1, Types.INTEGER);
+                } else {
+                    revertidas.setInt(i + 1, id);
+                    reservadasPorOutro.setInt(i + 3, id);
+                    consulta.setInt(i + 1, id);
+                }
+            }
+            try (ResultSet rs = revertidas.executeQuery()) {
+                while (rs.next()) {
+                    jaRevertidas.add(rs.getInt(1));
+                }
+            }
+            try (ResultSet rs = reservadasPorOutro.executeQuery()) {
+                while (rs.next()) {
+                    reservadas.add(rs.getInt(1));
+                }
+            }
+            try (ResultSet rs = consulta.executeQuery()) {
+                while (rs.next()) {
+                    LinhaHistorico linha = new LinhaHistorico(rs);
+                    transacoes.put(linha.id, linha);
+                }
+            }
+        }
+        if (!arquivo.getParticoes().isEmpty()) {
+            PreparedStatement transacao = conn.preparar("SELECT id, email_origem, email_destino, tipo, valor, data, " +
+                    "NULL as denuncia_id, NULL as denuncia_status FROM historico WHERE id = ?");
+            PreparedStatement revertida = conn.preparar("SELECT 1 FROM historico WHERE reversao_de = ?");
+            for (Integer id : ids) {
+                if (transacoes.containsKey(id) || reservadas.contains(id)
+                        || !restaurarSeArquivada(conn, id, restauradas)) {
+                    continue;
+                }
+                transacao.setInt(1, id);
+                try (ResultSet rs = transacao.executeQuery()) {
+                    if (rs.next()) {
+                        transacoes.put(id, new LinhaHistorico(rs));
+                    }
+                }
+                revertida.setInt(1, id);
+                try (ResultSet rs = revertida.executeQuery()) {
+                    if (rs.next()) {
+                        jaRevertidas.add(id);
+                    }
+                }
+            }
+        }
+
+        Map<String, Double> variacoes = new HashMap<>();
+        PreparedStatement reversao = conn.preparar(
+                "INSERT INTO historico (email_origem, email_destino, tipo, valor, reversao_de) VALUES (?, ?, ?, ?, ?)");
+        PreparedStatement resolver = conn.preparar(SQL_RESOLVER_DENUNCIAS);
+        for (Integer id : ids) {
+            if (reservadas.contains(id)) {
+                relatorio.registrarReservada();
+                continue;
+            }
+            LinhaHistorico transacao = transacoes.get(id);
+            if (transacao == null) {
+                relatorio.registrarNaoEncontrada();
+                continue;
+            }
+            if (jaRevertidas.contains(id)) {
+                relatorio.registrarJaRevertida();
+                continue;
+            }
+            String emailOrigem = transacao.emailOrigem;
+            String emailDestino = transacao.emailDestino;
+            double valor = transacao.valor;
+            if (!"transferencia".equals(transacao.tipo) || emailOrigem == null || emailDestino == null) {
+                relatorio.registrarIgnorada();
+                continue;
+            }
+            variacoes.merge(emailOrigem, valor, Double::sum);
+            variacoes.merge(emailDestino, -valor, Double::sum);
+            reversao.setString(1, emailDestino);
+            reversao.setString(2, emailOrigem);
+            reversao.setString(3, "reversao");
+            reversao.setDouble(4, valor);
+            reversao.setInt(5, id);
+            reversao.addBatch();
+            resolver.setInt(1, id);
+            resolver.setLong(2, agora);
+            resolver.setString(3, revisor);
+            resolver.addBatch();
+            relatorio.registrarRevertida(valor);
+        }
+        variacoes.values().removeIf(variacao -> variacao == 0.0);
+
+        reversao.executeBatch();
+        resolver.executeBatch();
+        // uma conta que sumiu aborta o lote inteiro: o rollback de quem chama desfaz também o que já foi à memória
+        if (saldosMemoria != null) {
+            for (Map.Entry<String, Double> variacao : variacoes.entrySet()) {
+                if (!saldosMemoria.ajustar(conn, variacao.getKey(), variacao.getValue())) {
+                    throw new SQLException("Conta não encontrada: " + variacao.getKey());
+                }
+            }
+        } else {
+            PreparedStatement update = conn.preparar("UPDATE usuarios SET saldo = saldo + ? WHERE email = ?");
+            List<String> contas = new ArrayList<>(variacoes.keySet());
+            for (String conta : contas) {
+                update.setDouble(1, variacoes.get(conta));
+                update.setString(2, conta);
+                update.addBatch();
+            }
+            int[] alteradas = update.executeBatch();
+            for (int i = 0; i < alteradas.length; i++) {
+                if (alteradas[i] == 0) {
+                    throw new SQLException("Conta não encontrada: " + contas.get(i));
+                }
+            }
+        }
+        return variacoes;
+    }
+
+    /**
+     * Passa os depósitos e transferências já gravados, em ordem de ID, pelo motor antifraude
+     * As janelas usam a data de cada transação, então o resultado é o que as regras teriam decidido na época;
+     * nada é gravado no SQLite. Use um MotorFraude separado do que está ligado ao Banco
+     * As partições arquivadas são lidas primeiro, da mais antiga para a mais recente, e a tabela quente por último
+     * @param motor Motor com as regras a testar
+     * @return Quantidade de alertas por ação e por regra
+     */
+    public RelatorioFraude reprocessarHistorico(MotorFraude motor) {
+        long inicio = System.nanoTime();
+        RelatorioFraude relatorio = new RelatorioFraude();
+        List<String> tabelas = new ArrayList<>();
+        for (ParticaoHistorico particao : arquivo.getParticoes()) {
+            tabelas.add(0, particao.getTabela());
+        }
+        tabelas.add("historico");
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            for (String tabela : tabelas) {
+                reprocessarTabela(conn, tabela, motor, relatorio);
+            }
+        } catch (SQLException e) {
+            System.out.println("Erro ao reprocessar histórico no Brasisco: " + e.getMessage());
+        }
+        relatorio.concluir(System.nanoTime() - inicio);
+        return relatorio;
+    }
+
+    private void reprocessarTabela(ConexaoPool conn, String tabela, MotorFraude motor, RelatorioFraude relatorio)
+            throws SQLException {
+        long ultimoId = 0;
+        PreparedStatement stmt = conn.preparar(
+                "SELECT id, email_origem, email_destino, tipo, valor, data FROM " + tabela + " " +
+                "WHERE id > ? ORDER BY id LIMIT ?");
+        int lidas;
+        do {
+            stmt.setLong(1, ultimoId);
+            stmt.setInt(2, LOTE_REPROCESSAMENTO);
+            lidas = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    lidas++;
+                    ultimoId = rs.getLong(1);
+                    String tipo = rs.getString(4);
+                    if (!"deposito".equals(tipo) && !"transferencia".equals(tipo)) {
+                        continue;
+                    }
+                    relatorio.registrar(motor.processar(new EventoTransacao(rs.getString(2), rs.getString(3),
+                            tipo, rs.getDouble(5), Timestamp.valueOf(rs.getString(6)).getTime())));
+                }
+            }
+        } while (lidas == LOTE_REPROCESSAMENTO);
+    }
+
+    /**
+     * @return Partições arquivadas do histórico, da mais recente para a mais antiga
+     */
+    public List<ParticaoHistorico> getParticoesHistorico() {
+        return arquivo.getParticoes();
+    }
+
+    /**
+     * Arquiva as transações mais antigas que a idade configurada (ConfiguracaoBanco.setIdadeArquivamentoDias)
+     */
+    public RelatorioArquivamento arquivarHistorico() {
+        return arquivarHistorico(new Timestamp(System.currentTimeMillis()
+                - TimeUnit.DAYS.toMillis(idadeArquivamentoDias)));
+    }
+
+    /**
+     * Move as transações anteriores a 'antesDe' para as partições mensais (historico_AAAA_MM)
+     * Cada lote é uma transação curta na conexão de escrita, então depósitos e transferências seguem
+     * entre um lote e outro. Ficam na tabela quente as transações com denúncia pendente e as reversões
+     * cuja transação original ainda está nela (a checagem de "já revertida" só olha a tabela quente)
+     */
+    public RelatorioArquivamento arquivarHistorico(Timestamp antesDe) {
+        long inicio = System.nanoTime();
+        String corte = formatarData(antesDe);
+        RelatorioArquivamento relatorio = new RelatorioArquivamento(corte);
+        CursorHistorico posicao = new CursorHistorico("", 0);
+        try {
+            while (true) {
+                CursorHistorico apos = posicao;
+                LoteArquivamento lote = executarEscrita(OperacaoBanco.ARQUIVAR_HISTORICO,
+                        conn -> moverLoteHistorico(conn, corte, apos));
+                if (!lote.particoesFaltando.isEmpty()) {
+                    List<ParticaoHistorico> criadas = executarEscrita(OperacaoBanco.ARQUIVAR_HISTORICO, conn -> {
+                        List<ParticaoHistorico> novas = new ArrayList<>();
+                        for (String mes : lote.particoesFaltando) {
+                            novas.add(ArquivoHistorico.criar(conn, mes));
+                        }
+                        return novas;
+                    });
+                    for (ParticaoHistorico criada : criadas) {
+                        if (arquivo.get(criada.getMes()) == null) {
+                            arquivo.publicar(criada);
+                        }
+                    }
+                    continue;
+                }
+                if (lote.movidasPorMes.isEmpty()) {
+                    break;
+                }
+                for (Map.Entry<String, Integer> mes : lote.movidasPorMes.entrySet()) {
+                    arquivo.publicar(arquivo.get(mes.getKey()).somarLinhas(mes.getValue()));
+                }
+                relatorio.registrarLote(lote.movidasPorMes);
+                posicao = lote.ultima;
+                if (lote.lidas < loteArquivamento) {
+                    break;
+                }
+            }
+            metricas.sucesso(OperacaoBanco.ARQUIVAR_HISTORICO, inicio, relatorio.getMovidas());
+        } catch (SQLException | RuntimeException e) {
+            metricas.falha(OperacaoBanco.ARQUIVAR_HISTORICO, inicio, e);
+            System.out.println("Erro ao arquivar histórico no Brasisco: " + e.getMessage());
+        }
+        relatorio.concluir(System.nanoTime() - inicio);
+        return relatorio;
+    }
+
+    /**
+     * Seleciona o próximo lote a partir da posição e, se todas as partições dele existem, move as linhas
+     * Os limites das partições são publicados antes do commit (ver ArquivoHistorico)
+     */
+    private LoteArquivamento moverLoteHistorico(ConexaoPool conn, String corte, CursorHistorico apos)
+            throws SQLException {
+        PreparedStatement stmt = conn.preparar(
+                "SELECT h.id, h.data FROM historico h " +
+                "WHERE h.data < ? AND (h.data, h.id) > (?, ?) " +
+                "AND NOT EXISTS (SELECT 1 FROM denuncias d WHERE d.id_transacao = h.id AND d.status = 'PENDENTE') " +
+                "AND (h.reversao_de IS NULL OR NOT EXISTS (SELECT 1 FROM historico o WHERE o.id = h.reversao_de)) " +
+                "ORDER BY h.data, h.id LIMIT ?");
+        stmt.setString(1, corte);
+        stmt.setString(2, apos.getData());
+        stmt.setLong(3, apos.getId());
+        stmt.setInt(4, loteArquivamento);
+
+        LoteArquivamento lote = new LoteArquivamento();
+        Map<String, List<Integer>> idsPorMes = new TreeMap<>();
+        Map<String, ParticaoHistorico> limitesPorMes = new HashMap<>();
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                int id = rs.getInt(1);
+                String data = rs.getString(2);
+                String mes = data.substring(0, 7);
+                idsPorMes.computeIfAbsent(mes, m -> new ArrayList<>()).add(id);
+                ParticaoHistorico limites = limitesPorMes.get(mes);
+                limitesPorMes.put(mes, limites == null ? new ParticaoHistorico(mes, data, data, id, id, 0)
+                        : limites.ampliar(data, data, id, id));
+                lote.lidas++;
+                lote.ultima = new CursorHistorico(data, id);
+            }
+        }
+        for (String mes : idsPorMes.keySet()) {
+            if (arquivo.get(mes) == null) {
+                lote.particoesFaltando.add(mes);
+            }
+        }
+        if (!lote.particoesFaltando.isEmpty()) {
+            return lote;
+        }
+        for (Map.Entry<String, List<Integer>> mes : idsPorMes.entrySet()) {
+            ParticaoHistorico limites = limitesPorMes.get(mes.getKey());
+            arquivo.publicar(arquivo.get(mes.getKey()).ampliar(limites.getDataMin(), limites.getDataMax(),
+                    limites.getIdMin(), limites.getIdMax()));
+            ArquivoHistorico.mover(conn, limites, mes.getValue());
+            lote.movidasPorMes.put(mes.getKey(), mes.getValue().size());
+        }
+        return lote;
+    }
+
+    /**
+     * Exporta o extrato para um arquivo, substituindo o conteúdo anterior
+     * @see #exportarExtrato(FiltroExtrato, FormatoExtrato, boolean, WritableByteChannel)
+     */
+    public RelatorioExportacao exportarExtrato(FiltroExtrato filtro, FormatoExtrato formato, boolean gzip,
+                                              Path arquivo) {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            return exportarExtrato(filtro, formato, gzip, canal);
+        } catch (IOException e) {
+            System.out.println("Erro ao abrir arquivo do extrato no Brasisco: " + e.getMessage());
+            RelatorioExportacao relatorio = new RelatorioExportacao(formato, gzip);
+            relatorio.concluir(0, 0, 0, false);
+            return relatorio;
+        }
+    }
+
+    /**
+     * Exporta as transações do filtro em ordem (data, id) crescente, direto do ResultSet para o canal
+     * Cada tabela (partições que cruzam o período e a tabela quente) é lida pelo índice de data, e o
+     * SQLite intercala as leituras já ordenadas (UNION ALL com ORDER BY), então nada é acumulado em memória
+     * Tudo vem de uma única transação de leitura: o extrato é um retrato consistente mesmo com o
+     * arquivamento rodando, ao custo de o checkpoint do WAL não passar desse ponto até o fim da exportação
+     * @param canal Destino; não é fechado
+     * @return Resumo da exportação (isCompleta false se houve erro)
+     */
+    public RelatorioExportacao exportarExtrato(FiltroExtrato filtro, FormatoExtrato formato, boolean gzip,
+                                              WritableByteChannel canal) {
+        long inicio = System.nanoTime();
+        RelatorioExportacao relatorio = new RelatorioExportacao(formato, gzip);
+        String dataInicio = filtro.getInicio() != null ? formatarData(filtro.getInicio()) : null;
+        String dataFim = filtro.getFim() != null ? formatarData(filtro.getFim()) : null;
+        ExportadorExtrato exportador = null;
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            conn.setAutoCommit(false);
+            // a lista de partições é lida dentro da transação: é exatamente a do instantâneo lido depois
+            List<String> tabelas = new ArrayList<>();
+            PreparedStatement particoes = conn.preparar(
+                    "SELECT mes FROM historico_particoes WHERE linhas > 0 " +
+                    "AND (? IS NULL OR data_max >= ?) AND (? IS NULL OR data_min < ?) ORDER BY mes");
+            particoes.setString(1, dataInicio);
+            particoes.setString(2, dataInicio);
+            particoes.setString(3, dataFim);
+            particoes.setString(4, dataFim);
+            try (ResultSet rs = particoes.executeQuery()) {
+                while (rs.next()) {
+                    tabelas.add(ParticaoHistorico.tabela(rs.getString(1)));
+                }
+            }
+            tabelas.add("historico");
+
+            String sql = consultaExtrato(tabelas, filtro.getEmail() != null, dataInicio != null, dataFim != null);
+            // SQL muda com as partições; não vai para o cache de statements da conexão
+            try (PreparedStatement stmt = conn.getConexao().prepareStatement(sql)) {
+                int indice = 1;
+                for (int i = 0; i < tabelas.size(); i++) {
+                    for (int lado = 0; lado < (filtro.getEmail() != null ? 2 : 1); lado++) {
+                        if (filtro.getEmail() != null) {
+                            stmt.setString(indice++, filtro.getEmail());
+                            if (lado == 1) {
+                                stmt.setString(indice++, filtro.getEmail());
+                            }
+                        }
+                        if (dataInicio != null) {
+                            stmt.setString(indice++, dataInicio);
+                        }
+                        if (dataFim != null) {
+                            stmt.setString(indice++, dataFim);
+                        }
+                    }
+                }
+                exportador = new ExportadorExtrato(formato, gzip, canal);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    exportador.escrever(rs);
+                }
+                exportador.concluir();
+            }
+            relatorio.concluir(exportador.getLinhas(), exportador.getBytes(), System.nanoTime() - inicio, true);
+            metricas.sucesso(OperacaoBanco.EXPORTAR_EXTRATO, inicio, exportador.getLinhas());
+        } catch (SQLException | IOException e) {
+            relatorio.concluir(exportador != null ? exportador.getLinhas() : 0,
+                    exportador != null ? exportador.getBytes() : 0, System.nanoTime() - inicio, false);
+            metricas.falha(OperacaoBanco.EXPORTAR_EXTRATO, inicio, e);
+            System.out.println("Erro ao exportar extrato do Brasisco: " + e.getMessage());
+        }
+        return relatorio;
+    }
+
+    /**
+     * Um SELECT por tabela (dois por tabela para um usuário: como origem e como destino, cada um pelo
+     * seu índice) unidos com UNION ALL; uma transferência para si mesmo só entra pelo lado da origem
+     */
+    private static String consultaExtrato(List<String> tabelas, boolean porUsuario, boolean comInicio,
+                                          boolean comFim) {
+        StringBuilder sql = new StringBuilder();
+        for (String tabela : tabelas) {
+            for (int lado = 0; lado < (porUsuario ? 2 : 1); lado++) {
+                if (sql.length() > 0) {
+                    sql.append(" UNION ALL ");
+                }
+                sql.append("SELECT id, data, tipo, valor, email_origem, email_destino, reversao_de FROM ")
+                   .append(tabela).append(" WHERE 1 = 1");
+                if (porUsuario) {
+                    sql.append(lado == 0 ? " AND email_origem = ?" : " AND email_destino = ? AND email_origem IS NOT ?");
+                }
+                if (comInicio) {
+                    sql.append(" AND data >= ?");
+                }
+                if (comFim) {
+                    sql.append(" AND data < ?");
+                }
+            }
+        }
+        return sql.append(" ORDER BY data, id").toString();
+    }
+
+    /**
+     * Entradas e saídas diárias de uma conta, lidas só dos agregados (sem percorrer o histórico)
+     * Incluem as transações já arquivadas
+     * @param email Conta
+     * @param inicio Primeiro dia (inclusivo), ou null para desde o início
+     * @param fim Último dia (inclusivo), ou null para até hoje
+     * @return Um item por dia com movimento, em ordem de data
+     */
+    public List<MovimentoDiario> consultarMovimentoDiario(String email, Date inicio, Date fim) {
+        long inicioConsulta = System.nanoTime();
+        List<MovimentoDiario> movimentos = new ArrayList<>();
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            PreparedStatement stmt = conn.preparar(
+                    "SELECT dia, entradas, saidas, qtd_entradas, qtd_saidas FROM agregados_conta_dia " +
+                    "WHERE email = ? AND dia BETWEEN ? AND ? ORDER BY dia");
+            stmt.setString(1, email);
+            AgregadosHistorico.filtrarDias(stmt, 2, inicio, fim);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    movimentos.add(new MovimentoDiario(email, rs.getString(1), rs.getDouble(2), rs.getDouble(3),
+                            rs.getLong(4), rs.getLong(5)));
+                }
+            }
+            metricas.sucesso(OperacaoBanco.CONSULTAR_AGREGADOS, inicioConsulta, movimentos.size());
+        } catch (SQLException e) {
+            metricas.falha(OperacaoBanco.CONSULTAR_AGREGADOS, inicioConsulta, e);
+            System.out.println("Erro ao consultar movimento diário no Brasisco: " + e.getMessage());
+        }
+        return movimentos;
+    }
+
+    /**
+     * Soma do movimento diário de uma conta no período
+     * @return Totais do período (dia = null), zerados se a conta não teve movimento
+     */
+    public MovimentoDiario consultarMovimentoPeriodo(String email, Date inicio, Date fim) {
+        double entradas = 0, saidas = 0;
+        long quantidadeEntradas = 0, quantidadeSaidas = 0;
+        for (MovimentoDiario dia : consultarMovimentoDiario(email, inicio, fim)) {
+            entradas += dia.getEntradas();
+            saidas += dia.getSaidas();
+            quantidadeEntradas += dia.getQuantidadeEntradas();
+            quantidadeSaidas += dia.getQuantidadeSaidas();
+        }
+        return new MovimentoDiario(email, null, entradas, saidas, quantidadeEntradas, quantidadeSaidas);
+    }
+
+    /**
+     * Volume do sistema por tipo de transação no período, lido só dos agregados
+     * @param inicio Primeiro dia (inclusivo), ou null para desde o início
+     * @param fim Último dia (inclusivo), ou null para até hoje
+     * @return Um item por tipo com movimento, em ordem de tipo
+     */
+    public List<VolumeTipo> consultarVolumePorTipo(Date inicio, Date fim) {
+        long inicioConsulta = System.nanoTime();
+        List<VolumeTipo> volumes = new ArrayList<>();
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            PreparedStatement stmt = conn.preparar(
+                    "SELECT tipo, SUM(quantidade), SUM(volume) FROM agregados_tipo_dia " +
+                    "WHERE dia BETWEEN ? AND ? GROUP BY tipo ORDER BY tipo");
+            AgregadosHistorico.filtrarDias(stmt, 1, inicio, fim);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    volumes.add(new VolumeTipo(rs.getString(1), rs.getLong(2), rs.getDouble(3)));
+                }
+            }
+            metricas.sucesso(OperacaoBanco.CONSULTAR_AGREGADOS, inicioConsulta, volumes.size());
+        } catch (SQLException e) {
+            metricas.falha(OperacaoBanco.CONSULTAR_AGREGADOS, inicioConsulta, e);
+            System.out.println("Erro ao consultar volume por tipo no Brasisco: " + e.getMessage());
+        }
+        return volumes;
+    }
+
+    /**
+     * Recalcula os agregados a partir do histórico quente e arquivado, numa única transação de escrita
+     * Os leitores continuam vendo os agregados antigos até o commit
+     * @return Quantidade de transações agregadas, ou -1 em caso de erro
+     */
+    public long reconstruirAgregados() {
+        long inicio = System.nanoTime();
+        try {
+            long transacoes = executarEscrita(OperacaoBanco.RECONSTRUIR_AGREGADOS, AgregadosHistorico::reconstruir);
+            metricas.sucesso(OperacaoBanco.RECONSTRUIR_AGREGADOS, inicio, transacoes);
+            return transacoes;
+        } catch (SQLException | RuntimeException e) {
+            metricas.falha(OperacaoBanco.RECONSTRUIR_AGREGADOS, inicio, e);
+            System.out.println("Erro ao reconstruir agregados no Brasisco: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Importa usuários de um CSV com cabeçalho email,nome,senha[,saldo], com a senha em texto puro
+     * Sem a coluna saldo (ou com ela vazia) a conta começa com R$ 1000,00, como em adicionarUsuario
+     * Os hashes das senhas são calculados por ConfiguracaoBanco.getThreadsImportacao threads enquanto o
+     * lote anterior é gravado; cada lote de getLoteImportacao linhas é um INSERT em batch numa transação,
+     * junto com o checkpoint. Emails já cadastrados são ignorados, então repetir um lote não duplica nada
+     * @param acompanhamento Recebe o relatório depois de cada lote confirmado (pode ser null)
+     * @return Resumo da importação
+     */
+    public RelatorioImportacao importarUsuarios(Path arquivo, Consumer<RelatorioImportacao> acompanhamento) {
+        long inicio = System.nanoTime();
+        RelatorioImportacao relatorio = new RelatorioImportacao(arquivo.toString());
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService hashes = Executors.newFixedThreadPool(threadsImportacao, r -> {
+            Thread thread = new Thread(r, "brasisco-importacao-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (LeitorCsv csv = new LeitorCsv(arquivo)) {
+            int[] colunas = { csv.coluna("email"), csv.coluna("nome"), csv.coluna("senha"), csv.coluna("saldo") };
+            if (colunas[0] < 0 || colunas[1] < 0 || colunas[2] < 0) {
+                throw new IOException("O cabeçalho precisa das colunas email, nome e senha");
+            }
+            ImportacaoCsv.Checkpoint checkpoint = iniciarImportacao(arquivo, "usuarios", csv, relatorio);
+            if (checkpoint.concluida) {
+                metricas.sucesso(OperacaoBanco.IMPORTAR_USUARIOS, inicio, 0);
+                return relatorio;
+            }
+            LoteUsuarios atual = lerLoteUsuarios(csv, colunas, relatorio);
+            CompletableFuture<Void> hashAtual = atual != null ? atual.calcularHashes(hashes, threadsImportacao) : null;
+            while (atual != null) {
+                // o próximo lote é lido e tem os hashes calculados enquanto o atual é gravado
+                LoteUsuarios proximo = lerLoteUsuarios(csv, colunas, relatorio);
+                CompletableFuture<Void> hashProximo = proximo != null
+                        ? proximo.calcularHashes(hashes, threadsImportacao) : null;
+                hashAtual.join();
+                gravarLoteUsuarios(checkpoint, atual, relatorio);
+                if (acompanhamento != null) {
+                    acompanhamento.accept(relatorio);
+                }
+                atual = proximo;
+                hashAtual = hashProximo;
+            }
+            executarEscrita(OperacaoBanco.IMPORTAR_USUARIOS, conn -> {
+                ImportacaoCsv.gravar(conn, checkpoint, csv.getRegistros(), true);
+                return null;
+            });
+            relatorio.concluir(true);
+            metricas.sucesso(OperacaoBanco.IMPORTAR_USUARIOS, inicio, relatorio.getImportadas());
+        } catch (SQLException | IOException | RuntimeException e) {
+            relatorio.concluir(false);
+            metricas.falha(OperacaoBanco.IMPORTAR_USUARIOS, inicio, e);
+            System.out.println("Erro ao importar usuários no Brasisco: " + e.getMessage());
+        } finally {
+            hashes.shutdownNow();
+        }
+        return relatorio;
+    }
+
+    /**
+     * Importa transações históricas de um CSV com cabeçalho data,tipo,valor,email_origem,email_destino e,
+     * opcionalmente, id e reversao_de (o formato CSV de exportarExtrato)
+     * As transações entram no histórico como estão, sem alterar saldos: os saldos vêm da importação de
+     * usuários. Com a coluna id os IDs são preservados e IDs já existentes são ignorados; sem ela o SQLite
+     * numera as transações e reversao_de não é aceita
+     * Durante a carga os índices não únicos e o trigger dos agregados de historico ficam apagados; no fim os
+     * índices são recriados e os agregados reconstruídos. Consultas ao histórico ficam lentas enquanto isso
+     * @param acompanhamento Recebe o relatório depois de cada lote confirmado (pode ser null)
+     * @return Resumo da importação
+     */
+    public RelatorioImportacao importarTransacoes(Path arquivo, Consumer<RelatorioImportacao> acompanhamento) {
+        long inicio = System.nanoTime();
+        RelatorioImportacao relatorio = new RelatorioImportacao(arquivo.toString());
+        boolean adiados = false;
+        boolean idsPreservados = false;
+        try (LeitorCsv csv = new LeitorCsv(arquivo)) {
+            int[] colunas = { csv.coluna("id"), csv.coluna("data"), csv.coluna("tipo"), csv.coluna("valor"),
+                    csv.coluna("email_origem"), csv.coluna("email_destino"), csv.coluna("reversao_de") };
+            idsPreservados = colunas[0] >= 0;
+            for (int i = 1; i <= 5; i++) {
+                if (colunas[i] < 0) {
+                    throw new IOException("O cabeçalho precisa das colunas data, tipo, valor, email_origem e email_destino");
+                }
+            }
+            if (colunas[6] >= 0 && colunas[0] < 0) {
+                throw new IOException("A coluna reversao_de só é aceita junto com a coluna id");
+            }
+            ImportacaoCsv.Checkpoint checkpoint = iniciarImportacao(arquivo, "transacoes", csv, relatorio);
+            if (checkpoint.concluida) {
+                metricas.sucesso(OperacaoBanco.IMPORTAR_TRANSACOES, inicio, 0);
+                return relatorio;
+            }
+            adiados = true;
+            executarEscrita(OperacaoBanco.IMPORTAR_TRANSACOES, conn -> ImportacaoCsv.adiarObjetos(conn, "historico"));
+            LoteTransacoes lote;
+            while ((lote = lerLoteTransacoes(csv, colunas, relatorio)) != null) {
+                gravarLoteTransacoes(checkpoint, lote, relatorio);
+                if (acompanhamento != null) {
+                    acompanhamento.accept(relatorio);
+                }
+            }
+            executarEscrita(OperacaoBanco.IMPORTAR_TRANSACOES, conn -> {
+                ImportacaoCsv.restaurarObjetos(conn);
+                AgregadosHistorico.reconstruir(conn);
+                ImportacaoCsv.gravar(conn, checkpoint, csv.getRegistros(), true);
+                return null;
+            });
+            adiados = false;
+            relatorio.concluir(true);
+            metricas.sucesso(OperacaoBanco.IMPORTAR_TRANSACOES, inicio, relatorio.getImportadas());
+        } catch (SQLException | IOException | RuntimeException e) {
+            relatorio.concluir(false);
+            metricas.falha(OperacaoBanco.IMPORTAR_TRANSACOES, inicio, e);
+            System.out.println("Erro ao importar transações no Brasisco: " + e.getMessage());
+        }
+        if (adiados) {
+            // a retomada apaga os índices de novo; até lá o histórico volta a ter índices e agregados certos
+            try {
+                executarEscrita(OperacaoBanco.IMPORTAR_TRANSACOES, conn -> {
+                    ImportacaoCsv.restaurarObjetos(conn);
+                    return AgregadosHistorico.reconstruir(conn);
+                });
+            } catch (SQLException e) {
+                System.out.println("Erro ao recriar índices do histórico no Brasisco: " + e.getMessage());
+            }
+        }
+        if (historicoColunar != null && idsPreservados && relatorio.getImportadas() > 0) {
+            // ids preservados podem ficar abaixo do último que o histórico colunar já leu
+            historicoColunar.recarregar();
+        }
+        return relatorio;
+    }
+
+    /**
+     * Lê o checkpoint do arquivo e pula os registros já confirmados
+     */
+    private ImportacaoCsv.Checkpoint iniciarImportacao(Path arquivo, String tipo, LeitorCsv csv,
+                                                       RelatorioImportacao relatorio) throws IOException, SQLException {
+        ImportacaoCsv.Checkpoint checkpoint = new ImportacaoCsv.Checkpoint(arquivo, tipo);
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            ImportacaoCsv.carregar(conn, checkpoint);
+        }
+        if (checkpoint.concluida) {
+            relatorio.marcarJaConcluida();
+        } else if (checkpoint.registros > 0) {
+            relatorio.retomar(csv.pular(checkpoint.registros));
+        }
+        return checkpoint;
+    }
+
+    /**
+     * @return Próximo lote, ou null no fim do arquivo
+     */
+    private LoteUsuarios lerLoteUsuarios(LeitorCsv csv, int[] colunas, RelatorioImportacao relatorio)
+            throws IOException {
+        LoteUsuarios lote = new LoteUsuarios(loteImportacao);
+        String[] campos;
+        int lidos = 0;
+        while (lidos < loteImportacao && (campos = csv.proximo()) != null) {
+            lidos++;
+            String email = campo(campos, colunas[0]);
+            String nome = campo(campos, colunas[1]);
+            String senha = campo(campos, colunas[2]);
+            String saldoTexto = campo(campos, colunas[3]);
+            double saldo = 1000.0;
+            if (email.isEmpty() || nome.isEmpty() || senha.isEmpty()) {
+                relatorio.registrarRejeitada(csv.getLinhaArquivo(), "email, nome e senha são obrigatórios");
+                continue;
+            }
+            if (!saldoTexto.isEmpty()) {
+                try {
+                    saldo = Double.parseDouble(saldoTexto);
+                } catch (NumberFormatException e) {
+                    saldo = Double.NaN;
+                }
+                if (!(saldo >= 0) || Double.isInfinite(saldo)) {
+                    relatorio.registrarRejeitada(csv.getLinhaArquivo(), "saldo inválido: " + saldoTexto);
+                    continue;
+                }
+            }
+            lote.adicionar(email, nome, senha, saldo);
+        }
+        if (lidos == 0) {
+            return null;
+        }
+        lote.registros = csv.getRegistros();
+        return lote;
+    }
+
+    private void gravarLoteUsuarios(ImportacaoCsv.Checkpoint checkpoint, LoteUsuarios lote,
+                                    RelatorioImportacao relatorio) throws SQLException {
+        int[] contagens = executarEscrita(OperacaoBanco.IMPORTAR_USUARIOS, conn -> {
+            int[] resultado = new int[0];
+            if (!lote.emails.isEmpty()) {
+                PreparedStatement insert = conn.preparar(
+                        "INSERT OR IGNORE INTO usuarios (email, nome, senha, saldo) VALUES (?, ?, ?, ?)");
+                for (int i = 0; i < lote.emails.size(); i++) {
+                    insert.setString(1, lote.emails.get(i));
+                    insert.setString(2, lote.nomes.get(i));
+                    insert.setString(3, lote.hashes[i]);
+                    insert.setDouble(4, lote.saldos[i]);
+                    insert.addBatch();
+                }
+                resultado = insert.executeBatch();
+            }
+            ImportacaoCsv.gravar(conn, checkpoint, lote.registros, false);
+            return resultado;
+        });
+        long importadas = 0;
+        for (int i = 0; i < contagens.length; i++) {
+            if (contagens[i] > 0) {
+                importadas++;
+                perfis.invalidar(lote.emails.get(i));
+                if (saldosMemoria != null) {
+                    saldosMemoria.adicionarConta(lote.emails.get(i), lote.nomes.get(i), lote.saldos[i]);
+                }
+            }
+        }
+        relatorio.registrarLote(lote.registros, importadas, contagens.length - importadas);
+    }
+
+    /**
+     * @return Próximo lote, ou null no fim do arquivo
+     */
+    private LoteTransacoes lerLoteTransacoes(LeitorCsv csv, int[] colunas, RelatorioImportacao relatorio)
+            throws IOException {
+        LoteTransacoes lote = new LoteTransacoes();
+        List<ParticaoHistorico> particoes = arquivo.getParticoes();
+        String[] campos;
+        int lidos = 0;
+        while (lidos < loteImportacao && (campos = csv.proximo()) != null) {
+            lidos++;
+            String motivo = null;
+            long id = 0;
+            double valor = 0;
+            Long reversaoDe = null;
+            String data = campo(campos, colunas[1]);
+            String tipo = campo(campos, colunas[2]);
+            String origem = campo(campos, colunas[4]);
+            String destino = campo(campos, colunas[5]);
+            try {
+                if (colunas[0] >= 0) {
+                    id = Long.parseLong(campo(campos, colunas[0]));
+                    if (id <= 0) {
+                        motivo = "id inválido";
+                    }
+                    for (ParticaoHistorico particao : particoes) {
+                        if (particao.podeConter(id)) {
+                            motivo = "id no intervalo de uma partição arquivada (" + particao.getMes() + ")";
+                        }
+                    }
+                    String reversao = campo(campos, colunas[6]);
+                    if (!reversao.isEmpty()) {
+                        reversaoDe = Long.parseLong(reversao);
+                    }
+                }
+                valor = Double.parseDouble(campo(campos, colunas[3]));
+            } catch (NumberFormatException e) {
+                motivo = "número inválido: " + e.getMessage();
+            }
+            if (motivo == null) {
+                motivo = validarTransacao(data, tipo, valor, origem, destino, reversaoDe);
+            }
+            if (motivo != null) {
+                relatorio.registrarRejeitada(csv.getLinhaArquivo(), motivo);
+                continue;
+            }
+            lote.adicionar(csv.getLinhaArquivo(), id, data, tipo, valor, origem,
+                    destino.isEmpty() ? null : destino, reversaoDe);
+        }
+        if (lidos == 0) {
+            return null;
+        }
+        lote.registros = csv.getRegistros();
+        return lote;
+    }
+
+    /**
+     * @return Motivo da rejeição, ou null se a transação é válida
+     */
+    private static String validarTransacao(String data, String tipo, double valor, String origem, String destino,
+                                           Long reversaoDe) {
+        try {
+            FORMATO_DATA.parse(data);
+        } catch (DateTimeParseException e) {
+            return "data fora do formato AAAA-MM-DD HH:MM:SS: " + data;
+        }
+        if (!(valor > 0) || Double.isInfinite(valor)) {
+            return "valor deve ser positivo";
+        }
+        if (origem.isEmpty()) {
+            return "email_origem é obrigatório";
+        }
+        switch (tipo) {
+            case "deposito":
+                return destino.isEmpty() && reversaoDe == null ? null : "depósito não tem destino nem reversao_de";
+            case "transferencia":
+                return !destino.isEmpty() && reversaoDe == null ? null : "transferência precisa de destino e não tem reversao_de";
+            case "reversao":
+                return !destino.isEmpty() ? null : "reversão precisa de destino";
+            default:
+                return "tipo desconhecido: " + tipo;
+        }
+    }
+
+    private void gravarLoteTransacoes(ImportacaoCsv.Checkpoint checkpoint, LoteTransacoes lote,
+                                      RelatorioImportacao relatorio) throws SQLException {
+        ResultadoLoteTransacoes resultado = executarEscrita(OperacaoBanco.IMPORTAR_TRANSACOES, conn -> {
+            ResultadoLoteTransacoes parcial = new ResultadoLoteTransacoes();
+            Set<String> contas = new HashSet<>();
+            for (int i = 0; i < lote.tamanho(); i++) {
+                contas.add(lote.origens.get(i));
+                if (lote.destinos.get(i) != null) {
+                    contas.add(lote.destinos.get(i));
+                }
+            }
+            Set<String> existentes = lerSaldos(conn, contas).keySet();
+            PreparedStatement insert = conn.preparar(
+                    "INSERT OR IGNORE INTO historico (id, email_origem, email_destino, tipo, valor, data, reversao_de) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)");
+            int emBatch = 0;
+            for (int i = 0; i < lote.tamanho(); i++) {
+                if (!existentes.contains(lote.origens.get(i))
+                        || (lote.destinos.get(i) != null && !existentes.contains(lote.destinos.get(i)))) {
+                    parcial.semConta.add(i);
+                    continue;
+                }
+                if (lote.ids[i] > 0) {
+                    insert.setLong(1, lote.ids[i]);
+                } else {
+                    insert.setNull(1, Types.INTEGER);
+                }
+                insert.setString(2, lote.origens.get(i));
+                insert.setString(3, lote.destinos.get(i));
+                insert.setString(4, lote.tipos.get(i));
+                insert.setDouble(5, lote.valores[i]);
+                // texto, como o DEFAULT da coluna: setTimestamp gravaria milissegundos
+                insert.setString(6, lote.datas.get(i));
+                if (lote.reversoes.get(i) != null) {
+                    insert.setLong(7, lote.reversoes.get(i));
+                } else {
+                    insert.setNull(7, Types.INTEGER);
+                }
+                insert.addBatch();
+                emBatch++;
+            }
+            if (emBatch > 0) {
+                for (int contagem : insert.executeBatch()) {
+                    if (contagem > 0) {
+                        parcial.importadas++;
+                    } else {
+                        parcial.ignoradas++;
+                    }
+                }
+            }
+            ImportacaoCsv.gravar(conn, checkpoint, lote.registros, false);
+            return parcial;
+        });
+        for (int i : resultado.semConta) {
+            relatorio.registrarRejeitada(lote.linhas[i], "conta inexistente");
+        }
+        relatorio.registrarLote(lote.registros, resultado.importadas, resultado.ignoradas);
+    }
+
+    private static String campo(String[] campos, int coluna) {
+        return coluna >= 0 && coluna < campos.length ? campos[coluna].trim() : "";
+    }
+
+    /**
+     * Fase 1 de uma transferência entre fragmentos neste Banco (usado pelo BancoFragmentado)
+     * @return false se a conta não existe, não há saldo, ou a transação a reverter já foi revertida ou tem
+     *         denúncia reservada por um revisor
+     * @throws SQLException Se não foi possível gravar; nada fica preparado
+     */
+    boolean prepararFragmento(TransferenciaFragmentada transferencia, boolean exigirSaldo) throws SQLException {
+        exigirSaldosNoSqlite();
+        long inicio = System.nanoTime();
+        try {
+            boolean preparada = executarEscrita(OperacaoBanco.PREPARAR_FRAGMENTO,
+                    conn -> TransferenciaFragmentada.preparar(conn, transferencia, exigirSaldo));
+            if (preparada) {
+                metricas.sucesso(OperacaoBanco.PREPARAR_FRAGMENTO, inicio);
+            } else {
+                metricas.falha(OperacaoBanco.PREPARAR_FRAGMENTO, inicio, "RECUSADA");
+            }
+            return preparada;
+        } catch (SQLException | RuntimeException e) {
+            metricas.falha(OperacaoBanco.PREPARAR_FRAGMENTO, inicio, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Fase 2 de uma transferência entre fragmentos neste Banco; repetir é seguro
+     * @param confirmar true aplica a transferência, false devolve o que a fase 1 reservou
+     * @return false se ela não estava mais preparada aqui
+     */
+    boolean concluirFragmento(String idGlobal, boolean confirmar) throws SQLException {
+        exigirSaldosNoSqlite();
+        long inicio = System.nanoTime();
+        try {
+            boolean concluida = executarEscrita(OperacaoBanco.CONCLUIR_FRAGMENTO,
+                    conn -> TransferenciaFragmentada.concluir(conn, idGlobal, confirmar));
+            metricas.sucesso(OperacaoBanco.CONCLUIR_FRAGMENTO, inicio);
+            return concluida;
+        } catch (SQLException | RuntimeException e) {
+            metricas.falha(OperacaoBanco.CONCLUIR_FRAGMENTO, inicio, e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return IDs globais das transferências entre fragmentos que ficaram na fase 1 neste Banco
+     */
+    List<String> listarFragmentosPreparados() throws SQLException {
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            return TransferenciaFragmentada.preparadas(conn);
+        }
+    }
+
+    /**
+     * @param idGlobal ID da transferência entre fragmentos, ou null para buscar por idHistorico
+     * @param idHistorico ID da transação no historico deste Banco (usado se idGlobal for null)
+     * @return O lado deste Banco na transferência, ou null se não houver
+     */
+    TransferenciaFragmentada consultarFragmento(String idGlobal, int idHistorico) throws SQLException {
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            return idGlobal != null ? TransferenciaFragmentada.carregar(conn, idGlobal)
+                    : TransferenciaFragmentada.porHistorico(conn, idHistorico);
+        }
+    }
+
+    /**
+     * A fase 1 altera o saldo direto no SQLite, o que não pode acontecer por baixo do SaldosMemoria
+     */
+    private void exigirSaldosNoSqlite() throws SQLException {
+        if (saldosMemoria != null) {
+            throw new SQLException("Transferências entre fragmentos exigem saldos gravados direto no SQLite");
+        }
+    }
+
+    /**
+     * Usuários de um lote da importação; os hashes são preenchidos pelas threads de importação
+     */
+    private static final class LoteUsuarios {
+        final List<String> emails;
+        final List<String> nomes;
+        final List<String> senhas;
+        final double[] saldos;
+        String[] hashes;
+        long registros;
+
+        LoteUsuarios(int capacidade) {
+            emails = new ArrayList<>(capacidade);
+            nomes = new ArrayList<>(capacidade);
+            senhas = new ArrayList<>(capacidade);
+            saldos = new double[capacidade];
+        }
+
+        void adicionar(String email, String nome, String senha, double saldo) {
+            saldos[emails.size()] = saldo;
+            emails.add(email);
+            nomes.add(nome);
+            senhas.add(senha);
+        }
+
+        /**
+         * Divide o lote em uma fatia por thread
+         */
+        CompletableFuture<Void> calcularHashes(ExecutorService executor, int fatias) {
+            hashes = new String[senhas.size()];
+            int tamanhoFatia = (senhas.size() + fatias - 1) / Math.max(1, fatias);
+            List<CompletableFuture<Void>> partes = new ArrayList<>();
+            for (int inicio = 0; inicio < senhas.size(); inicio += tamanhoFatia) {
+                int de = inicio;
+                int ate = Math.min(senhas.size(), inicio + tamanhoFatia);
+                partes.add(CompletableFuture.runAsync(() -> {
+                    for (int i = de; i < ate; i++) {
+                        hashes[i] = Criptografia.criptografar(senhas.get(i));
+                    }
+                }, executor));
+            }
+            return CompletableFuture.allOf(partes.toArray(new CompletableFuture<?>[0]));
+        }
+    }
+
+    /**
+     * Transações válidas de um lote da importação
+     */
+    private final class LoteTransacoes {
+        final List<String> datas = new ArrayList<>(loteImportacao);
+        final List<String> tipos = new ArrayList<>(loteImportacao);
+        final List<String> origens = new ArrayList<>(loteImportacao);
+        final List<String> destinos = new ArrayList<>(loteImportacao);
+        final List<Long> reversoes = new ArrayList<>(loteImportacao);
+        final long[] linhas = new long[loteImportacao];
+        final long[] ids = new long[loteImportacao];
+        final double[] valores = new double[loteImportacao];
+        long registros;
+
+        void adicionar(long linha, long id, String data, String tipo, double valor, String origem,
+                       String destino, Long reversaoDe) {
+            int i = datas.size();
+            linhas[i] = linha;
+            ids[i] = id;
+            valores[i] = valor;
+            datas.add(data);
+            tipos.add(tipo);
+            origens.add(origem);
+            destinos.add(destino);
+            reversoes.add(reversaoDe);
+        }
+
+        int tamanho() {
+            return datas.size();
+        }
+    }
+
+    /**
+     * Resultado da gravação de um lote de transações importadas
+     */
+    private static final class ResultadoLoteTransacoes {
+        long importadas;
+        long ignoradas;
+        final List<Integer> semConta = new ArrayList<>();
+    }
+
+    /**
+     * Resultado de um lote do arquivamento
+     */
+    private static final class LoteArquivamento {
+        int lidas;
+        CursorHistorico ultima;
+        final Set<String> particoesFaltando = new LinkedHashSet<>();
+        final Map<String, Integer> movidasPorMes = new TreeMap<>();
+    }
+}
@@ -0,0 +1,346 @@
+package com.exemplo;
+
+import java.lang.reflect.Method;
+import java.sql.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Fachada assíncrona do Banco: cada operação devolve na hora um CompletableFuture e roda em outra thread
+ *
+ * O acesso ao SQLite é limitado por vagas: uma por conexão de leitura do pool para as consultas e, para as
+ * escritas, uma (o único escritor) ou o tamanho máximo do grupo quando a escrita é agrupada, para o
+ * MotorEscrita conseguir formar grupos. Operações além das vagas esperam numa fila por ordem de chegada
+ * como objetos comuns, sem thread; cada uma só ganha thread quando uma vaga se abre, então dezenas de
+ * milhares de pendentes custam poucos MB. As threads são virtuais no Java 21 ou mais novo e, antes disso,
+ * de um pool fixo do tamanho das vagas. ConfiguracaoBanco.maximoPendentesAsync recusa o excedente em vez
+ * de acumular
+ *
+ * O futuro devolvido é a própria tarefa: cancelá-lo, completá-lo ou vencer o prazo (o padrão da
+ * configuração ou um orTimeout do chamador) antes de a operação sair da fila faz ela não ser executada.
+ * Depois que a operação começou ela vai até o fim e o resultado é descartado; uma transferência que
+ * venceu o prazo pode, portanto, ter sido efetivada
+ *
+ * Operações que só usam memória (validarSessao, encerrarSessao) não bloqueiam e continuam no Banco
+ */
+public class BancoAsync implements AutoCloseable {
+    private final Banco banco;
+    private final ExecutorService executor;
+    private final boolean threadsVirtuais;
+    private final Via leitura;
+    private final Via escrita;
+    private final int maximoPendentes;
+    private final long timeoutMs;
+    private final AtomicInteger pendentes = new AtomicInteger();
+    private final AtomicLong rejeitadas = new AtomicLong();
+    private final AtomicLong descartadas = new AtomicLong();
+    private final Object encerramento = new Object();
+    private volatile boolean ativo = true;
+
+    /**
+     * @param banco Banco já aberto; não é fechado pelo close desta fachada
+     * @param config A mesma configuração usada para abrir o Banco (tamanho do pool e escrita agrupada)
+     */
+    public BancoAsync(Banco banco, ConfiguracaoBanco config) {
+        this.banco = banco;
+        this.maximoPendentes = config.getMaximoPendentesAsync();
+        this.timeoutMs = config.getTimeoutAsyncMs();
+        this.leitura = new Via(config.getNumeroLeitores());
+        this.escrita = new Via(config.isEscritaAgrupada() ? config.getTamanhoMaximoGrupo() : 1);
+        ExecutorService virtual = criarExecutorVirtual();
+        this.threadsVirtuais = virtual != null;
+        this.executor = threadsVirtuais ? virtual : criarPool(leitura.vagas + escrita.vagas);
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor existe a partir do Java 21; o projeto compila para 17,
+     * então ele é procurado por reflexão
+     * @return Executor de threads virtuais, ou null se a JVM não tiver
+     */
+    private static ExecutorService criarExecutorVirtual() {
+        try {
+            Method fabrica = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) fabrica.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * As vagas garantem que nunca há mais tarefas prontas que threads, então a fila do pool fica vazia
+     */
+    private static ExecutorService criarPool(int threads) {
+        AtomicInteger contador = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "brasisco-async-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return true se as operações rodam em threads virtuais (Java 21+)
+     */
+    public boolean isThreadsVirtuais() {
+        return threadsVirtuais;
+    }
+
+    /**
+     * @return Operações aceitas e ainda não encerradas (na fila, esperando vaga ou executando)
+     */
+    public int getPendentes() {
+        return pendentes.get();
+    }
+
+    /**
+     * @return Operações recusadas por excesso de pendentes ou porque a fachada já estava fechada
+     */
+    public long getRejeitadas() {
+        return rejeitadas.get();
+    }
+
+    /**
+     * @return Operações canceladas ou vencidas antes de começar, e por isso não executadas
+     */
+    public long getDescartadas() {
+        return descartadas.get();
+    }
+
+    public CompletableFuture<Boolean> adicionarUsuarioAsync(String email, String nome, String senha) {
+        return executarEscrita(b -> b.adicionarUsuario(email, nome, senha));
+    }
+
+    public CompletableFuture<Boolean> autenticarAsync(String email, String senha) {
+        return executarLeitura(b -> b.autenticar(email, senha));
+    }
+
+    public CompletableFuture<Sessao> loginAsync(String email, String senha) {
+        return executarLeitura(b -> b.login(email, senha));
+    }
+
+    public CompletableFuture<Boolean> isAdminAsync(String email) {
+        return executarLeitura(b -> b.isAdmin(email));
+    }
+
+    public CompletableFuture<String> getNomeUsuarioAsync(String email) {
+        return executarLeitura(b -> b.getNomeUsuario(email));
+    }
+
+    public CompletableFuture<Double> consultarSaldoAsync(String email) {
+        return executarLeitura(b -> b.consultarSaldo(email));
+    }
+
+    public CompletableFuture<Boolean> depositarAsync(String email, double valor) {
+        return executarEscrita(b -> b.depositar(email, valor));
+    }
+
+    public CompletableFuture<Boolean> transferirAsync(String emailOrigem, String emailDestino, double valor) {
+        return executarEscrita(b -> b.transferir(emailOrigem, emailDestino, valor));
+    }
+
+    /**
+     * Versões com chave de idempotência: um timeout aqui não impede que a operação aconteça, e repetir com
+     * a mesma chave devolve o ID da transação original em vez de fazer outra (ver Banco.transferir)
+     */
+    public CompletableFuture<Integer> depositarAsync(String chaveIdempotencia, String email, double valor) {
+        return executarEscrita(b -> b.depositar(chaveIdempotencia, email, valor));
+    }
+
+    public CompletableFuture<Integer> transferirAsync(String chaveIdempotencia, String emailOrigem,
+                                                      String emailDestino, double valor) {
+        return executarEscrita(b -> b.transferir(chaveIdempotencia, emailOrigem, emailDestino, valor));
+    }
+
+    public CompletableFuture<List<ResultadoTransferencia>> transferirLoteAsync(
+            List<InstrucaoTransferencia> instrucoes) {
+        return executarEscrita(b -> b.transferirLote(instrucoes));
+    }
+
+    public CompletableFuture<List<Transacao>> consultarHistoricoAsync() {
+        return executarLeitura(Banco::consultarHistorico);
+    }
+
+    public CompletableFuture<List<Transacao>> consultarHistoricoUsuarioAsync(String email) {
+        return executarLeitura(b -> b.consultarHistoricoUsuario(email));
+    }
+
+    public CompletableFuture<PaginaHistorico> consultarHistoricoAsync(CursorHistorico apos, int tamanhoPagina) {
+        return executarLeitura(b -> b.consultarHistorico(apos, tamanhoPagina));
+    }
+
+    public CompletableFuture<PaginaHistorico> consultarHistoricoUsuarioAsync(String email, CursorHistorico apos,
+                                                                             int tamanhoPagina) {
+        return executarLeitura(b -> b.consultarHistoricoUsuario(email, apos, tamanhoPagina));
+    }
+
+    public CompletableFuture<Boolean> registrarDenunciaAsync(int idTransacao, String emailDenunciante,
+                                                             String descricao) {
+        return executarEscrita(b -> b.registrarDenuncia(idTransacao, emailDenunciante, descricao));
+    }
+
+    public CompletableFuture<List<Denuncia>> consultarDenunciasAsync() {
+        return executarLeitura(Banco::consultarDenuncias);
+    }
+
+    public CompletableFuture<Boolean> reverterTransferenciaAsync(int idTransacao) {
+        return executarEscrita(b -> b.reverterTransferencia(idTransacao));
+    }
+
+    public CompletableFuture<List<MovimentoDiario>> consultarMovimentoDiarioAsync(String email, Date inicio,
+                                                                                  Date fim) {
+        return executarLeitura(b -> b.consultarMovimentoDiario(email, inicio, fim));
+    }
+
+    public CompletableFuture<List<VolumeTipo>> consultarVolumePorTipoAsync(Date inicio, Date fim) {
+        return executarLeitura(b -> b.consultarVolumePorTipo(inicio, fim));
+    }
+
+    /**
+     * Executa qualquer outra operação de consulta do Banco com as mesmas regras de vaga, prazo e cancelamento
+     * @param operacao Chamada ao Banco; não deve escrever, senão disputa o escritor fora do limite de escrita
+     */
+    public <T> CompletableFuture<T> executarLeitura(Function<Banco, T> operacao) {
+        return submeter(leitura, operacao);
+    }
+
+    /**
+     * Executa qualquer outra operação de escrita do Banco com as mesmas regras de vaga, prazo e cancelamento
+     */
+    public <T> CompletableFuture<T> executarEscrita(Function<Banco, T> operacao) {
+        return submeter(escrita, operacao);
+    }
+
+    private <T> CompletableFuture<T> submeter(Via via, Function<Banco, T> operacao) {
+        if (!ativo) {
+            rejeitadas.incrementAndGet();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("BancoAsync do Brasisco encerrado"));
+        }
+        if (pendentes.incrementAndGet() > maximoPendentes) {
+            encerrar();
+            rejeitadas.incrementAndGet();
+            return CompletableFuture.failedFuture(new RejectedExecutionException(
+                    "Limite de " + maximoPendentes + " operações pendentes no Brasisco atingido"));
+        }
+        Tarefa<T> tarefa = new Tarefa<>(via, operacao);
+        if (timeoutMs > 0) {
+            tarefa.orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        via.fila.add(tarefa);
+        despachar(via);
+        return tarefa;
+    }
+
+    /**
+     * Tira tarefas da fila enquanto houver vaga; chamado depois de cada submissão e de cada tarefa
+     * encerrada, então uma tarefa nunca fica na fila com vaga sobrando
+     */
+    private void despachar(Via via) {
+        while (!via.fila.isEmpty()) {
+            int emUso = via.emUso.get();
+            if (emUso >= via.vagas) {
+                return;
+            }
+            if (!via.emUso.compareAndSet(emUso, emUso + 1)) {
+                continue;
+            }
+            Tarefa<?> tarefa = via.fila.poll();
+            if (tarefa == null) {
+                via.emUso.decrementAndGet();
+                continue;
+            }
+            try {
+                executor.execute(tarefa);
+            } catch (RejectedExecutionException e) {
+                via.emUso.decrementAndGet();
+                tarefa.completeExceptionally(e);
+                encerrar();
+            }
+        }
+    }
+
+    private void encerrar() {
+        if (pendentes.decrementAndGet() == 0 && !ativo) {
+            synchronized (encerramento) {
+                encerramento.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Recusa novas operações e espera as pendentes terminarem (até 30 s); as que ainda estiverem na fila
+     * depois disso falham com RejectedExecutionException. O Banco continua aberto
+     */
+    @Override
+    public void close() {
+        ativo = false;
+        long prazo = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        synchronized (encerramento) {
+            long restante;
+            while (pendentes.get() > 0 && (restante = prazo - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(encerramento, restante);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        executor.shutdown();
+        for (Via via : new Via[]{leitura, escrita}) {
+            Tarefa<?> tarefa;
+            while ((tarefa = via.fila.poll()) != null) {
+                tarefa.completeExceptionally(new RejectedExecutionException("BancoAsync do Brasisco encerrado"));
+            }
+        }
+    }
+
+    /**
+     * Vagas de acesso ao SQLite de um tipo de operação e a fila de quem espera por elas
+     */
+    private static final class Via {
+        final int vagas;
+        final AtomicInteger emUso = new AtomicInteger();
+        final Queue<Tarefa<?>> fila = new ConcurrentLinkedQueue<>();
+
+        Via(int vagas) {
+            this.vagas = vagas;
+        }
+    }
+
+    private final class Tarefa<T> extends CompletableFuture<T> implements Runnable {
+        private final Via via;
+        private final Function<Banco, T> operacao;
+
+        Tarefa(Via via, Function<Banco, T> operacao) {
+            this.via = via;
+            this.operacao = operacao;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (isDone()) {
+                    // cancelada ou vencida enquanto estava na fila
+                    descartadas.incrementAndGet();
+                } else {
+                    complete(operacao.apply(banco));
+                }
+            } catch (Throwable e) {
+                completeExceptionally(e);
+            } finally {
+                via.emUso.decrementAndGet();
+                encerrar();
+                despachar(via);
+            }
+        }
+    }
+}
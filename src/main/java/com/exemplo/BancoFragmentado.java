@@ -0,0 +1,640 @@
+package com.exemplo;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+
+/**
+ * Banco dividido em vários arquivos SQLite (fragmentos), cada um com seu próprio escritor
+ *
+ * Cada conta mora no fragmento dado por um hash estável do email (CRC32 do UTF-8, módulo a quantidade
+ * de fragmentos), então tudo que envolve uma conta só (login, saldo, depósito, extrato) vai direto para
+ * o Banco daquele fragmento, e transferências entre contas do mesmo fragmento também. A vazão de escrita
+ * cresce com o número de fragmentos, já que o SQLite só tem um escritor por arquivo
+ *
+ * Transferências entre fragmentos usam confirmação em duas fases: o fragmento de origem debita e o de
+ * destino confere a conta (fase 1, cada um na sua transação), o CoordenadorFragmentos grava a decisão
+ * num arquivo próprio e os dois fragmentos então gravam a transação no seu historico (fase 2). Sem
+ * decisão gravada a transferência é desfeita; pendências deixadas por uma queda ou por um fragmento que
+ * falhou na fase 2 são resolvidas ao abrir e, depois, a cada intervaloRecuperacaoFragmentosMs
+ *
+ * IDs de transações e denúncias vistos por fora são globais: id local * fragmentos + fragmento, que precisa
+ * caber num int (com 4 fragmentos, até cerca de 536 milhões de IDs locais por fragmento). Uma
+ * transferência entre fragmentos aparece no historico dos dois, com um ID em cada; o histórico geral
+ * mostra só a cópia do fragmento de origem. As consultas de administrador rodam em paralelo em todos
+ * os fragmentos e os resultados são intercalados na ordem da consulta original
+ *
+ * Os saldos em memória ficam desligados em cada fragmento (a fase 1 altera o saldo direto no SQLite)
+ */
+public class BancoFragmentado implements AutoCloseable {
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm:ss");
+
+    private final int numeroFragmentos;
+    private final Banco[] fragmentos;
+    private final CoordenadorFragmentos coordenador;
+    private final ExecutorService consultas;
+    private final ScheduledExecutorService recuperacao;
+    private final AtomicInteger recuperadas = new AtomicInteger();
+    // transferências entre fragmentos em execução, que a recuperação não pode concluir por conta própria
+    private final Set<String> emAndamento = ConcurrentHashMap.newKeySet();
+
+    public BancoFragmentado() {
+        this(new ConfiguracaoBanco());
+    }
+
+    /**
+     * @param config Configuração base; o fragmento i usa o arquivo da URL com o sufixo -fragmento-i e o
+     *               coordenador, o sufixo -coordenador (banco.db vira banco-fragmento-0.db, ...)
+     */
+    public BancoFragmentado(ConfiguracaoBanco config) {
+        this.numeroFragmentos = config.getNumeroFragmentos();
+        this.fragmentos = new Banco[numeroFragmentos];
+        try {
+            for (int i = 0; i < numeroFragmentos; i++) {
+                ConfiguracaoBanco fragmento = config.copiar();
+                fragmento.setUrl(urlDerivada(config.getUrl(), "fragmento-" + i));
+                fragmento.setSaldosEmMemoria(false);
+                fragmentos[i] = new Banco(fragmento);
+            }
+            ConfiguracaoBanco decisoes = config.copiar();
+            decisoes.setUrl(urlDerivada(config.getUrl(), "coordenador"));
+            this.coordenador = new CoordenadorFragmentos(decisoes);
+        } catch (SQLException | RuntimeException e) {
+            fecharFragmentos();
+            throw new IllegalStateException("Erro ao abrir fragmentos do Brasisco: " + e.getMessage(), e);
+        }
+        AtomicInteger contador = new AtomicInteger();
+        this.consultas = Executors.newFixedThreadPool(numeroFragmentos, r -> {
+            Thread thread = new Thread(r, "brasisco-fragmentos-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        recuperar();
+        if (config.getIntervaloRecuperacaoFragmentosMs() > 0) {
+            this.recuperacao = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "brasisco-recuperacao-fragmentos");
+                thread.setDaemon(true);
+                return thread;
+            });
+            recuperacao.scheduleWithFixedDelay(this::recuperar, config.getIntervaloRecuperacaoFragmentosMs(),
+                    config.getIntervaloRecuperacaoFragmentosMs(), TimeUnit.MILLISECONDS);
+        } else {
+            this.recuperacao = null;
+        }
+    }
+
+    public int getNumeroFragmentos() {
+        return numeroFragmentos;
+    }
+
+    /**
+     * @return Fragmento onde a conta mora; o mesmo em qualquer execução para a mesma quantidade de fragmentos
+     */
+    public int fragmentoDe(String email) {
+        CRC32 crc = new CRC32();
+        crc.update(email.getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % numeroFragmentos);
+    }
+
+    /**
+     * @return Banco de um fragmento, para métricas e manutenção (arquivamento, agregados); IDs lá são locais
+     */
+    public Banco getFragmento(int fragmento) {
+        return fragmentos[fragmento];
+    }
+
+    /**
+     * @return Transferências entre fragmentos concluídas ou desfeitas pela recuperação
+     */
+    public int getTransferenciasRecuperadas() {
+        return recuperadas.get();
+    }
+
+    public boolean adicionarUsuario(String email, String nome, String senha) {
+        return daConta(email).adicionarUsuario(email, nome, senha);
+    }
+
+    public boolean autenticar(String email, String senha) {
+        return daConta(email).autenticar(email, senha);
+    }
+
+    /**
+     * @return Sessão com token válido só neste BancoFragmentado, ou null se as credenciais forem inválidas
+     */
+    public Sessao login(String email, String senha) {
+        int fragmento = fragmentoDe(email);
+        return global(fragmento, fragmentos[fragmento].login(email, senha));
+    }
+
+    public Sessao validarSessao(String token) {
+        int ponto = token == null ? -1 : token.indexOf('.');
+        int fragmento = ponto > 0 ? fragmentoDoToken(token.substring(0, ponto)) : -1;
+        if (fragmento < 0) {
+            return null;
+        }
+        return global(fragmento, fragmentos[fragmento].validarSessao(token.substring(ponto + 1)));
+    }
+
+    public void encerrarSessao(String token) {
+        int ponto = token == null ? -1 : token.indexOf('.');
+        int fragmento = ponto > 0 ? fragmentoDoToken(token.substring(0, ponto)) : -1;
+        if (fragmento >= 0) {
+            fragmentos[fragmento].encerrarSessao(token.substring(ponto + 1));
+        }
+    }
+
+    public boolean isAdmin(String email) {
+        return daConta(email).isAdmin(email);
+    }
+
+    public String getNomeUsuario(String email) {
+        return daConta(email).getNomeUsuario(email);
+    }
+
+    public double consultarSaldo(String email) {
+        return daConta(email).consultarSaldo(email);
+    }
+
+    public boolean depositar(String email, double valor) {
+        return daConta(email).depositar(email, valor);
+    }
+
+    /**
+     * Transferência entre contas; se as contas estão em fragmentos diferentes, em duas fases
+     * @return true se a transferência foi feita (entre fragmentos: decisão de confirmar gravada)
+     */
+    public boolean transferir(String emailOrigem, String emailDestino, double valor) {
+        int origem = fragmentoDe(emailOrigem);
+        int destino = fragmentoDe(emailDestino);
+        if (origem == destino) {
+            return fragmentos[origem].transferir(emailOrigem, emailDestino, valor);
+        }
+        String idGlobal = UUID.randomUUID().toString();
+        return transferirEntreFragmentos(
+                new TransferenciaFragmentada(idGlobal, TransferenciaFragmentada.DEBITO, emailOrigem, emailDestino,
+                        valor, "transferencia", null, null, null), origem,
+                new TransferenciaFragmentada(idGlobal, TransferenciaFragmentada.CREDITO, emailDestino, emailOrigem,
+                        valor, "transferencia", null, null, null), destino,
+                true);
+    }
+
+    public List<Transacao> consultarHistoricoUsuario(String email) {
+        int fragmento = fragmentoDe(email);
+        List<Transacao> historico = fragmentos[fragmento].consultarHistoricoUsuario(email);
+        for (Transacao t : historico) {
+            global(fragmento, t);
+        }
+        return historico;
+    }
+
+    /**
+     * Página do histórico de um usuário, lida só do fragmento da conta
+     * @param apos Cursor da página anterior, ou CursorHistorico.INICIO para a primeira
+     */
+    public PaginaHistorico consultarHistoricoUsuario(String email, CursorHistorico apos, int tamanhoPagina) {
+        int fragmento = fragmentoDe(email);
+        PaginaHistorico pagina = fragmentos[fragmento].consultarHistoricoUsuario(email, local(apos, fragmento),
+                tamanhoPagina);
+        if (pagina.isEmpty()) {
+            return new PaginaHistorico(pagina.getTransacoes(), apos, false);
+        }
+        for (Transacao t : pagina.getTransacoes()) {
+            global(fragmento, t);
+        }
+        Transacao ultima = pagina.getTransacoes().get(pagina.getTransacoes().size() - 1);
+        return new PaginaHistorico(pagina.getTransacoes(),
+                new CursorHistorico(pagina.getProximo().getData(), ultima.getId()), pagina.temMais());
+    }
+
+    /**
+     * Página do histórico de todas as contas, lida em paralelo de todos os fragmentos
+     * Cada fragmento contribui só com as transações cuja conta de origem (a de destino, nos depósitos)
+     * mora nele, o que deixa uma cópia de cada transferência entre fragmentos
+     * @param apos Cursor da página anterior, ou CursorHistorico.INICIO para a primeira
+     */
+    public PaginaHistorico consultarHistorico(CursorHistorico apos, int tamanhoPagina) {
+        List<Transacao> transacoes = new ArrayList<>(tamanhoPagina);
+        for (List<Transacao> doFragmento : emTodos(i -> () -> lerHistoricoProprio(i, apos, tamanhoPagina))) {
+            transacoes.addAll(doFragmento);
+        }
+        transacoes.sort(Comparator.comparing(Transacao::getData).thenComparingInt(Transacao::getId).reversed());
+        if (transacoes.size() > tamanhoPagina) {
+            transacoes = new ArrayList<>(transacoes.subList(0, tamanhoPagina));
+        }
+        if (transacoes.isEmpty()) {
+            return new PaginaHistorico(transacoes, apos, false);
+        }
+        Transacao ultima = transacoes.get(transacoes.size() - 1);
+        return new PaginaHistorico(transacoes, new CursorHistorico(texto(ultima.getData()), ultima.getId()),
+                transacoes.size() == tamanhoPagina);
+    }
+
+    /**
+     * @param idTransacao ID global, como aparece no histórico do denunciante
+     */
+    public boolean registrarDenuncia(int idTransacao, String emailDenunciante, String descricao) {
+        int fragmento = fragmentoDoId(idTransacao);
+        return fragmento >= 0
+                && fragmentos[fragmento].registrarDenuncia(idTransacao / numeroFragmentos, emailDenunciante, descricao);
+    }
+
+    /**
+     * Denúncias pendentes de todos os fragmentos, da mais recente para a mais antiga
+     */
+    public List<Denuncia> consultarDenuncias() {
+        List<Denuncia> denuncias = new ArrayList<>();
+        List<List<Denuncia>> porFragmento = emTodos(i -> () -> fragmentos[i].consultarDenuncias());
+        for (int i = 0; i < numeroFragmentos; i++) {
+            for (Denuncia d : porFragmento.get(i)) {
+                denuncias.add(global(i, d));
+            }
+        }
+        denuncias.sort(Comparator.comparing(Denuncia::getDataDenuncia).thenComparingInt(Denuncia::getId).reversed());
+        return denuncias;
+    }
+
+    /**
+     * Reserva até 'quantidade' denúncias somando todos os fragmentos
+     * Cada fragmento reserva até 'quantidade' das suas, em paralelo; as melhores na ordem da prioridade
+     * ficam e as demais são liberadas na hora. Com RECORRENCIA a contagem de denúncias por conta é a de
+     * cada fragmento, e os fragmentos são intercalados um a um
+     */
+    public List<Denuncia> reservarDenuncias(String revisor, PrioridadeDenuncia prioridade, int quantidade,
+                                            long duracaoMs) {
+        List<List<Denuncia>> porFragmento = emTodos(
+                i -> () -> fragmentos[i].reservarDenuncias(revisor, prioridade, quantidade, duracaoMs));
+        List<Denuncia> reservadas = new ArrayList<>();
+        if (prioridade == PrioridadeDenuncia.RECORRENCIA) {
+            for (int posicao = 0; reservadas.size() < quantidade; posicao++) {
+                boolean restam = false;
+                for (int i = 0; i < numeroFragmentos; i++) {
+                    if (posicao < porFragmento.get(i).size()) {
+                        restam = true;
+                        reservadas.add(global(i, porFragmento.get(i).get(posicao)));
+                    }
+                }
+                if (!restam) {
+                    break;
+                }
+            }
+        } else {
+            for (int i = 0; i < numeroFragmentos; i++) {
+                for (Denuncia d : porFragmento.get(i)) {
+                    reservadas.add(global(i, d));
+                }
+            }
+            reservadas.sort(prioridade == PrioridadeDenuncia.VALOR
+                    ? Comparator.comparingDouble(Denuncia::getValor).thenComparingInt(Denuncia::getId).reversed()
+                    : Comparator.comparing(Denuncia::getDataDenuncia).thenComparingInt(Denuncia::getId));
+        }
+        for (int i = quantidade; i < reservadas.size(); i++) {
+            liberarReserva(revisor, reservadas.get(i).getId());
+        }
+        return reservadas.size() > quantidade ? new ArrayList<>(reservadas.subList(0, quantidade)) : reservadas;
+    }
+
+    public boolean renovarReserva(String revisor, int idDenuncia, long duracaoMs) {
+        int fragmento = fragmentoDoId(idDenuncia);
+        return fragmento >= 0
+                && fragmentos[fragmento].renovarReserva(revisor, idDenuncia / numeroFragmentos, duracaoMs);
+    }
+
+    public boolean liberarReserva(String revisor, int idDenuncia) {
+        int fragmento = fragmentoDoId(idDenuncia);
+        return fragmento >= 0 && fragmentos[fragmento].liberarReserva(revisor, idDenuncia / numeroFragmentos);
+    }
+
+    public boolean rejeitarDenuncia(String revisor, int idDenuncia) {
+        int fragmento = fragmentoDoId(idDenuncia);
+        return fragmento >= 0 && fragmentos[fragmento].rejeitarDenuncia(revisor, idDenuncia / numeroFragmentos);
+    }
+
+    /**
+     * Reverte uma transferência e resolve as denúncias dela
+     * Uma transferência entre fragmentos é revertida por outra, em duas fases, no sentido contrário
+     * @param idTransacao ID global, de qualquer uma das duas cópias
+     */
+    public boolean reverterTransferencia(int idTransacao) {
+        int fragmento = fragmentoDoId(idTransacao);
+        if (fragmento < 0) {
+            return false;
+        }
+        int local = idTransacao / numeroFragmentos;
+        try {
+            TransferenciaFragmentada lado = fragmentos[fragmento].consultarFragmento(null, local);
+            if (lado == null) {
+                return fragmentos[fragmento].reverterTransferencia(local);
+            }
+            int outroFragmento = fragmentoDe(lado.getContraparte());
+            TransferenciaFragmentada outro = fragmentos[outroFragmento].consultarFragmento(lado.getIdGlobal(), 0);
+            if (outro == null || outro.getIdHistorico() == null) {
+                System.out.println("Erro ao reverter transferência no Brasisco: Transferência não concluída");
+                return false;
+            }
+            boolean ladoDebitado = TransferenciaFragmentada.DEBITO.equals(lado.getPapel());
+            TransferenciaFragmentada origemOriginal = ladoDebitado ? lado : outro;
+            TransferenciaFragmentada destinoOriginal = ladoDebitado ? outro : lado;
+            String idGlobal = UUID.randomUUID().toString();
+            return transferirEntreFragmentos(
+                    new TransferenciaFragmentada(idGlobal, TransferenciaFragmentada.DEBITO,
+                            destinoOriginal.getEmail(), origemOriginal.getEmail(), lado.getValor(), "reversao",
+                            destinoOriginal.getIdHistorico(), null, null),
+                    fragmentoDe(destinoOriginal.getEmail()),
+                    new TransferenciaFragmentada(idGlobal, TransferenciaFragmentada.CREDITO,
+                            origemOriginal.getEmail(), destinoOriginal.getEmail(), lado.getValor(), "reversao",
+                            origemOriginal.getIdHistorico(), null, null),
+                    fragmentoDe(origemOriginal.getEmail()),
+                    false);
+        } catch (SQLException e) {
+            System.out.println("Erro ao reverter transferência no Brasisco: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (recuperacao != null) {
+            recuperacao.shutdown();
+            try {
+                recuperacao.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        consultas.shutdown();
+        coordenador.close();
+        fecharFragmentos();
+    }
+
+    /**
+     * As duas fases de uma transferência entre fragmentos
+     * @param exigirSaldo false nas reversões, que podem deixar o saldo do destino original negativo
+     */
+    private boolean transferirEntreFragmentos(TransferenciaFragmentada debito, int origem,
+                                              TransferenciaFragmentada credito, int destino, boolean exigirSaldo) {
+        String idGlobal = debito.getIdGlobal();
+        emAndamento.add(idGlobal);
+        try {
+            return executarFases(debito, origem, credito, destino, exigirSaldo);
+        } finally {
+            emAndamento.remove(idGlobal);
+        }
+    }
+
+    private boolean executarFases(TransferenciaFragmentada debito, int origem, TransferenciaFragmentada credito,
+                                  int destino, boolean exigirSaldo) {
+        String idGlobal = debito.getIdGlobal();
+        try {
+            if (!fragmentos[origem].prepararFragmento(debito, exigirSaldo)) {
+                System.out.println(debito.getReversaoDe() != null
+                        ? "Erro ao reverter transferência no Brasisco: Transação já revertida ou em revisão"
+                        : "Saldo insuficiente no Brasisco.");
+                return false;
+            }
+        } catch (SQLException e) {
+            System.out.println("Erro ao preparar transferência entre fragmentos no Brasisco: " + e.getMessage());
+            return false;
+        }
+
+        boolean confirmar = false;
+        try {
+            if (fragmentos[destino].prepararFragmento(credito, true)) {
+                coordenador.registrarConfirmacao(idGlobal, origem, destino);
+                confirmar = true;
+            } else {
+                System.out.println(credito.getReversaoDe() != null
+                        ? "Erro ao reverter transferência no Brasisco: Transação já revertida ou em revisão"
+                        : "Erro ao realizar transferência no Brasisco: Conta de destino não encontrada");
+            }
+        } catch (SQLException e) {
+            System.out.println("Erro ao preparar transferência entre fragmentos no Brasisco: " + e.getMessage());
+            try {
+                // a decisão pode ter sido gravada mesmo com erro no commit
+                confirmar = coordenador.confirmada(idGlobal);
+            } catch (SQLException naoSabida) {
+                // sem saber a decisão, os dois lados ficam preparados até a recuperação
+                return false;
+            }
+        }
+
+        boolean concluida = concluir(origem, idGlobal, confirmar) & concluir(destino, idGlobal, confirmar);
+        if (confirmar && concluida) {
+            try {
+                coordenador.esquecer(idGlobal);
+            } catch (SQLException e) {
+                System.out.println("Erro ao concluir transferência entre fragmentos no Brasisco: " + e.getMessage());
+            }
+        }
+        return confirmar;
+    }
+
+    /**
+     * @return false se o fragmento não pôde ser alterado agora; a linha continua preparada para a recuperação
+     */
+    private boolean concluir(int fragmento, String idGlobal, boolean confirmar) {
+        try {
+            fragmentos[fragmento].concluirFragmento(idGlobal, confirmar);
+            return true;
+        } catch (SQLException e) {
+            System.out.println("Erro ao concluir transferência entre fragmentos no Brasisco: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Resolve o que uma queda ou uma falha na fase 2 deixou no meio: decisões gravadas são levadas até o fim
+     * nos dois fragmentos e o que ficou preparado sem decisão é desfeito. Roda ao abrir e periodicamente;
+     * as transferências em andamento (emAndamento) também estão preparadas e ainda sem decisão, e ficam
+     * para a thread que as executa. Como a transferência entra em emAndamento antes de preparar, uma que
+     * aparece na listagem e não está mais lá já foi abandonada pela sua thread
+     */
+    private void recuperar() {
+        try {
+            for (CoordenadorFragmentos.Decisao decisao : coordenador.pendentes()) {
+                if (emAndamento.contains(decisao.idGlobal)) {
+                    continue;
+                }
+                boolean alterada = false;
+                boolean resolvida = true;
+                for (int fragmento : new int[] { decisao.origem, decisao.destino }) {
+                    try {
+                        alterada |= fragmentos[fragmento].concluirFragmento(decisao.idGlobal, true);
+                    } catch (SQLException e) {
+                        System.out.println("Erro ao concluir transferência entre fragmentos no Brasisco: "
+                                + e.getMessage());
+                        resolvida = false;
+                    }
+                }
+                if (resolvida) {
+                    coordenador.esquecer(decisao.idGlobal);
+                }
+                if (alterada) {
+                    recuperadas.incrementAndGet();
+                }
+            }
+            for (int i = 0; i < numeroFragmentos; i++) {
+                for (String idGlobal : fragmentos[i].listarFragmentosPreparados()) {
+                    if (emAndamento.contains(idGlobal)) {
+                        continue;
+                    }
+                    // false: a thread da transferência concluiu este lado depois da listagem
+                    if (fragmentos[i].concluirFragmento(idGlobal, coordenador.confirmada(idGlobal))) {
+                        recuperadas.incrementAndGet();
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            // a próxima execução agendada tenta de novo
+            System.out.println("Erro ao recuperar transferências entre fragmentos do Brasisco: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lê do fragmento até 'limite' transações anteriores ao cursor global que pertencem a ele
+     */
+    private List<Transacao> lerHistoricoProprio(int fragmento, CursorHistorico apos, int limite) {
+        List<Transacao> proprias = new ArrayList<>(limite);
+        CursorHistorico cursor = local(apos, fragmento);
+        while (proprias.size() < limite) {
+            PaginaHistorico pagina = fragmentos[fragmento].consultarHistorico(cursor, limite);
+            for (Transacao t : pagina.getTransacoes()) {
+                String conta = t.getEmailOrigem() != null ? t.getEmailOrigem() : t.getEmailDestino();
+                if ((conta == null || fragmentoDe(conta) == fragmento) && proprias.size() < limite) {
+                    proprias.add(global(fragmento, t));
+                }
+            }
+            if (!pagina.temMais()) {
+                break;
+            }
+            cursor = pagina.getProximo();
+        }
+        return proprias;
+    }
+
+    /**
+     * Executa a consulta em todos os fragmentos ao mesmo tempo
+     * @return Resultado de cada fragmento, na ordem dos fragmentos
+     */
+    private <T> List<T> emTodos(IntFunction<Callable<T>> consulta) {
+        List<Future<T>> futuros = new ArrayList<>(numeroFragmentos);
+        for (int i = 0; i < numeroFragmentos; i++) {
+            futuros.add(consultas.submit(consulta.apply(i)));
+        }
+        List<T> resultados = new ArrayList<>(numeroFragmentos);
+        try {
+            for (Future<T> futuro : futuros) {
+                resultados.add(futuro.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Consulta aos fragmentos do Brasisco interrompida", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Erro ao consultar fragmentos do Brasisco: " + e.getCause().getMessage(),
+                    e.getCause());
+        }
+        return resultados;
+    }
+
+    private Banco daConta(String email) {
+        return fragmentos[fragmentoDe(email)];
+    }
+
+    int fragmentoDoId(int idGlobal) {
+        return idGlobal < 0 ? -1 : idGlobal % numeroFragmentos;
+    }
+
+    private int fragmentoDoToken(String prefixo) {
+        try {
+            int fragmento = Integer.parseInt(prefixo);
+            return fragmento >= 0 && fragmento < numeroFragmentos ? fragmento : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Cursor global convertido para o fragmento: (data, id local) < (d, c) equivale a
+     * (data, id global) < (d, g) quando c é o menor id local com c * fragmentos + fragmento >= g
+     */
+    private CursorHistorico local(CursorHistorico cursor, int fragmento) {
+        if (cursor.getId() == Long.MAX_VALUE) {
+            return cursor;
+        }
+        long local = -Math.floorDiv(fragmento - cursor.getId(), (long) numeroFragmentos);
+        return new CursorHistorico(cursor.getData(), local);
+    }
+
+    /**
+     * @throws IllegalStateException Se o ID global não cabe num int (fragmento com IDs locais demais)
+     */
+    int idGlobal(int fragmento, long idLocal) {
+        long global = idLocal * numeroFragmentos + fragmento;
+        if (global > Integer.MAX_VALUE) {
+            throw new IllegalStateException("ID local " + idLocal + " do fragmento " + fragmento
+                    + " não cabe no espaço de IDs globais do Brasisco");
+        }
+        return (int) global;
+    }
+
+    private Transacao global(int fragmento, Transacao t) {
+        t.setId(idGlobal(fragmento, t.getId()));
+        if (t.getDenunciaId() > 0) {
+            t.setDenunciaId(idGlobal(fragmento, t.getDenunciaId()));
+        }
+        return t;
+    }
+
+    private Denuncia global(int fragmento, Denuncia d) {
+        Denuncia global = new Denuncia(idGlobal(fragmento, d.getId()),
+                idGlobal(fragmento, d.getIdTransacao()), d.getEmailDenunciante(), d.getDescricao(),
+                d.getStatus(), d.getDataDenuncia(), d.getEmailOrigem(), d.getEmailDestino(), d.getNomeOrigem(),
+                d.getNomeDestino(), d.getValor(), d.getTipo());
+        global.setReserva(d.getReservadoPor(), d.getReservadoAte());
+        return global;
+    }
+
+    private static Sessao global(int fragmento, Sessao sessao) {
+        if (sessao == null) {
+            return null;
+        }
+        return new Sessao(fragmento + "." + sessao.getToken(), sessao.getEmail(), sessao.getNome(),
+                sessao.isAdmin(), 0);
+    }
+
+    /**
+     * Mesmo texto gravado pelo SQLite na coluna data (datetime('now', 'localtime'))
+     */
+    private static String texto(Timestamp data) {
+        return data.toLocalDateTime().format(FORMATO_DATA);
+    }
+
+    private static String urlDerivada(String url, String sufixo) {
+        int fim = url.endsWith(".db") ? url.length() - 3 : url.length();
+        return url.substring(0, fim) + "-" + sufixo + ".db";
+    }
+
+    private void fecharFragmentos() {
+        for (Banco fragmento : fragmentos) {
+            if (fragmento != null) {
+                fragmento.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.exemplo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache LRU de perfis de usuário, limitado em quantidade de entradas e com validade opcional
+ * Só guarda usuários que existem; uma conta nova é sempre buscada no SQLite na primeira vez
+ */
+public class CachePerfis {
+    private final int capacidade;
+    private final long validadeNanos;
+    private final Map<String, Entrada> entradas;
+    private final LongAdder acertos = new LongAdder();
+    private final LongAdder faltas = new LongAdder();
+    private final LongAdder expiradas = new LongAdder();
+    private final LongAdder despejadas = new LongAdder();
+
+    private static final class Entrada {
+        final PerfilUsuario perfil;
+        final long guardadaEmNanos;
+
+        Entrada(PerfilUsuario perfil, long guardadaEmNanos) {
+            this.perfil = perfil;
+            this.guardadaEmNanos = guardadaEmNanos;
+        }
+    }
+
+    /**
+     * @param capacidade Quantidade máxima de perfis em memória
+     * @param validadeMs Tempo de vida de cada entrada, ou 0 para não expirar
+     */
+    public CachePerfis(int capacidade, long validadeMs) {
+        this.capacidade = Math.max(1, capacidade);
+        this.validadeNanos = TimeUnit.MILLISECONDS.toNanos(validadeMs);
+        this.entradas = new LinkedHashMap<String, Entrada>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> maisAntiga) {
+                if (size() > CachePerfis.this.capacidade) {
+                    despejadas.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return Perfil em cache, ou null se não estiver guardado ou tiver expirado
+     */
+    public PerfilUsuario obter(String email) {
+        synchronized (entradas) {
+            Entrada entrada = entradas.get(email);
+            if (entrada != null && validadeNanos > 0 && System.nanoTime() - entrada.guardadaEmNanos > validadeNanos) {
+                entradas.remove(email);
+                expiradas.increment();
+                entrada = null;
+            }
+            if (entrada == null) {
+                faltas.increment();
+                return null;
+            }
+            acertos.increment();
+            return entrada.perfil;
+        }
+    }
+
+    public void guardar(String email, PerfilUsuario perfil) {
+        synchronized (entradas) {
+            entradas.put(email, new Entrada(perfil, System.nanoTime()));
+        }
+    }
+
+    /**
+     * Descarta o perfil guardado, para que a próxima leitura vá ao SQLite
+     */
+    public void invalidar(String email) {
+        synchronized (entradas) {
+            entradas.remove(email);
+        }
+    }
+
+    public void limpar() {
+        synchronized (entradas) {
+            entradas.clear();
+        }
+    }
+
+    public int getTamanho() {
+        synchronized (entradas) {
+            return entradas.size();
+        }
+    }
+
+    public int getCapacidade() {
+        return capacidade;
+    }
+
+    public long getAcertos() {
+        return acertos.sum();
+    }
+
+    public long getFaltas() {
+        return faltas.sum();
+    }
+
+    public long getExpiradas() {
+        return expiradas.sum();
+    }
+
+    public long getDespejadas() {
+        return despejadas.sum();
+    }
+
+    /**
+     * @return Fração (0 a 1) das leituras servidas pelo cache
+     */
+    public double getTaxaAcerto() {
+        long a = acertos.sum();
+        long total = a + faltas.sum();
+        return total == 0 ? 0.0 : (double) a / total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Perfis em cache: ").append(getTamanho()).append(" de ").append(capacidade).append("\n");
+        sb.append("Acerto do cache de perfis: ").append(String.format("%.1f%%", getTaxaAcerto() * 100))
+          .append(" (").append(getAcertos()).append(" acertos, ").append(getFaltas()).append(" faltas)\n");
+        sb.append("Perfis expirados: ").append(getExpiradas()).append(", despejados: ").append(getDespejadas()).append("\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,280 @@
+package com.exemplo;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Chaves de idempotência de depósitos e transferências (tabela chaves_idempotencia)
+ *
+ * A chave é gravada na mesma transação da operação, junto com o ID da transação no historico, então
+ * uma repetição devolve o resultado original. Operações recusadas não gravam chave: como nada foi
+ * alterado, a repetição é executada de novo
+ *
+ * Para que uma chave nova (o caso comum) não custe uma consulta ao SQLite, as chaves gravadas passam
+ * por um filtro de Bloom: se ele diz que a chave não existe, ela não existe. As chaves recentes ficam
+ * também num cache LRU, que responde às repetições sem ir ao SQLite. Duas chamadas simultâneas com a
+ * mesma chave não rodam juntas: a segunda espera a primeira terminar e então vê o resultado dela
+ */
+final class ChavesIdempotencia {
+    private static final int BITS_POR_CHAVE = 10;
+    private static final int FUNCOES_HASH = 7;
+
+    private final PoolConexoes pool;
+    private final MetricasBanco metricas;
+    private final int capacidade;
+    private final int tamanhoCache;
+    private final long validadeMs;
+    private final Map<String, Registro> recentes;
+    private final Map<String, CompletableFuture<Void>> emAndamento = new ConcurrentHashMap<>();
+    private volatile FiltroBloom filtro;
+    private volatile FiltroBloom emReconstrucao;
+    private final LongAdder consultasEvitadas = new LongAdder();
+    private final LongAdder falsosPositivos = new LongAdder();
+
+    private static final class Registro {
+        final String assinatura;
+        final int idTransacao;
+        final long criadaEm;
+
+        Registro(String assinatura, int idTransacao, long criadaEm) {
+            this.assinatura = assinatura;
+            this.idTransacao = idTransacao;
+            this.criadaEm = criadaEm;
+        }
+    }
+
+    ChavesIdempotencia(PoolConexoes pool, MetricasBanco metricas, ConfiguracaoBanco config) throws SQLException {
+        this.pool = pool;
+        this.metricas = metricas;
+        this.capacidade = config.getCapacidadeChavesIdempotencia();
+        this.tamanhoCache = config.getTamanhoCacheChaves();
+        this.validadeMs = config.getValidadeChavesIdempotenciaMs();
+        this.recentes = new LinkedHashMap<String, Registro>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Registro> maisAntiga) {
+                return size() > tamanhoCache;
+            }
+        };
+        reconstruirFiltro();
+    }
+
+    /**
+     * Texto que identifica a operação feita com a chave; reusar a chave em outra operação é recusado
+     */
+    static String assinatura(String tipo, String emailOrigem, String emailDestino, double valor) {
+        return tipo + "|" + emailOrigem + "|" + emailDestino + "|" + Double.toString(valor);
+    }
+
+    /**
+     * Executa a operação uma vez por chave
+     * @param operacao Faz a operação e grava a chave (com gravar) na mesma transação; devolve o ID da
+     *                 transação no historico, ou -1 se recusada
+     * @return ID da transação, o mesmo em todas as repetições, ou -1
+     * @throws IllegalArgumentException Se a chave já foi usada numa operação com outra assinatura
+     */
+    int executar(String chave, String assinatura, IntSupplier operacao) throws SQLException {
+        while (true) {
+            long inicio = System.nanoTime();
+            Registro registro = recente(chave);
+            if (registro != null) {
+                return repetir(chave, registro, assinatura, inicio);
+            }
+            CompletableFuture<Void> minha = new CompletableFuture<>();
+            CompletableFuture<Void> outra = emAndamento.putIfAbsent(chave, minha);
+            if (outra != null) {
+                // mesma chave em andamento: depois dela a chave está no cache, ou foi recusada e é a nossa vez
+                outra.join();
+                continue;
+            }
+            try {
+                if (filtro.talvezContenha(chave)) {
+                    registro = ler(chave);
+                    if (registro != null) {
+                        lembrar(chave, registro);
+                        return repetir(chave, registro, assinatura, inicio);
+                    }
+                    falsosPositivos.increment();
+                } else {
+                    consultasEvitadas.increment();
+                }
+                int idTransacao = operacao.getAsInt();
+                if (idTransacao > 0) {
+                    lembrar(chave, new Registro(assinatura, idTransacao, System.currentTimeMillis()));
+                }
+                return idTransacao;
+            } finally {
+                emAndamento.remove(chave, minha);
+                minha.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Grava a chave na transação da operação
+     */
+    static void gravar(ConexaoPool conn, String chave, String assinatura, int idTransacao) throws SQLException {
+        PreparedStatement stmt = conn.preparar("INSERT INTO chaves_idempotencia " +
+                "(chave, assinatura, id_transacao, criada_em) VALUES (?, ?, ?, ?)");
+        stmt.setString(1, chave);
+        stmt.setString(2, assinatura);
+        stmt.setInt(3, idTransacao);
+        stmt.setLong(4, System.currentTimeMillis());
+        stmt.executeUpdate();
+    }
+
+    /**
+     * Apaga um lote de chaves mais antigas que a validade
+     * @return Quantidade apagada; menor que o lote quando não restam chaves vencidas
+     */
+    int apagarVencidas(ConexaoPool conn, int lote) throws SQLException {
+        PreparedStatement stmt = conn.preparar("DELETE FROM chaves_idempotencia WHERE chave IN " +
+                "(SELECT chave FROM chaves_idempotencia WHERE criada_em < ? LIMIT ?)");
+        stmt.setLong(1, System.currentTimeMillis() - validadeMs);
+        stmt.setInt(2, lote);
+        return stmt.executeUpdate();
+    }
+
+    /**
+     * Monta um filtro novo com as chaves que restaram no SQLite, descartando os bits das apagadas
+     * Chaves gravadas durante a leitura entram nos dois filtros, então nenhuma fica de fora do novo
+     */
+    void reconstruirFiltro() throws SQLException {
+        FiltroBloom novo;
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            long chaves;
+            try (ResultSet rs = conn.preparar("SELECT COUNT(*) FROM chaves_idempotencia").executeQuery()) {
+                chaves = rs.next() ? rs.getLong(1) : 0;
+            }
+            novo = new FiltroBloom(Math.max(capacidade, chaves * 2));
+            emReconstrucao = novo;
+            try (ResultSet rs = conn.preparar("SELECT chave FROM chaves_idempotencia").executeQuery()) {
+                while (rs.next()) {
+                    novo.adicionar(rs.getString(1));
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            emReconstrucao = null;
+            throw e;
+        }
+        filtro = novo;
+        emReconstrucao = null;
+    }
+
+    long getConsultasEvitadas() {
+        return consultasEvitadas.sum();
+    }
+
+    long getFalsosPositivos() {
+        return falsosPositivos.sum();
+    }
+
+    private int repetir(String chave, Registro registro, String assinatura, long inicio) {
+        if (!registro.assinatura.equals(assinatura)) {
+            metricas.falha(OperacaoBanco.REPETIR_IDEMPOTENTE, inicio, "CHAVE_REUTILIZADA");
+            throw new IllegalArgumentException("Chave de idempotência já usada em outra operação: " + chave);
+        }
+        metricas.sucesso(OperacaoBanco.REPETIR_IDEMPOTENTE, inicio);
+        return registro.idTransacao;
+    }
+
+    /**
+     * @return Registro do cache, ou null se não estiver nele ou a chave já tiver vencido
+     */
+    private Registro recente(String chave) {
+        synchronized (recentes) {
+            Registro registro = recentes.get(chave);
+            if (registro != null && validadeMs > 0 && System.currentTimeMillis() - registro.criadaEm > validadeMs) {
+                recentes.remove(chave);
+                return null;
+            }
+            return registro;
+        }
+    }
+
+    private void lembrar(String chave, Registro registro) {
+        filtro.adicionar(chave);
+        FiltroBloom novo = emReconstrucao;
+        if (novo != null) {
+            novo.adicionar(chave);
+        }
+        synchronized (recentes) {
+            recentes.put(chave, registro);
+        }
+    }
+
+    private Registro ler(String chave) throws SQLException {
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            PreparedStatement stmt = conn.preparar(
+                    "SELECT assinatura, id_transacao, criada_em FROM chaves_idempotencia WHERE chave = ?");
+            stmt.setString(1, chave);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? new Registro(rs.getString(1), rs.getInt(2), rs.getLong(3)) : null;
+            }
+        }
+    }
+
+    /**
+     * Filtro de Bloom com cerca de 1% de falsos positivos até a capacidade; sem falsos negativos
+     */
+    private static final class FiltroBloom {
+        private final AtomicLongArray bits;
+        private final long tamanho;
+
+        FiltroBloom(long capacidade) {
+            long palavras = Math.max(1, (capacidade * BITS_POR_CHAVE + 63) / 64);
+            this.bits = new AtomicLongArray((int) Math.min(palavras, Integer.MAX_VALUE - 8));
+            this.tamanho = bits.length() * 64L;
+        }
+
+        void adicionar(String chave) {
+            long hash = hash(chave);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < FUNCOES_HASH; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, tamanho);
+                int palavra = (int) (bit >>> 6);
+                long mascara = 1L << bit;
+                long atual = bits.get(palavra);
+                while ((atual & mascara) == 0 && !bits.compareAndSet(palavra, atual, atual | mascara)) {
+                    atual = bits.get(palavra);
+                }
+            }
+        }
+
+        boolean talvezContenha(String chave) {
+            long hash = hash(chave);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < FUNCOES_HASH; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, tamanho);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * FNV-1a de 64 bits sobre os caracteres, com mistura final para espalhar as duas metades
+         */
+        private static long hash(String chave) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < chave.length(); i++) {
+                hash ^= chave.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.exemplo;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Cliente do ServidorBanco: uma conexão TCP, usada por qualquer número de threads
+ *
+ * Cada método envia a requisição e devolve na hora um CompletableFuture, completado quando a resposta
+ * chega; várias requisições podem estar em andamento na mesma conexão (pipelining). As respostas podem
+ * chegar fora da ordem de envio, então quem precisa que uma operação veja o efeito de outra (ver o saldo
+ * depois de um depósito) espera o futuro da primeira antes de enviar a segunda. Use join() para a
+ * versão bloqueante
+ *
+ * Operações com resposta sim/não completam com false quando o Banco recusa (saldo insuficiente, ...).
+ * Recusas do servidor (sem login, sem permissão, sobrecarga, requisição inválida) completam o futuro
+ * com IllegalStateException; queda da conexão, com IOException. Os futuros são completados pela thread
+ * que lê as respostas: ações encadeadas sem sufixo Async (thenApply, thenAccept) rodam nela e não devem
+ * esperar outra resposta desta conexão
+ */
+public class ClienteBanco implements AutoCloseable {
+    private static final int TAMANHO_LEITURA = 1 << 16;
+
+    private final SocketChannel canal;
+    private final Thread leitor;
+    private final Map<Integer, Pendente<?>> pendentes = new ConcurrentHashMap<>();
+    private final AtomicInteger proximoId = new AtomicInteger();
+    private final Object travaEscrita = new Object();
+    private volatile IOException falha;
+
+    public ClienteBanco(String host, int porta) throws IOException {
+        this(new InetSocketAddress(host, porta));
+    }
+
+    public ClienteBanco(InetSocketAddress endereco) throws IOException {
+        this.canal = SocketChannel.open(endereco);
+        canal.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.leitor = new Thread(this::ler, "brasisco-cliente");
+        leitor.setDaemon(true);
+        leitor.start();
+    }
+
+    /**
+     * @return true se a conta foi criada, false se o email já existe
+     */
+    public CompletableFuture<Boolean> registrar(String email, String nome, String senha) {
+        return enviar(quadro(ProtocoloBanco.REGISTRAR).putTexto(email).putTexto(nome).putTexto(senha),
+                ClienteBanco::booleano);
+    }
+
+    /**
+     * Abre a sessão desta conexão; as operações seguintes são feitas como este usuário
+     * @return Sessão (sem token, que fica no servidor), ou null se as credenciais forem inválidas
+     */
+    public CompletableFuture<Sessao> login(String email, String senha) {
+        return enviar(quadro(ProtocoloBanco.LOGIN).putTexto(email).putTexto(senha), corpo -> {
+            if (corpo == null) {
+                return null;
+            }
+            String nome = ProtocoloBanco.lerTexto(corpo);
+            boolean admin = ProtocoloBanco.lerByte(corpo) != 0;
+            return new Sessao(null, email, nome, admin, 0);
+        });
+    }
+
+    public CompletableFuture<Void> logout() {
+        return enviar(quadro(ProtocoloBanco.LOGOUT), corpo -> null);
+    }
+
+    public CompletableFuture<Double> consultarSaldo() {
+        return enviar(quadro(ProtocoloBanco.SALDO), ProtocoloBanco::lerDouble);
+    }
+
+    public CompletableFuture<Boolean> depositar(double valor) {
+        return enviar(quadro(ProtocoloBanco.DEPOSITAR).putDouble(valor), ClienteBanco::booleano);
+    }
+
+    public CompletableFuture<Boolean> transferir(String emailDestino, double valor) {
+        return enviar(quadro(ProtocoloBanco.TRANSFERIR).putTexto(emailDestino).putDouble(valor),
+                ClienteBanco::booleano);
+    }
+
+    /**
+     * Página do histórico do usuário logado
+     * @param apos Cursor da página anterior, ou CursorHistorico.INICIO
+     * @param tamanhoPagina Entre 1 e 100
+     */
+    public CompletableFuture<PaginaHistorico> consultarHistorico(CursorHistorico apos, int tamanhoPagina) {
+        return enviar(quadro(ProtocoloBanco.HISTORICO).putCursor(apos).putShort(tamanhoPagina),
+                ProtocoloBanco::lerPagina);
+    }
+
+    public CompletableFuture<Boolean> registrarDenuncia(int idTransacao, String descricao) {
+        return enviar(quadro(ProtocoloBanco.DENUNCIAR).putInt(idTransacao).putTexto(descricao),
+                ClienteBanco::booleano);
+    }
+
+    /**
+     * Página do histórico de todas as contas (administrador)
+     */
+    public CompletableFuture<PaginaHistorico> consultarHistoricoGeral(CursorHistorico apos, int tamanhoPagina) {
+        return enviar(quadro(ProtocoloBanco.HISTORICO_GERAL).putCursor(apos).putShort(tamanhoPagina),
+                ProtocoloBanco::lerPagina);
+    }
+
+    /**
+     * Reserva denúncias pendentes para o administrador logado revisar (como Banco.reservarDenuncias)
+     */
+    public CompletableFuture<List<Denuncia>> reservarDenuncias(PrioridadeDenuncia prioridade, int quantidade,
+                                                               long duracaoMs) {
+        return enviar(quadro(ProtocoloBanco.RESERVAR_DENUNCIAS).putByte(prioridade.ordinal())
+                .putShort(quantidade).putLong(duracaoMs), corpo -> {
+            int total = ProtocoloBanco.lerInt(corpo);
+            List<Denuncia> denuncias = new ArrayList<>(total);
+            for (int i = 0; i < total; i++) {
+                denuncias.add(ProtocoloBanco.lerDenuncia(corpo));
+            }
+            return denuncias;
+        });
+    }
+
+    public CompletableFuture<Boolean> rejeitarDenuncia(int idDenuncia) {
+        return enviar(quadro(ProtocoloBanco.REJEITAR_DENUNCIA).putInt(idDenuncia), ClienteBanco::booleano);
+    }
+
+    public CompletableFuture<Boolean> liberarReserva(int idDenuncia) {
+        return enviar(quadro(ProtocoloBanco.LIBERAR_RESERVA).putInt(idDenuncia), ClienteBanco::booleano);
+    }
+
+    /**
+     * Reverte a transferência de uma denúncia reservada para o administrador logado (como Banco.reverter)
+     */
+    public CompletableFuture<Boolean> reverter(int idDenuncia) {
+        return enviar(quadro(ProtocoloBanco.REVERTER).putInt(idDenuncia), ClienteBanco::booleano);
+    }
+
+    /**
+     * @return Requisições enviadas e ainda sem resposta
+     */
+    public int getPendentes() {
+        return pendentes.size();
+    }
+
+    /**
+     * Fecha a conexão; requisições sem resposta falham com IOException
+     */
+    @Override
+    public void close() {
+        try {
+            canal.close();
+        } catch (IOException e) {
+            System.out.println("Erro ao fechar conexão com o Brasisco: " + e.getMessage());
+        }
+        try {
+            leitor.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ProtocoloBanco.Quadro quadro(byte operacao) {
+        return new ProtocoloBanco.Quadro(proximoId.incrementAndGet(), operacao, 64);
+    }
+
+    private static Boolean booleano(ByteBuffer corpo) {
+        return corpo != null;
+    }
+
+    /**
+     * @param decodificador Recebe o corpo de uma resposta OK, ou null numa resposta FALHA
+     */
+    private <T> CompletableFuture<T> enviar(ProtocoloBanco.Quadro quadro, Function<ByteBuffer, T> decodificador) {
+        ByteBuffer requisicao = quadro.concluir();
+        int id = requisicao.getInt(4);
+        Pendente<T> pendente = new Pendente<>(decodificador);
+        pendentes.put(id, pendente);
+        IOException erro = falha;
+        if (erro == null) {
+            try {
+                synchronized (travaEscrita) {
+                    while (requisicao.hasRemaining()) {
+                        canal.write(requisicao);
+                    }
+                }
+            } catch (IOException e) {
+                erro = e;
+            }
+        }
+        if (erro != null && pendentes.remove(id) != null) {
+            pendente.futuro.completeExceptionally(erro);
+        }
+        return pendente.futuro;
+    }
+
+    private void ler() {
+        ByteBuffer entrada = ByteBuffer.allocate(TAMANHO_LEITURA);
+        try {
+            while (canal.read(entrada) >= 0) {
+                entrada.flip();
+                while (entrada.remaining() >= 4) {
+                    int tamanho = entrada.getInt(entrada.position());
+                    if (tamanho < 5 || tamanho > ProtocoloBanco.MAXIMO_QUADRO) {
+                        throw new IOException("Resposta inválida do servidor do Brasisco");
+                    }
+                    if (entrada.remaining() < 4 + tamanho) {
+                        if (entrada.capacity() < 4 + tamanho) {
+                            ByteBuffer maior = ByteBuffer.allocate(4 + tamanho);
+                            maior.put(entrada);
+                            maior.flip();
+                            entrada = maior;
+                        }
+                        break;
+                    }
+                    int fim = entrada.position() + 4 + tamanho;
+                    int limite = entrada.limit();
+                    entrada.position(entrada.position() + 4);
+                    int id = entrada.getInt();
+                    byte situacao = entrada.get();
+                    entrada.limit(fim);
+                    concluir(id, situacao, entrada.slice());
+                    entrada.limit(limite);
+                    entrada.position(fim);
+                }
+                entrada.compact();
+            }
+            falha = new IOException("Conexão encerrada pelo servidor do Brasisco");
+        } catch (IOException e) {
+            falha = e;
+        }
+        for (Integer id : pendentes.keySet()) {
+            Pendente<?> pendente = pendentes.remove(id);
+            if (pendente != null) {
+                pendente.futuro.completeExceptionally(falha);
+            }
+        }
+    }
+
+    private void concluir(int id, byte situacao, ByteBuffer corpo) {
+        Pendente<?> pendente = pendentes.remove(id);
+        if (pendente == null) {
+            return;
+        }
+        if (situacao == ProtocoloBanco.OK || situacao == ProtocoloBanco.FALHA) {
+            pendente.concluir(situacao == ProtocoloBanco.OK ? corpo : null);
+        } else {
+            String motivo;
+            try {
+                motivo = ProtocoloBanco.lerTexto(corpo);
+            } catch (ProtocoloBanco.CorpoInvalido e) {
+                motivo = null;
+            }
+            pendente.futuro.completeExceptionally(new IllegalStateException("Requisição recusada pelo Brasisco ("
+                    + ProtocoloBanco.nomeSituacao(situacao) + ")" + (motivo != null ? ": " + motivo : "")));
+        }
+    }
+
+    private static final class Pendente<T> {
+        final CompletableFuture<T> futuro = new CompletableFuture<>();
+        final Function<ByteBuffer, T> decodificador;
+
+        Pendente(Function<ByteBuffer, T> decodificador) {
+            this.decodificador = decodificador;
+        }
+
+        /**
+         * Decodifica na thread leitora, antes de o buffer ser reaproveitado
+         */
+        void concluir(ByteBuffer corpo) {
+            T valor;
+            try {
+                valor = decodificador.apply(corpo);
+            } catch (RuntimeException e) {
+                futuro.completeExceptionally(e);
+                return;
+            }
+            futuro.complete(valor);
+        }
+    }
+}
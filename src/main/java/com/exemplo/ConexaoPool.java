@@ -0,0 +1,199 @@
+package com.exemplo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conexão emprestada pelo PoolConexoes
+ * Mantém um cache LRU de PreparedStatements e volta ao pool ao ser fechada
+ * Enquanto a conexão está emprestada nenhum statement do cache é fechado, mesmo passando do tamanho
+ * configurado: quem chamou preparar pode estar segurando qualquer um deles. O excesso sai do cache,
+ * dos menos usados para os mais usados, quando a conexão é devolvida
+ */
+public class ConexaoPool implements AutoCloseable {
+    private final PoolConexoes pool;
+    private final boolean somenteLeitura;
+    private final EstatisticasPool estatisticas;
+    private final int tamanhoCache;
+    private Connection conexao;
+    private Map<String, PreparedStatement> statements;
+    private final List<Runnable> desfazer = new ArrayList<>();
+    private long ultimoUsoNanos;
+
+    ConexaoPool(PoolConexoes pool, Connection conexao, boolean somenteLeitura,
+                int tamanhoCache, EstatisticasPool estatisticas) {
+        this.pool = pool;
+        this.somenteLeitura = somenteLeitura;
+        this.tamanhoCache = tamanhoCache;
+        this.estatisticas = estatisticas;
+        trocarConexao(conexao);
+    }
+
+    /**
+     * Retorna um PreparedStatement para o SQL, reaproveitando o que estiver em cache
+     * O statement pertence à conexão: não deve ser fechado por quem o recebe, e continua aberto até a
+     * conexão ser devolvida ao pool, mesmo que outros sejam preparados depois
+     * @param sql Comando SQL
+     * @return Statement com os parâmetros limpos
+     */
+    public PreparedStatement preparar(String sql) throws SQLException {
+        PreparedStatement stmt = statements.get(sql);
+        if (stmt != null) {
+            estatisticas.registrarAcertoCache();
+            stmt.clearParameters();
+            return stmt;
+        }
+        estatisticas.registrarFaltaCache();
+        stmt = conexao.prepareStatement(sql);
+        statements.put(sql, stmt);
+        return stmt;
+    }
+
+    /**
+     * @return A conexão JDBC subjacente, para comandos que não devem ir para o cache
+     */
+    public Connection getConexao() {
+        return conexao;
+    }
+
+    public boolean isSomenteLeitura() {
+        return somenteLeitura;
+    }
+
+    public void setAutoCommit(boolean autoCommit) throws SQLException {
+        conexao.setAutoCommit(autoCommit);
+    }
+
+    public void commit() throws SQLException {
+        conexao.commit();
+        desfazer.clear();
+    }
+
+    /**
+     * Desfaz a transação e, em seguida, as alterações fora do SQLite registradas nela (aoDesfazer)
+     */
+    public void rollback() throws SQLException {
+        try {
+            conexao.rollback();
+        } finally {
+            desfazerAte(0);
+        }
+    }
+
+    /**
+     * Registra como desfazer uma alteração feita fora do SQLite (saldos em memória) dentro da transação
+     * atual; a ação roda se a transação, ou o savepoint aberto antes dela, for desfeita
+     */
+    void aoDesfazer(Runnable acao) {
+        desfazer.add(acao);
+    }
+
+    /**
+     * @return Posição atual das ações de desfazer, para usar com desfazerAte ao voltar a um savepoint
+     */
+    int getPontoDesfazer() {
+        return desfazer.size();
+    }
+
+    /**
+     * Roda, da mais recente para a mais antiga, as ações de desfazer registradas depois de 'ponto'
+     */
+    void desfazerAte(int ponto) {
+        for (int i = desfazer.size() - 1; i >= ponto; i--) {
+            try {
+                desfazer.remove(i).run();
+            } catch (RuntimeException e) {
+                System.out.println("Erro ao desfazer alteração em memória do Brasisco: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Devolve a conexão ao pool
+     */
+    @Override
+    public void close() {
+        pool.devolver(this);
+    }
+
+    boolean valida() {
+        try {
+            return !conexao.isClosed() && conexao.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Restaura o estado padrão (auto-commit) antes de a conexão voltar ao pool
+     */
+    boolean restaurar() {
+        try {
+            if (!conexao.getAutoCommit()) {
+                rollback();
+                conexao.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    long getUltimoUsoNanos() {
+        return ultimoUsoNanos;
+    }
+
+    void marcarUso() {
+        ultimoUsoNanos = System.nanoTime();
+    }
+
+    void trocarConexao(Connection nova) {
+        fecharFisicamente();
+        desfazer.clear();
+        this.conexao = nova;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+        marcarUso();
+    }
+
+    /**
+     * Fecha os statements menos usados até o cache voltar ao tamanho configurado
+     * Só pode ser chamado com a conexão devolvida, quando ninguém mais segura statements dela
+     */
+    void aparar() {
+        Iterator<PreparedStatement> maisAntigos = statements.values().iterator();
+        while (statements.size() > tamanhoCache && maisAntigos.hasNext()) {
+            fecharSilenciosamente(maisAntigos.next());
+            maisAntigos.remove();
+        }
+    }
+
+    void fecharFisicamente() {
+        if (statements != null) {
+            for (PreparedStatement stmt : statements.values()) {
+                fecharSilenciosamente(stmt);
+            }
+            statements.clear();
+        }
+        if (conexao != null) {
+            try {
+                conexao.close();
+            } catch (SQLException e) {
+                System.out.println("Erro ao fechar conexão do Brasisco: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void fecharSilenciosamente(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException ignorada) {
+            // o statement será descartado de qualquer forma
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package com.exemplo;
+
+/**
+ * Parâmetros de configuração do Banco e do seu pool de conexões
+ * Os valores padrão reproduzem o comportamento original (arquivo banco.db no diretório atual)
+ */
+public class ConfiguracaoBanco implements Cloneable {
+    private String url = "jdbc:sqlite:banco.db";
+    private int numeroLeitores = 4;
+    private int tamanhoCacheStatements = 32;
+    private long tempoMaximoEsperaMs = 5000;
+    private long intervaloVerificacaoMs = 30000;
+    private int timeoutOcupadoMs = 5000;
+    private boolean escritaAgrupada = false;
+    private int tamanhoMaximoGrupo = 64;
+    private long esperaMaximaGrupoMicros = 0;
+    private int capacidadeFilaEscrita = 10_000;
+    private long esperaMaximaCommitMs = 30_000;
+    private boolean saldosEmMemoria = false;
+    private String arquivoRegistroSaldos = "banco-saldos.log";
+    private long intervaloDescargaMs = 200;
+    private long duracaoSessaoMs = 30 * 60 * 1000;
+    private int tamanhoCachePerfis = 10_000;
+    private long validadeCachePerfisMs = 0;
+    private boolean diarioMapeado = false;
+    private int tamanhoSegmentoDiario = 64 * 1024 * 1024;
+    private long intervaloInstantaneoMs = 60_000;
+    private int idadeArquivamentoDias = 90;
+    private int loteArquivamento = 500;
+    private long intervaloArquivamentoMs = 0;
+    private int loteImportacao = 20_000;
+    private int threadsImportacao = Runtime.getRuntime().availableProcessors();
+    private int maximoPendentesAsync = 100_000;
+    private long timeoutAsyncMs = 30_000;
+    private String enderecoServidor = "127.0.0.1";
+    private int portaServidor = 7070;
+    private int maximoConexoesServidor = 10_000;
+    private int numeroFragmentos = 4;
+    private long intervaloRecuperacaoFragmentosMs = 30_000;
+    private int capacidadeChavesIdempotencia = 1_000_000;
+    private int tamanhoCacheChaves = 10_000;
+    private long validadeChavesIdempotenciaMs = 24 * 60 * 60 * 1000;
+    private long intervaloExpiracaoChavesMs = 60 * 60 * 1000;
+    private boolean historicoColunar = false;
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @param url URL JDBC do arquivo SQLite (ex: jdbc:sqlite:/tmp/banco.db)
+     */
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public int getNumeroLeitores() {
+        return numeroLeitores;
+    }
+
+    /**
+     * @param numeroLeitores Quantidade de conexões somente leitura mantidas no pool (mínimo 1)
+     */
+    public void setNumeroLeitores(int numeroLeitores) {
+        this.numeroLeitores = Math.max(1, numeroLeitores);
+    }
+
+    public int getTamanhoCacheStatements() {
+        return tamanhoCacheStatements;
+    }
+
+    /**
+     * @param tamanhoCacheStatements Quantidade máxima de PreparedStatements guardados por conexão
+     */
+    public void setTamanhoCacheStatements(int tamanhoCacheStatements) {
+        this.tamanhoCacheStatements = Math.max(1, tamanhoCacheStatements);
+    }
+
+    public long getTempoMaximoEsperaMs() {
+        return tempoMaximoEsperaMs;
+    }
+
+    /**
+     * @param tempoMaximoEsperaMs Tempo máximo de espera por uma conexão livre antes de falhar
+     */
+    public void setTempoMaximoEsperaMs(long tempoMaximoEsperaMs) {
+        this.tempoMaximoEsperaMs = tempoMaximoEsperaMs;
+    }
+
+    public long getIntervaloVerificacaoMs() {
+        return intervaloVerificacaoMs;
+    }
+
+    /**
+     * @param intervaloVerificacaoMs Tempo ocioso após o qual a conexão é validada antes de ser emprestada
+     */
+    public void setIntervaloVerificacaoMs(long intervaloVerificacaoMs) {
+        this.intervaloVerificacaoMs = intervaloVerificacaoMs;
+    }
+
+    public int getTimeoutOcupadoMs() {
+        return timeoutOcupadoMs;
+    }
+
+    /**
+     * @param timeoutOcupadoMs Tempo que o SQLite aguarda um lock antes de retornar SQLITE_BUSY
+     */
+    public void setTimeoutOcupadoMs(int timeoutOcupadoMs) {
+        this.timeoutOcupadoMs = timeoutOcupadoMs;
+    }
+
+    public boolean isEscritaAgrupada() {
+        return escritaAgrupada;
+    }
+
+    /**
+     * @param escritaAgrupada Se true, depósitos e transferências passam pelo MotorEscrita (commit em grupo)
+     */
+    public void setEscritaAgrupada(boolean escritaAgrupada) {
+        this.escritaAgrupada = escritaAgrupada;
+    }
+
+    public int getTamanhoMaximoGrupo() {
+        return tamanhoMaximoGrupo;
+    }
+
+    /**
+     * @param tamanhoMaximoGrupo Quantidade máxima de operações confirmadas no mesmo commit
+     */
+    public void setTamanhoMaximoGrupo(int tamanhoMaximoGrupo) {
+        this.tamanhoMaximoGrupo = Math.max(1, tamanhoMaximoGrupo);
+    }
+
+    public long getEsperaMaximaGrupoMicros() {
+        return esperaMaximaGrupoMicros;
+    }
+
+    /**
+     * Com 0 o grupo é o que se acumulou na fila durante o commit anterior; valores maiores
+     * formam grupos maiores (mais vazão) ao custo de latência de commit
+     * @param esperaMaximaGrupoMicros Tempo máximo que o escritor espera por mais operações antes do commit
+     */
+    public void setEsperaMaximaGrupoMicros(long esperaMaximaGrupoMicros) {
+        this.esperaMaximaGrupoMicros = Math.max(0, esperaMaximaGrupoMicros);
+    }
+
+    public int getCapacidadeFilaEscrita() {
+        return capacidadeFilaEscrita;
+    }
+
+    /**
+     * @param capacidadeFilaEscrita Tamanho da fila do motor de escrita; quem submete bloqueia quando ela enche
+     */
+    public void setCapacidadeFilaEscrita(int capacidadeFilaEscrita) {
+        this.capacidadeFilaEscrita = Math.max(1, capacidadeFilaEscrita);
+    }
+
+    public long getEsperaMaximaCommitMs() {
+        return esperaMaximaCommitMs;
+    }
+
+    /**
+     * Se o prazo vence antes de o escritor pegar a operação, ela é descartada e a chamada falha
+     * @param esperaMaximaCommitMs Prazo que quem usa o MotorEscrita espera pelo commit (0 = sem prazo)
+     */
+    public void setEsperaMaximaCommitMs(long esperaMaximaCommitMs) {
+        this.esperaMaximaCommitMs = Math.max(0, esperaMaximaCommitMs);
+    }
+
+    public boolean isSaldosEmMemoria() {
+        return saldosEmMemoria;
+    }
+
+    /**
+     * @param saldosEmMemoria Se true, os saldos são servidos pelo SaldosMemoria e gravados no SQLite em segundo plano
+     */
+    public void setSaldosEmMemoria(boolean saldosEmMemoria) {
+        this.saldosEmMemoria = saldosEmMemoria;
+    }
+
+    public String getArquivoRegistroSaldos() {
+        return arquivoRegistroSaldos;
+    }
+
+    /**
+     * @param arquivoRegistroSaldos Caminho base dos segmentos do log de saldos
+     */
+    public void setArquivoRegistroSaldos(String arquivoRegistroSaldos) {
+        this.arquivoRegistroSaldos = arquivoRegistroSaldos;
+    }
+
+    public long getIntervaloDescargaMs() {
+        return intervaloDescargaMs;
+    }
+
+    /**
+     * @param intervaloDescargaMs Intervalo entre as gravações em lote dos saldos alterados
+     */
+    public void setIntervaloDescargaMs(long intervaloDescargaMs) {
+        this.intervaloDescargaMs = Math.max(1, intervaloDescargaMs);
+    }
+
+    public long getDuracaoSessaoMs() {
+        return duracaoSessaoMs;
+    }
+
+    /**
+     * @param duracaoSessaoMs Tempo sem uso após o qual um token de sessão deixa de valer
+     */
+    public void setDuracaoSessaoMs(long duracaoSessaoMs) {
+        this.duracaoSessaoMs = Math.max(1, duracaoSessaoMs);
+    }
+
+    public int getTamanhoCachePerfis() {
+        return tamanhoCachePerfis;
+    }
+
+    /**
+     * @param tamanhoCachePerfis Quantidade máxima de perfis (nome, administrador) mantidos em memória
+     */
+    public void setTamanhoCachePerfis(int tamanhoCachePerfis) {
+        this.tamanhoCachePerfis = Math.max(1, tamanhoCachePerfis);
+    }
+
+    public long getValidadeCachePerfisMs() {
+        return validadeCachePerfisMs;
+    }
+
+    /**
+     * @param validadeCachePerfisMs Tempo de vida de um perfil em cache; 0 mantém até ser despejado ou invalidado
+     */
+    public void setValidadeCachePerfisMs(long validadeCachePerfisMs) {
+        this.validadeCachePerfisMs = Math.max(0, validadeCachePerfisMs);
+    }
+
+    public boolean isDiarioMapeado() {
+        return diarioMapeado;
+    }
+
+    /**
+     * @param diarioMapeado Com saldos em memória, usa o DiarioSaldos mapeado em memória no lugar do
+     *                      RegistroSaldos e grava instantâneos periódicos para inicializar sem ler usuarios
+     */
+    public void setDiarioMapeado(boolean diarioMapeado) {
+        this.diarioMapeado = diarioMapeado;
+    }
+
+    public int getTamanhoSegmentoDiario() {
+        return tamanhoSegmentoDiario;
+    }
+
+    /**
+     * @param tamanhoSegmentoDiario Tamanho pré-alocado de cada segmento do diário em bytes (mínimo 1 MiB)
+     */
+    public void setTamanhoSegmentoDiario(int tamanhoSegmentoDiario) {
+        this.tamanhoSegmentoDiario = Math.max(1024 * 1024, tamanhoSegmentoDiario);
+    }
+
+    public long getIntervaloInstantaneoMs() {
+        return intervaloInstantaneoMs;
+    }
+
+    /**
+     * @param intervaloInstantaneoMs Intervalo entre os instantâneos de todos os saldos no modo diário
+     */
+    public void setIntervaloInstantaneoMs(long intervaloInstantaneoMs) {
+        this.intervaloInstantaneoMs = Math.max(1, intervaloInstantaneoMs);
+    }
+
+    public int getIdadeArquivamentoDias() {
+        return idadeArquivamentoDias;
+    }
+
+    /**
+     * @param idadeArquivamentoDias Transações mais antigas que isso vão para as partições mensais do histórico
+     */
+    public void setIdadeArquivamentoDias(int idadeArquivamentoDias) {
+        this.idadeArquivamentoDias = Math.max(0, idadeArquivamentoDias);
+    }
+
+    public int getLoteArquivamento() {
+        return loteArquivamento;
+    }
+
+    /**
+     * @param loteArquivamento Transações movidas por transação de escrita durante o arquivamento
+     */
+    public void setLoteArquivamento(int loteArquivamento) {
+        this.loteArquivamento = Math.max(1, loteArquivamento);
+    }
+
+    public long getIntervaloArquivamentoMs() {
+        return intervaloArquivamentoMs;
+    }
+
+    /**
+     * @param intervaloArquivamentoMs Intervalo entre execuções automáticas do arquivamento (0 desliga)
+     */
+    public void setIntervaloArquivamentoMs(long intervaloArquivamentoMs) {
+        this.intervaloArquivamentoMs = Math.max(0, intervaloArquivamentoMs);
+    }
+
+    public int getLoteImportacao() {
+        return loteImportacao;
+    }
+
+    /**
+     * @param loteImportacao Linhas do CSV gravadas por transação na importação em massa
+     */
+    public void setLoteImportacao(int loteImportacao) {
+        this.loteImportacao = Math.max(1, loteImportacao);
+    }
+
+    public int getThreadsImportacao() {
+        return threadsImportacao;
+    }
+
+    /**
+     * @param threadsImportacao Threads que calculam os hashes de senha na importação de usuários
+     */
+    public void setThreadsImportacao(int threadsImportacao) {
+        this.threadsImportacao = Math.max(1, threadsImportacao);
+    }
+
+    public int getMaximoPendentesAsync() {
+        return maximoPendentesAsync;
+    }
+
+    /**
+     * @param maximoPendentesAsync Operações aceitas pelo BancoAsync e ainda não concluídas; acima disso
+     *                             as novas falham na hora com RejectedExecutionException
+     */
+    public void setMaximoPendentesAsync(int maximoPendentesAsync) {
+        this.maximoPendentesAsync = Math.max(1, maximoPendentesAsync);
+    }
+
+    public long getTimeoutAsyncMs() {
+        return timeoutAsyncMs;
+    }
+
+    /**
+     * @param timeoutAsyncMs Prazo padrão de cada operação do BancoAsync, contado da submissão (0 = sem prazo)
+     */
+    public void setTimeoutAsyncMs(long timeoutAsyncMs) {
+        this.timeoutAsyncMs = Math.max(0, timeoutAsyncMs);
+    }
+
+    public String getEnderecoServidor() {
+        return enderecoServidor;
+    }
+
+    /**
+     * @param enderecoServidor Interface onde o ServidorBanco escuta (0.0.0.0 para todas)
+     */
+    public void setEnderecoServidor(String enderecoServidor) {
+        this.enderecoServidor = enderecoServidor;
+    }
+
+    public int getPortaServidor() {
+        return portaServidor;
+    }
+
+    /**
+     * @param portaServidor Porta TCP do ServidorBanco (0 escolhe uma livre)
+     */
+    public void setPortaServidor(int portaServidor) {
+        this.portaServidor = Math.max(0, portaServidor);
+    }
+
+    public int getMaximoConexoesServidor() {
+        return maximoConexoesServidor;
+    }
+
+    /**
+     * @param maximoConexoesServidor Conexões abertas ao mesmo tempo; as excedentes são fechadas ao aceitar
+     */
+    public void setMaximoConexoesServidor(int maximoConexoesServidor) {
+        this.maximoConexoesServidor = Math.max(1, maximoConexoesServidor);
+    }
+
+    public int getNumeroFragmentos() {
+        return numeroFragmentos;
+    }
+
+    /**
+     * Mudar a quantidade depois de criar as contas muda o fragmento de cada email: as contas existentes
+     * deixam de ser encontradas
+     * @param numeroFragmentos Quantidade de arquivos SQLite entre os quais o BancoFragmentado divide as contas
+     */
+    public void setNumeroFragmentos(int numeroFragmentos) {
+        this.numeroFragmentos = Math.max(1, numeroFragmentos);
+    }
+
+    public long getIntervaloRecuperacaoFragmentosMs() {
+        return intervaloRecuperacaoFragmentosMs;
+    }
+
+    /**
+     * @param intervaloRecuperacaoFragmentosMs Intervalo entre novas tentativas de concluir transferências entre
+     *                                         fragmentos que ficaram pela metade (0 = só ao abrir)
+     */
+    public void setIntervaloRecuperacaoFragmentosMs(long intervaloRecuperacaoFragmentosMs) {
+        this.intervaloRecuperacaoFragmentosMs = Math.max(0, intervaloRecuperacaoFragmentosMs);
+    }
+
+    public int getCapacidadeChavesIdempotencia() {
+        return capacidadeChavesIdempotencia;
+    }
+
+    /**
+     * Acima disso o filtro continua correto, mas manda mais chaves novas consultar o SQLite até a
+     * próxima expiração, quando é refeito com o dobro das chaves existentes
+     * @param capacidadeChavesIdempotencia Chaves vivas esperadas; o filtro de Bloom usa 10 bits por chave
+     */
+    public void setCapacidadeChavesIdempotencia(int capacidadeChavesIdempotencia) {
+        this.capacidadeChavesIdempotencia = Math.max(1, capacidadeChavesIdempotencia);
+    }
+
+    public int getTamanhoCacheChaves() {
+        return tamanhoCacheChaves;
+    }
+
+    /**
+     * @param tamanhoCacheChaves Chaves de idempotência recentes guardadas com o resultado, para repetições
+     *                           respondidas sem consultar o SQLite
+     */
+    public void setTamanhoCacheChaves(int tamanhoCacheChaves) {
+        this.tamanhoCacheChaves = Math.max(1, tamanhoCacheChaves);
+    }
+
+    public long getValidadeChavesIdempotenciaMs() {
+        return validadeChavesIdempotenciaMs;
+    }
+
+    /**
+     * @param validadeChavesIdempotenciaMs Idade a partir da qual uma chave de idempotência pode ser apagada;
+     *                                     uma repetição depois disso faz a operação de novo
+     */
+    public void setValidadeChavesIdempotenciaMs(long validadeChavesIdempotenciaMs) {
+        this.validadeChavesIdempotenciaMs = Math.max(0, validadeChavesIdempotenciaMs);
+    }
+
+    public long getIntervaloExpiracaoChavesMs() {
+        return intervaloExpiracaoChavesMs;
+    }
+
+    /**
+     * @param intervaloExpiracaoChavesMs Intervalo entre execuções automáticas de expirarChavesIdempotencia,
+     *                                   ou 0 para só expirar quando chamado
+     */
+    public void setIntervaloExpiracaoChavesMs(long intervaloExpiracaoChavesMs) {
+        this.intervaloExpiracaoChavesMs = Math.max(0, intervaloExpiracaoChavesMs);
+    }
+
+    public boolean isHistoricoColunar() {
+        return historicoColunar;
+    }
+
+    /**
+     * @param historicoColunar Se true, o Banco mantém o HistoricoColunar: o histórico inteiro em memória,
+     *                         em colunas, para as consultas de análise (carregado ao abrir)
+     */
+    public void setHistoricoColunar(boolean historicoColunar) {
+        this.historicoColunar = historicoColunar;
+    }
+
+    /**
+     * @return Cópia independente, para derivar a configuração de cada fragmento
+     */
+    ConfiguracaoBanco copiar() {
+        try {
+            return (ConfiguracaoBanco) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.exemplo;
+
+/**
+ * Contagem por chave long em endereçamento aberto (sondagem linear), sem objetos por chave
+ * A chave 0 marca posição vazia e não pode ser usada; uma chave sai da tabela quando a contagem chega a zero,
+ * com as seguintes do mesmo agrupamento deslocadas para trás, então não há lápides
+ * Não é thread-safe
+ */
+final class ContadorLongs {
+    private long[] chaves = new long[16];
+    private int[] contagens = new int[16];
+    private int tamanho;
+
+    void incrementar(long chave) {
+        int posicao = posicao(chave);
+        if (chaves[posicao] == chave) {
+            contagens[posicao]++;
+            return;
+        }
+        if ((tamanho + 1) * 2 > chaves.length) {
+            crescer();
+            posicao = posicao(chave);
+        }
+        chaves[posicao] = chave;
+        contagens[posicao] = 1;
+        tamanho++;
+    }
+
+    /**
+     * Diminui a contagem da chave, se ela estiver na tabela
+     */
+    void decrementar(long chave) {
+        int vazia = posicao(chave);
+        if (chaves[vazia] != chave || --contagens[vazia] > 0) {
+            return;
+        }
+        int mascara = chaves.length - 1;
+        for (int i = (vazia + 1) & mascara; chaves[i] != 0; i = (i + 1) & mascara) {
+            int ideal = (int) mix(chaves[i]) & mascara;
+            // a chave em 'i' pode ocupar a posição vazia se ela está entre a posição ideal e 'i'
+            if (((i - ideal) & mascara) >= ((i - vazia) & mascara)) {
+                chaves[vazia] = chaves[i];
+                contagens[vazia] = contagens[i];
+                vazia = i;
+            }
+        }
+        chaves[vazia] = 0;
+        contagens[vazia] = 0;
+        tamanho--;
+    }
+
+    boolean contem(long chave) {
+        return chaves[posicao(chave)] == chave;
+    }
+
+    /**
+     * @return Quantidade de chaves com contagem maior que zero
+     */
+    int tamanho() {
+        return tamanho;
+    }
+
+    /**
+     * @return Posição da chave, ou a posição vazia onde ela entraria
+     */
+    private int posicao(long chave) {
+        int mascara = chaves.length - 1;
+        int i = (int) mix(chave) & mascara;
+        while (chaves[i] != 0 && chaves[i] != chave) {
+            i = (i + 1) & mascara;
+        }
+        return i;
+    }
+
+    private void crescer() {
+        long[] antigasChaves = chaves;
+        int[] antigasContagens = contagens;
+        chaves = new long[antigasChaves.length * 2];
+        contagens = new int[antigasChaves.length * 2];
+        for (int i = 0; i < antigasChaves.length; i++) {
+            if (antigasChaves[i] != 0) {
+                int posicao = posicao(antigasChaves[i]);
+                chaves[posicao] = antigasChaves[i];
+                contagens[posicao] = antigasContagens[i];
+            }
+        }
+    }
+
+    private static long mix(long valor) {
+        valor ^= valor >>> 33;
+        valor *= 0xff51afd7ed558ccdL;
+        return valor ^ (valor >>> 33);
+    }
+}
@@ -0,0 +1,108 @@
+package com.exemplo;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registro de decisões do coordenador das transferências entre fragmentos, num arquivo SQLite próprio
+ *
+ * Segue a regra de "aborto presumido": só a decisão de confirmar é gravada, e só depois que os dois
+ * fragmentos prepararam. Uma transferência preparada sem decisão no registro é desfeita na recuperação.
+ * A decisão é apagada quando os dois fragmentos concluíram, então a tabela só guarda o que está em curso
+ */
+final class CoordenadorFragmentos implements AutoCloseable {
+    private final PoolConexoes pool;
+
+    /**
+     * Um pendente da fase 2: decisão de confirmar gravada, fragmentos talvez ainda não concluídos
+     */
+    static final class Decisao {
+        final String idGlobal;
+        final int origem;
+        final int destino;
+
+        Decisao(String idGlobal, int origem, int destino) {
+            this.idGlobal = idGlobal;
+            this.origem = origem;
+            this.destino = destino;
+        }
+    }
+
+    CoordenadorFragmentos(ConfiguracaoBanco config) throws SQLException {
+        ConfiguracaoBanco propria = config.copiar();
+        propria.setNumeroLeitores(1);
+        this.pool = new PoolConexoes(propria);
+        try (ConexaoPool conn = pool.obterEscrita();
+             Statement stmt = conn.getConexao().createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS decisoes (" +
+                    "id_global TEXT PRIMARY KEY, " +
+                    "fragmento_origem INTEGER NOT NULL, " +
+                    "fragmento_destino INTEGER NOT NULL, " +
+                    "criada_em DATETIME DEFAULT (datetime('now', 'localtime')))");
+        } catch (SQLException e) {
+            pool.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Ponto de não retorno: depois do commit a transferência será confirmada nos dois fragmentos
+     */
+    void registrarConfirmacao(String idGlobal, int origem, int destino) throws SQLException {
+        try (ConexaoPool conn = pool.obterEscrita()) {
+            PreparedStatement stmt = conn.preparar(
+                    "INSERT INTO decisoes (id_global, fragmento_origem, fragmento_destino) VALUES (?, ?, ?)");
+            stmt.setString(1, idGlobal);
+            stmt.setInt(2, origem);
+            stmt.setInt(3, destino);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * @return true se a transferência tem decisão de confirmar; false significa desfazer
+     */
+    boolean confirmada(String idGlobal) throws SQLException {
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            PreparedStatement stmt = conn.preparar("SELECT 1 FROM decisoes WHERE id_global = ?");
+            stmt.setString(1, idGlobal);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Os dois fragmentos concluíram: a decisão não é mais necessária
+     */
+    void esquecer(String idGlobal) throws SQLException {
+        try (ConexaoPool conn = pool.obterEscrita()) {
+            PreparedStatement stmt = conn.preparar("DELETE FROM decisoes WHERE id_global = ?");
+            stmt.setString(1, idGlobal);
+            stmt.executeUpdate();
+        }
+    }
+
+    List<Decisao> pendentes() throws SQLException {
+        List<Decisao> decisoes = new ArrayList<>();
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            try (ResultSet rs = conn.preparar(
+                    "SELECT id_global, fragmento_origem, fragmento_destino FROM decisoes ORDER BY criada_em")
+                    .executeQuery()) {
+                while (rs.next()) {
+                    decisoes.add(new Decisao(rs.getString(1), rs.getInt(2), rs.getInt(3)));
+                }
+            }
+        }
+        return decisoes;
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
@@ -5,7 +5,17 @@ import java.security.NoSuchAlgorithmException;
 import java.nio.charset.StandardCharsets;
 
 public class Criptografia {
-    
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // MessageDigest não é thread-safe; cada thread reaproveita a sua instância
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
     /**
      * Gera um hash SHA-256 para a senha fornecida
      * @param senha A senha em texto puro
@@ -13,16 +23,16 @@ public class Criptografia {
      */
     public static String criptografar(String senha) {
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            MessageDigest md = SHA256.get();
+            // getBytes() sem charset, como sempre foi, para os hashes já gravados continuarem válidos
             byte[] hash = md.digest(senha.getBytes());
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
+            char[] hexString = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                hexString[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+                hexString[i * 2 + 1] = HEX[hash[i] & 0xf];
             }
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
+            return new String(hexString);
+        } catch (IllegalStateException e) {
             System.out.println("Erro ao criptografar senha: " + e.getMessage());
             return null;
         }
@@ -36,6 +46,8 @@ public class Criptografia {
      */
     public static boolean verificarSenha(String senha, String hashArmazenado) {
         String hashSenha = criptografar(senha);
-        return hashSenha != null && hashSenha.equals(hashArmazenado);
+        return hashSenha != null && hashArmazenado != null
+                && MessageDigest.isEqual(hashSenha.getBytes(StandardCharsets.US_ASCII),
+                        hashArmazenado.getBytes(StandardCharsets.US_ASCII));
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,56 @@
+package com.exemplo;
+
+/**
+ * Posição de leitura na fila de denúncias para paginação por chave
+ * A chave depende da prioridade: (valor, id) para VALOR, (data, id) para IDADE e
+ * (pendentes da origem, email de origem, id) para RECORRENCIA
+ * Em RECORRENCIA a contagem muda quando denúncias são resolvidas, então a ordem entre páginas é aproximada
+ */
+public class CursorDenuncias {
+    private final PrioridadeDenuncia prioridade;
+    private final double numero;
+    private final String texto;
+    private final long id;
+
+    public CursorDenuncias(PrioridadeDenuncia prioridade, double numero, String texto, long id) {
+        this.prioridade = prioridade;
+        this.numero = numero;
+        this.texto = texto;
+        this.id = id;
+    }
+
+    /**
+     * @return Cursor anterior ao primeiro item da fila na prioridade indicada
+     */
+    public static CursorDenuncias inicio(PrioridadeDenuncia prioridade) {
+        switch (prioridade) {
+            case IDADE:
+                return new CursorDenuncias(prioridade, 0, "", 0);
+            case VALOR:
+            case RECORRENCIA:
+            default:
+                return new CursorDenuncias(prioridade, Double.MAX_VALUE, "\uffff", Long.MAX_VALUE);
+        }
+    }
+
+    public PrioridadeDenuncia getPrioridade() {
+        return prioridade;
+    }
+
+    public double getNumero() {
+        return numero;
+    }
+
+    public String getTexto() {
+        return texto;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return prioridade + ":" + numero + ":" + texto + "#" + id;
+    }
+}
@@ -0,0 +1,32 @@
+package com.exemplo;
+
+/**
+ * Posição de leitura no histórico para paginação por chave (data, id)
+ * A próxima página começa logo após a transação identificada pelo cursor,
+ * sem OFFSET, então o custo de cada página não depende de quantas já foram lidas
+ */
+public class CursorHistorico {
+    /** Cursor anterior à transação mais recente: usado para ler a primeira página */
+    public static final CursorHistorico INICIO = new CursorHistorico("9999-12-31 23:59:59", Long.MAX_VALUE);
+
+    private final String data;
+    private final long id;
+
+    public CursorHistorico(String data, long id) {
+        this.data = data;
+        this.id = id;
+    }
+
+    public String getData() {
+        return data;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return data + "#" + id;
+    }
+}
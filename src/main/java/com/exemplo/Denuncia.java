@@ -15,6 +15,8 @@ public class Denuncia {
     private final String nomeDestino;
     private final double valor;
     private final String tipo;
+    private String reservadoPor;
+    private long reservadoAte;
 
     public Denuncia(int id, int idTransacao, String emailDenunciante, String descricao, 
                    String status, Timestamp dataDenuncia, String emailOrigem, String emailDestino,
@@ -47,6 +49,10 @@ public class Denuncia {
         sb.append("Valor: R$ ").append(String.format("%.2f", valor)).append("\n");
         sb.append("De: ").append(nomeOrigem).append(" (").append(emailOrigem).append(")\n");
         sb.append("Para: ").append(nomeDestino).append(" (").append(emailDestino).append(")\n");
+        if (reservadoPor != null) {
+            sb.append("Reservada por: ").append(reservadoPor)
+              .append(" até ").append(new Timestamp(reservadoAte)).append("\n");
+        }
         return sb.toString();
     }
 
@@ -61,4 +67,69 @@ public class Denuncia {
     public String getStatus() {
         return status;
     }
-} 
\ No newline at end of file
+
+    public String getEmailDenunciante() {
+        return emailDenunciante;
+    }
+
+    public String getDescricao() {
+        return descricao;
+    }
+
+    public Timestamp getDataDenuncia() {
+        return dataDenuncia;
+    }
+
+    public String getEmailOrigem() {
+        return emailOrigem;
+    }
+
+    public String getEmailDestino() {
+        return emailDestino;
+    }
+
+    public String getNomeOrigem() {
+        return nomeOrigem;
+    }
+
+    public String getNomeDestino() {
+        return nomeDestino;
+    }
+
+    public double getValor() {
+        return valor;
+    }
+
+    public String getTipo() {
+        return tipo;
+    }
+
+    /**
+     * @return Revisor que reservou a denúncia na fila, ou null
+     */
+    public String getReservadoPor() {
+        return reservadoPor;
+    }
+
+    /**
+     * @return Fim da reserva em milissegundos desde a época (0 se não reservada)
+     */
+    public long getReservadoAte() {
+        return reservadoAte;
+    }
+
+    public void setReserva(String reservadoPor, long reservadoAte) {
+        this.reservadoPor = reservadoPor;
+        this.reservadoAte = reservadoAte;
+    }
+
+    /**
+     * @return Cópia desta denúncia com os nomes das contas da transação
+     */
+    Denuncia comNomes(String nomeOrigem, String nomeDestino) {
+        Denuncia copia = new Denuncia(id, idTransacao, emailDenunciante, descricao, status, dataDenuncia,
+                emailOrigem, emailDestino, nomeOrigem, nomeDestino, valor, tipo);
+        copia.setReserva(reservadoPor, reservadoAte);
+        return copia;
+    }
+}
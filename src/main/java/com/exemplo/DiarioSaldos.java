@@ -0,0 +1,289 @@
+package com.exemplo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Diário de saldos em segmentos de tamanho fixo mapeados em memória (MappedByteBuffer)
+ * Gravar um registro é copiar bytes para a página mapeada, sem chamada de sistema; a durabilidade vem
+ * do force do trecho ainda não sincronizado, feito antes do commit da transação. Cada segmento é pré-alocado com zeros, então um
+ * tamanho 0 marca o fim dos registros
+ *
+ * Segmentos: base.diario.&lt;primeira sequência com 19 dígitos&gt;
+ * Formato do registro: [int tamanho][int crc32 do corpo][corpo: long seq, int n, n x (short len, bytes email, double saldo)]
+ * O cabeçalho é escrito por último, depois do corpo
+ */
+public class DiarioSaldos implements LogSaldos {
+    static final String SUFIXO = ".diario.";
+    private static final int CABECALHO = 8;
+
+    private final File diretorio;
+    private final String prefixo;
+    private final int tamanhoSegmento;
+    private final Object travaSincronizacao = new Object();
+    private final AtomicLong sincronizada = new AtomicLong();
+    private FileChannel canal;
+    private MappedByteBuffer mapa;
+    /** Posição no segmento atual até onde o mapeamento já foi sincronizado */
+    private int posicaoSincronizada;
+    private long sequencia;
+
+    /**
+     * @param arquivoBase Caminho base; os segmentos ficam ao lado dele
+     * @param tamanhoSegmento Tamanho de cada segmento em bytes
+     */
+    public DiarioSaldos(String arquivoBase, int tamanhoSegmento) {
+        File base = new File(arquivoBase).getAbsoluteFile();
+        this.diretorio = base.getParentFile();
+        this.prefixo = base.getName() + SUFIXO;
+        this.tamanhoSegmento = tamanhoSegmento;
+    }
+
+    /**
+     * Registros depois do primeiro inválido no último segmento (queda durante a escrita) são apagados
+     */
+    @Override
+    public synchronized long recuperar(long aPartirDe, ConsumidorRegistro consumidor) throws IOException {
+        List<File> existentes = segmentos(diretorio, prefixo);
+        long maior = aPartirDe;
+        for (int i = 0; i < existentes.size(); i++) {
+            File segmento = existentes.get(i);
+            boolean ultimo = i == existentes.size() - 1;
+            try (FileChannel leitura = new RandomAccessFile(segmento, ultimo ? "rw" : "r").getChannel()) {
+                MappedByteBuffer buffer = leitura.map(ultimo ? FileChannel.MapMode.READ_WRITE
+                        : FileChannel.MapMode.READ_ONLY, 0, leitura.size());
+                Leitura resultado = ler(buffer, aPartirDe, consumidor);
+                if (resultado.registros > 0) {
+                    maior = Math.max(maior, resultado.ultimaSequencia);
+                }
+                if (ultimo && resultado.lixo) {
+                    // zera a cauda rasgada para que um registro antigo não pareça continuar os novos
+                    for (int p = resultado.fim; p < buffer.limit(); p++) {
+                        buffer.put(p, (byte) 0);
+                    }
+                    buffer.force();
+                }
+                if (ultimo && leitura.size() >= CABECALHO) {
+                    canal = new RandomAccessFile(segmento, "rw").getChannel();
+                    mapa = buffer;
+                    mapa.position(resultado.fim);
+                    posicaoSincronizada = resultado.fim;
+                }
+            }
+        }
+        sequencia = maior;
+        sincronizada.set(maior);
+        if (mapa == null) {
+            abrirSegmento();
+        }
+        return maior;
+    }
+
+    @Override
+    public long registrar(String[] emails, double[] saldos) throws IOException {
+        long seq = anexar(emails, saldos);
+        sincronizar(seq);
+        return seq;
+    }
+
+    private synchronized long anexar(String[] emails, double[] saldos) throws IOException {
+        byte[][] emailsBytes = new byte[emails.length][];
+        int tamanho = 8 + 4;
+        for (int i = 0; i < emails.length; i++) {
+            emailsBytes[i] = emails[i].getBytes(StandardCharsets.UTF_8);
+            tamanho += 2 + emailsBytes[i].length + 8;
+        }
+        if (CABECALHO + tamanho > tamanhoSegmento) {
+            throw new IOException("Registro de " + tamanho + " bytes não cabe no segmento do diário");
+        }
+        if (mapa.remaining() < CABECALHO + tamanho) {
+            abrirSegmento();
+        }
+        long seq = sequencia + 1;
+        int inicio = mapa.position();
+        mapa.position(inicio + CABECALHO);
+        mapa.putLong(seq);
+        mapa.putInt(emails.length);
+        for (int i = 0; i < emails.length; i++) {
+            mapa.putShort((short) emailsBytes[i].length);
+            mapa.put(emailsBytes[i]);
+            mapa.putDouble(saldos[i]);
+        }
+        int fim = mapa.position();
+        ByteBuffer corpo = mapa.duplicate();
+        corpo.position(inicio + CABECALHO);
+        corpo.limit(fim);
+        CRC32 crc = new CRC32();
+        crc.update(corpo);
+        mapa.putInt(inicio + 4, (int) crc.getValue());
+        mapa.putInt(inicio, tamanho);
+        sequencia = seq;
+        return seq;
+    }
+
+    /**
+     * Sincroniza só o trecho escrito desde a última sincronização, com MappedByteBuffer.force(int, int)
+     * (msync do intervalo), em vez do segmento inteiro; o canal não serve, porque FileChannel.force não
+     * garante gravar o que foi escrito pelo mapeamento
+     */
+    private void sincronizar(long seq) throws IOException {
+        synchronized (travaSincronizacao) {
+            if (sincronizada.get() >= seq) {
+                return;
+            }
+            MappedByteBuffer alvo;
+            int de;
+            int ate;
+            long sequenciaAte;
+            synchronized (this) {
+                alvo = mapa;
+                de = posicaoSincronizada;
+                ate = mapa.position();
+                sequenciaAte = sequencia;
+            }
+            // se o segmento foi rotacionado nesse meio tempo, a rotação já o sincronizou inteiro
+            if (ate > de) {
+                alvo.force(de, ate - de);
+            }
+            synchronized (this) {
+                if (mapa == alvo) {
+                    posicaoSincronizada = Math.max(posicaoSincronizada, ate);
+                }
+            }
+            sincronizada.accumulateAndGet(sequenciaAte, Math::max);
+        }
+    }
+
+    @Override
+    public synchronized long rotacionar() throws IOException {
+        abrirSegmento();
+        return sequencia;
+    }
+
+    @Override
+    public synchronized void descartarAte(long sequencia) {
+        List<File> existentes = segmentos(diretorio, prefixo);
+        for (int i = 0; i < existentes.size() - 1; i++) {
+            if (primeiraSequencia(existentes.get(i + 1), prefixo) - 1 > sequencia) {
+                break;
+            }
+            if (!existentes.get(i).delete()) {
+                System.out.println("Erro ao apagar segmento do diário de saldos: " + existentes.get(i));
+            }
+        }
+    }
+
+    private void abrirSegmento() throws IOException {
+        if (canal != null) {
+            mapa.force();
+            canal.close();
+            sincronizada.accumulateAndGet(sequencia, Math::max);
+        }
+        File arquivo = new File(diretorio, prefixo + String.format("%019d", sequencia + 1));
+        try (RandomAccessFile novo = new RandomAccessFile(arquivo, "rw")) {
+            novo.setLength(tamanhoSegmento);
+            novo.getChannel().force(true);
+        }
+        canal = new RandomAccessFile(arquivo, "rw").getChannel();
+        mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanhoSegmento);
+        posicaoSincronizada = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (canal != null) {
+            mapa.force();
+            canal.close();
+            canal = null;
+            mapa = null;
+        }
+    }
+
+    /**
+     * Percorre os registros válidos de um segmento a partir da posição atual do buffer
+     * Um registro só é aceito se o CRC confere e a sequência continua a do anterior
+     */
+    static Leitura ler(ByteBuffer buffer, long aPartirDe, ConsumidorRegistro consumidor) {
+        Leitura leitura = new Leitura();
+        int p = buffer.position();
+        byte[] email = new byte[256];
+        CRC32 crc = new CRC32();
+        while (p + CABECALHO <= buffer.limit()) {
+            int tamanho = buffer.getInt(p);
+            if (tamanho == 0) {
+                break;
+            }
+            if (tamanho < 12 || p + CABECALHO + tamanho > buffer.limit()) {
+                leitura.lixo = true;
+                break;
+            }
+            ByteBuffer corpo = buffer.duplicate();
+            corpo.position(p + CABECALHO);
+            corpo.limit(p + CABECALHO + tamanho);
+            crc.reset();
+            crc.update(corpo);
+            long seq = buffer.getLong(p + CABECALHO);
+            if ((int) crc.getValue() != buffer.getInt(p + 4)
+                    || (leitura.registros > 0 && seq != leitura.ultimaSequencia + 1)) {
+                leitura.lixo = true;
+                break;
+            }
+            if (leitura.registros == 0) {
+                leitura.primeiraSequencia = seq;
+            }
+            if (seq > aPartirDe && consumidor != null) {
+                corpo.position(p + CABECALHO + 8);
+                int n = corpo.getInt();
+                for (int i = 0; i < n; i++) {
+                    int len = corpo.getShort();
+                    if (len > email.length) {
+                        email = new byte[len];
+                    }
+                    corpo.get(email, 0, len);
+                    consumidor.aplicar(seq, new String(email, 0, len, StandardCharsets.UTF_8), corpo.getDouble());
+                }
+            }
+            leitura.ultimaSequencia = seq;
+            leitura.registros++;
+            p += CABECALHO + tamanho;
+        }
+        leitura.fim = p;
+        if (!leitura.lixo && p + 4 <= buffer.limit() && buffer.getInt(p) != 0) {
+            leitura.lixo = true;
+        }
+        return leitura;
+    }
+
+    static List<File> segmentos(File diretorio, String prefixo) {
+        File[] arquivos = diretorio.listFiles((dir, nome) -> nome.startsWith(prefixo)
+                && nome.length() == prefixo.length() + 19);
+        List<File> lista = new ArrayList<>(arquivos == null ? Arrays.<File>asList() : Arrays.asList(arquivos));
+        lista.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return lista;
+    }
+
+    static long primeiraSequencia(File segmento, String prefixo) {
+        return Long.parseLong(segmento.getName().substring(prefixo.length()));
+    }
+
+    /**
+     * Resultado da leitura de um segmento
+     */
+    static final class Leitura {
+        long primeiraSequencia;
+        long ultimaSequencia;
+        long registros;
+        int fim;
+        boolean lixo;
+    }
+}
@@ -0,0 +1,95 @@
+package com.exemplo;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas do pool de conexões: tempo de espera, conexões em uso e acertos do cache de statements
+ */
+public class EstatisticasPool {
+    private final LongAdder emprestimos = new LongAdder();
+    private final LongAdder esperaTotalNanos = new LongAdder();
+    private final AtomicLong esperaMaximaNanos = new AtomicLong();
+    private final AtomicInteger emUso = new AtomicInteger();
+    private final LongAdder acertosCache = new LongAdder();
+    private final LongAdder faltasCache = new LongAdder();
+    private final LongAdder conexoesRecriadas = new LongAdder();
+
+    void registrarEmprestimo(long esperaNanos) {
+        emprestimos.increment();
+        esperaTotalNanos.add(esperaNanos);
+        long maxima = esperaMaximaNanos.get();
+        while (esperaNanos > maxima && !esperaMaximaNanos.compareAndSet(maxima, esperaNanos)) {
+            maxima = esperaMaximaNanos.get();
+        }
+        emUso.incrementAndGet();
+    }
+
+    void registrarDevolucao() {
+        emUso.decrementAndGet();
+    }
+
+    void registrarAcertoCache() {
+        acertosCache.increment();
+    }
+
+    void registrarFaltaCache() {
+        faltasCache.increment();
+    }
+
+    void registrarConexaoRecriada() {
+        conexoesRecriadas.increment();
+    }
+
+    public long getEmprestimos() {
+        return emprestimos.sum();
+    }
+
+    public double getEsperaMediaMs() {
+        long total = emprestimos.sum();
+        return total == 0 ? 0.0 : esperaTotalNanos.sum() / (total * 1_000_000.0);
+    }
+
+    public double getEsperaMaximaMs() {
+        return esperaMaximaNanos.get() / 1_000_000.0;
+    }
+
+    public int getConexoesEmUso() {
+        return emUso.get();
+    }
+
+    public long getAcertosCache() {
+        return acertosCache.sum();
+    }
+
+    public long getFaltasCache() {
+        return faltasCache.sum();
+    }
+
+    /**
+     * @return Fração (0 a 1) dos statements servidos pelo cache
+     */
+    public double getTaxaAcertoCache() {
+        long acertos = acertosCache.sum();
+        long total = acertos + faltasCache.sum();
+        return total == 0 ? 0.0 : (double) acertos / total;
+    }
+
+    public long getConexoesRecriadas() {
+        return conexoesRecriadas.sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Empréstimos: ").append(getEmprestimos()).append("\n");
+        sb.append("Espera média: ").append(String.format("%.3f ms", getEsperaMediaMs())).append("\n");
+        sb.append("Espera máxima: ").append(String.format("%.3f ms", getEsperaMaximaMs())).append("\n");
+        sb.append("Conexões em uso: ").append(getConexoesEmUso()).append("\n");
+        sb.append("Acerto do cache de statements: ")
+          .append(String.format("%.1f%%", getTaxaAcertoCache() * 100)).append("\n");
+        sb.append("Conexões recriadas: ").append(getConexoesRecriadas()).append("\n");
+        return sb.toString();
+    }
+}
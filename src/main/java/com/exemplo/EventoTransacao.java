@@ -0,0 +1,51 @@
+package com.exemplo;
+
+/**
+ * Transação vista pelo MotorFraude: um depósito (sem origem) ou uma transferência
+ */
+public class EventoTransacao {
+    private final String emailOrigem;
+    private final String emailDestino;
+    private final String tipo;
+    private final double valor;
+    private final long instanteMs;
+
+    public EventoTransacao(String emailOrigem, String emailDestino, String tipo, double valor, long instanteMs) {
+        this.emailOrigem = emailOrigem;
+        this.emailDestino = emailDestino;
+        this.tipo = tipo;
+        this.valor = valor;
+        this.instanteMs = instanteMs;
+    }
+
+    /**
+     * @return Conta dona da janela: a origem de uma transferência ou o destino de um depósito
+     */
+    public String getConta() {
+        return emailOrigem != null ? emailOrigem : emailDestino;
+    }
+
+    public String getEmailOrigem() {
+        return emailOrigem;
+    }
+
+    public String getEmailDestino() {
+        return emailDestino;
+    }
+
+    public String getTipo() {
+        return tipo;
+    }
+
+    public double getValor() {
+        return valor;
+    }
+
+    public long getInstanteMs() {
+        return instanteMs;
+    }
+
+    public boolean isTransferencia() {
+        return emailOrigem != null && emailDestino != null;
+    }
+}
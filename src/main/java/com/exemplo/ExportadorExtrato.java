@@ -0,0 +1,308 @@
+package com.exemplo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Escreve as linhas de um ResultSet do histórico direto em um canal, sem criar Transacao nem String por linha
+ * Os campos de texto são lidos como bytes UTF-8 (ResultSet.getBytes) e copiados para um buffer de tamanho
+ * fixo, esvaziado no canal quando enche; a memória usada não depende da quantidade de linhas
+ *
+ * Colunas esperadas, nesta ordem: id, data, tipo, valor, email_origem, email_destino, reversao_de
+ *
+ * Formato binário: [int magia "BRXT"][byte versão]
+ *                  por transação: [int tamanho do corpo][corpo: int id, long data, byte len, tipo,
+ *                  double valor, short len (-1 = nulo), email_origem, short len, email_destino, int reversao_de (0 = nenhuma)]
+ *                  fim: [int 0][long quantidade de transações]
+ * A data vai em segundos desde 1970-01-01 00:00:00 contados na hora local gravada no SQLite (sem fuso)
+ */
+final class ExportadorExtrato {
+    static final int MAGIA = 0x42525854;
+    static final byte VERSAO = 1;
+    private static final int TAMANHO_BUFFER = 1 << 18;
+    private static final byte[] CABECALHO_CSV =
+            "id,data,tipo,valor,email_origem,email_destino,reversao_de\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final FormatoExtrato formato;
+    private final WritableByteChannel canal;
+    private final GZIPOutputStream gzip;
+    private final ByteBuffer buffer;
+    private final byte[] digitos = new byte[20];
+    private long linhas;
+    private long bytes;
+
+    /**
+     * @param canal Destino; não é fechado pelo exportador
+     */
+    ExportadorExtrato(FormatoExtrato formato, boolean comprimir, WritableByteChannel canal) throws IOException {
+        this.formato = formato;
+        this.canal = canal;
+        if (comprimir) {
+            // o nível padrão do Deflater limita a exportação a poucas dezenas de MB/s; o mais rápido
+            // ainda reduz bem um extrato, que é texto repetitivo
+            this.gzip = new GZIPOutputStream(Channels.newOutputStream(canal), 1 << 16) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+            this.buffer = ByteBuffer.allocate(TAMANHO_BUFFER);
+        } else {
+            this.gzip = null;
+            this.buffer = ByteBuffer.allocateDirect(TAMANHO_BUFFER);
+        }
+        if (formato == FormatoExtrato.CSV) {
+            bytesBrutos(CABECALHO_CSV);
+        } else {
+            garantir(5);
+            buffer.putInt(MAGIA);
+            buffer.put(VERSAO);
+        }
+    }
+
+    /**
+     * Escreve todas as linhas restantes do ResultSet
+     */
+    void escrever(ResultSet rs) throws SQLException, IOException {
+        if (formato == FormatoExtrato.CSV) {
+            while (rs.next()) {
+                linhaCsv(rs);
+            }
+        } else {
+            while (rs.next()) {
+                linhaBinaria(rs);
+            }
+        }
+    }
+
+    /**
+     * Escreve o rodapé (formato binário), esvazia o buffer e encerra o gzip sem fechar o canal
+     */
+    void concluir() throws IOException {
+        if (formato == FormatoExtrato.BINARIO) {
+            garantir(12);
+            buffer.putInt(0);
+            buffer.putLong(linhas);
+        }
+        descarregar();
+        if (gzip != null) {
+            gzip.finish();
+            gzip.flush();
+        }
+    }
+
+    long getLinhas() {
+        return linhas;
+    }
+
+    long getBytes() {
+        return bytes + buffer.position();
+    }
+
+    private void linhaCsv(ResultSet rs) throws SQLException, IOException {
+        garantir(64);
+        numero(rs.getLong(1));
+        buffer.put((byte) ',');
+        bytesBrutos(rs.getBytes(2));
+        garantir(1);
+        buffer.put((byte) ',');
+        campoCsv(rs.getBytes(3));
+        garantir(32);
+        buffer.put((byte) ',');
+        valor(rs.getDouble(4));
+        garantir(1);
+        buffer.put((byte) ',');
+        campoCsv(rs.getBytes(5));
+        garantir(1);
+        buffer.put((byte) ',');
+        campoCsv(rs.getBytes(6));
+        garantir(24);
+        buffer.put((byte) ',');
+        long reversaoDe = rs.getLong(7);
+        if (!rs.wasNull()) {
+            numero(reversaoDe);
+        }
+        buffer.put((byte) '\n');
+        linhas++;
+    }
+
+    private void linhaBinaria(ResultSet rs) throws SQLException, IOException {
+        int id = rs.getInt(1);
+        long data = segundosLocais(rs.getBytes(2));
+        byte[] tipo = rs.getBytes(3);
+        double valor = rs.getDouble(4);
+        byte[] origem = rs.getBytes(5);
+        byte[] destino = rs.getBytes(6);
+        int reversaoDe = rs.getInt(7);
+        if (tipo.length > 255) {
+            throw new IOException("Tipo de transação com mais de 255 bytes: " + id);
+        }
+        int tamanho = 4 + 8 + 1 + tipo.length + 8 + 2 + comprimento(origem) + 2 + comprimento(destino) + 4;
+        garantir(4 + tamanho);
+        buffer.putInt(tamanho);
+        buffer.putInt(id);
+        buffer.putLong(data);
+        buffer.put((byte) tipo.length);
+        buffer.put(tipo);
+        buffer.putDouble(valor);
+        emailBinario(origem);
+        emailBinario(destino);
+        buffer.putInt(reversaoDe);
+        linhas++;
+    }
+
+    private static int comprimento(byte[] email) throws IOException {
+        if (email != null && email.length > Short.MAX_VALUE) {
+            throw new IOException("Email com mais de " + Short.MAX_VALUE + " bytes");
+        }
+        return email == null ? 0 : email.length;
+    }
+
+    private void emailBinario(byte[] email) {
+        if (email == null) {
+            buffer.putShort((short) -1);
+        } else {
+            buffer.putShort((short) email.length);
+            buffer.put(email);
+        }
+    }
+
+    /**
+     * Aspas só quando o campo tem vírgula, aspas ou quebra de linha, que não aparecem em emails comuns
+     */
+    private void campoCsv(byte[] campo) throws IOException {
+        if (campo == null) {
+            return;
+        }
+        boolean aspas = false;
+        for (byte b : campo) {
+            if (b == ',' || b == '"' || b == '\n' || b == '\r') {
+                aspas = true;
+                break;
+            }
+        }
+        if (!aspas) {
+            bytesBrutos(campo);
+            return;
+        }
+        garantir(1);
+        buffer.put((byte) '"');
+        for (byte b : campo) {
+            garantir(2);
+            if (b == '"') {
+                buffer.put((byte) '"');
+            }
+            buffer.put(b);
+        }
+        garantir(1);
+        buffer.put((byte) '"');
+    }
+
+    /**
+     * Valor com duas casas, como Transacao.toString, sem passar por String.format
+     */
+    private void valor(double valor) throws IOException {
+        if (Double.isNaN(valor) || Math.abs(valor) >= 1e15) {
+            bytesBrutos(String.format(Locale.ROOT, "%.2f", valor).getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        long centavos = Math.round(valor * 100);
+        if (centavos < 0) {
+            buffer.put((byte) '-');
+            centavos = -centavos;
+        }
+        numero(centavos / 100);
+        long resto = centavos % 100;
+        buffer.put((byte) '.');
+        buffer.put((byte) ('0' + resto / 10));
+        buffer.put((byte) ('0' + resto % 10));
+    }
+
+    private void numero(long valor) {
+        if (valor < 0) {
+            buffer.put((byte) '-');
+            valor = -valor;
+        }
+        int p = digitos.length;
+        do {
+            digitos[--p] = (byte) ('0' + valor % 10);
+            valor /= 10;
+        } while (valor > 0);
+        buffer.put(digitos, p, digitos.length - p);
+    }
+
+    private void bytesBrutos(byte[] dados) throws IOException {
+        if (dados == null) {
+            return;
+        }
+        int p = 0;
+        while (p < dados.length) {
+            garantir(1);
+            int parte = Math.min(buffer.remaining(), dados.length - p);
+            buffer.put(dados, p, parte);
+            p += parte;
+        }
+    }
+
+    private void garantir(int espaco) throws IOException {
+        if (buffer.remaining() < espaco) {
+            descarregar();
+            if (buffer.remaining() < espaco) {
+                throw new IOException("Registro de " + espaco + " bytes maior que o buffer de exportação");
+            }
+        }
+    }
+
+    private void descarregar() throws IOException {
+        buffer.flip();
+        bytes += buffer.remaining();
+        if (gzip != null) {
+            gzip.write(buffer.array(), 0, buffer.limit());
+        } else {
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Converte "AAAA-MM-DD HH:MM:SS" (texto de datetime('now', 'localtime')) em segundos, sem criar objetos
+     */
+    static long segundosLocais(byte[] data) throws IOException {
+        if (data == null || data.length < 19) {
+            throw new IOException("Data fora do formato AAAA-MM-DD HH:MM:SS");
+        }
+        long ano = digitos(data, 0, 4);
+        long mes = digitos(data, 5, 2);
+        long dia = digitos(data, 8, 2);
+        long segundosDoDia = digitos(data, 11, 2) * 3600 + digitos(data, 14, 2) * 60 + digitos(data, 17, 2);
+        // dias desde 1970-01-01 no calendário gregoriano (algoritmo days_from_civil)
+        ano -= mes <= 2 ? 1 : 0;
+        long era = Math.floorDiv(ano, 400);
+        long anoDaEra = ano - era * 400;
+        long diaDoAno = (153 * (mes + (mes > 2 ? -3 : 9)) + 2) / 5 + dia - 1;
+        long diaDaEra = anoDaEra * 365 + anoDaEra / 4 - anoDaEra / 100 + diaDoAno;
+        long dias = era * 146097 + diaDaEra - 719468;
+        return dias * 86400 + segundosDoDia;
+    }
+
+    private static long digitos(byte[] texto, int inicio, int quantidade) throws IOException {
+        long valor = 0;
+        for (int i = inicio; i < inicio + quantidade; i++) {
+            int digito = texto[i] - '0';
+            if (digito < 0 || digito > 9) {
+                throw new IOException("Data fora do formato AAAA-MM-DD HH:MM:SS");
+            }
+            valor = valor * 10 + digito;
+        }
+        return valor;
+    }
+}
@@ -0,0 +1,149 @@
+package com.exemplo;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Publica as métricas como um MBean (padrão com.exemplo:type=MetricasBanco)
+ * Cada operação vira um grupo de atributos, ex: TRANSFERIR.P99Ms, TRANSFERIR.Falhas
+ */
+public class ExportadorJmx implements ExportadorMetricas {
+    private final ObjectName nome;
+    private MBeanServer servidor;
+
+    public ExportadorJmx() {
+        this("com.exemplo:type=MetricasBanco");
+    }
+
+    public ExportadorJmx(String nome) {
+        try {
+            this.nome = new ObjectName(nome);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Nome de MBean inválido: " + nome, e);
+        }
+    }
+
+    @Override
+    public void iniciar(MetricasBanco metricas) {
+        servidor = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (servidor.isRegistered(nome)) {
+                servidor.unregisterMBean(nome);
+            }
+            servidor.registerMBean(new MBeanMetricas(metricas), nome);
+        } catch (Exception e) {
+            System.out.println("Erro ao registrar métricas do Brasisco no JMX: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (servidor != null) {
+            try {
+                if (servidor.isRegistered(nome)) {
+                    servidor.unregisterMBean(nome);
+                }
+            } catch (Exception e) {
+                System.out.println("Erro ao remover métricas do Brasisco do JMX: " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class MBeanMetricas implements DynamicMBean {
+        private final Map<String, Supplier<Object>> atributos = new LinkedHashMap<>();
+        private final MBeanInfo info;
+        private final Supplier<String> resumo;
+
+        MBeanMetricas(MetricasBanco metricas) {
+            for (OperacaoBanco operacao : OperacaoBanco.values()) {
+                MetricaOperacao m = metricas.get(operacao);
+                String prefixo = operacao.name() + ".";
+                atributos.put(prefixo + "Sucessos", m::getSucessos);
+                atributos.put(prefixo + "Falhas", m::getFalhas);
+                atributos.put(prefixo + "FalhasPorCausa", () -> m.getFalhasPorCausa().toString());
+                atributos.put(prefixo + "MediaMs", () -> m.getLatencia().getMediaNanos() / 1e6);
+                atributos.put(prefixo + "P50Ms", () -> m.getLatencia().percentilNanos(50) / 1e6);
+                atributos.put(prefixo + "P99Ms", () -> m.getLatencia().percentilNanos(99) / 1e6);
+                atributos.put(prefixo + "P999Ms", () -> m.getLatencia().percentilNanos(99.9) / 1e6);
+                atributos.put(prefixo + "MaximoMs", () -> m.getLatencia().getMaximoNanos() / 1e6);
+                atributos.put(prefixo + "Linhas", m::getLinhas);
+                atributos.put(prefixo + "LinhasExaminadas", m::getLinhasExaminadas);
+                atributos.put(prefixo + "Repeticoes", m::getRepeticoes);
+            }
+            EstatisticasPool pool = metricas.getEstatisticasPool();
+            atributos.put("Pool.EsperaMediaMs", pool::getEsperaMediaMs);
+            atributos.put("Pool.EsperaMaximaMs", pool::getEsperaMaximaMs);
+            atributos.put("Pool.ConexoesEmUso", pool::getConexoesEmUso);
+            atributos.put("Pool.TaxaAcertoCache", pool::getTaxaAcertoCache);
+
+            List<MBeanAttributeInfo> descricoes = new ArrayList<>();
+            for (Map.Entry<String, Supplier<Object>> atributo : atributos.entrySet()) {
+                String tipo = atributo.getValue().get().getClass().getName();
+                descricoes.add(new MBeanAttributeInfo(atributo.getKey(), tipo, atributo.getKey(), true, false, false));
+            }
+            MBeanOperationInfo resumo = new MBeanOperationInfo("resumo", "Resumo em texto",
+                    null, String.class.getName(), MBeanOperationInfo.INFO);
+            this.info = new MBeanInfo(MBeanMetricas.class.getName(), "Métricas do Brasisco",
+                    descricoes.toArray(new MBeanAttributeInfo[0]), null,
+                    new MBeanOperationInfo[] { resumo }, null);
+            this.resumo = metricas::formatarTexto;
+        }
+
+        @Override
+        public Object getAttribute(String atributo) throws AttributeNotFoundException {
+            Supplier<Object> leitor = atributos.get(atributo);
+            if (leitor == null) {
+                throw new AttributeNotFoundException(atributo);
+            }
+            return leitor.get();
+        }
+
+        @Override
+        public void setAttribute(Attribute atributo) {
+            throw new UnsupportedOperationException("Métricas são somente leitura");
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] nomes) {
+            AttributeList lista = new AttributeList();
+            for (String nome : nomes) {
+                Supplier<Object> leitor = atributos.get(nome);
+                if (leitor != null) {
+                    lista.add(new Attribute(nome, leitor.get()));
+                }
+            }
+            return lista;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList lista) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String operacao, Object[] parametros, String[] assinatura) {
+            if ("resumo".equals(operacao)) {
+                return resumo.get();
+            }
+            throw new UnsupportedOperationException(operacao);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            return info;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.exemplo;
+
+/**
+ * Destino das métricas do Banco (texto periódico, JMX, ...)
+ * O Banco chama iniciar ao registrar o exportador e close ao ser fechado
+ */
+public interface ExportadorMetricas extends AutoCloseable {
+    void iniciar(MetricasBanco metricas);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,39 @@
+package com.exemplo;
+
+import java.io.PrintStream;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imprime periodicamente o resumo das métricas num PrintStream
+ */
+public class ExportadorTextoPeriodico implements ExportadorMetricas {
+    private final PrintStream destino;
+    private final long intervaloMs;
+    private ScheduledExecutorService agendador;
+
+    public ExportadorTextoPeriodico(PrintStream destino, long intervaloMs) {
+        this.destino = destino;
+        this.intervaloMs = intervaloMs;
+    }
+
+    @Override
+    public void iniciar(MetricasBanco metricas) {
+        agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "brasisco-metricas-texto");
+            thread.setDaemon(true);
+            return thread;
+        });
+        agendador.scheduleAtFixedRate(() -> destino.print("\n=== Métricas do Brasisco - " + LocalDateTime.now()
+                + " ===\n" + metricas.formatarTexto()), intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        if (agendador != null) {
+            agendador.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.exemplo;
+
+import java.sql.Timestamp;
+
+/**
+ * Seleciona as transações de um extrato: conta e/ou período
+ * Campos nulos não restringem a exportação
+ */
+public class FiltroExtrato {
+    private final String email;
+    private final Timestamp inicio;
+    private final Timestamp fim;
+
+    /**
+     * @param email Conta (como origem ou destino), ou null para o histórico completo
+     * @param inicio Início do período (inclusivo), ou null
+     * @param fim Fim do período (exclusivo), ou null
+     */
+    public FiltroExtrato(String email, Timestamp inicio, Timestamp fim) {
+        this.email = email;
+        this.inicio = inicio;
+        this.fim = fim;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Timestamp getInicio() {
+        return inicio;
+    }
+
+    public Timestamp getFim() {
+        return fim;
+    }
+}
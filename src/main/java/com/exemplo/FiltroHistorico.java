@@ -0,0 +1,43 @@
+package com.exemplo;
+
+import java.sql.Timestamp;
+
+/**
+ * Seleciona transações no HistoricoColunar: conta, período e/ou valor mínimo
+ * Campos nulos não restringem a busca
+ */
+public class FiltroHistorico {
+    private final String email;
+    private final Timestamp inicio;
+    private final Timestamp fim;
+    private final Double valorMinimo;
+
+    /**
+     * @param email Conta (como origem ou destino), ou null para todas
+     * @param inicio Início do período (inclusivo), ou null
+     * @param fim Fim do período (exclusivo), ou null
+     * @param valorMinimo Menor valor aceito (inclusivo), ou null
+     */
+    public FiltroHistorico(String email, Timestamp inicio, Timestamp fim, Double valorMinimo) {
+        this.email = email;
+        this.inicio = inicio;
+        this.fim = fim;
+        this.valorMinimo = valorMinimo;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Timestamp getInicio() {
+        return inicio;
+    }
+
+    public Timestamp getFim() {
+        return fim;
+    }
+
+    public Double getValorMinimo() {
+        return valorMinimo;
+    }
+}
@@ -0,0 +1,36 @@
+package com.exemplo;
+
+import java.sql.Timestamp;
+
+/**
+ * Seleciona as transferências a reverter em lote: conta de origem e/ou janela de tempo
+ * Campos nulos não restringem a busca
+ */
+public class FiltroReversao {
+    private final String emailOrigem;
+    private final Timestamp inicio;
+    private final Timestamp fim;
+
+    /**
+     * @param emailOrigem Conta que enviou as transferências, ou null para qualquer conta
+     * @param inicio Início da janela (inclusivo), ou null
+     * @param fim Fim da janela (exclusivo), ou null
+     */
+    public FiltroReversao(String emailOrigem, Timestamp inicio, Timestamp fim) {
+        this.emailOrigem = emailOrigem;
+        this.inicio = inicio;
+        this.fim = fim;
+    }
+
+    public String getEmailOrigem() {
+        return emailOrigem;
+    }
+
+    public Timestamp getInicio() {
+        return inicio;
+    }
+
+    public Timestamp getFim() {
+        return fim;
+    }
+}
@@ -0,0 +1,16 @@
+package com.exemplo;
+
+/**
+ * Formatos aceitos pelo Banco.exportarExtrato
+ */
+public enum FormatoExtrato {
+    /**
+     * Texto com cabeçalho: id,data,tipo,valor,email_origem,email_destino,reversao_de
+     * Valor com duas casas e ponto decimal; campos com vírgula, aspas ou quebra de linha vão entre aspas
+     */
+    CSV,
+    /**
+     * Registros com prefixo de tamanho, lidos pelo LeitorExtrato (formato descrito em ExportadorExtrato)
+     */
+    BINARIO
+}
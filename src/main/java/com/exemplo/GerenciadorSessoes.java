@@ -0,0 +1,90 @@
+package com.exemplo;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Emite e valida tokens de sessão opacos, mantidos apenas em memória
+ * A validação é uma busca no mapa; a expiração é deslizante (cada uso renova o prazo)
+ */
+public class GerenciadorSessoes {
+    private static final int BYTES_TOKEN = 32;
+    private static final int CRIACOES_ENTRE_LIMPEZAS = 1024;
+
+    private final Map<String, Sessao> sessoes = new ConcurrentHashMap<>();
+    private final SecureRandom aleatorio = new SecureRandom();
+    private final Base64.Encoder codificador = Base64.getUrlEncoder().withoutPadding();
+    private final AtomicInteger criacoes = new AtomicInteger();
+    private final long duracaoNanos;
+
+    public GerenciadorSessoes(long duracaoMs) {
+        this.duracaoNanos = TimeUnit.MILLISECONDS.toNanos(duracaoMs);
+    }
+
+    /**
+     * Abre uma sessão para um usuário já autenticado
+     */
+    public Sessao criar(String email, String nome, boolean admin) {
+        if (criacoes.incrementAndGet() % CRIACOES_ENTRE_LIMPEZAS == 0) {
+            limparExpiradas();
+        }
+        byte[] bytes = new byte[BYTES_TOKEN];
+        aleatorio.nextBytes(bytes);
+        Sessao sessao = new Sessao(codificador.encodeToString(bytes), email, nome, admin,
+                System.nanoTime() + duracaoNanos);
+        sessoes.put(sessao.getToken(), sessao);
+        return sessao;
+    }
+
+    /**
+     * @return A sessão do token, com o prazo renovado, ou null se não existir ou tiver expirado
+     */
+    public Sessao validar(String token) {
+        if (token == null) {
+            return null;
+        }
+        Sessao sessao = sessoes.get(token);
+        if (sessao == null) {
+            return null;
+        }
+        long agora = System.nanoTime();
+        if (sessao.expirou(agora)) {
+            sessoes.remove(token, sessao);
+            return null;
+        }
+        sessao.renovar(agora + duracaoNanos);
+        return sessao;
+    }
+
+    public void encerrar(String token) {
+        if (token != null) {
+            sessoes.remove(token);
+        }
+    }
+
+    /**
+     * Encerra todas as sessões de um usuário (ex: troca de senha)
+     */
+    public void encerrarDoUsuario(String email) {
+        sessoes.values().removeIf(sessao -> sessao.getEmail().equals(email));
+    }
+
+    public int getSessoesAtivas() {
+        return sessoes.size();
+    }
+
+    private void limparExpiradas() {
+        long agora = System.nanoTime();
+        Iterator<Sessao> iterator = sessoes.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expirou(agora)) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.exemplo;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latências em nanossegundos no estilo HDR: faixas log-lineares com 32 subdivisões
+ * por potência de 2 (erro relativo de até ~3%), em memória fixa e sem alocação ao registrar
+ */
+public class HistogramaLatencia {
+    private static final int BITS_SUBFAIXA = 5;
+    private static final int SUBFAIXAS = 1 << BITS_SUBFAIXA;
+    private static final int FAIXAS = (63 - BITS_SUBFAIXA) * SUBFAIXAS + 2 * SUBFAIXAS;
+
+    private final AtomicLongArray contagens = new AtomicLongArray(FAIXAS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong soma = new AtomicLong();
+    private final AtomicLong maximo = new AtomicLong();
+
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        contagens.incrementAndGet(indice(valor));
+        total.incrementAndGet();
+        soma.addAndGet(valor);
+        long atual = maximo.get();
+        while (valor > atual && !maximo.compareAndSet(atual, valor)) {
+            atual = maximo.get();
+        }
+    }
+
+    /**
+     * Soma as contagens de outro histograma neste
+     */
+    public void mesclar(HistogramaLatencia outro) {
+        for (int i = 0; i < FAIXAS; i++) {
+            long contagem = outro.contagens.get(i);
+            if (contagem != 0) {
+                contagens.addAndGet(i, contagem);
+            }
+        }
+        total.addAndGet(outro.total.get());
+        soma.addAndGet(outro.soma.get());
+        long atual = maximo.get();
+        long valor = outro.maximo.get();
+        while (valor > atual && !maximo.compareAndSet(atual, valor)) {
+            atual = maximo.get();
+        }
+    }
+
+    public void zerar() {
+        for (int i = 0; i < FAIXAS; i++) {
+            contagens.set(i, 0);
+        }
+        total.set(0);
+        soma.set(0);
+        maximo.set(0);
+    }
+
+    public long getContagem() {
+        return total.get();
+    }
+
+    public long getMaximoNanos() {
+        return maximo.get();
+    }
+
+    public double getMediaNanos() {
+        long n = total.get();
+        return n == 0 ? 0.0 : (double) soma.get() / n;
+    }
+
+    /**
+     * @param percentil Percentil entre 0 e 100 (ex: 99.9)
+     * @return Limite superior da faixa que contém o percentil, em nanossegundos
+     */
+    public long percentilNanos(double percentil) {
+        long n = total.get();
+        if (n == 0) {
+            return 0;
+        }
+        long alvo = Math.max(1, (long) Math.ceil(n * percentil / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < FAIXAS; i++) {
+            acumulado += contagens.get(i);
+            if (acumulado >= alvo) {
+                return Math.min(limiteSuperior(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    static int indice(long valor) {
+        int expoente = 63 - Long.numberOfLeadingZeros(valor | 1);
+        int deslocamento = Math.max(0, expoente - BITS_SUBFAIXA);
+        return (deslocamento << BITS_SUBFAIXA) + (int) (valor >>> deslocamento);
+    }
+
+    static long limiteSuperior(int indice) {
+        int deslocamento = Math.max(0, (indice >> BITS_SUBFAIXA) - 1);
+        long topo = indice - ((long) deslocamento << BITS_SUBFAIXA);
+        return ((topo + 1) << deslocamento) - 1;
+    }
+}
@@ -0,0 +1,506 @@
+package com.exemplo;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Cópia do histórico em memória, em colunas, para consultas de análise do administrador
+ *
+ * Cada transação ocupa uma posição em arrays primitivos: id, conta de origem e de destino (índices no
+ * dicionário de emails), tipo (índice no dicionário de tipos), valor e data em milissegundos. Emails,
+ * nomes e tipos existem uma vez só, nos dicionários, em vez de um String por transação; o custo por
+ * transação fica em 29 bytes. As colunas são divididas em blocos de tamanho fixo, então crescer não
+ * copia o que já foi carregado
+ *
+ * A carga inicial lê a tabela quente e as partições arquivadas; depois disso as transações confirmadas
+ * são acrescentadas em ordem de id, lidas do fim da tabela historico antes de cada consulta (o único
+ * escritor grava os ids em ordem), então toda consulta vê tudo que já teve commit. Reversões e
+ * arquivamento não alteram linhas do historico, então nada carregado precisa mudar. A exceção é a
+ * importação com ids preservados, que pode gravar ids menores que o último carregado: depois dela o
+ * Banco chama recarregar, que lê tudo de novo
+ *
+ * As consultas percorrem as colunas em paralelo no ForkJoinPool comum, um pedaço por tarefa, sem travas:
+ * quem acrescenta publica as linhas novas só depois de escrevê-las, e cada consulta guarda os blocos e a
+ * quantidade de linhas que viu, então uma recarga no meio não muda as posições que ela está lendo
+ */
+public final class HistoricoColunar {
+    private static final int BITS_BLOCO = 14;
+    private static final int TAMANHO_BLOCO = 1 << BITS_BLOCO;
+    private static final int MASCARA_BLOCO = TAMANHO_BLOCO - 1;
+    private static final int BYTES_POR_LINHA = 4 + 4 + 4 + 1 + 8 + 8;
+    private static final int LOTE_SINCRONIZACAO = 10_000;
+    private static final int SEM_CONTA = -1;
+    static final int MAXIMO_TIPOS = 256;
+
+    private final PoolConexoes pool;
+    private final MetricasBanco metricas;
+    private final ArquivoHistorico arquivo;
+    private final Object escrita = new Object();
+
+    // alterados só por quem acrescenta, com a trava; as consultas leem depois de ler 'linhas'
+    private final Map<String, Integer> idsContas = new HashMap<>();
+    private final Map<String, Integer> idsTipos = new HashMap<>();
+    private String[] emails = new String[1024];
+    private String[] nomes = new String[1024];
+    private String[] tipos = new String[16];
+    private Bloco[] blocos = new Bloco[0];
+    private long ultimoId;
+    private volatile int linhas;
+
+    private static final class Bloco {
+        final int[] ids = new int[TAMANHO_BLOCO];
+        final int[] origens = new int[TAMANHO_BLOCO];
+        final int[] destinos = new int[TAMANHO_BLOCO];
+        final byte[] tipos = new byte[TAMANHO_BLOCO];
+        final double[] valores = new double[TAMANHO_BLOCO];
+        final long[] datas = new long[TAMANHO_BLOCO];
+    }
+
+    HistoricoColunar(PoolConexoes pool, MetricasBanco metricas, ArquivoHistorico arquivo) throws SQLException {
+        this.pool = pool;
+        this.metricas = metricas;
+        this.arquivo = arquivo;
+        carregar();
+    }
+
+    /**
+     * @return Quantidade de transações em memória
+     */
+    public int getLinhas() {
+        return linhas;
+    }
+
+    /**
+     * @return Quantidade de contas no dicionário de emails
+     */
+    public int getContas() {
+        synchronized (escrita) {
+            return idsContas.size();
+        }
+    }
+
+    /**
+     * Estimativa do heap ocupado: blocos de colunas alocados mais os dicionários (arrays, mapas e Strings,
+     * contando cabeçalhos de objeto de 12 bytes e referências de 4, como na JVM com compressed oops)
+     */
+    public long getBytesEstimados() {
+        synchronized (escrita) {
+            long bytes = 16 + 4L * blocos.length
+                    + (long) blocos.length * (6 * 16 + (long) BYTES_POR_LINHA * TAMANHO_BLOCO);
+            bytes += 2 * (16 + 4L * emails.length) + 16 + 4L * tipos.length;
+            // HashMap: nó de 32 bytes, Integer de 16 e ~2 posições de 4 bytes na tabela por entrada
+            bytes += (idsContas.size() + idsTipos.size()) * 56L;
+            for (int i = 0; i < idsContas.size(); i++) {
+                bytes += bytesTexto(emails[i]) + bytesTexto(nomes[i]);
+            }
+            for (int i = 0; i < idsTipos.size(); i++) {
+                bytes += bytesTexto(tipos[i]);
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * @return Quantidade de transações que atendem ao filtro
+     */
+    public long contar(FiltroHistorico filtro) {
+        Parcial parcial = varrer(filtro, 0);
+        return parcial != null ? parcial.quantidade : 0;
+    }
+
+    /**
+     * @return Soma dos valores das transações que atendem ao filtro
+     */
+    public double somarValores(FiltroHistorico filtro) {
+        Parcial parcial = varrer(filtro, 0);
+        return parcial != null ? parcial.soma : 0;
+    }
+
+    /**
+     * @param limite Quantidade máxima de transações devolvidas
+     * @return As transações mais recentes que atendem ao filtro, em ordem (data, id) decrescente
+     */
+    public List<Transacao> filtrar(FiltroHistorico filtro, int limite) {
+        Parcial parcial = varrer(filtro, Math.max(1, limite));
+        List<Transacao> transacoes = new ArrayList<>(parcial != null ? parcial.selecionadas.length : 0);
+        if (parcial == null) {
+            return transacoes;
+        }
+        // quem acrescenta troca os arrays dos dicionários ao crescer; como os ids de conta e de tipo só
+        // aumentam, arrays lidos depois da varredura resolvem todas as linhas dela
+        String[] emailsAtuais;
+        String[] nomesAtuais;
+        String[] tiposAtuais;
+        synchronized (escrita) {
+            emailsAtuais = emails;
+            nomesAtuais = nomes;
+            tiposAtuais = tipos;
+        }
+        for (int linha : parcial.selecionadas) {
+            Bloco bloco = parcial.blocos[linha >>> BITS_BLOCO];
+            int i = linha & MASCARA_BLOCO;
+            int origem = bloco.origens[i];
+            int destino = bloco.destinos[i];
+            Transacao t = new Transacao(origem == SEM_CONTA ? null : emailsAtuais[origem],
+                    destino == SEM_CONTA ? null : emailsAtuais[destino],
+                    origem == SEM_CONTA ? null : nomesAtuais[origem], destino == SEM_CONTA ? null : nomesAtuais[destino],
+                    tiposAtuais[bloco.tipos[i] & 0xff], bloco.valores[i], new Timestamp(bloco.datas[i]));
+            t.setId(bloco.ids[i]);
+            transacoes.add(t);
+        }
+        return transacoes;
+    }
+
+    @Override
+    public String toString() {
+        int total = linhas;
+        long bytes = getBytesEstimados();
+        return "Histórico colunar: " + total + " transações, " + getContas() + " contas, "
+                + bytes / 1024 + " KiB (" + (total > 0 ? bytes / total : 0) + " bytes por transação)";
+    }
+
+    /**
+     * @return Resultado da varredura, ou null se o filtro não pode atender a nenhuma transação
+     */
+    private Parcial varrer(FiltroHistorico filtro, int coletar) {
+        long inicio = System.nanoTime();
+        Bloco[] atuais;
+        int total;
+        int conta = SEM_CONTA;
+        synchronized (escrita) {
+            sincronizar();
+            atuais = blocos;
+            total = linhas;
+            if (filtro.getEmail() != null) {
+                Integer id = idsContas.get(filtro.getEmail());
+                if (id == null) {
+                    metricas.sucesso(OperacaoBanco.ANALISAR_HISTORICO, inicio, 0, 0);
+                    return null;
+                }
+                conta = id;
+            }
+        }
+        if (total == 0) {
+            metricas.sucesso(OperacaoBanco.ANALISAR_HISTORICO, inicio, 0, 0);
+            return new Parcial(0, 0, new int[0], atuais);
+        }
+        Varredura varredura = new Varredura(atuais, 0, total, conta,
+                filtro.getInicio() != null ? filtro.getInicio().getTime() : Long.MIN_VALUE,
+                filtro.getFim() != null ? filtro.getFim().getTime() : Long.MAX_VALUE,
+                filtro.getValorMinimo() != null ? filtro.getValorMinimo() : Double.NEGATIVE_INFINITY, coletar);
+        Parcial parcial = ForkJoinPool.commonPool().invoke(varredura);
+        metricas.sucesso(OperacaoBanco.ANALISAR_HISTORICO, inicio, parcial.quantidade, total);
+        return parcial;
+    }
+
+    /**
+     * Acrescenta as transações gravadas depois da última carregada
+     */
+    void sincronizar() {
+        synchronized (escrita) {
+            try (ConexaoPool conn = pool.obterLeitura()) {
+                lerAteOFim(conn);
+            } catch (SQLException e) {
+                System.out.println("Erro ao sincronizar histórico colunar do Brasisco: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Descarta as colunas e lê o histórico inteiro de novo; os dicionários ficam, porque os ids de conta e
+     * de tipo não mudam
+     * Necessário depois de importar transações com ids preservados: a sincronização só lê ids maiores que o
+     * último carregado. Se a leitura falhar, as colunas anteriores continuam valendo
+     */
+    void recarregar() {
+        synchronized (escrita) {
+            Bloco[] anteriores = blocos;
+            int linhasAnteriores = linhas;
+            long ultimoAnterior = ultimoId;
+            blocos = new Bloco[0];
+            linhas = 0;
+            ultimoId = 0;
+            try {
+                carregar();
+            } catch (SQLException e) {
+                blocos = anteriores;
+                linhas = linhasAnteriores;
+                ultimoId = ultimoAnterior;
+                System.out.println("Erro ao recarregar histórico colunar do Brasisco: " + e.getMessage());
+            }
+        }
+    }
+
+    private void carregar() throws SQLException {
+        synchronized (escrita) {
+            try (ConexaoPool conn = pool.obterLeitura()) {
+                // contas, partições e tabela quente no mesmo instantâneo
+                conn.setAutoCommit(false);
+                try (ResultSet rs = conn.preparar("SELECT email, nome FROM usuarios").executeQuery()) {
+                    while (rs.next()) {
+                        idConta(conn, rs.getString(1), rs.getString(2));
+                    }
+                }
+                for (ParticaoHistorico particao : arquivo.getParticoes()) {
+                    try (ResultSet rs = conn.preparar("SELECT id, email_origem, email_destino, tipo, valor, data " +
+                            "FROM " + particao.getTabela()).executeQuery()) {
+                        acrescentar(conn, rs);
+                    }
+                }
+                lerAteOFim(conn);
+            }
+        }
+    }
+
+    private void lerAteOFim(ConexaoPool conn) throws SQLException {
+        int lidas;
+        do {
+            lidas = lerFim(conn);
+        } while (lidas == LOTE_SINCRONIZACAO);
+    }
+
+    /**
+     * @return Quantidade de linhas lidas; menor que o lote quando alcançou o fim da tabela
+     */
+    private int lerFim(ConexaoPool conn) throws SQLException {
+        PreparedStatement stmt = conn.preparar("SELECT id, email_origem, email_destino, tipo, valor, data " +
+                "FROM historico WHERE id > ? ORDER BY id LIMIT ?");
+        stmt.setLong(1, ultimoId);
+        stmt.setInt(2, LOTE_SINCRONIZACAO);
+        try (ResultSet rs = stmt.executeQuery()) {
+            return acrescentar(conn, rs);
+        }
+    }
+
+    private int acrescentar(ConexaoPool conn, ResultSet rs) throws SQLException {
+        int linha = linhas;
+        int lidas = 0;
+        long maiorId = ultimoId;
+        try {
+            while (rs.next()) {
+                int bloco = linha >>> BITS_BLOCO;
+                if (bloco == blocos.length) {
+                    Bloco[] maiores = Arrays.copyOf(blocos, bloco + 1);
+                    maiores[bloco] = new Bloco();
+                    blocos = maiores;
+                }
+                Bloco b = blocos[bloco];
+                int i = linha & MASCARA_BLOCO;
+                int id = rs.getInt(1);
+                b.ids[i] = id;
+                b.origens[i] = idConta(conn, rs.getString(2), null);
+                b.destinos[i] = idConta(conn, rs.getString(3), null);
+                b.tipos[i] = idTipo(rs.getString(4));
+                b.valores[i] = rs.getDouble(5);
+                Timestamp data = rs.getTimestamp(6);
+                b.datas[i] = data != null ? data.getTime() : 0;
+                maiorId = Math.max(maiorId, id);
+                linha++;
+                lidas++;
+            }
+        } finally {
+            // publica as linhas já escritas, mesmo se uma linha falhou, e só então avança o último id, para
+            // a linha que falhou ser lida de novo (escrita volátil de 'linhas' depois dos blocos)
+            ultimoId = maiorId;
+            linhas = linha;
+        }
+        return lidas;
+    }
+
+    /**
+     * @param nome Nome da conta, ou null para buscá-lo se a conta ainda não está no dicionário
+     */
+    private int idConta(ConexaoPool conn, String email, String nome) throws SQLException {
+        if (email == null) {
+            return SEM_CONTA;
+        }
+        Integer id = idsContas.get(email);
+        if (id != null) {
+            return id;
+        }
+        if (nome == null) {
+            PreparedStatement stmt = conn.preparar("SELECT nome FROM usuarios WHERE email = ?");
+            stmt.setString(1, email);
+            try (ResultSet rs = stmt.executeQuery()) {
+                nome = rs.next() ? rs.getString(1) : null;
+            }
+        }
+        int novo = idsContas.size();
+        if (novo == emails.length) {
+            emails = Arrays.copyOf(emails, novo * 2);
+            nomes = Arrays.copyOf(nomes, novo * 2);
+        }
+        emails[novo] = email;
+        nomes[novo] = nome;
+        idsContas.put(email, novo);
+        return novo;
+    }
+
+    private byte idTipo(String tipo) throws SQLException {
+        Integer id = idsTipos.get(tipo);
+        if (id != null) {
+            return id.byteValue();
+        }
+        int novo = idsTipos.size();
+        // o id do tipo é guardado num byte sem sinal e lido com '& 0xff'
+        if (novo > MAXIMO_TIPOS - 1) {
+            throw new SQLException("Mais de " + MAXIMO_TIPOS + " tipos de transação para o histórico colunar");
+        }
+        if (novo == tipos.length) {
+            tipos = Arrays.copyOf(tipos, novo * 2);
+        }
+        tipos[novo] = tipo;
+        idsTipos.put(tipo, novo);
+        return (byte) novo;
+    }
+
+    private static long bytesTexto(String texto) {
+        // String (24) + array de bytes (16 + conteúdo; 1 byte por caractere em Latin-1)
+        return texto == null ? 0 : 40 + texto.length();
+    }
+
+    /**
+     * Resultado de uma varredura sobre parte das linhas
+     */
+    private static final class Parcial {
+        final long quantidade;
+        final double soma;
+        /** Linhas selecionadas, em ordem (data, id) decrescente, no máximo 'coletar' */
+        final int[] selecionadas;
+        /** Blocos em que as linhas selecionadas foram lidas */
+        final Bloco[] blocos;
+
+        Parcial(long quantidade, double soma, int[] selecionadas, Bloco[] blocos) {
+            this.quantidade = quantidade;
+            this.soma = soma;
+            this.selecionadas = selecionadas;
+            this.blocos = blocos;
+        }
+    }
+
+    private static final class Varredura extends RecursiveTask<Parcial> {
+        private static final long serialVersionUID = 1L;
+
+        private final Bloco[] blocos;
+        private final int inicio;
+        private final int fim;
+        private final int conta;
+        private final long dataMinima;
+        private final long dataLimite;
+        private final double valorMinimo;
+        private final int coletar;
+
+        Varredura(Bloco[] blocos, int inicio, int fim, int conta, long dataMinima, long dataLimite,
+                  double valorMinimo, int coletar) {
+            this.blocos = blocos;
+            this.inicio = inicio;
+            this.fim = fim;
+            this.conta = conta;
+            this.dataMinima = dataMinima;
+            this.dataLimite = dataLimite;
+            this.valorMinimo = valorMinimo;
+            this.coletar = coletar;
+        }
+
+        @Override
+        protected Parcial compute() {
+            if (fim - inicio > TAMANHO_BLOCO) {
+                // divide em fronteira de bloco, para cada folha percorrer um bloco só
+                int meio = ((inicio + fim) >>> 1) & ~MASCARA_BLOCO;
+                if (meio <= inicio) {
+                    meio = inicio + TAMANHO_BLOCO;
+                }
+                Varredura esquerda = new Varredura(blocos, inicio, meio, conta, dataMinima, dataLimite,
+                        valorMinimo, coletar);
+                Varredura direita = new Varredura(blocos, meio, fim, conta, dataMinima, dataLimite,
+                        valorMinimo, coletar);
+                esquerda.fork();
+                Parcial d = direita.compute();
+                Parcial e = esquerda.join();
+                return new Parcial(e.quantidade + d.quantidade, e.soma + d.soma, intercalar(e.selecionadas,
+                        d.selecionadas), blocos);
+            }
+            Bloco bloco = blocos[inicio >>> BITS_BLOCO];
+            int primeira = inicio & MASCARA_BLOCO;
+            int ultima = primeira + (fim - inicio);
+            long quantidade = 0;
+            double soma = 0;
+            int[] selecionadas = new int[coletar > 0 ? 16 : 0];
+            int n = 0;
+            for (int i = primeira; i < ultima; i++) {
+                if (conta != SEM_CONTA && bloco.origens[i] != conta && bloco.destinos[i] != conta) {
+                    continue;
+                }
+                long data = bloco.datas[i];
+                double valor = bloco.valores[i];
+                if (data < dataMinima || data >= dataLimite || valor < valorMinimo) {
+                    continue;
+                }
+                quantidade++;
+                soma += valor;
+                if (coletar > 0) {
+                    if (n == selecionadas.length) {
+                        selecionadas = Arrays.copyOf(selecionadas, n * 2);
+                    }
+                    selecionadas[n++] = inicio + (i - primeira);
+                }
+            }
+            return new Parcial(quantidade, soma, coletar > 0 ? maisRecentes(selecionadas, n) : selecionadas,
+                    blocos);
+        }
+
+        private long data(int linha) {
+            return blocos[linha >>> BITS_BLOCO].datas[linha & MASCARA_BLOCO];
+        }
+
+        private int id(int linha) {
+            return blocos[linha >>> BITS_BLOCO].ids[linha & MASCARA_BLOCO];
+        }
+
+        /**
+         * @return As até 'coletar' linhas mais recentes, em ordem (data, id) decrescente
+         */
+        private int[] maisRecentes(int[] linhas, int n) {
+            Integer[] ordenadas = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                ordenadas[i] = linhas[i];
+            }
+            Arrays.sort(ordenadas, Comparator.comparingLong((Integer linha) -> data(linha))
+                    .thenComparingInt(linha -> id(linha)).reversed());
+            int[] resultado = new int[Math.min(n, coletar)];
+            for (int i = 0; i < resultado.length; i++) {
+                resultado[i] = ordenadas[i];
+            }
+            return resultado;
+        }
+
+        private boolean posterior(int a, int b) {
+            long dataA = data(a);
+            long dataB = data(b);
+            return dataA > dataB || (dataA == dataB && id(a) > id(b));
+        }
+
+        private int[] intercalar(int[] a, int[] b) {
+            if (coletar == 0) {
+                return a;
+            }
+            int[] unidas = new int[Math.min(coletar, a.length + b.length)];
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < unidas.length; k++) {
+                unidas[k] = j >= b.length || (i < a.length && posterior(a[i], b[j])) ? a[i++] : b[j++];
+            }
+            return unidas;
+        }
+    }
+}
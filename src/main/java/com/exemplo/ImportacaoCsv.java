@@ -0,0 +1,140 @@
+package com.exemplo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checkpoint e adiamento de índices da importação em massa (tabelas importacao_checkpoint e
+ * importacao_objetos_adiados)
+ *
+ * O checkpoint de um arquivo é identificado por caminho, tamanho, data de modificação e tipo da importação:
+ * se o arquivo mudar, a próxima execução é uma importação nova. Ele é gravado na mesma transação de cada lote,
+ * então a retomada começa exatamente no primeiro registro não confirmado
+ *
+ * Os índices não únicos e os triggers da tabela são apagados antes da carga e recriados no fim; o SQL
+ * deles fica guardado em importacao_objetos_adiados até a recriação, para que uma importação interrompida
+ * não deixe a tabela sem índices (o Banco os recria ao iniciar)
+ */
+final class ImportacaoCsv {
+    static final String SQL_GRAVAR_CHECKPOINT = "INSERT INTO importacao_checkpoint " +
+            "(arquivo, tamanho, modificado, tipo, registros, concluida) VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (arquivo, tamanho, modificado, tipo) DO UPDATE SET registros = excluded.registros, " +
+            "concluida = excluded.concluida, atualizado_em = datetime('now', 'localtime')";
+
+    private ImportacaoCsv() {
+    }
+
+    /**
+     * Identificação de um arquivo para o checkpoint
+     */
+    static final class Checkpoint {
+        final String arquivo;
+        final long tamanho;
+        final long modificado;
+        final String tipo;
+        long registros;
+        boolean concluida;
+
+        Checkpoint(Path caminho, String tipo) throws IOException {
+            this.arquivo = caminho.toAbsolutePath().normalize().toString();
+            this.tamanho = Files.size(caminho);
+            this.modificado = Files.getLastModifiedTime(caminho).toMillis();
+            this.tipo = tipo;
+        }
+    }
+
+    /**
+     * Preenche registros e concluida com o que foi confirmado por execuções anteriores
+     */
+    static void carregar(ConexaoPool conn, Checkpoint checkpoint) throws SQLException {
+        PreparedStatement stmt = conn.preparar("SELECT registros, concluida FROM importacao_checkpoint " +
+                "WHERE arquivo = ? AND tamanho = ? AND modificado = ? AND tipo = ?");
+        stmt.setString(1, checkpoint.arquivo);
+        stmt.setLong(2, checkpoint.tamanho);
+        stmt.setLong(3, checkpoint.modificado);
+        stmt.setString(4, checkpoint.tipo);
+        try (ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                checkpoint.registros = rs.getLong(1);
+                checkpoint.concluida = rs.getInt(2) == 1;
+            }
+        }
+    }
+
+    /**
+     * Grava o avanço, na transação de quem chamou
+     */
+    static void gravar(ConexaoPool conn, Checkpoint checkpoint, long registros, boolean concluida)
+            throws SQLException {
+        PreparedStatement stmt = conn.preparar(SQL_GRAVAR_CHECKPOINT);
+        stmt.setString(1, checkpoint.arquivo);
+        stmt.setLong(2, checkpoint.tamanho);
+        stmt.setLong(3, checkpoint.modificado);
+        stmt.setString(4, checkpoint.tipo);
+        stmt.setLong(5, registros);
+        stmt.setInt(6, concluida ? 1 : 0);
+        stmt.executeUpdate();
+    }
+
+    /**
+     * Guarda o SQL e apaga os índices não únicos e os triggers da tabela, na transação de quem chamou
+     * Índices únicos ficam: eles garantem regras (uma reversão por transação) durante a própria carga
+     * @return Nomes dos objetos adiados
+     */
+    static List<String> adiarObjetos(ConexaoPool conn, String tabela) throws SQLException {
+        List<String[]> objetos = new ArrayList<>();
+        PreparedStatement consulta = conn.preparar("SELECT name, type, sql FROM sqlite_master " +
+                "WHERE tbl_name = ? AND sql IS NOT NULL AND (type = 'trigger' " +
+                "OR (type = 'index' AND upper(sql) NOT LIKE 'CREATE UNIQUE%'))");
+        consulta.setString(1, tabela);
+        try (ResultSet rs = consulta.executeQuery()) {
+            while (rs.next()) {
+                objetos.add(new String[] { rs.getString(1), rs.getString(2), rs.getString(3) });
+            }
+        }
+        List<String> nomes = new ArrayList<>();
+        PreparedStatement guarda = conn.preparar(
+                "INSERT OR IGNORE INTO importacao_objetos_adiados (nome, tipo, sql) VALUES (?, ?, ?)");
+        try (Statement stmt = conn.getConexao().createStatement()) {
+            for (String[] objeto : objetos) {
+                guarda.setString(1, objeto[0]);
+                guarda.setString(2, objeto[1]);
+                guarda.setString(3, objeto[2]);
+                guarda.executeUpdate();
+                stmt.execute("DROP " + ("trigger".equals(objeto[1]) ? "TRIGGER " : "INDEX ") + objeto[0]);
+                nomes.add(objeto[0]);
+            }
+        }
+        return nomes;
+    }
+
+    /**
+     * Recria os objetos adiados (índices antes dos triggers), na transação de quem chamou
+     * @return Nomes dos objetos recriados (vazio se não havia nenhum)
+     */
+    static List<String> restaurarObjetos(ConexaoPool conn) throws SQLException {
+        List<String[]> objetos = new ArrayList<>();
+        try (ResultSet rs = conn.preparar("SELECT nome, sql FROM importacao_objetos_adiados " +
+                "ORDER BY tipo = 'trigger', nome").executeQuery()) {
+            while (rs.next()) {
+                objetos.add(new String[] { rs.getString(1), rs.getString(2) });
+            }
+        }
+        List<String> nomes = new ArrayList<>();
+        try (Statement stmt = conn.getConexao().createStatement()) {
+            for (String[] objeto : objetos) {
+                stmt.execute(objeto[1]);
+                nomes.add(objeto[0]);
+            }
+            stmt.executeUpdate("DELETE FROM importacao_objetos_adiados");
+        }
+        return nomes;
+    }
+}
@@ -0,0 +1,133 @@
+package com.exemplo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Instantâneo compacto de todos os saldos, usado pelo modo diário para iniciar sem ler a tabela usuarios
+ * Os saldos são os da sequência do instantâneo, copiados sem transação aberta (SaldosMemoria.gravarInstantaneo);
+ * os registros do diário posteriores a ela são reaplicados por cima na recuperação
+ *
+ * Formato: [int magia][int versão][long seq][long maior rowid de usuarios]
+ *          [para cada conta: byte 1, utf email, utf nome, double saldo][byte 0][long contas][long crc32]
+ */
+public final class InstantaneoSaldos {
+    static final String SUFIXO = ".instantaneo";
+    private static final int MAGIA = 0x42525353;
+    private static final int VERSAO = 1;
+
+    private final long sequencia;
+    private final long maiorRowid;
+    private final long contas;
+
+    private InstantaneoSaldos(long sequencia, long maiorRowid, long contas) {
+        this.sequencia = sequencia;
+        this.maiorRowid = maiorRowid;
+        this.contas = contas;
+    }
+
+    /**
+     * @return Última sequência do diário coberta pelo instantâneo
+     */
+    public long getSequencia() {
+        return sequencia;
+    }
+
+    /**
+     * @return Contas de usuarios com rowid maior que este foram criadas depois do instantâneo
+     */
+    public long getMaiorRowid() {
+        return maiorRowid;
+    }
+
+    public long getContas() {
+        return contas;
+    }
+
+    /**
+     * Grava em um arquivo temporário, sincroniza e troca pelo anterior com rename atômico
+     */
+    static InstantaneoSaldos gravar(File arquivo, long sequencia, long maiorRowid, Map<String, Usuario> contas)
+            throws IOException {
+        File temporario = new File(arquivo.getPath() + ".tmp");
+        long quantidade = 0;
+        try (FileOutputStream arquivoSaida = new FileOutputStream(temporario)) {
+            CheckedOutputStream verificado = new CheckedOutputStream(
+                    new BufferedOutputStream(arquivoSaida, 1 << 16), new CRC32());
+            DataOutputStream out = new DataOutputStream(verificado);
+            out.writeInt(MAGIA);
+            out.writeInt(VERSAO);
+            out.writeLong(sequencia);
+            out.writeLong(maiorRowid);
+            for (Map.Entry<String, Usuario> conta : contas.entrySet()) {
+                out.writeByte(1);
+                out.writeUTF(conta.getKey());
+                out.writeUTF(conta.getValue().getNome());
+                out.writeDouble(conta.getValue().getSaldo());
+                quantidade++;
+            }
+            out.writeByte(0);
+            out.writeLong(quantidade);
+            out.writeLong(verificado.getChecksum().getValue());
+            out.flush();
+            arquivoSaida.getFD().sync();
+        }
+        Files.move(temporario.toPath(), arquivo.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new InstantaneoSaldos(sequencia, maiorRowid, quantidade);
+    }
+
+    /**
+     * Entrega cada conta do instantâneo ao consumidor à medida que lê
+     * O CRC só é conhecido no fim: se o arquivo estiver corrompido o consumidor já recebeu contas e
+     * cabe a quem chamou descartá-las
+     * @return Cabeçalho do instantâneo, ou null se o arquivo não existir ou estiver corrompido
+     */
+    static InstantaneoSaldos ler(File arquivo, ConsumidorConta consumidor) throws IOException {
+        if (!arquivo.isFile()) {
+            return null;
+        }
+        try (CheckedInputStream verificado = new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(arquivo), 1 << 16), new CRC32())) {
+            DataInputStream in = new DataInputStream(verificado);
+            if (in.readInt() != MAGIA || in.readInt() != VERSAO) {
+                return null;
+            }
+            long sequencia = in.readLong();
+            long maiorRowid = in.readLong();
+            long quantidade = 0;
+            while (in.readByte() == 1) {
+                consumidor.aplicar(in.readUTF(), in.readUTF(), in.readDouble());
+                quantidade++;
+            }
+            boolean quantidadeConfere = in.readLong() == quantidade;
+            long calculado = verificado.getChecksum().getValue();
+            if (!quantidadeConfere || in.readLong() != calculado) {
+                return null;
+            }
+            return new InstantaneoSaldos(sequencia, maiorRowid, quantidade);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Recebe cada conta lida do instantâneo
+     */
+    interface ConsumidorConta {
+        void aplicar(String email, String nome, double saldo);
+    }
+}
@@ -0,0 +1,28 @@
+package com.exemplo;
+
+/**
+ * Uma transferência a ser executada dentro de um lote (Banco.transferirLote)
+ */
+public class InstrucaoTransferencia {
+    private final String emailOrigem;
+    private final String emailDestino;
+    private final double valor;
+
+    public InstrucaoTransferencia(String emailOrigem, String emailDestino, double valor) {
+        this.emailOrigem = emailOrigem;
+        this.emailDestino = emailDestino;
+        this.valor = valor;
+    }
+
+    public String getEmailOrigem() {
+        return emailOrigem;
+    }
+
+    public String getEmailDestino() {
+        return emailDestino;
+    }
+
+    public double getValor() {
+        return valor;
+    }
+}
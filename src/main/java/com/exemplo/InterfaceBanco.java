@@ -1,9 +1,14 @@
 package com.exemplo;
 
+import java.util.ArrayList;
 import java.util.Scanner;
 import java.util.List;
 
 public class InterfaceBanco {
+    private static final int TAMANHO_PAGINA = 10;
+    private static final long DURACAO_RESERVA_MS = 15 * 60 * 1000;
+    private static final int LOTE_RESERVA = 500;
+
     private final Banco banco;
     private final Scanner scanner;
     private final Autenticacao autenticacao;
@@ -15,9 +20,9 @@ public class InterfaceBanco {
     }
 
     public void iniciar() {
-        String usuarioLogado = null;
+        Sessao sessao = null;
         while (true) {
-            if (usuarioLogado == null) {
+            if (sessao == null) {
                 autenticacao.exibirMenuLogin();
                 String opcao = scanner.nextLine();
                 switch (opcao) {
@@ -25,7 +30,7 @@ public class InterfaceBanco {
                         autenticacao.registro();
                         break;
                     case "2":
-                        usuarioLogado = autenticacao.login();
+                        sessao = autenticacao.login();
                         break;
                     case "3":
                         System.out.println("Obrigado por usar o Brasisco!");
@@ -35,58 +40,58 @@ public class InterfaceBanco {
                         System.out.println("Opção inválida.");
                 }
             } else {
-                if (banco.isAdmin(usuarioLogado)) {
-                    menuAdmin();
-                    usuarioLogado = null;
+                if (sessao.isAdmin()) {
+                    menuAdmin(sessao.getToken());
                 } else {
-                    menuUsuario(usuarioLogado);
-                    usuarioLogado = null;
+                    menuUsuario(sessao.getToken());
                 }
+                banco.encerrarSessao(sessao.getToken());
+                sessao = null;
             }
         }
     }
 
-    private void menuAdmin() {
+    private void menuAdmin(String token) {
         while (true) {
+            if (sessaoAtiva(token) == null) {
+                return;
+            }
             System.out.println("\n=== Menu do Administrador - Brasisco ===");
             System.out.println("1. Consultar histórico de transações");
             System.out.println("2. Consultar denúncias pendentes");
-            System.out.println("3. Logout");
+            System.out.println("3. Reverter todas as transações com denúncia pendente");
+            System.out.println("4. Logout");
             System.out.print("Escolha uma opção: ");
             String opcao = scanner.nextLine();
             switch (opcao) {
                 case "1":
-                    List<Transacao> historico = banco.consultarHistorico();
-                    if (historico.isEmpty()) {
+                    PaginaHistorico pagina = banco.consultarHistorico(CursorHistorico.INICIO, TAMANHO_PAGINA);
+                    if (pagina.isEmpty()) {
                         System.out.println("Nenhuma transação encontrada no sistema.");
                     } else {
                         System.out.println("\n=== Histórico de Transações - Brasisco ===");
-                        for (Transacao t : historico) {
-                            System.out.println("\n" + t);
+                        while (true) {
+                            for (Transacao t : pagina.getTransacoes()) {
+                                System.out.println("\n" + t);
+                            }
+                            if (!pagina.temMais() || !desejaProximaPagina()) {
+                                break;
+                            }
+                            pagina = banco.consultarHistorico(pagina.getProximo(), TAMANHO_PAGINA);
+                            if (pagina.isEmpty()) {
+                                System.out.println("Não há mais transações.");
+                                break;
+                            }
                         }
                     }
                     break;
                 case "2":
-                    List<Denuncia> denuncias = banco.consultarDenuncias();
-                    if (denuncias.isEmpty()) {
-                        System.out.println("Nenhuma denúncia pendente.");
-                    } else {
-                        System.out.println("\n=== Denúncias Pendentes - Brasisco ===");
-                        for (Denuncia d : denuncias) {
-                            System.out.println("\n" + d);
-                            System.out.print("Deseja reverter esta transação? (S/N): ");
-                            String resposta = scanner.nextLine().toUpperCase();
-                            if (resposta.equals("S")) {
-                                if (banco.reverterTransferencia(d.getIdTransacao())) {
-                                    System.out.println("Transferência revertida com sucesso!");
-                                } else {
-                                    System.out.println("Erro ao reverter transferência.");
-                                }
-                            }
-                        }
-                    }
+                    revisarDenuncias(token);
                     break;
                 case "3":
+                    reverterPendentes(token);
+                    break;
+                case "4":
                     System.out.println("Logout realizado.");
                     return;
                 default:
@@ -95,10 +100,114 @@ public class InterfaceBanco {
         }
     }
 
-    private void menuUsuario(String email) {
-        String nomeUsuario = banco.getNomeUsuario(email);
+    /**
+     * Revisa as denúncias pendentes em lotes reservados para este administrador,
+     * para que outros administradores possam revisar a fila ao mesmo tempo
+     */
+    private void revisarDenuncias(String token) {
+        Sessao sessao = sessaoAtiva(token);
+        if (sessao == null) {
+            return;
+        }
+        System.out.print("Prioridade (1. Valor, 2. Mais antigas, 3. Contas com mais denúncias): ");
+        String escolha = scanner.nextLine();
+        PrioridadeDenuncia prioridade = escolha.equals("1") ? PrioridadeDenuncia.VALOR
+                : escolha.equals("3") ? PrioridadeDenuncia.RECORRENCIA : PrioridadeDenuncia.IDADE;
+        String revisor = sessao.getEmail();
+        // as puladas continuam reservadas até o fim da revisão, para não voltarem no próximo lote
+        List<Integer> puladas = new ArrayList<>();
+        try {
+            revisarLotes(revisor, prioridade, puladas);
+        } finally {
+            for (Integer id : puladas) {
+                banco.liberarReserva(revisor, id);
+            }
+        }
+    }
+
+    /**
+     * Reverte as transações de todas as denúncias pendentes que não estão em revisão por outro administrador
+     * As denúncias são reservadas antes da confirmação, para ninguém pegá-las na fila durante a reversão
+     */
+    private void reverterPendentes(String token) {
+        Sessao sessao = sessaoAtiva(token);
+        if (sessao == null) {
+            return;
+        }
+        String revisor = sessao.getEmail();
+        List<Denuncia> reservadas = new ArrayList<>();
+        try {
+            while (true) {
+                List<Denuncia> lote = banco.reservarDenuncias(revisor, PrioridadeDenuncia.IDADE, LOTE_RESERVA,
+                        DURACAO_RESERVA_MS);
+                if (lote.isEmpty()) {
+                    break;
+                }
+                reservadas.addAll(lote);
+            }
+            if (reservadas.isEmpty()) {
+                System.out.println("Nenhuma denúncia pendente fora de revisão.");
+                return;
+            }
+            System.out.print("Reverter as transações de " + reservadas.size() + " denúncias pendentes? (S/N): ");
+            if (scanner.nextLine().toUpperCase().equals("S")) {
+                List<Integer> ids = new ArrayList<>(reservadas.size());
+                for (Denuncia d : reservadas) {
+                    ids.add(d.getIdTransacao());
+                }
+                System.out.println("\n=== Reversão em Lote - Brasisco ===");
+                System.out.print(banco.reverterTransferencias(revisor, ids));
+            }
+        } finally {
+            // as resolvidas já saíram da reserva; as que sobraram voltam para a fila
+            for (Denuncia d : reservadas) {
+                banco.liberarReserva(revisor, d.getId());
+            }
+        }
+    }
+
+    private void revisarLotes(String revisor, PrioridadeDenuncia prioridade, List<Integer> puladas) {
         while (true) {
-            System.out.println("\n=== Menu do Usuário: " + nomeUsuario + " - Brasisco ===");
+            List<Denuncia> denuncias = banco.reservarDenuncias(revisor, prioridade, TAMANHO_PAGINA, DURACAO_RESERVA_MS);
+            if (denuncias.isEmpty()) {
+                System.out.println("Nenhuma denúncia pendente.");
+                return;
+            }
+            System.out.println("\n=== Denúncias Pendentes - Brasisco ===");
+            for (Denuncia d : denuncias) {
+                System.out.println("\n" + d);
+                System.out.print("Reverter (R), rejeitar (J) ou pular (P)? ");
+                String resposta = scanner.nextLine().toUpperCase();
+                if (resposta.equals("R")) {
+                    if (banco.reverter(revisor, d.getId())) {
+                        System.out.println("Transferência revertida com sucesso!");
+                    } else {
+                        System.out.println("Erro ao reverter transferência.");
+                    }
+                } else if (resposta.equals("J")) {
+                    if (banco.rejeitarDenuncia(revisor, d.getId())) {
+                        System.out.println("Denúncia rejeitada.");
+                    } else {
+                        System.out.println("Erro ao rejeitar denúncia.");
+                    }
+                } else {
+                    puladas.add(d.getId());
+                }
+            }
+            if (!desejaProximaPagina()) {
+                return;
+            }
+        }
+    }
+
+    private void menuUsuario(String token) {
+        while (true) {
+            Sessao sessao = sessaoAtiva(token);
+            if (sessao == null) {
+                return;
+            }
+            String email = sessao.getEmail();
+            System.out.println("\n=== Menu do Usuário: " + sessao.getNome() + " - Brasisco ===");
             System.out.println("1. Consultar saldo");
             System.out.println("2. Depositar");
             System.out.println("3. Transferir");
@@ -114,8 +223,11 @@ public class InterfaceBanco {
                 case "2":
                     System.out.print("Valor para depositar: ");
                     double valorDep = Double.parseDouble(scanner.nextLine());
-                    banco.depositar(email, valorDep);
-                    System.out.println("Depósito realizado com sucesso no Brasisco!");
+                    if (banco.depositar(email, valorDep)) {
+                        System.out.println("Depósito realizado com sucesso no Brasisco!");
+                    } else {
+                        System.out.println("Erro no depósito.");
+                    }
                     break;
                 case "3":
                     System.out.print("Email do usuário destino: ");
@@ -129,26 +241,19 @@ public class InterfaceBanco {
                     }
                     break;
                 case "4":
-                    List<Transacao> historico = banco.consultarHistoricoUsuario(email);
-                    if (historico.isEmpty()) {
+                    PaginaHistorico pagina = banco.consultarHistoricoUsuario(email, CursorHistorico.INICIO, TAMANHO_PAGINA);
+                    if (pagina.isEmpty()) {
                         System.out.println("Nenhuma transação encontrada.");
                     } else {
                         System.out.println("\n=== Seu Histórico de Transações - Brasisco ===");
-                        for (Transacao t : historico) {
-                            System.out.println("\n" + t);
-                            if (t.getDenunciaId() == 0 && t.getTipo().equals("transferencia")) {
-                                System.out.print("Deseja denunciar esta transação? (S/N): ");
-                                String resposta = scanner.nextLine().toUpperCase();
-                                if (resposta.equals("S")) {
-                                    System.out.print("Digite a descrição da denúncia: ");
-                                    String descricao = scanner.nextLine();
-                                    if (banco.registrarDenuncia(t.getId(), email, descricao)) {
-                                        System.out.println("Denúncia registrada com sucesso!");
-                                    } else {
-                                        System.out.println("Erro ao registrar denúncia.");
-                                    }
-                                }
+                        exibirPaginaUsuario(email, pagina);
+                        while (pagina.temMais() && desejaProximaPagina()) {
+                            pagina = banco.consultarHistoricoUsuario(email, pagina.getProximo(), TAMANHO_PAGINA);
+                            if (pagina.isEmpty()) {
+                                System.out.println("Não há mais transações.");
+                                break;
                             }
+                            exibirPaginaUsuario(email, pagina);
                         }
                     }
                     break;
@@ -160,4 +265,40 @@ public class InterfaceBanco {
             }
         }
     }
+
+    private void exibirPaginaUsuario(String email, PaginaHistorico pagina) {
+        for (Transacao t : pagina.getTransacoes()) {
+            System.out.println("\n" + t);
+            if (t.getDenunciaId() == 0 && t.getTipo().equals("transferencia")) {
+                System.out.print("Deseja denunciar esta transação? (S/N): ");
+                String resposta = scanner.nextLine().toUpperCase();
+                if (resposta.equals("S")) {
+                    System.out.print("Digite a descrição da denúncia: ");
+                    String descricao = scanner.nextLine();
+                    if (banco.registrarDenuncia(t.getId(), email, descricao)) {
+                        System.out.println("Denúncia registrada com sucesso!");
+                    } else {
+                        System.out.println("Erro ao registrar denúncia.");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Verificação feita só em memória, antes de cada operação do menu
+     * @return Sessão do token, ou null (com aviso) se ela expirou
+     */
+    private Sessao sessaoAtiva(String token) {
+        Sessao sessao = banco.validarSessao(token);
+        if (sessao == null) {
+            System.out.println("Sessão expirada. Faça login novamente.");
+        }
+        return sessao;
+    }
+
+    private boolean desejaProximaPagina() {
+        System.out.print("\nVer próxima página? (S/N): ");
+        return scanner.nextLine().toUpperCase().equals("S");
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,164 @@
+package com.exemplo;
+
+/**
+ * Estatísticas deslizantes de uma conta: as últimas transações ficam em buffers circulares de tipos
+ * primitivos (instante, valor e hash do destino); os destinos da janela e os já usados ficam em contagens
+ * por hash (ContadorLongs), sem objetos por evento
+ * Não é thread-safe: o MotorFraude acessa cada janela sob o seu monitor
+ */
+public class JanelaConta {
+    private static final int MAXIMO_DESTINOS_CONHECIDOS = 1 << 16;
+
+    private final long janelaMs;
+    private final long[] instantes;
+    private final double[] valores;
+    private final long[] destinos;
+    private int inicio;
+    private int tamanho;
+    private double soma;
+    private long agoraMs;
+    private long ultimoRegistroMs;
+
+    // transferências da janela por destino, mantidas junto com o buffer
+    private final ContadorLongs destinosNaJanela = new ContadorLongs();
+    // transferências registradas por destino desde que o motor foi iniciado
+    private final ContadorLongs conhecidos = new ContadorLongs();
+    // descartada pelo MotorFraude por ociosidade; quem ainda tem a referência busca a janela de novo
+    boolean descartada;
+
+    JanelaConta(long janelaMs, int capacidade) {
+        this.janelaMs = janelaMs;
+        this.instantes = new long[capacidade];
+        this.valores = new double[capacidade];
+        this.destinos = new long[capacidade];
+    }
+
+    /**
+     * Descarta os eventos que saíram da janela no instante indicado
+     */
+    void avancar(long instanteMs) {
+        agoraMs = Math.max(agoraMs, instanteMs);
+        long limite = agoraMs - janelaMs;
+        while (tamanho > 0 && instantes[inicio] <= limite) {
+            descartarMaisAntigo();
+        }
+        if (tamanho == 0) {
+            soma = 0;
+        }
+    }
+
+    void registrar(EventoTransacao evento) {
+        avancar(evento.getInstanteMs());
+        ultimoRegistroMs = Math.max(ultimoRegistroMs, evento.getInstanteMs());
+        if (tamanho == instantes.length) {
+            descartarMaisAntigo();
+        }
+        int posicao = (inicio + tamanho) % instantes.length;
+        long destino = evento.isTransferencia() ? hash(evento.getEmailDestino()) : 0;
+        instantes[posicao] = evento.getInstanteMs();
+        valores[posicao] = evento.getValor();
+        destinos[posicao] = destino;
+        soma += evento.getValor();
+        tamanho++;
+        if (destino != 0) {
+            destinosNaJanela.incrementar(destino);
+            if (conhecidos.contem(destino) || conhecidos.tamanho() < MAXIMO_DESTINOS_CONHECIDOS) {
+                conhecidos.incrementar(destino);
+            }
+        }
+    }
+
+    /**
+     * Retira um evento registrado cuja operação não se confirmou
+     * O evento é procurado do mais recente para o mais antigo; se já saiu da janela, só o destino conhecido
+     * é descontado
+     */
+    void remover(EventoTransacao evento) {
+        long destino = evento.isTransferencia() ? hash(evento.getEmailDestino()) : 0;
+        if (destino != 0) {
+            conhecidos.decrementar(destino);
+        }
+        for (int i = tamanho - 1; i >= 0; i--) {
+            int posicao = (inicio + i) % instantes.length;
+            if (instantes[posicao] != evento.getInstanteMs() || valores[posicao] != evento.getValor()
+                    || destinos[posicao] != destino) {
+                continue;
+            }
+            soma -= valores[posicao];
+            if (destino != 0) {
+                destinosNaJanela.decrementar(destino);
+            }
+            for (int j = i; j < tamanho - 1; j++) {
+                int atual = (inicio + j) % instantes.length;
+                int proxima = (atual + 1) % instantes.length;
+                instantes[atual] = instantes[proxima];
+                valores[atual] = valores[proxima];
+                destinos[atual] = destinos[proxima];
+            }
+            tamanho--;
+            if (tamanho == 0) {
+                soma = 0;
+            }
+            return;
+        }
+    }
+
+    /**
+     * @return true se a janela está vazia no instante indicado e não recebe eventos há mais de 'ociosidadeMs'
+     */
+    boolean ociosa(long instanteMs, long ociosidadeMs) {
+        avancar(instanteMs);
+        return tamanho == 0 && instanteMs - ultimoRegistroMs >= ociosidadeMs;
+    }
+
+    /**
+     * @return Quantidade de transações na janela (limitada à capacidade do buffer)
+     */
+    public int getQuantidade() {
+        return tamanho;
+    }
+
+    public double getSoma() {
+        return soma;
+    }
+
+    /**
+     * @return Quantidade de destinos diferentes entre as transferências da janela
+     */
+    public int getDestinosDistintos() {
+        return destinosNaJanela.tamanho();
+    }
+
+    /**
+     * @return true se a conta nunca transferiu para este destino (desde que o motor foi iniciado)
+     */
+    public boolean isDestinoNovo(String emailDestino) {
+        return !conhecidos.contem(hash(emailDestino));
+    }
+
+    public long getJanelaMs() {
+        return janelaMs;
+    }
+
+    private void descartarMaisAntigo() {
+        soma -= valores[inicio];
+        if (destinos[inicio] != 0) {
+            destinosNaJanela.decrementar(destinos[inicio]);
+        }
+        inicio = (inicio + 1) % instantes.length;
+        tamanho--;
+    }
+
+    /**
+     * FNV-1a de 64 bits do email; colisões entre destinos da mesma conta são desprezíveis
+     * Nunca devolve 0, que marca posição vazia nos buffers
+     */
+    static long hash(String email) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < email.length(); i++) {
+            h ^= email.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+}
@@ -0,0 +1,144 @@
+package com.exemplo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Leitor de CSV em UTF-8 com cabeçalho, lido registro a registro
+ * Aceita campos entre aspas (com aspas duplicadas e quebras de linha dentro), como os gerados por
+ * Banco.exportarExtrato
+ */
+final class LeitorCsv implements AutoCloseable {
+    private final BufferedReader leitor;
+    private final Map<String, Integer> colunas = new HashMap<>();
+    private final List<String> campos = new ArrayList<>();
+    private final StringBuilder campo = new StringBuilder();
+    private long registros;
+    private long linhaArquivo;
+
+    LeitorCsv(Path arquivo) throws IOException {
+        this.leitor = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8);
+        String[] cabecalho = proximoRegistro();
+        if (cabecalho == null) {
+            leitor.close();
+            throw new IOException("Arquivo vazio, sem cabeçalho: " + arquivo);
+        }
+        for (int i = 0; i < cabecalho.length; i++) {
+            String nome = cabecalho[i].trim().toLowerCase();
+            if (i == 0 && nome.startsWith("\uFEFF")) {
+                nome = nome.substring(1);
+            }
+            colunas.put(nome, i);
+        }
+        registros = 0;
+    }
+
+    /**
+     * @return Posição da coluna no registro, ou -1 se o cabeçalho não a tem
+     */
+    int coluna(String nome) {
+        Integer posicao = colunas.get(nome);
+        return posicao == null ? -1 : posicao;
+    }
+
+    /**
+     * @return Campos do próximo registro, ou null no fim do arquivo (linhas em branco são puladas)
+     */
+    String[] proximo() throws IOException {
+        String[] registro = proximoRegistro();
+        if (registro != null) {
+            registros++;
+        }
+        return registro;
+    }
+
+    /**
+     * Descarta registros já importados (retomada a partir do checkpoint)
+     * @return Quantidade realmente pulada (menor se o arquivo acabar antes)
+     */
+    long pular(long quantidade) throws IOException {
+        long pulados = 0;
+        while (pulados < quantidade && proximo() != null) {
+            pulados++;
+        }
+        return pulados;
+    }
+
+    /**
+     * @return Registros de dados lidos até aqui (inclusive os pulados), sem contar o cabeçalho
+     */
+    long getRegistros() {
+        return registros;
+    }
+
+    /**
+     * @return Linha do arquivo onde termina o último registro lido (para mensagens de erro)
+     */
+    long getLinhaArquivo() {
+        return linhaArquivo;
+    }
+
+    private String[] proximoRegistro() throws IOException {
+        String linha;
+        do {
+            linha = leitor.readLine();
+            if (linha == null) {
+                return null;
+            }
+            linhaArquivo++;
+        } while (linha.isEmpty());
+
+        campos.clear();
+        campo.setLength(0);
+        boolean entreAspas = false;
+        int i = 0;
+        while (true) {
+            if (i == linha.length()) {
+                if (!entreAspas) {
+                    break;
+                }
+                // quebra de linha dentro de um campo entre aspas
+                linha = leitor.readLine();
+                if (linha == null) {
+                    throw new IOException("Aspas não fechadas no fim do arquivo (linha " + linhaArquivo + ")");
+                }
+                linhaArquivo++;
+                campo.append('\n');
+                i = 0;
+                continue;
+            }
+            char c = linha.charAt(i++);
+            if (entreAspas) {
+                if (c != '"') {
+                    campo.append(c);
+                } else if (i < linha.length() && linha.charAt(i) == '"') {
+                    campo.append('"');
+                    i++;
+                } else {
+                    entreAspas = false;
+                }
+            } else if (c == ',') {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else if (c == '"' && campo.length() == 0) {
+                entreAspas = true;
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString());
+        return campos.toArray(new String[0]);
+    }
+
+    @Override
+    public void close() throws IOException {
+        leitor.close();
+    }
+}
@@ -0,0 +1,92 @@
+package com.exemplo;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Lê um extrato no formato binário gerado por Banco.exportarExtrato (ver ExportadorExtrato)
+ */
+public final class LeitorExtrato {
+    private LeitorExtrato() {
+    }
+
+    /**
+     * Entrega cada transação do extrato ao consumidor, na ordem do arquivo
+     * @param canal Origem; não é fechada
+     * @param gzip true se o extrato foi exportado comprimido
+     * @return Quantidade de transações lidas
+     * @throws IOException Se o extrato estiver truncado, corrompido ou em outro formato
+     */
+    public static long ler(ReadableByteChannel canal, boolean gzip, ConsumidorTransacao consumidor)
+            throws IOException {
+        InputStream entrada = new BufferedInputStream(Channels.newInputStream(canal), 1 << 16) {
+            @Override
+            public void close() {
+                // o canal é de quem chamou
+            }
+        };
+        if (gzip) {
+            entrada = new GZIPInputStream(entrada, 1 << 16);
+        }
+        try (DataInputStream in = new DataInputStream(entrada)) {
+            if (in.readInt() != ExportadorExtrato.MAGIA || in.readByte() != ExportadorExtrato.VERSAO) {
+                throw new IOException("Arquivo não é um extrato binário do Brasisco");
+            }
+            long lidas = 0;
+            byte[] texto = new byte[256];
+            while (true) {
+                int tamanho = in.readInt();
+                if (tamanho == 0) {
+                    break;
+                }
+                int id = in.readInt();
+                long data = in.readLong();
+                int len = in.readUnsignedByte();
+                in.readFully(texto, 0, len);
+                String tipo = new String(texto, 0, len, StandardCharsets.UTF_8);
+                double valor = in.readDouble();
+                String origem = lerEmail(in);
+                String destino = lerEmail(in);
+                int reversaoDe = in.readInt();
+                consumidor.aceitar(id, data, tipo, valor, origem, destino, reversaoDe);
+                lidas++;
+            }
+            if (in.readLong() != lidas) {
+                throw new IOException("Quantidade de transações do rodapé não confere com o extrato");
+            }
+            return lidas;
+        } catch (EOFException e) {
+            throw new IOException("Extrato truncado", e);
+        }
+    }
+
+    private static String lerEmail(DataInputStream in) throws IOException {
+        int len = in.readShort();
+        if (len < 0) {
+            return null;
+        }
+        byte[] email = new byte[len];
+        in.readFully(email);
+        return new String(email, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Recebe cada transação lida do extrato
+     */
+    public interface ConsumidorTransacao {
+        /**
+         * @param data Segundos desde 1970-01-01 00:00:00 na hora local do banco
+         *             (LocalDateTime.ofEpochSecond(data, 0, ZoneOffset.UTC) devolve a data gravada)
+         * @param reversaoDe ID da transação revertida, ou 0
+         */
+        void aceitar(int id, long data, String tipo, double valor, String emailOrigem, String emailDestino,
+                     int reversaoDe);
+    }
+}
@@ -0,0 +1,44 @@
+package com.exemplo;
+
+import java.io.IOException;
+
+/**
+ * Log durável das alterações de saldo do modo em memória
+ * Cada registro guarda o saldo absoluto das contas alteradas, então reaplicá-lo é idempotente
+ * Implementações: RegistroSaldos (FileChannel) e DiarioSaldos (segmentos mapeados em memória)
+ */
+public interface LogSaldos extends AutoCloseable {
+    /**
+     * Lê todos os segmentos existentes, entregando os registros com sequência maior que 'aPartirDe',
+     * e deixa o log pronto para novas gravações
+     * @return Maior sequência encontrada
+     */
+    long recuperar(long aPartirDe, ConsumidorRegistro consumidor) throws IOException;
+
+    /**
+     * Grava e sincroniza em disco um registro com os novos saldos das contas
+     * @return Sequência atribuída ao registro
+     */
+    long registrar(String[] emails, double[] saldos) throws IOException;
+
+    /**
+     * Fecha o segmento atual e abre um novo
+     * @return Última sequência gravada no segmento fechado
+     */
+    long rotacionar() throws IOException;
+
+    /**
+     * Apaga os segmentos fechados cujos registros têm todos sequência até 'sequencia'
+     */
+    void descartarAte(long sequencia);
+
+    @Override
+    void close() throws IOException;
+
+    /**
+     * Recebe cada saldo reaplicado durante a recuperação, com a sequência do registro que o contém
+     */
+    interface ConsumidorRegistro {
+        void aplicar(long sequencia, String email, double saldo);
+    }
+}
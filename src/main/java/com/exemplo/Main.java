@@ -1,11 +1,49 @@
 package com.exemplo;
 
+import java.io.IOException;
 import java.util.Scanner;
 
 public class Main {
+    /**
+     * Sem argumentos abre o menu no terminal; com --servidor [porta] atende clientes pela rede
+     * (ServidorBanco) até o processo ser encerrado
+     */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--servidor")) {
+            iniciarServidor(args);
+            return;
+        }
         Banco banco = new Banco();
         InterfaceBanco interfaceBanco = new InterfaceBanco(banco);
         interfaceBanco.iniciar();
     }
-} 
\ No newline at end of file
+
+    private static void iniciarServidor(String[] args) {
+        ConfiguracaoBanco config = new ConfiguracaoBanco();
+        if (args.length > 1) {
+            config.setPortaServidor(Integer.parseInt(args[1]));
+        }
+        if (args.length > 2) {
+            config.setEnderecoServidor(args[2]);
+        }
+        Banco banco = new Banco(config);
+        ServidorBanco servidor;
+        try {
+            servidor = new ServidorBanco(banco, config);
+        } catch (IOException e) {
+            System.out.println("Erro ao iniciar o servidor do Brasisco: " + e.getMessage());
+            banco.close();
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            servidor.close();
+            banco.close();
+        }, "brasisco-encerramento"));
+        System.out.println("Servidor do Brasisco escutando em " + servidor.getEndereco());
+        try {
+            servidor.aguardar();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.exemplo;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de uma operação: histograma de latência, sucessos, falhas por causa,
+ * linhas retornadas, linhas examinadas e repetições de transação
+ * Linhas examinadas são as que a operação leu das tabelas (ou das colunas em memória) para montar o
+ * resultado; a razão entre elas e as retornadas mostra quanto se lê a mais do que se entrega
+ */
+public class MetricaOperacao {
+    private final OperacaoBanco operacao;
+    private final HistogramaLatencia latencia = new HistogramaLatencia();
+    private final LongAdder sucessos = new LongAdder();
+    private final Map<String, LongAdder> falhas = new ConcurrentHashMap<>();
+    private final LongAdder linhas = new LongAdder();
+    private final LongAdder examinadas = new LongAdder();
+    private final LongAdder repeticoes = new LongAdder();
+
+    MetricaOperacao(OperacaoBanco operacao) {
+        this.operacao = operacao;
+    }
+
+    void registrarSucesso(long nanos) {
+        latencia.registrar(nanos);
+        sucessos.increment();
+    }
+
+    void registrarFalha(long nanos, String causa) {
+        latencia.registrar(nanos);
+        falhas.computeIfAbsent(causa, c -> new LongAdder()).increment();
+    }
+
+    void registrarLinhas(long quantidade) {
+        linhas.add(quantidade);
+    }
+
+    void registrarExaminadas(long quantidade) {
+        examinadas.add(quantidade);
+    }
+
+    void registrarRepeticao() {
+        repeticoes.increment();
+    }
+
+    public OperacaoBanco getOperacao() {
+        return operacao;
+    }
+
+    public HistogramaLatencia getLatencia() {
+        return latencia;
+    }
+
+    public long getSucessos() {
+        return sucessos.sum();
+    }
+
+    public long getFalhas() {
+        long total = 0;
+        for (LongAdder falha : falhas.values()) {
+            total += falha.sum();
+        }
+        return total;
+    }
+
+    /**
+     * @return Quantidade de falhas por causa (ex: SALDO_INSUFICIENTE, SQLITE_BUSY), em ordem alfabética
+     */
+    public Map<String, Long> getFalhasPorCausa() {
+        Map<String, Long> copia = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> falha : falhas.entrySet()) {
+            copia.put(falha.getKey(), falha.getValue().sum());
+        }
+        return copia;
+    }
+
+    public long getLinhas() {
+        return linhas.sum();
+    }
+
+    public long getLinhasExaminadas() {
+        return examinadas.sum();
+    }
+
+    public long getRepeticoes() {
+        return repeticoes.sum();
+    }
+}
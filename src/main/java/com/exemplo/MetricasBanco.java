@@ -0,0 +1,110 @@
+package com.exemplo;
+
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Registro das métricas de todas as operações do Banco
+ * O caminho quente custa duas leituras de System.nanoTime e alguns incrementos atômicos
+ */
+public class MetricasBanco {
+    private final Map<OperacaoBanco, MetricaOperacao> metricas = new EnumMap<>(OperacaoBanco.class);
+    private final EstatisticasPool estatisticasPool;
+
+    public MetricasBanco(EstatisticasPool estatisticasPool) {
+        this.estatisticasPool = estatisticasPool;
+        for (OperacaoBanco operacao : OperacaoBanco.values()) {
+            metricas.put(operacao, new MetricaOperacao(operacao));
+        }
+    }
+
+    public MetricaOperacao get(OperacaoBanco operacao) {
+        return metricas.get(operacao);
+    }
+
+    public EstatisticasPool getEstatisticasPool() {
+        return estatisticasPool;
+    }
+
+    void sucesso(OperacaoBanco operacao, long inicioNanos) {
+        metricas.get(operacao).registrarSucesso(System.nanoTime() - inicioNanos);
+    }
+
+    void sucesso(OperacaoBanco operacao, long inicioNanos, long linhas) {
+        MetricaOperacao metrica = metricas.get(operacao);
+        metrica.registrarSucesso(System.nanoTime() - inicioNanos);
+        metrica.registrarLinhas(linhas);
+    }
+
+    /**
+     * @param examinadas Linhas lidas para chegar às retornadas
+     */
+    void sucesso(OperacaoBanco operacao, long inicioNanos, long linhas, long examinadas) {
+        MetricaOperacao metrica = metricas.get(operacao);
+        metrica.registrarSucesso(System.nanoTime() - inicioNanos);
+        metrica.registrarLinhas(linhas);
+        metrica.registrarExaminadas(examinadas);
+    }
+
+    void falha(OperacaoBanco operacao, long inicioNanos, String causa) {
+        metricas.get(operacao).registrarFalha(System.nanoTime() - inicioNanos, causa);
+    }
+
+    void falha(OperacaoBanco operacao, long inicioNanos, Throwable erro) {
+        falha(operacao, inicioNanos, causa(erro));
+    }
+
+    void repeticao(OperacaoBanco operacao) {
+        metricas.get(operacao).registrarRepeticao();
+    }
+
+    /**
+     * Classifica uma exceção pela causa: códigos primários do SQLite ou o tipo da exceção
+     */
+    static String causa(Throwable erro) {
+        if (erro instanceof SQLException) {
+            switch (((SQLException) erro).getErrorCode() & 0xff) {
+                case 5:
+                    return "SQLITE_BUSY";
+                case 6:
+                    return "SQLITE_LOCKED";
+                case 10:
+                    return "SQLITE_IOERR";
+                case 13:
+                    return "SQLITE_FULL";
+                case 19:
+                    return "SQLITE_CONSTRAINT";
+                default:
+                    return "SQL";
+            }
+        }
+        return erro.getClass().getSimpleName();
+    }
+
+    /**
+     * @return Resumo em texto de todas as operações com chamadas registradas
+     */
+    public String formatarTexto() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-28s %9s %9s %9s %9s %9s %9s %10s %10s %6s%n",
+                "Operação", "Sucessos", "Falhas", "média ms", "p50 ms", "p99 ms", "p999 ms", "Linhas",
+                "Examinadas", "Repet."));
+        for (MetricaOperacao metrica : metricas.values()) {
+            HistogramaLatencia h = metrica.getLatencia();
+            if (h.getContagem() == 0) {
+                continue;
+            }
+            sb.append(String.format("%-28s %9d %9d %9.3f %9.3f %9.3f %9.3f %10d %10d %6d%n",
+                    metrica.getOperacao(), metrica.getSucessos(), metrica.getFalhas(),
+                    h.getMediaNanos() / 1e6, h.percentilNanos(50) / 1e6, h.percentilNanos(99) / 1e6,
+                    h.percentilNanos(99.9) / 1e6, metrica.getLinhas(), metrica.getLinhasExaminadas(),
+                    metrica.getRepeticoes()));
+            if (metrica.getFalhas() > 0) {
+                sb.append("    falhas: ").append(metrica.getFalhasPorCausa()).append('\n');
+            }
+        }
+        sb.append(estatisticasPool);
+        return sb.toString();
+    }
+}
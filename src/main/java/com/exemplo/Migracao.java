@@ -0,0 +1,37 @@
+package com.exemplo;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Uma alteração versionada do esquema do banco de dados
+ * Os comandos rodam numa transação e a versão só é registrada no commit, então uma migração é
+ * aplicada inteira ou não é aplicada. Só as de criação usam IF NOT EXISTS, para adotar um banco
+ * criado antes do controle de versão; as demais (ALTER TABLE ADD COLUMN, UPDATE) não são
+ * idempotentes e dependem de rodar uma única vez
+ */
+public class Migracao {
+    private final int versao;
+    private final String descricao;
+    private final String[] comandos;
+
+    public Migracao(int versao, String descricao, String... comandos) {
+        this.versao = versao;
+        this.descricao = descricao;
+        this.comandos = comandos;
+    }
+
+    public int getVersao() {
+        return versao;
+    }
+
+    public String getDescricao() {
+        return descricao;
+    }
+
+    void aplicar(Statement stmt) throws SQLException {
+        for (String comando : comandos) {
+            stmt.execute(comando);
+        }
+    }
+}
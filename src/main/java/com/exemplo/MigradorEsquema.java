@@ -0,0 +1,253 @@
+package com.exemplo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Aplica as migrações de esquema em ordem, registrando cada versão na tabela versao_esquema
+ * Cada migração roda em sua própria transação; as já aplicadas são ignoradas
+ */
+public class MigradorEsquema {
+    /**
+     * Versão que cria os agregados; quem a aplica preenche os agregados com AgregadosHistorico.reconstruir
+     */
+    static final int VERSAO_AGREGADOS = 8;
+
+    private static final List<Migracao> MIGRACOES;
+
+    static {
+        List<Migracao> migracoes = new ArrayList<>();
+        migracoes.add(new Migracao(1, "Tabelas iniciais",
+                "CREATE TABLE IF NOT EXISTS usuarios (" +
+                "email TEXT PRIMARY KEY," +
+                "nome TEXT NOT NULL," +
+                "senha TEXT NOT NULL," +
+                "saldo REAL NOT NULL," +
+                "is_admin INTEGER DEFAULT 0)",
+                "CREATE TABLE IF NOT EXISTS historico (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "email_origem TEXT," +
+                "email_destino TEXT," +
+                "tipo TEXT NOT NULL," +
+                "valor REAL NOT NULL," +
+                "data TIMESTAMP DEFAULT (datetime('now', 'localtime'))," +
+                "FOREIGN KEY(email_origem) REFERENCES usuarios(email)," +
+                "FOREIGN KEY(email_destino) REFERENCES usuarios(email))",
+                "CREATE TABLE IF NOT EXISTS denuncias (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "id_transacao INTEGER," +
+                "email_denunciante TEXT," +
+                "descricao TEXT," +
+                "status TEXT DEFAULT 'PENDENTE'," +
+                "data_denuncia TIMESTAMP DEFAULT (datetime('now', 'localtime'))," +
+                "FOREIGN KEY(id_transacao) REFERENCES historico(id)," +
+                "FOREIGN KEY(email_denunciante) REFERENCES usuarios(email))"));
+        migracoes.add(new Migracao(2, "Índices das consultas de histórico e denúncias",
+                "CREATE INDEX IF NOT EXISTS idx_historico_origem_data ON historico(email_origem, data)",
+                "CREATE INDEX IF NOT EXISTS idx_historico_destino_data ON historico(email_destino, data)",
+                "CREATE INDEX IF NOT EXISTS idx_denuncias_status_data ON denuncias(status, data_denuncia)",
+                "CREATE INDEX IF NOT EXISTS idx_denuncias_transacao ON denuncias(id_transacao)"));
+        migracoes.add(new Migracao(3, "Índice para paginação do histórico completo",
+                "CREATE INDEX IF NOT EXISTS idx_historico_data ON historico(data)"));
+        migracoes.add(new Migracao(4, "Checkpoint dos saldos em memória",
+                "CREATE TABLE IF NOT EXISTS saldos_checkpoint (" +
+                "id INTEGER PRIMARY KEY CHECK (id = 1)," +
+                "seq INTEGER NOT NULL)",
+                "INSERT OR IGNORE INTO saldos_checkpoint (id, seq) VALUES (1, 0)"));
+        migracoes.add(new Migracao(5, "Ligação da reversão com a transação revertida",
+                "ALTER TABLE historico ADD COLUMN reversao_de INTEGER",
+                "CREATE UNIQUE INDEX IF NOT EXISTS idx_historico_reversao ON historico(reversao_de) " +
+                "WHERE reversao_de IS NOT NULL"));
+        migracoes.add(new Migracao(6, "Fila de denúncias com prioridade e reserva",
+                "ALTER TABLE denuncias ADD COLUMN valor REAL",
+                "ALTER TABLE denuncias ADD COLUMN email_origem TEXT",
+                "ALTER TABLE denuncias ADD COLUMN reservado_por TEXT",
+                "ALTER TABLE denuncias ADD COLUMN reservado_ate INTEGER",
+                "UPDATE denuncias SET " +
+                "valor = (SELECT valor FROM historico WHERE id = denuncias.id_transacao), " +
+                "email_origem = (SELECT email_origem FROM historico WHERE id = denuncias.id_transacao)",
+                "CREATE TABLE IF NOT EXISTS denuncias_origem (" +
+                "email_origem TEXT PRIMARY KEY," +
+                "pendentes INTEGER NOT NULL)",
+                "INSERT INTO denuncias_origem (email_origem, pendentes) " +
+                "SELECT email_origem, COUNT(*) FROM denuncias " +
+                "WHERE status = 'PENDENTE' AND email_origem IS NOT NULL GROUP BY email_origem",
+                "CREATE TRIGGER IF NOT EXISTS trg_denuncias_inserida AFTER INSERT ON denuncias BEGIN " +
+                "UPDATE denuncias SET " +
+                "valor = (SELECT valor FROM historico WHERE id = NEW.id_transacao), " +
+                "email_origem = (SELECT email_origem FROM historico WHERE id = NEW.id_transacao) " +
+                "WHERE id = NEW.id AND NEW.valor IS NULL; " +
+                "INSERT OR IGNORE INTO denuncias_origem (email_origem, pendentes) " +
+                "SELECT email_origem, 0 FROM denuncias " +
+                "WHERE id = NEW.id AND status = 'PENDENTE' AND email_origem IS NOT NULL; " +
+                "UPDATE denuncias_origem SET pendentes = pendentes + 1 WHERE email_origem = " +
+                "(SELECT email_origem FROM denuncias WHERE id = NEW.id AND status = 'PENDENTE'); " +
+                "END",
+                "CREATE TRIGGER IF NOT EXISTS trg_denuncias_fechada AFTER UPDATE OF status ON denuncias " +
+                "WHEN OLD.status = 'PENDENTE' AND NEW.status <> 'PENDENTE' BEGIN " +
+                "UPDATE denuncias_origem SET pendentes = pendentes - 1 WHERE email_origem = NEW.email_origem; " +
+                "END",
+                "CREATE TRIGGER IF NOT EXISTS trg_denuncias_reaberta AFTER UPDATE OF status ON denuncias " +
+                "WHEN OLD.status <> 'PENDENTE' AND NEW.status = 'PENDENTE' AND NEW.email_origem IS NOT NULL BEGIN " +
+                "INSERT OR IGNORE INTO denuncias_origem (email_origem, pendentes) VALUES (NEW.email_origem, 0); " +
+                "UPDATE denuncias_origem SET pendentes = pendentes + 1 WHERE email_origem = NEW.email_origem; " +
+                "END",
+                "CREATE INDEX IF NOT EXISTS idx_denuncias_fila_valor ON denuncias(status, valor, id)",
+                "CREATE INDEX IF NOT EXISTS idx_denuncias_fila_origem ON denuncias(status, email_origem, id)",
+                "CREATE INDEX IF NOT EXISTS idx_denuncias_origem_pendentes ON denuncias_origem(pendentes, email_origem)"));
+        migracoes.add(new Migracao(7, "Registro das partições mensais do histórico arquivado",
+                "CREATE TABLE IF NOT EXISTS historico_particoes (" +
+                "mes TEXT PRIMARY KEY," +
+                "data_min TEXT," +
+                "data_max TEXT," +
+                "id_min INTEGER," +
+                "id_max INTEGER," +
+                "linhas INTEGER NOT NULL)"));
+        migracoes.add(new Migracao(VERSAO_AGREGADOS, "Agregados diários por conta e por tipo",
+                "CREATE TABLE IF NOT EXISTS agregados_conta_dia (" +
+                "email TEXT NOT NULL," +
+                "dia TEXT NOT NULL," +
+                "entradas REAL NOT NULL DEFAULT 0," +
+                "saidas REAL NOT NULL DEFAULT 0," +
+                "qtd_entradas INTEGER NOT NULL DEFAULT 0," +
+                "qtd_saidas INTEGER NOT NULL DEFAULT 0," +
+                "PRIMARY KEY (email, dia)) WITHOUT ROWID",
+                "CREATE TABLE IF NOT EXISTS agregados_tipo_dia (" +
+                "dia TEXT NOT NULL," +
+                "tipo TEXT NOT NULL," +
+                "quantidade INTEGER NOT NULL," +
+                "volume REAL NOT NULL," +
+                "PRIMARY KEY (dia, tipo)) WITHOUT ROWID",
+                // linhas devolvidas do arquivo para a tabela quente já foram contadas: todo ID novo é maior que
+                // qualquer ID arquivado (AUTOINCREMENT não reaproveita IDs), então basta comparar com id_max
+                "CREATE TRIGGER IF NOT EXISTS trg_historico_agregados AFTER INSERT ON historico " +
+                "WHEN NEW.id > COALESCE((SELECT MAX(id_max) FROM historico_particoes), 0) BEGIN " +
+                "INSERT INTO agregados_tipo_dia (dia, tipo, quantidade, volume) " +
+                "VALUES (date(NEW.data), NEW.tipo, 1, NEW.valor) " +
+                "ON CONFLICT (dia, tipo) DO UPDATE SET quantidade = quantidade + 1, volume = volume + excluded.volume; " +
+                "INSERT INTO agregados_conta_dia (email, dia, entradas, qtd_entradas) " +
+                "SELECT COALESCE(NEW.email_destino, NEW.email_origem), date(NEW.data), NEW.valor, 1 " +
+                "WHERE COALESCE(NEW.email_destino, NEW.email_origem) IS NOT NULL " +
+                "ON CONFLICT (email, dia) DO UPDATE SET entradas = entradas + excluded.entradas, " +
+                "qtd_entradas = qtd_entradas + 1; " +
+                "INSERT INTO agregados_conta_dia (email, dia, saidas, qtd_saidas) " +
+                "SELECT NEW.email_origem, date(NEW.data), NEW.valor, 1 " +
+                "WHERE NEW.email_origem IS NOT NULL AND NEW.email_destino IS NOT NULL " +
+                "ON CONFLICT (email, dia) DO UPDATE SET saidas = saidas + excluded.saidas, " +
+                "qtd_saidas = qtd_saidas + 1; " +
+                "END"));
+        migracoes.add(new Migracao(9, "Checkpoint da importação em massa",
+                "CREATE TABLE IF NOT EXISTS importacao_checkpoint (" +
+                "arquivo TEXT NOT NULL," +
+                "tamanho INTEGER NOT NULL," +
+                "modificado INTEGER NOT NULL," +
+                "tipo TEXT NOT NULL," +
+                "registros INTEGER NOT NULL," +
+                "concluida INTEGER NOT NULL DEFAULT 0," +
+                "atualizado_em TIMESTAMP DEFAULT (datetime('now', 'localtime'))," +
+                "PRIMARY KEY (arquivo, tamanho, modificado))",
+                "CREATE TABLE IF NOT EXISTS importacao_objetos_adiados (" +
+                "nome TEXT PRIMARY KEY," +
+                "tipo TEXT NOT NULL," +
+                "sql TEXT NOT NULL)"));
+        migracoes.add(new Migracao(10, "Participação em transferências entre fragmentos (2PC)",
+                "CREATE TABLE IF NOT EXISTS transferencias_fragmentos (" +
+                "id_global TEXT PRIMARY KEY," +
+                "papel TEXT NOT NULL CHECK (papel IN ('DEBITO', 'CREDITO'))," +
+                "email TEXT NOT NULL," +
+                "contraparte TEXT NOT NULL," +
+                "valor REAL NOT NULL," +
+                "tipo TEXT NOT NULL," +
+                "reversao_de INTEGER," +
+                "estado TEXT NOT NULL CHECK (estado IN ('PREPARADA', 'CONFIRMADA', 'DESFEITA'))," +
+                "id_historico INTEGER," +
+                "criada_em TIMESTAMP DEFAULT (datetime('now', 'localtime')))",
+                "CREATE INDEX IF NOT EXISTS idx_transferencias_fragmentos_preparadas " +
+                "ON transferencias_fragmentos(estado) WHERE estado = 'PREPARADA'",
+                "CREATE INDEX IF NOT EXISTS idx_transferencias_fragmentos_historico " +
+                "ON transferencias_fragmentos(id_historico)"));
+        migracoes.add(new Migracao(11, "Chaves de idempotência de depósitos e transferências",
+                "CREATE TABLE IF NOT EXISTS chaves_idempotencia (" +
+                "chave TEXT PRIMARY KEY," +
+                "assinatura TEXT NOT NULL," +
+                "id_transacao INTEGER NOT NULL," +
+                "criada_em INTEGER NOT NULL) WITHOUT ROWID",
+                "CREATE INDEX IF NOT EXISTS idx_chaves_idempotencia_criada ON chaves_idempotencia(criada_em)"));
+        migracoes.add(new Migracao(12, "Confirmação dos registros de saldo gravados em transação",
+                "CREATE TABLE IF NOT EXISTS saldos_confirmados (seq INTEGER PRIMARY KEY)",
+                "ALTER TABLE saldos_checkpoint ADD COLUMN confirmadas_desde INTEGER"));
+        // o mesmo arquivo importado como usuários e como transações tem um checkpoint para cada tipo
+        migracoes.add(new Migracao(13, "Tipo da importação na chave do checkpoint",
+                "CREATE TABLE importacao_checkpoint_nova (" +
+                "arquivo TEXT NOT NULL," +
+                "tamanho INTEGER NOT NULL," +
+                "modificado INTEGER NOT NULL," +
+                "tipo TEXT NOT NULL," +
+                "registros INTEGER NOT NULL," +
+                "concluida INTEGER NOT NULL DEFAULT 0," +
+                "atualizado_em TIMESTAMP DEFAULT (datetime('now', 'localtime'))," +
+                "PRIMARY KEY (arquivo, tamanho, modificado, tipo))",
+                "INSERT INTO importacao_checkpoint_nova SELECT arquivo, tamanho, modificado, tipo, registros, " +
+                "concluida, atualizado_em FROM importacao_checkpoint",
+                "DROP TABLE importacao_checkpoint",
+                "ALTER TABLE importacao_checkpoint_nova RENAME TO importacao_checkpoint"));
+        MIGRACOES = Collections.unmodifiableList(migracoes);
+    }
+
+    /**
+     * Leva o esquema até a versão mais recente
+     * @param conn Conexão de escrita, em modo auto-commit
+     * @return Quantidade de migrações aplicadas nesta execução
+     */
+    public int migrar(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS versao_esquema (" +
+                    "versao INTEGER PRIMARY KEY," +
+                    "descricao TEXT NOT NULL," +
+                    "aplicada_em TIMESTAMP DEFAULT (datetime('now', 'localtime')))");
+        }
+
+        int atual = versaoAtual(conn);
+        int aplicadas = 0;
+        for (Migracao migracao : MIGRACOES) {
+            if (migracao.getVersao() <= atual) {
+                continue;
+            }
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                migracao.aplicar(stmt);
+                try (PreparedStatement registro = conn.prepareStatement(
+                        "INSERT INTO versao_esquema (versao, descricao) VALUES (?, ?)")) {
+                    registro.setInt(1, migracao.getVersao());
+                    registro.setString(2, migracao.getDescricao());
+                    registro.executeUpdate();
+                }
+                conn.commit();
+                aplicadas++;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw new SQLException("Falha na migração " + migracao.getVersao()
+                        + " (" + migracao.getDescricao() + "): " + e.getMessage(), e);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        return aplicadas;
+    }
+
+    /**
+     * @return Maior versão já aplicada, ou 0 para um banco sem controle de versão
+     */
+    public int versaoAtual(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(versao), 0) FROM versao_esquema")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.exemplo;
+
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pipeline de escrita com um único escritor e commit em grupo
+ * As threads chamadoras enfileiram operações; a thread do motor agrupa várias operações numa só
+ * transação (limitada por quantidade e por tempo de espera) e só completa o futuro de cada
+ * operação depois do commit do grupo. Cada operação roda sob um savepoint, então a falha de
+ * uma não desfaz as demais, e a ordem da fila é a ordem de execução, como numa execução serial
+ */
+public class MotorEscrita implements AutoCloseable {
+    private final PoolConexoes pool;
+    private final int tamanhoMaximoGrupo;
+    private final long esperaMaximaNanos;
+    private final BlockingQueue<Pendente<?>> fila;
+    private final Thread escritor;
+    private volatile boolean ativo = true;
+
+    public MotorEscrita(PoolConexoes pool, ConfiguracaoBanco config) {
+        this.pool = pool;
+        this.tamanhoMaximoGrupo = config.getTamanhoMaximoGrupo();
+        this.esperaMaximaNanos = TimeUnit.MICROSECONDS.toNanos(config.getEsperaMaximaGrupoMicros());
+        this.fila = new ArrayBlockingQueue<>(config.getCapacidadeFilaEscrita());
+        this.escritor = new Thread(this::executar, "brasisco-escritor");
+        this.escritor.setDaemon(true);
+        this.escritor.start();
+    }
+
+    /**
+     * Enfileira uma operação; bloqueia se a fila estiver cheia
+     * @return Futuro completado após o commit do grupo que contém a operação
+     */
+    public <T> CompletableFuture<T> submeter(OperacaoEscrita<T> operacao) {
+        return enfileirar(operacao).futuro;
+    }
+
+    /**
+     * Enfileira uma operação e aguarda o commit do seu grupo por até 'prazoMs'
+     * Se o prazo vence antes de o escritor pegar a operação, ela sai da fila e não roda mais; se ele já
+     * pegou, a espera continua até o commit, para o resultado devolvido ser o que foi gravado
+     * @param prazoMs Prazo da espera (0 = sem prazo)
+     */
+    public <T> T executarAguardando(OperacaoEscrita<T> operacao, long prazoMs) throws SQLException {
+        Pendente<T> pendente = enfileirar(operacao);
+        try {
+            if (prazoMs <= 0) {
+                return pendente.futuro.get();
+            }
+            try {
+                return pendente.futuro.get(prazoMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (pendente.iniciada.compareAndSet(false, true)) {
+                    fila.remove(pendente);
+                    throw new SQLException("Commit não confirmado em " + prazoMs + " ms pelo motor de escrita");
+                }
+                return pendente.futuro.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Espera pelo commit interrompida");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException(e.getCause());
+        }
+    }
+
+    private <T> Pendente<T> enfileirar(OperacaoEscrita<T> operacao) {
+        Pendente<T> pendente = new Pendente<>(operacao);
+        try {
+            // espera por espaço em fatias, para não ficar presa numa fila que o escritor não esvazia mais
+            while (!fila.offer(pendente, 100, TimeUnit.MILLISECONDS)) {
+                if (!ativo) {
+                    pendente.recusar();
+                    return pendente;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pendente.futuro.completeExceptionally(e);
+            return pendente;
+        }
+        // close() pode ter rodado entre a checagem e o offer: se o escritor já saiu, ninguém mais tira
+        // a operação da fila. Quem a remover primeiro (esta thread, o dreno do close ou o escritor) decide
+        if (!ativo && fila.remove(pendente)) {
+            pendente.recusar();
+        }
+        return pendente;
+    }
+
+    private void executar() {
+        List<Pendente<?>> grupo = new ArrayList<>(tamanhoMaximoGrupo);
+        while (ativo || !fila.isEmpty()) {
+            try {
+                Pendente<?> primeiro = fila.poll(100, TimeUnit.MILLISECONDS);
+                if (primeiro == null) {
+                    continue;
+                }
+                grupo.add(primeiro);
+                long limite = System.nanoTime() + esperaMaximaNanos;
+                while (grupo.size() < tamanhoMaximoGrupo) {
+                    long restante = limite - System.nanoTime();
+                    Pendente<?> proximo = restante > 0 ? fila.poll(restante, TimeUnit.NANOSECONDS) : fila.poll();
+                    if (proximo == null) {
+                        break;
+                    }
+                    grupo.add(proximo);
+                }
+            } catch (InterruptedException e) {
+                // encerramento: processa o que já estiver no grupo e na fila
+            }
+            if (!grupo.isEmpty()) {
+                try {
+                    confirmarGrupo(grupo);
+                } catch (RuntimeException e) {
+                    // o escritor não pode morrer com futuros pendentes
+                    for (Pendente<?> pendente : grupo) {
+                        pendente.futuro.completeExceptionally(e);
+                    }
+                }
+                grupo.clear();
+            }
+        }
+    }
+
+    private void confirmarGrupo(List<Pendente<?>> grupo) {
+        try (ConexaoPool conn = pool.obterEscrita()) {
+            conn.setAutoCommit(false);
+            try {
+                for (Pendente<?> pendente : grupo) {
+                    if (!pendente.iniciada.compareAndSet(false, true)) {
+                        // abandonada por prazo vencido: quem esperava já recebeu o erro
+                        continue;
+                    }
+                    Savepoint savepoint = conn.getConexao().setSavepoint();
+                    int pontoDesfazer = conn.getPontoDesfazer();
+                    try {
+                        pendente.executar(conn);
+                        conn.getConexao().releaseSavepoint(savepoint);
+                    } catch (SQLException | RuntimeException e) {
+                        conn.getConexao().rollback(savepoint);
+                        conn.desfazerAte(pontoDesfazer);
+                        pendente.erro = e;
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            for (Pendente<?> pendente : grupo) {
+                pendente.futuro.completeExceptionally(e);
+            }
+            return;
+        }
+        for (Pendente<?> pendente : grupo) {
+            pendente.completar();
+        }
+    }
+
+    /**
+     * Para de aceitar operações e aguarda o escritor gravar o que já foi enfileirado
+     * O que ainda estiver na fila depois disso (escritor parado ou que não terminou a tempo) falha,
+     * para nenhum futuro ficar sem resposta
+     */
+    @Override
+    public void close() {
+        ativo = false;
+        try {
+            escritor.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Pendente<?>> restantes = new ArrayList<>();
+        fila.drainTo(restantes);
+        for (Pendente<?> pendente : restantes) {
+            pendente.recusar();
+        }
+    }
+
+    private static final class Pendente<T> {
+        private final OperacaoEscrita<T> operacao;
+        private final CompletableFuture<T> futuro = new CompletableFuture<>();
+        // tomada pelo escritor antes de executar, ou por quem desiste da espera antes disso
+        private final AtomicBoolean iniciada = new AtomicBoolean();
+        private T resultado;
+        private Exception erro;
+
+        Pendente(OperacaoEscrita<T> operacao) {
+            this.operacao = operacao;
+        }
+
+        void executar(ConexaoPool conn) throws SQLException {
+            resultado = operacao.executar(conn);
+        }
+
+        void recusar() {
+            futuro.completeExceptionally(new SQLException("Motor de escrita do Brasisco encerrado"));
+        }
+
+        void completar() {
+            if (erro != null) {
+                futuro.completeExceptionally(erro);
+            } else {
+                futuro.complete(resultado);
+            }
+        }
+    }
+}
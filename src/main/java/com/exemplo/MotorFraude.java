@@ -0,0 +1,162 @@
+package com.exemplo;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Motor de regras antifraude em memória, alimentado por cada depósito e transferência do Banco
+ * Cada conta tem uma JanelaConta com as transações recentes; antes da operação as regras são avaliadas
+ * sobre a janela (sem acesso ao SQLite) e, no mesmo monitor, o evento já entra na janela, para duas
+ * operações simultâneas da mesma conta não serem avaliadas sem ver uma à outra. Se a operação não se
+ * confirma, o Banco retira o evento com remover
+ * Ações: SINALIZAR avisa os ouvintes, DENUNCIAR cria uma denúncia automática e RETER impede a operação
+ * Contas sem transações na janela e paradas há mais que a ociosidade saem da memória
+ */
+public class MotorFraude {
+    /** Email registrado como denunciante nas denúncias automáticas */
+    public static final String DENUNCIANTE = "antifraude@banco.com";
+    private static final long OCIOSIDADE_PADRAO_MS = TimeUnit.HOURS.toMillis(24);
+
+    private final Map<String, JanelaConta> janelas = new ConcurrentHashMap<>();
+    private final List<RegraFraude> regras = new CopyOnWriteArrayList<>();
+    private final List<Consumer<AlertaFraude>> ouvintes = new CopyOnWriteArrayList<>();
+    private final Map<AcaoFraude, LongAdder> contagens = new EnumMap<>(AcaoFraude.class);
+    private final long janelaMs;
+    private final int capacidade;
+    private final long ociosidadeMs;
+    // instante (do relógio dos eventos) da última varredura de contas ociosas
+    private final AtomicLong ultimaVarredura = new AtomicLong();
+
+    /**
+     * @param janelaMs Duração da janela deslizante de cada conta
+     * @param capacidade Quantidade máxima de transações guardadas por conta (limita a velocidade medida)
+     */
+    public MotorFraude(long janelaMs, int capacidade) {
+        this(janelaMs, capacidade, OCIOSIDADE_PADRAO_MS);
+    }
+
+    /**
+     * @param ociosidadeMs Tempo sem transações depois do qual a conta sai da memória; ela volta com a
+     *                     janela vazia e sem destinos conhecidos (nunca menor que a janela)
+     */
+    public MotorFraude(long janelaMs, int capacidade, long ociosidadeMs) {
+        this.janelaMs = janelaMs;
+        this.capacidade = Math.max(1, capacidade);
+        this.ociosidadeMs = Math.max(janelaMs, ociosidadeMs);
+        for (AcaoFraude acao : AcaoFraude.values()) {
+            contagens.put(acao, new LongAdder());
+        }
+    }
+
+    public void adicionarRegra(RegraFraude regra) {
+        regras.add(regra);
+    }
+
+    /**
+     * @param ouvinte Recebe cada avaliação com ação diferente de NENHUMA, na thread da operação
+     */
+    public void adicionarOuvinte(Consumer<AlertaFraude> ouvinte) {
+        ouvintes.add(ouvinte);
+    }
+
+    /**
+     * Avalia as regras para uma transação que ainda não aconteceu e, se ela não for retida, acrescenta o
+     * evento à janela da conta no mesmo monitor
+     * Se a operação falhar depois disso, chame remover com o mesmo evento
+     * @return Alerta com a ação mais severa, ou null se nenhuma regra disparou
+     */
+    public AlertaFraude avaliar(EventoTransacao evento) {
+        AcaoFraude acao = AcaoFraude.NENHUMA;
+        String regraDisparada = null;
+        while (true) {
+            JanelaConta janela = janelas.computeIfAbsent(evento.getConta(),
+                    conta -> new JanelaConta(janelaMs, capacidade));
+            synchronized (janela) {
+                if (janela.descartada) {
+                    continue;
+                }
+                janela.avancar(evento.getInstanteMs());
+                for (RegraFraude regra : regras) {
+                    AcaoFraude resultado = regra.avaliar(evento, janela);
+                    if (resultado.compareTo(acao) > 0) {
+                        acao = resultado;
+                        regraDisparada = regra.getNome();
+                    }
+                }
+                if (acao != AcaoFraude.RETER) {
+                    janela.registrar(evento);
+                }
+            }
+            break;
+        }
+        contagens.get(acao).increment();
+        descartarOciosas(evento.getInstanteMs());
+        if (acao == AcaoFraude.NENHUMA) {
+            return null;
+        }
+        AlertaFraude alerta = new AlertaFraude(evento, acao, regraDisparada);
+        for (Consumer<AlertaFraude> ouvinte : ouvintes) {
+            ouvinte.accept(alerta);
+        }
+        return alerta;
+    }
+
+    /**
+     * Retira da janela um evento avaliado cuja operação não se confirmou (recusada ou desfeita)
+     */
+    public void remover(EventoTransacao evento) {
+        JanelaConta janela = janelas.get(evento.getConta());
+        if (janela == null) {
+            return;
+        }
+        synchronized (janela) {
+            if (!janela.descartada) {
+                janela.remover(evento);
+            }
+        }
+    }
+
+    /**
+     * Avalia e registra: usado no reprocessamento do histórico, onde a transação já aconteceu
+     */
+    public AlertaFraude processar(EventoTransacao evento) {
+        return avaliar(evento);
+    }
+
+    /**
+     * No máximo uma varredura por janela de tempo, feita pela thread que passar primeiro
+     */
+    private void descartarOciosas(long instanteMs) {
+        long anterior = ultimaVarredura.get();
+        if (instanteMs - anterior < janelaMs || !ultimaVarredura.compareAndSet(anterior, instanteMs)) {
+            return;
+        }
+        for (Map.Entry<String, JanelaConta> entrada : janelas.entrySet()) {
+            JanelaConta janela = entrada.getValue();
+            synchronized (janela) {
+                if (janela.ociosa(instanteMs, ociosidadeMs)) {
+                    janela.descartada = true;
+                    janelas.remove(entrada.getKey(), janela);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Quantas avaliações terminaram com a ação indicada
+     */
+    public long getContagem(AcaoFraude acao) {
+        return contagens.get(acao).sum();
+    }
+
+    public int getContasAcompanhadas() {
+        return janelas.size();
+    }
+}
@@ -0,0 +1,73 @@
+package com.exemplo;
+
+/**
+ * Entradas e saídas de uma conta em um dia, lidas dos agregados (agregados_conta_dia)
+ */
+public class MovimentoDiario {
+    private final String email;
+    private final String dia;
+    private final double entradas;
+    private final double saidas;
+    private final long quantidadeEntradas;
+    private final long quantidadeSaidas;
+
+    public MovimentoDiario(String email, String dia, double entradas, double saidas,
+                           long quantidadeEntradas, long quantidadeSaidas) {
+        this.email = email;
+        this.dia = dia;
+        this.entradas = entradas;
+        this.saidas = saidas;
+        this.quantidadeEntradas = quantidadeEntradas;
+        this.quantidadeSaidas = quantidadeSaidas;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * @return Dia no formato AAAA-MM-DD (hora local, como a coluna data do histórico)
+     */
+    public String getDia() {
+        return dia;
+    }
+
+    /**
+     * @return Soma de depósitos e valores recebidos
+     */
+    public double getEntradas() {
+        return entradas;
+    }
+
+    /**
+     * @return Soma dos valores enviados
+     */
+    public double getSaidas() {
+        return saidas;
+    }
+
+    public long getQuantidadeEntradas() {
+        return quantidadeEntradas;
+    }
+
+    public long getQuantidadeSaidas() {
+        return quantidadeSaidas;
+    }
+
+    public long getQuantidade() {
+        return quantidadeEntradas + quantidadeSaidas;
+    }
+
+    /**
+     * @return Variação do saldo no dia
+     */
+    public double getLiquido() {
+        return entradas - saidas;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s: +R$ %.2f (%d) -R$ %.2f (%d)", email, dia, entradas, quantidadeEntradas,
+                saidas, quantidadeSaidas);
+    }
+}
@@ -0,0 +1,38 @@
+package com.exemplo;
+
+/**
+ * Operações públicas do Banco acompanhadas pelas MetricasBanco
+ */
+public enum OperacaoBanco {
+    ADICIONAR_USUARIO,
+    AUTENTICAR,
+    LOGIN,
+    IS_ADMIN,
+    NOME_USUARIO,
+    CONSULTAR_SALDO,
+    DEPOSITAR,
+    TRANSFERIR,
+    TRANSFERIR_LOTE,
+    CONSULTAR_HISTORICO,
+    CONSULTAR_HISTORICO_USUARIO,
+    REGISTRAR_DENUNCIA,
+    CONSULTAR_DENUNCIAS,
+    CONSULTAR_FILA_DENUNCIAS,
+    RESERVAR_DENUNCIAS,
+    RENOVAR_RESERVA,
+    LIBERAR_RESERVA,
+    REJEITAR_DENUNCIA,
+    REVERTER_TRANSFERENCIA,
+    REVERTER_LOTE,
+    ARQUIVAR_HISTORICO,
+    CONSULTAR_AGREGADOS,
+    RECONSTRUIR_AGREGADOS,
+    EXPORTAR_EXTRATO,
+    IMPORTAR_USUARIOS,
+    IMPORTAR_TRANSACOES,
+    PREPARAR_FRAGMENTO,
+    CONCLUIR_FRAGMENTO,
+    REPETIR_IDEMPOTENTE,
+    EXPIRAR_CHAVES,
+    ANALISAR_HISTORICO
+}
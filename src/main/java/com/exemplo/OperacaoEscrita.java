@@ -0,0 +1,12 @@
+package com.exemplo;
+
+import java.sql.SQLException;
+
+/**
+ * Trecho de escrita executado dentro de uma transação já aberta na conexão de escrita
+ * Não deve chamar commit nem rollback: quem controla a transação é o Banco ou o MotorEscrita
+ * @param <T> Tipo do resultado entregue a quem submeteu a operação
+ */
+public interface OperacaoEscrita<T> {
+    T executar(ConexaoPool conn) throws SQLException;
+}
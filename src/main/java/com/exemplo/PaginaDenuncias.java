@@ -0,0 +1,40 @@
+package com.exemplo;
+
+import java.util.List;
+
+/**
+ * Uma página da fila de denúncias pendentes, na ordem da prioridade pedida
+ */
+public class PaginaDenuncias {
+    private final List<Denuncia> denuncias;
+    private final CursorDenuncias proximo;
+    private final boolean temMais;
+
+    public PaginaDenuncias(List<Denuncia> denuncias, CursorDenuncias proximo, boolean temMais) {
+        this.denuncias = denuncias;
+        this.proximo = proximo;
+        this.temMais = temMais;
+    }
+
+    public List<Denuncia> getDenuncias() {
+        return denuncias;
+    }
+
+    /**
+     * @return Cursor para pedir a página seguinte
+     */
+    public CursorDenuncias getProximo() {
+        return proximo;
+    }
+
+    /**
+     * @return true se a página veio cheia e pode haver mais denúncias
+     */
+    public boolean temMais() {
+        return temMais;
+    }
+
+    public boolean isEmpty() {
+        return denuncias.isEmpty();
+    }
+}
@@ -0,0 +1,40 @@
+package com.exemplo;
+
+import java.util.List;
+
+/**
+ * Uma página do histórico de transações, da mais recente para a mais antiga
+ */
+public class PaginaHistorico {
+    private final List<Transacao> transacoes;
+    private final CursorHistorico proximo;
+    private final boolean temMais;
+
+    public PaginaHistorico(List<Transacao> transacoes, CursorHistorico proximo, boolean temMais) {
+        this.transacoes = transacoes;
+        this.proximo = proximo;
+        this.temMais = temMais;
+    }
+
+    public List<Transacao> getTransacoes() {
+        return transacoes;
+    }
+
+    /**
+     * @return Cursor para pedir a página seguinte
+     */
+    public CursorHistorico getProximo() {
+        return proximo;
+    }
+
+    /**
+     * @return true se a página veio cheia e pode haver transações mais antigas
+     */
+    public boolean temMais() {
+        return temMais;
+    }
+
+    public boolean isEmpty() {
+        return transacoes.isEmpty();
+    }
+}
@@ -0,0 +1,100 @@
+package com.exemplo;
+
+/**
+ * Partição mensal do histórico arquivado: tabela historico_AAAA_MM com as transações daquele mês
+ * Os limites de data e de ID permitem pular partições que não podem ter linhas para uma consulta
+ */
+public class ParticaoHistorico {
+    private final String mes;
+    private final String dataMin;
+    private final String dataMax;
+    private final long idMin;
+    private final long idMax;
+    private final long linhas;
+
+    public ParticaoHistorico(String mes, String dataMin, String dataMax, long idMin, long idMax, long linhas) {
+        this.mes = mes;
+        this.dataMin = dataMin;
+        this.dataMax = dataMax;
+        this.idMin = idMin;
+        this.idMax = idMax;
+        this.linhas = linhas;
+    }
+
+    /**
+     * @return Mês no formato AAAA-MM
+     */
+    public String getMes() {
+        return mes;
+    }
+
+    public String getTabela() {
+        return tabela(mes);
+    }
+
+    /**
+     * @return Menor data arquivada, ou null se a partição ainda está vazia
+     */
+    public String getDataMin() {
+        return dataMin;
+    }
+
+    public String getDataMax() {
+        return dataMax;
+    }
+
+    public long getIdMin() {
+        return idMin;
+    }
+
+    public long getIdMax() {
+        return idMax;
+    }
+
+    public long getLinhas() {
+        return linhas;
+    }
+
+    public boolean isVazia() {
+        return dataMax == null;
+    }
+
+    /**
+     * @return Cópia com os limites alargados para incluir as linhas informadas
+     */
+    ParticaoHistorico ampliar(String dataMin, String dataMax, long idMin, long idMax) {
+        return new ParticaoHistorico(mes,
+                this.dataMin == null || dataMin.compareTo(this.dataMin) < 0 ? dataMin : this.dataMin,
+                this.dataMax == null || dataMax.compareTo(this.dataMax) > 0 ? dataMax : this.dataMax,
+                this.dataMin == null ? idMin : Math.min(this.idMin, idMin),
+                this.dataMax == null ? idMax : Math.max(this.idMax, idMax),
+                linhas);
+    }
+
+    ParticaoHistorico somarLinhas(long quantidade) {
+        return new ParticaoHistorico(mes, dataMin, dataMax, idMin, idMax, linhas + quantidade);
+    }
+
+    /**
+     * @return true se a partição pode conter a transação (o ID está entre os limites)
+     */
+    boolean podeConter(long id) {
+        return !isVazia() && id >= idMin && id <= idMax;
+    }
+
+    /**
+     * @param mes Mês no formato AAAA-MM (validado, pois vira nome de tabela)
+     */
+    static String tabela(String mes) {
+        if (!mes.matches("\\d{4}-\\d{2}")) {
+            throw new IllegalArgumentException("Mês inválido para partição do histórico: " + mes);
+        }
+        return "historico_" + mes.replace('-', '_');
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d transações (%s a %s, IDs %d a %d)",
+                mes, linhas, dataMin, dataMax, idMin, idMax);
+    }
+}
@@ -0,0 +1,22 @@
+package com.exemplo;
+
+/**
+ * Dados do usuário que mudam pouco e são lidos o tempo todo (nome e perfil de administrador)
+ */
+public class PerfilUsuario {
+    private final String nome;
+    private final boolean admin;
+
+    public PerfilUsuario(String nome, boolean admin) {
+        this.nome = nome;
+        this.admin = admin;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public boolean isAdmin() {
+        return admin;
+    }
+}
@@ -0,0 +1,152 @@
+package com.exemplo;
+
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool limitado de conexões SQLite de longa duração
+ * Mantém uma única conexão de escrita (o SQLite só admite um escritor) e várias conexões somente leitura
+ * O banco é colocado em modo WAL para que leitores não bloqueiem o escritor
+ */
+public class PoolConexoes implements AutoCloseable {
+    private static final String TIMEZONE = "America/Sao_Paulo";
+
+    private final ConfiguracaoBanco config;
+    private final EstatisticasPool estatisticas = new EstatisticasPool();
+    private final BlockingQueue<ConexaoPool> escritor = new ArrayBlockingQueue<>(1);
+    private final BlockingQueue<ConexaoPool> leitores;
+    private volatile boolean fechado;
+
+    public PoolConexoes(ConfiguracaoBanco config) throws SQLException {
+        this.config = config;
+        this.leitores = new ArrayBlockingQueue<>(config.getNumeroLeitores());
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("Driver SQLite não encontrado: " + e.getMessage());
+        }
+
+        // O escritor é aberto primeiro: cria o arquivo e ativa o WAL antes dos leitores
+        ConexaoPool conexaoEscrita = new ConexaoPool(this, abrir(false), false,
+                config.getTamanhoCacheStatements(), estatisticas);
+        escritor.add(conexaoEscrita);
+        for (int i = 0; i < config.getNumeroLeitores(); i++) {
+            ConexaoPool leitor = new ConexaoPool(this, abrir(true), true,
+                    config.getTamanhoCacheStatements(), estatisticas);
+            leitores.add(leitor);
+        }
+    }
+
+    /**
+     * Empresta a conexão de escrita, aguardando se outra thread a estiver usando
+     */
+    public ConexaoPool obterEscrita() throws SQLException {
+        return emprestar(escritor);
+    }
+
+    /**
+     * Empresta uma conexão somente leitura
+     */
+    public ConexaoPool obterLeitura() throws SQLException {
+        return emprestar(leitores);
+    }
+
+    public EstatisticasPool getEstatisticas() {
+        return estatisticas;
+    }
+
+    private ConexaoPool emprestar(BlockingQueue<ConexaoPool> fila) throws SQLException {
+        if (fechado) {
+            throw new SQLException("Pool de conexões do Brasisco fechado");
+        }
+        long inicio = System.nanoTime();
+        ConexaoPool conexao;
+        try {
+            conexao = fila.poll(config.getTempoMaximoEsperaMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Espera por conexão interrompida");
+        }
+        if (conexao == null) {
+            throw new SQLException("Tempo esgotado aguardando conexão livre ("
+                    + config.getTempoMaximoEsperaMs() + " ms)");
+        }
+        estatisticas.registrarEmprestimo(System.nanoTime() - inicio);
+
+        long ocioso = System.nanoTime() - conexao.getUltimoUsoNanos();
+        if (ocioso > TimeUnit.MILLISECONDS.toNanos(config.getIntervaloVerificacaoMs()) && !conexao.valida()) {
+            try {
+                recriar(conexao);
+            } catch (SQLException e) {
+                devolver(conexao);
+                throw e;
+            }
+        }
+        return conexao;
+    }
+
+    void devolver(ConexaoPool conexao) {
+        estatisticas.registrarDevolucao();
+        if (!conexao.restaurar()) {
+            try {
+                recriar(conexao);
+            } catch (SQLException e) {
+                System.out.println("Erro ao recriar conexão do Brasisco: " + e.getMessage());
+            }
+        }
+        conexao.aparar();
+        conexao.marcarUso();
+        if (fechado) {
+            conexao.fecharFisicamente();
+            return;
+        }
+        if (conexao.isSomenteLeitura()) {
+            leitores.offer(conexao);
+        } else {
+            escritor.offer(conexao);
+        }
+    }
+
+    private void recriar(ConexaoPool conexao) throws SQLException {
+        conexao.trocarConexao(abrir(conexao.isSomenteLeitura()));
+        estatisticas.registrarConexaoRecriada();
+    }
+
+    private Connection abrir(boolean somenteLeitura) throws SQLException {
+        SQLiteConfig sqliteConfig = new SQLiteConfig();
+        sqliteConfig.setReadOnly(somenteLeitura);
+        sqliteConfig.setBusyTimeout(config.getTimeoutOcupadoMs());
+        Connection conn = DriverManager.getConnection(config.getUrl(), sqliteConfig.toProperties());
+        try (Statement stmt = conn.createStatement()) {
+            // Configurar o fuso horário para o Brasil
+            stmt.execute("PRAGMA timezone = '" + TIMEZONE + "'");
+            if (!somenteLeitura) {
+                stmt.execute("PRAGMA journal_mode = WAL");
+            }
+        }
+        return conn;
+    }
+
+    /**
+     * Fecha todas as conexões livres; as emprestadas são fechadas quando devolvidas
+     */
+    @Override
+    public void close() {
+        fechado = true;
+        List<ConexaoPool> livres = new ArrayList<>();
+        escritor.drainTo(livres);
+        leitores.drainTo(livres);
+        for (ConexaoPool conexao : livres) {
+            conexao.fecharFisicamente();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.exemplo;
+
+/**
+ * Ordem em que a fila de denúncias entrega os itens pendentes
+ */
+public enum PrioridadeDenuncia {
+    /** Maior valor da transação denunciada primeiro */
+    VALOR,
+    /** Denúncia mais antiga primeiro */
+    IDADE,
+    /** Contas de origem com mais denúncias pendentes primeiro */
+    RECORRENCIA
+}
@@ -0,0 +1,294 @@
+package com.exemplo;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Protocolo binário de requisição e resposta entre ServidorBanco e ClienteBanco
+ *
+ * Requisição: [int tamanho][int id][byte operação][corpo]
+ * Resposta:   [int tamanho][int id][byte situação][corpo]
+ * O tamanho conta os bytes depois dele. O id é escolhido pelo cliente e volta na resposta, então várias
+ * requisições podem ser enviadas sem esperar (pipelining); as respostas chegam na ordem em que as
+ * operações terminam, não na ordem de envio
+ *
+ * Textos vão como [short tamanho][UTF-8], com tamanho -1 para nulo; datas em milissegundos desde a época.
+ * Situação diferente de OK/FALHA traz um texto com o motivo
+ */
+final class ProtocoloBanco {
+    static final int MAXIMO_QUADRO = 1 << 20;
+
+    // operações de qualquer conexão
+    static final byte REGISTRAR = 1;          // email, nome, senha
+    static final byte LOGIN = 2;              // email, senha -> nome, byte admin
+    static final byte LOGOUT = 3;
+    // operações que exigem login
+    static final byte SALDO = 4;              // -> double
+    static final byte DEPOSITAR = 5;          // double valor
+    static final byte TRANSFERIR = 6;         // destino, double valor
+    static final byte HISTORICO = 7;          // cursor, short tamanho -> página
+    static final byte DENUNCIAR = 8;          // int id da transação, descrição
+    // operações de administrador
+    static final byte HISTORICO_GERAL = 9;    // cursor, short tamanho -> página
+    static final byte RESERVAR_DENUNCIAS = 10; // byte prioridade, short quantidade, long duração ms -> denúncias
+    static final byte REJEITAR_DENUNCIA = 11; // int id da denúncia
+    static final byte LIBERAR_RESERVA = 12;   // int id da denúncia
+    static final byte REVERTER = 13;          // int id da denúncia
+
+    static final byte OK = 0;
+    /** A operação foi feita e o Banco respondeu false (saldo insuficiente, credenciais inválidas, ...) */
+    static final byte FALHA = 1;
+    static final byte NAO_AUTENTICADO = 2;
+    static final byte PROIBIDO = 3;
+    /** Recusada por excesso de operações pendentes ou prazo vencido; pode ser repetida */
+    static final byte SOBRECARGA = 4;
+    static final byte INVALIDA = 5;
+    static final byte ERRO = 6;
+
+    private ProtocoloBanco() {
+    }
+
+    static String nomeSituacao(byte situacao) {
+        switch (situacao) {
+            case OK: return "OK";
+            case FALHA: return "FALHA";
+            case NAO_AUTENTICADO: return "NAO_AUTENTICADO";
+            case PROIBIDO: return "PROIBIDO";
+            case SOBRECARGA: return "SOBRECARGA";
+            case INVALIDA: return "INVALIDA";
+            default: return "ERRO";
+        }
+    }
+
+    /**
+     * Monta um quadro num buffer que cresce conforme a necessidade; o tamanho é preenchido em concluir
+     */
+    static final class Quadro {
+        private ByteBuffer buffer;
+
+        Quadro(int id, byte tipo, int capacidade) {
+            buffer = ByteBuffer.allocate(Math.max(16, capacidade));
+            buffer.putInt(0);
+            buffer.putInt(id);
+            buffer.put(tipo);
+        }
+
+        Quadro putByte(int valor) {
+            garantir(1).put((byte) valor);
+            return this;
+        }
+
+        Quadro putShort(int valor) {
+            garantir(2).putShort((short) valor);
+            return this;
+        }
+
+        Quadro putInt(int valor) {
+            garantir(4).putInt(valor);
+            return this;
+        }
+
+        Quadro putLong(long valor) {
+            garantir(8).putLong(valor);
+            return this;
+        }
+
+        Quadro putDouble(double valor) {
+            garantir(8).putDouble(valor);
+            return this;
+        }
+
+        Quadro putTexto(String texto) {
+            if (texto == null) {
+                return putShort(-1);
+            }
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Texto com mais de " + Short.MAX_VALUE + " bytes");
+            }
+            putShort(bytes.length);
+            garantir(bytes.length).put(bytes);
+            return this;
+        }
+
+        Quadro putTransacao(Transacao t) {
+            putInt(t.getId());
+            putLong(t.getData() != null ? t.getData().getTime() : 0);
+            putTexto(t.getTipo());
+            putDouble(t.getValor());
+            putTexto(t.getEmailOrigem());
+            putTexto(t.getNomeOrigem());
+            putTexto(t.getEmailDestino());
+            putTexto(t.getNomeDestino());
+            putInt(t.getDenunciaId());
+            return putTexto(t.getDenunciaStatus());
+        }
+
+        Quadro putDenuncia(Denuncia d) {
+            putInt(d.getId());
+            putInt(d.getIdTransacao());
+            putTexto(d.getEmailDenunciante());
+            putTexto(d.getDescricao());
+            putTexto(d.getStatus());
+            putLong(d.getDataDenuncia() != null ? d.getDataDenuncia().getTime() : 0);
+            putTexto(d.getEmailOrigem());
+            putTexto(d.getEmailDestino());
+            putTexto(d.getNomeOrigem());
+            putTexto(d.getNomeDestino());
+            putDouble(d.getValor());
+            putTexto(d.getTipo());
+            putTexto(d.getReservadoPor());
+            return putLong(d.getReservadoAte());
+        }
+
+        Quadro putCursor(CursorHistorico cursor) {
+            putTexto(cursor.getData());
+            return putLong(cursor.getId());
+        }
+
+        /**
+         * @return Buffer pronto para escrita no canal
+         */
+        ByteBuffer concluir() {
+            buffer.putInt(0, buffer.position() - 4);
+            buffer.flip();
+            return buffer;
+        }
+
+        private ByteBuffer garantir(int espaco) {
+            if (buffer.remaining() < espaco) {
+                ByteBuffer maior = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + espaco));
+                buffer.flip();
+                maior.put(buffer);
+                buffer = maior;
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Corpo inválido: falta de bytes ou valor fora do domínio
+     */
+    static final class CorpoInvalido extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        CorpoInvalido(String mensagem) {
+            super(mensagem);
+        }
+    }
+
+    static String lerTexto(ByteBuffer corpo) {
+        short tamanho = lerShort(corpo);
+        if (tamanho < 0) {
+            return null;
+        }
+        if (tamanho > corpo.remaining()) {
+            throw new CorpoInvalido("Texto maior que o quadro");
+        }
+        String texto = new String(corpo.array(), corpo.arrayOffset() + corpo.position(), tamanho,
+                StandardCharsets.UTF_8);
+        corpo.position(corpo.position() + tamanho);
+        return texto;
+    }
+
+    static byte lerByte(ByteBuffer corpo) {
+        try {
+            return corpo.get();
+        } catch (BufferUnderflowException e) {
+            throw new CorpoInvalido("Quadro incompleto");
+        }
+    }
+
+    static short lerShort(ByteBuffer corpo) {
+        try {
+            return corpo.getShort();
+        } catch (BufferUnderflowException e) {
+            throw new CorpoInvalido("Quadro incompleto");
+        }
+    }
+
+    static int lerInt(ByteBuffer corpo) {
+        try {
+            return corpo.getInt();
+        } catch (BufferUnderflowException e) {
+            throw new CorpoInvalido("Quadro incompleto");
+        }
+    }
+
+    static long lerLong(ByteBuffer corpo) {
+        try {
+            return corpo.getLong();
+        } catch (BufferUnderflowException e) {
+            throw new CorpoInvalido("Quadro incompleto");
+        }
+    }
+
+    static double lerDouble(ByteBuffer corpo) {
+        try {
+            return corpo.getDouble();
+        } catch (BufferUnderflowException e) {
+            throw new CorpoInvalido("Quadro incompleto");
+        }
+    }
+
+    static CursorHistorico lerCursor(ByteBuffer corpo) {
+        String data = lerTexto(corpo);
+        long id = lerLong(corpo);
+        if (data == null) {
+            throw new CorpoInvalido("Cursor sem data");
+        }
+        return new CursorHistorico(data, id);
+    }
+
+    static Transacao lerTransacao(ByteBuffer corpo) {
+        int id = lerInt(corpo);
+        long data = lerLong(corpo);
+        String tipo = lerTexto(corpo);
+        double valor = lerDouble(corpo);
+        String emailOrigem = lerTexto(corpo);
+        String nomeOrigem = lerTexto(corpo);
+        String emailDestino = lerTexto(corpo);
+        String nomeDestino = lerTexto(corpo);
+        Transacao t = new Transacao(emailOrigem, emailDestino, nomeOrigem, nomeDestino, tipo, valor,
+                new Timestamp(data));
+        t.setId(id);
+        t.setDenunciaId(lerInt(corpo));
+        t.setDenunciaStatus(lerTexto(corpo));
+        return t;
+    }
+
+    static PaginaHistorico lerPagina(ByteBuffer corpo) {
+        boolean temMais = lerByte(corpo) != 0;
+        CursorHistorico proximo = lerCursor(corpo);
+        int quantidade = lerInt(corpo);
+        List<Transacao> transacoes = new ArrayList<>(Math.min(quantidade, 1024));
+        for (int i = 0; i < quantidade; i++) {
+            transacoes.add(lerTransacao(corpo));
+        }
+        return new PaginaHistorico(transacoes, proximo, temMais);
+    }
+
+    static Denuncia lerDenuncia(ByteBuffer corpo) {
+        int id = lerInt(corpo);
+        int idTransacao = lerInt(corpo);
+        String denunciante = lerTexto(corpo);
+        String descricao = lerTexto(corpo);
+        String status = lerTexto(corpo);
+        long data = lerLong(corpo);
+        String emailOrigem = lerTexto(corpo);
+        String emailDestino = lerTexto(corpo);
+        String nomeOrigem = lerTexto(corpo);
+        String nomeDestino = lerTexto(corpo);
+        double valor = lerDouble(corpo);
+        String tipo = lerTexto(corpo);
+        Denuncia d = new Denuncia(id, idTransacao, denunciante, descricao, status, new Timestamp(data),
+                emailOrigem, emailDestino, nomeOrigem, nomeDestino, valor, tipo);
+        String reservadoPor = lerTexto(corpo);
+        d.setReserva(reservadoPor, lerLong(corpo));
+        return d;
+    }
+}
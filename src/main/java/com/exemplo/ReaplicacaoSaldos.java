@@ -0,0 +1,140 @@
+package com.exemplo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Reaplica os registros do log de saldos sobre os saldos da base (SQLite ou instantâneo), descontando o
+ * efeito dos registros que não foram confirmados no SQLite
+ *
+ * Cada alteração de saldo feita numa transação grava a sequência do seu registro em saldos_confirmados,
+ * na mesma transação. Um registro sem essa linha é de uma transação desfeita, ou interrompida por uma queda
+ * entre o fsync do log e o commit, ou é a compensação gravada ao desfazê-la. Como os registros guardam
+ * saldos absolutos, o efeito de cada um é a diferença para o saldo anterior da conta, e o saldo final é o
+ * do último registro menos a soma dos efeitos não confirmados
+ */
+final class ReaplicacaoSaldos implements LogSaldos.ConsumidorRegistro {
+    private final Set<Long> confirmadas;
+    private final long confirmadasDesde;
+    private final Function<String, Double> saldoBase;
+    private final ToLongFunction<String> cobertura;
+    // por conta: último saldo reaplicado e soma dos efeitos não confirmados
+    private final Map<String, double[]> contas = new HashMap<>();
+    private long reaplicados;
+    private long descartados;
+    private long ultimaDescartada = -1;
+
+    /**
+     * @param confirmadas Sequências confirmadas posteriores ao início da reaplicação (lerConfirmadas)
+     * @param confirmadasDesde Registros até esta sequência são de antes da confirmação existir e valem sem ela
+     * @param saldoBase Saldo da conta na base, ou null se a conta não existe
+     * @param cobertura Última sequência já refletida no saldo base da conta
+     */
+    ReaplicacaoSaldos(Set<Long> confirmadas, long confirmadasDesde, Function<String, Double> saldoBase,
+                      ToLongFunction<String> cobertura) {
+        this.confirmadas = confirmadas;
+        this.confirmadasDesde = confirmadasDesde;
+        this.saldoBase = saldoBase;
+        this.cobertura = cobertura;
+    }
+
+    @Override
+    public void aplicar(long sequencia, String email, double saldo) {
+        double[] conta = contas.get(email);
+        if (conta == null) {
+            Double base = saldoBase.apply(email);
+            if (base == null) {
+                return;
+            }
+            conta = new double[] { base, 0.0 };
+            contas.put(email, conta);
+        }
+        if (sequencia > Math.max(cobertura.applyAsLong(email), confirmadasDesde) && !confirmadas.contains(sequencia)) {
+            conta[1] += saldo - conta[0];
+            if (sequencia != ultimaDescartada) {
+                ultimaDescartada = sequencia;
+                descartados++;
+            }
+        }
+        conta[0] = saldo;
+        reaplicados++;
+    }
+
+    /**
+     * Entrega o saldo reconstruído de cada conta alterada pelos registros reaplicados
+     */
+    void entregar(BiConsumer<String, Double> destino) {
+        for (Map.Entry<String, double[]> conta : contas.entrySet()) {
+            destino.accept(conta.getKey(), conta.getValue()[0] - conta.getValue()[1]);
+        }
+    }
+
+    /**
+     * @return Saldos reaplicados, contando cada conta de cada registro
+     */
+    long getReaplicados() {
+        return reaplicados;
+    }
+
+    /**
+     * @return Registros sem confirmação, cujo efeito foi descontado
+     */
+    long getDescartados() {
+        return descartados;
+    }
+
+    /**
+     * @return Sequências confirmadas maiores que 'aPartirDe'
+     */
+    static Set<Long> lerConfirmadas(Connection conn, long aPartirDe) throws SQLException {
+        Set<Long> confirmadas = new HashSet<>();
+        if (!existeConfirmacao(conn)) {
+            return confirmadas;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT seq FROM saldos_confirmados WHERE seq > ?")) {
+            stmt.setLong(1, aPartirDe);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    confirmadas.add(rs.getLong(1));
+                }
+            }
+        }
+        return confirmadas;
+    }
+
+    /**
+     * @return Sequência a partir da qual os registros precisam de confirmação; Long.MAX_VALUE enquanto o
+     *         log ainda tiver registros de antes da confirmação existir
+     */
+    static long lerConfirmadasDesde(Connection conn) throws SQLException {
+        if (!existeConfirmacao(conn)) {
+            return Long.MAX_VALUE;
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT confirmadas_desde FROM saldos_checkpoint WHERE id = 1")) {
+            if (!rs.next()) {
+                return Long.MAX_VALUE;
+            }
+            long desde = rs.getLong(1);
+            return rs.wasNull() ? Long.MAX_VALUE : desde;
+        }
+    }
+
+    private static boolean existeConfirmacao(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'saldos_confirmados'")) {
+            return rs.next();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.exemplo;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Log de alterações de saldo do modo em memória, gravado de forma síncrona antes de a alteração valer
+ * Cada registro guarda o saldo absoluto das contas alteradas, então reaplicá-lo é idempotente.
+ * O log é dividido em segmentos (base.&lt;primeira sequência&gt;); os segmentos já cobertos por uma
+ * descarga no SQLite são apagados
+ *
+ * Formato do registro: [int tamanho][long seq][int n][n x (short len, bytes email, double saldo)][long crc32]
+ */
+public class RegistroSaldos implements LogSaldos {
+    private final File diretorio;
+    private final String prefixo;
+    private final Object travaSincronizacao = new Object();
+    private final AtomicLong sincronizada = new AtomicLong();
+    private FileChannel canal;
+    private long sequencia;
+
+    public RegistroSaldos(String arquivoBase) {
+        File base = new File(arquivoBase).getAbsoluteFile();
+        this.diretorio = base.getParentFile();
+        this.prefixo = base.getName() + ".";
+    }
+
+    /**
+     * Um registro incompleto ou corrompido no fim do último segmento (queda durante a escrita) é descartado
+     */
+    @Override
+    public synchronized long recuperar(long aPartirDe, ConsumidorRegistro consumidor) throws IOException {
+        long maior = aPartirDe;
+        for (File segmento : segmentos()) {
+            long valido = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segmento)))) {
+                while (true) {
+                    byte[] corpo;
+                    long crc;
+                    try {
+                        int tamanho = in.readInt();
+                        if (tamanho <= 0 || tamanho > 1 << 20) {
+                            break;
+                        }
+                        corpo = new byte[tamanho];
+                        in.readFully(corpo);
+                        crc = in.readLong();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    CRC32 verificador = new CRC32();
+                    verificador.update(corpo);
+                    if (verificador.getValue() != crc) {
+                        break;
+                    }
+                    ByteBuffer buffer = ByteBuffer.wrap(corpo);
+                    long seq = buffer.getLong();
+                    int n = buffer.getInt();
+                    for (int i = 0; i < n; i++) {
+                        byte[] email = new byte[buffer.getShort()];
+                        buffer.get(email);
+                        double saldo = buffer.getDouble();
+                        if (seq > aPartirDe) {
+                            consumidor.aplicar(seq, new String(email, StandardCharsets.UTF_8), saldo);
+                        }
+                    }
+                    maior = Math.max(maior, seq);
+                    valido += 4 + corpo.length + 8;
+                }
+            }
+            if (valido < segmento.length()) {
+                // descarta a cauda rasgada para que novos registros não fiquem depois de lixo
+                try (RandomAccessFile arquivo = new RandomAccessFile(segmento, "rw")) {
+                    arquivo.setLength(valido);
+                }
+            }
+        }
+        sequencia = maior;
+        sincronizada.set(maior);
+        abrirSegmento();
+        return maior;
+    }
+
+    /**
+     * Quem registra é sempre o escritor do Banco, um por vez, então cada registro faz o seu fsync; a
+     * sincronização separada só pula o fsync quando a rotação já sincronizou o segmento
+     */
+    @Override
+    public long registrar(String[] emails, double[] saldos) throws IOException {
+        long seq = anexar(emails, saldos);
+        sincronizar(seq);
+        return seq;
+    }
+
+    private synchronized long anexar(String[] emails, double[] saldos) throws IOException {
+        byte[][] emailsBytes = new byte[emails.length][];
+        int tamanho = 8 + 4;
+        for (int i = 0; i < emails.length; i++) {
+            emailsBytes[i] = emails[i].getBytes(StandardCharsets.UTF_8);
+            tamanho += 2 + emailsBytes[i].length + 8;
+        }
+        long seq = sequencia + 1;
+        ByteBuffer buffer = ByteBuffer.allocate(4 + tamanho + 8);
+        buffer.putInt(tamanho);
+        buffer.putLong(seq);
+        buffer.putInt(emails.length);
+        for (int i = 0; i < emails.length; i++) {
+            buffer.putShort((short) emailsBytes[i].length);
+            buffer.put(emailsBytes[i]);
+            buffer.putDouble(saldos[i]);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, tamanho);
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        sequencia = seq;
+        return seq;
+    }
+
+    private void sincronizar(long seq) throws IOException {
+        synchronized (travaSincronizacao) {
+            if (sincronizada.get() >= seq) {
+                return;
+            }
+            FileChannel alvo;
+            long ate;
+            synchronized (this) {
+                alvo = canal;
+                ate = sequencia;
+            }
+            try {
+                alvo.force(false);
+            } catch (ClosedChannelException e) {
+                // o segmento foi rotacionado, e a rotação já o sincronizou
+            }
+            sincronizada.accumulateAndGet(ate, Math::max);
+        }
+    }
+
+    @Override
+    public synchronized long rotacionar() throws IOException {
+        abrirSegmento();
+        return sequencia;
+    }
+
+    /**
+     * Chamado depois que os saldos até 'sequencia' foram gravados no SQLite (e no instantâneo, se houver)
+     * O nome de cada segmento é a sua primeira sequência, então o segmento i está coberto quando o i+1
+     * começa depois de 'sequencia' + 1 no máximo
+     */
+    @Override
+    public synchronized void descartarAte(long sequencia) {
+        List<File> existentes = segmentos();
+        for (int i = 0; i < existentes.size() - 1; i++) {
+            long proximaPrimeira = Long.parseLong(existentes.get(i + 1).getName().substring(prefixo.length()));
+            if (proximaPrimeira - 1 > sequencia) {
+                break;
+            }
+            if (!existentes.get(i).delete()) {
+                System.out.println("Erro ao apagar segmento do registro de saldos: " + existentes.get(i));
+            }
+        }
+    }
+
+    private void abrirSegmento() throws IOException {
+        if (canal != null) {
+            canal.force(false);
+            canal.close();
+            sincronizada.accumulateAndGet(sequencia, Math::max);
+        }
+        File arquivo = new File(diretorio, prefixo + String.format("%019d", sequencia + 1));
+        canal = new RandomAccessFile(arquivo, "rw").getChannel();
+        canal.position(canal.size());
+    }
+
+    private List<File> segmentos() {
+        File[] arquivos = diretorio.listFiles((dir, nome) -> nome.startsWith(prefixo)
+                && nome.length() == prefixo.length() + 19);
+        List<File> lista = new ArrayList<>(arquivos == null ? Arrays.<File>asList() : Arrays.asList(arquivos));
+        lista.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return lista;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (canal != null) {
+            canal.close();
+            canal = null;
+        }
+    }
+}
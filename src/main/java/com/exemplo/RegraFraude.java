@@ -0,0 +1,19 @@
+package com.exemplo;
+
+/**
+ * Regra avaliada pelo MotorFraude antes de cada depósito e transferência
+ * É chamada com o monitor da janela da conta tomado e deve apenas ler a janela, sem bloquear
+ */
+public interface RegraFraude {
+    /**
+     * @return Nome usado nos alertas e nas denúncias automáticas
+     */
+    String getNome();
+
+    /**
+     * @param evento Transação que está para acontecer
+     * @param janela Estatísticas recentes da conta do evento (sem incluir o próprio evento)
+     * @return Ação desejada; o motor aplica a mais severa entre todas as regras
+     */
+    AcaoFraude avaliar(EventoTransacao evento, JanelaConta janela);
+}
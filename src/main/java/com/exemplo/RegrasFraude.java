@@ -0,0 +1,60 @@
+package com.exemplo;
+
+/**
+ * Regras prontas para o MotorFraude
+ */
+public final class RegrasFraude {
+    private RegrasFraude() {
+    }
+
+    /**
+     * Muitas transações da mesma conta dentro da janela
+     * @param maximo Quantidade de transações já na janela a partir da qual a regra dispara
+     */
+    public static RegraFraude velocidade(int maximo, AcaoFraude acao) {
+        return regra("velocidade", (evento, janela) -> janela.getQuantidade() >= maximo ? acao : AcaoFraude.NENHUMA);
+    }
+
+    /**
+     * Soma movimentada pela conta na janela, incluindo a transação atual, acima do limite
+     */
+    public static RegraFraude somaValores(double limite, AcaoFraude acao) {
+        return regra("soma-valores",
+                (evento, janela) -> janela.getSoma() + evento.getValor() > limite ? acao : AcaoFraude.NENHUMA);
+    }
+
+    /**
+     * Transferências para muitos destinos diferentes na janela (espalhamento de dinheiro)
+     */
+    public static RegraFraude destinosDistintos(int maximo, AcaoFraude acao) {
+        return regra("destinos-distintos", (evento, janela) ->
+                evento.isTransferencia() && janela.getDestinosDistintos() >= maximo ? acao : AcaoFraude.NENHUMA);
+    }
+
+    /**
+     * Transferência de valor alto para um destino que a conta nunca usou
+     */
+    public static RegraFraude destinoNovoValorAlto(double valorMinimo, AcaoFraude acao) {
+        return regra("destino-novo", (evento, janela) ->
+                evento.isTransferencia() && evento.getValor() >= valorMinimo
+                        && janela.isDestinoNovo(evento.getEmailDestino()) ? acao : AcaoFraude.NENHUMA);
+    }
+
+    private interface Avaliacao {
+        AcaoFraude avaliar(EventoTransacao evento, JanelaConta janela);
+    }
+
+    private static RegraFraude regra(String nome, Avaliacao avaliacao) {
+        return new RegraFraude() {
+            @Override
+            public String getNome() {
+                return nome;
+            }
+
+            @Override
+            public AcaoFraude avaliar(EventoTransacao evento, JanelaConta janela) {
+                return avaliacao.avaliar(evento, janela);
+            }
+        };
+    }
+}
@@ -0,0 +1,66 @@
+package com.exemplo;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Resumo de uma execução do arquivamento do histórico
+ */
+public class RelatorioArquivamento {
+    private final String corte;
+    private int lotes;
+    private long movidas;
+    private long nanos;
+    private final Map<String, Long> movidasPorMes = new TreeMap<>();
+
+    RelatorioArquivamento(String corte) {
+        this.corte = corte;
+    }
+
+    void registrarLote(Map<String, Integer> porMes) {
+        lotes++;
+        for (Map.Entry<String, Integer> mes : porMes.entrySet()) {
+            movidas += mes.getValue();
+            movidasPorMes.merge(mes.getKey(), (long) mes.getValue(), Long::sum);
+        }
+    }
+
+    void concluir(long nanos) {
+        this.nanos = nanos;
+    }
+
+    /**
+     * @return Data limite: só transações anteriores a ela foram consideradas
+     */
+    public String getCorte() {
+        return corte;
+    }
+
+    public int getLotes() {
+        return lotes;
+    }
+
+    public long getMovidas() {
+        return movidas;
+    }
+
+    public Map<String, Long> getMovidasPorMes() {
+        return Collections.unmodifiableMap(movidasPorMes);
+    }
+
+    public double getSegundos() {
+        return nanos / 1e9;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Arquivamento até ").append(corte).append(": ").append(movidas).append(" transações em ")
+          .append(lotes).append(" lotes (").append(String.format("%.2f", getSegundos())).append(" s)\n");
+        for (Map.Entry<String, Long> mes : movidasPorMes.entrySet()) {
+            sb.append("  ").append(mes.getKey()).append(": ").append(mes.getValue()).append("\n");
+        }
+        return sb.toString();
+    }
+}
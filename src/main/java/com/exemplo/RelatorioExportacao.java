@@ -0,0 +1,63 @@
+package com.exemplo;
+
+/**
+ * Resumo de uma exportação de extrato
+ */
+public class RelatorioExportacao {
+    private final FormatoExtrato formato;
+    private final boolean gzip;
+    private long linhas;
+    private long bytes;
+    private long nanos;
+    private boolean completa;
+
+    RelatorioExportacao(FormatoExtrato formato, boolean gzip) {
+        this.formato = formato;
+        this.gzip = gzip;
+    }
+
+    void concluir(long linhas, long bytes, long nanos, boolean completa) {
+        this.linhas = linhas;
+        this.bytes = bytes;
+        this.nanos = nanos;
+        this.completa = completa;
+    }
+
+    public FormatoExtrato getFormato() {
+        return formato;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public long getLinhas() {
+        return linhas;
+    }
+
+    /**
+     * @return Bytes gerados antes da compressão
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public double getSegundos() {
+        return nanos / 1e9;
+    }
+
+    /**
+     * @return false se a exportação foi interrompida por um erro; o destino tem só uma parte do extrato
+     */
+    public boolean isCompleta() {
+        return completa;
+    }
+
+    @Override
+    public String toString() {
+        double segundos = getSegundos();
+        return String.format("Extrato %s%s: %d transações, %.1f MB em %.2f s (%.0f MB/s)%s", formato,
+                gzip ? " gzip" : "", linhas, bytes / 1e6, segundos, segundos > 0 ? bytes / 1e6 / segundos : 0,
+                completa ? "" : " - INCOMPLETO");
+    }
+}
@@ -0,0 +1,60 @@
+package com.exemplo;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Resumo do reprocessamento do histórico pelo MotorFraude
+ */
+public class RelatorioFraude {
+    private long eventos;
+    private long duracaoNanos;
+    private final Map<AcaoFraude, Long> porAcao = new EnumMap<>(AcaoFraude.class);
+    private final Map<String, Long> porRegra = new TreeMap<>();
+
+    void registrar(AlertaFraude alerta) {
+        eventos++;
+        if (alerta != null) {
+            porAcao.merge(alerta.getAcao(), 1L, Long::sum);
+            porRegra.merge(alerta.getRegra(), 1L, Long::sum);
+        }
+    }
+
+    void concluir(long duracaoNanos) {
+        this.duracaoNanos = duracaoNanos;
+    }
+
+    public long getEventos() {
+        return eventos;
+    }
+
+    /**
+     * @return Quantidade de transações por ação (sem NENHUMA)
+     */
+    public Map<AcaoFraude, Long> getPorAcao() {
+        return Collections.unmodifiableMap(porAcao);
+    }
+
+    /**
+     * @return Quantidade de alertas pela regra que definiu a ação
+     */
+    public Map<String, Long> getPorRegra() {
+        return Collections.unmodifiableMap(porRegra);
+    }
+
+    public double getEventosPorSegundo() {
+        return duracaoNanos == 0 ? 0.0 : eventos / (duracaoNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Transações reprocessadas: ").append(eventos)
+          .append(String.format(" (%.0f por segundo)", getEventosPorSegundo())).append("\n");
+        sb.append("Alertas por ação: ").append(porAcao).append("\n");
+        sb.append("Alertas por regra: ").append(porRegra).append("\n");
+        return sb.toString();
+    }
+}
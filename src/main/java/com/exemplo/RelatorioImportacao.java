@@ -0,0 +1,148 @@
+package com.exemplo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Progresso e resumo de uma importação em massa
+ * O mesmo objeto é entregue ao acompanhamento depois de cada lote confirmado e devolvido no fim
+ */
+public class RelatorioImportacao {
+    private static final int MAXIMO_ERROS = 100;
+
+    private final String arquivo;
+    private long retomadaDe;
+    private long lidas;
+    private long importadas;
+    private long ignoradas;
+    private long rejeitadas;
+    private int lotes;
+    private final List<String> erros = new ArrayList<>();
+    private final long inicioNanos = System.nanoTime();
+    private long nanos;
+    private boolean jaConcluida;
+    private boolean concluida;
+
+    RelatorioImportacao(String arquivo) {
+        this.arquivo = arquivo;
+    }
+
+    void retomar(long registros) {
+        retomadaDe = registros;
+        lidas = registros;
+    }
+
+    void registrarRejeitada(long linhaArquivo, String motivo) {
+        rejeitadas++;
+        if (erros.size() < MAXIMO_ERROS) {
+            erros.add("linha " + linhaArquivo + ": " + motivo);
+        }
+    }
+
+    void registrarLote(long lidasAteAqui, long importadasNoLote, long ignoradasNoLote) {
+        lotes++;
+        lidas = lidasAteAqui;
+        importadas += importadasNoLote;
+        ignoradas += ignoradasNoLote;
+        nanos = System.nanoTime() - inicioNanos;
+    }
+
+    void marcarJaConcluida() {
+        jaConcluida = true;
+        concluida = true;
+    }
+
+    void concluir(boolean sucesso) {
+        concluida = sucesso;
+        nanos = System.nanoTime() - inicioNanos;
+    }
+
+    public String getArquivo() {
+        return arquivo;
+    }
+
+    /**
+     * @return Registros pulados porque uma execução anterior já os tinha importado (0 se começou do início)
+     */
+    public long getRetomadaDe() {
+        return retomadaDe;
+    }
+
+    /**
+     * @return Registros do arquivo já processados, incluindo os pulados na retomada
+     */
+    public long getLidas() {
+        return lidas;
+    }
+
+    public long getImportadas() {
+        return importadas;
+    }
+
+    /**
+     * @return Registros válidos que já existiam no banco (email de usuário ou ID de transação repetido)
+     */
+    public long getIgnoradas() {
+        return ignoradas;
+    }
+
+    /**
+     * @return Registros inválidos, não gravados (os primeiros motivos ficam em getErros)
+     */
+    public long getRejeitadas() {
+        return rejeitadas;
+    }
+
+    public int getLotes() {
+        return lotes;
+    }
+
+    public List<String> getErros() {
+        return Collections.unmodifiableList(erros);
+    }
+
+    public double getSegundos() {
+        return nanos / 1e9;
+    }
+
+    public double getLinhasPorSegundo() {
+        return nanos > 0 ? (lidas - retomadaDe) / (nanos / 1e9) : 0;
+    }
+
+    /**
+     * @return true se o arquivo foi lido até o fim (agora ou numa execução anterior)
+     */
+    public boolean isConcluida() {
+        return concluida;
+    }
+
+    /**
+     * @return true se o arquivo já tinha sido importado por completo e nada foi feito
+     */
+    public boolean isJaConcluida() {
+        return jaConcluida;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Importação de ").append(arquivo).append(": ");
+        if (jaConcluida) {
+            return sb.append("já concluída anteriormente").toString();
+        }
+        sb.append(importadas).append(" importadas, ").append(ignoradas).append(" já existentes, ")
+          .append(rejeitadas).append(" rejeitadas em ").append(lotes).append(" lotes (")
+          .append(String.format("%.2f s, %.0f linhas/s", getSegundos(), getLinhasPorSegundo())).append(")");
+        if (retomadaDe > 0) {
+            sb.append(", retomada após ").append(retomadaDe).append(" linhas");
+        }
+        if (!concluida) {
+            sb.append(" - INTERROMPIDA");
+        }
+        for (String erro : erros) {
+            sb.append("\n  ").append(erro);
+        }
+        return sb.toString();
+    }
+}
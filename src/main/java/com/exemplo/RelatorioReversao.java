@@ -0,0 +1,140 @@
+package com.exemplo;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Resumo de uma reversão em lote
+ */
+public class RelatorioReversao {
+    private int solicitadas;
+    private int revertidas;
+    private int jaRevertidas;
+    private int naoEncontradas;
+    private int ignoradas;
+    private int reservadas;
+    private int falhas;
+    private int lotes;
+    private double valorTotal;
+    private final Map<String, Double> variacaoPorConta = new TreeMap<>();
+
+    void registrarSolicitadas(int quantidade) {
+        solicitadas += quantidade;
+    }
+
+    void registrarRevertida(double valor) {
+        revertidas++;
+        valorTotal += valor;
+    }
+
+    void registrarJaRevertida() {
+        jaRevertidas++;
+    }
+
+    void registrarNaoEncontrada() {
+        naoEncontradas++;
+    }
+
+    void registrarIgnorada() {
+        ignoradas++;
+    }
+
+    void registrarReservada() {
+        reservadas++;
+    }
+
+    void registrarFalhas(int quantidade) {
+        falhas += quantidade;
+    }
+
+    void registrarLote(Map<String, Double> variacoes) {
+        lotes++;
+        for (Map.Entry<String, Double> variacao : variacoes.entrySet()) {
+            variacaoPorConta.merge(variacao.getKey(), variacao.getValue(), Double::sum);
+        }
+    }
+
+    /**
+     * Soma as contagens de um lote confirmado (a variação por conta vem de registrarLote)
+     */
+    void mesclar(RelatorioReversao lote) {
+        revertidas += lote.revertidas;
+        jaRevertidas += lote.jaRevertidas;
+        naoEncontradas += lote.naoEncontradas;
+        ignoradas += lote.ignoradas;
+        reservadas += lote.reservadas;
+        valorTotal += lote.valorTotal;
+    }
+
+    public int getSolicitadas() {
+        return solicitadas;
+    }
+
+    public int getRevertidas() {
+        return revertidas;
+    }
+
+    /**
+     * @return Transações que já tinham uma reversão registrada e foram puladas
+     */
+    public int getJaRevertidas() {
+        return jaRevertidas;
+    }
+
+    public int getNaoEncontradas() {
+        return naoEncontradas;
+    }
+
+    /**
+     * @return Transações que não são transferências (depósitos, reversões) e não foram revertidas
+     */
+    public int getIgnoradas() {
+        return ignoradas;
+    }
+
+    /**
+     * @return Transações com denúncia pendente reservada por outro revisor, puladas sem alterar a denúncia
+     */
+    public int getReservadas() {
+        return reservadas;
+    }
+
+    /**
+     * @return Transações de lotes cuja gravação falhou (nada desses lotes foi aplicado)
+     */
+    public int getFalhas() {
+        return falhas;
+    }
+
+    public int getLotes() {
+        return lotes;
+    }
+
+    public double getValorTotal() {
+        return valorTotal;
+    }
+
+    /**
+     * @return Variação líquida do saldo de cada conta afetada
+     */
+    public Map<String, Double> getVariacaoPorConta() {
+        return Collections.unmodifiableMap(variacaoPorConta);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Transações solicitadas: ").append(solicitadas).append("\n");
+        sb.append("Revertidas: ").append(revertidas)
+          .append(" (R$ ").append(String.format("%.2f", valorTotal)).append(")\n");
+        sb.append("Já revertidas: ").append(jaRevertidas).append("\n");
+        sb.append("Não encontradas: ").append(naoEncontradas).append("\n");
+        sb.append("Ignoradas (não são transferências): ").append(ignoradas).append("\n");
+        sb.append("Reservadas por outro revisor: ").append(reservadas).append("\n");
+        sb.append("Com falha: ").append(falhas).append("\n");
+        sb.append("Lotes gravados: ").append(lotes).append("\n");
+        sb.append("Contas afetadas: ").append(variacaoPorConta.size()).append("\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,12 @@
+package com.exemplo;
+
+/**
+ * Resultado de cada instrução de um lote de transferências
+ */
+public enum ResultadoTransferencia {
+    SUCESSO,
+    SALDO_INSUFICIENTE,
+    CONTA_INEXISTENTE,
+    VALOR_INVALIDO,
+    ERRO
+}
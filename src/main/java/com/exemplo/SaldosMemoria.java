@@ -0,0 +1,454 @@
+package com.exemplo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Saldos de todas as contas mantidos em memória, com persistência write-behind
+ * Toda alteração é gravada de forma síncrona no RegistroSaldos e a conta é marcada como suja;
+ * uma tarefa periódica grava as contas sujas na tabela usuarios em lote, junto com a sequência
+ * do log coberta (tabela saldos_checkpoint). Na inicialização os saldos são lidos do SQLite e os
+ * registros do log posteriores ao checkpoint são reaplicados
+ *
+ * No modo diário o log é um DiarioSaldos mapeado em memória e, periodicamente, todos os saldos são
+ * gravados em um InstantaneoSaldos; a inicialização carrega o instantâneo e reaplica só a cauda do
+ * diário, sem ler a tabela usuarios inteira
+ *
+ * As alterações são feitas dentro da transação que grava o historico: o registro vai para o log (com
+ * fsync) antes do commit, e a sequência dele é gravada em saldos_confirmados pela própria transação. Se a
+ * transação é desfeita, a ConexaoPool desfaz a alteração em memória; se o processo cai entre o fsync e o
+ * commit, a recuperação desconta os registros sem confirmação (ReaplicacaoSaldos). A descarga e o
+ * instantâneo seguram a conexão de escrita, então só veem saldos sem transação aberta
+ *
+ * Não há trava por conta: toda alteração roda dentro de uma transação da conexão de escrita (ou da thread
+ * do MotorEscrita), que já serializa as escritas do Banco. As leituras (consultar) não esperam por elas e
+ * podem ver um saldo cuja transação ainda não foi confirmada
+ */
+public class SaldosMemoria implements AutoCloseable {
+    private final PoolConexoes pool;
+    private final LogSaldos registro;
+    private final File arquivoInstantaneo;
+    private final Map<String, Usuario> contas = new ConcurrentHashMap<>();
+    private final ReadWriteLock travaDescarga = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService agendador;
+    private volatile Set<String> sujas = ConcurrentHashMap.newKeySet();
+    private volatile long cobertaNoSqlite;
+    private volatile long cobertaNoInstantaneo = -1;
+
+    public SaldosMemoria(PoolConexoes pool, ConfiguracaoBanco config) throws SQLException {
+        this.pool = pool;
+        if (config.isDiarioMapeado()) {
+            this.registro = new DiarioSaldos(config.getArquivoRegistroSaldos(), config.getTamanhoSegmentoDiario());
+            this.arquivoInstantaneo = new File(config.getArquivoRegistroSaldos() + InstantaneoSaldos.SUFIXO);
+        } else {
+            this.registro = new RegistroSaldos(config.getArquivoRegistroSaldos());
+            this.arquivoInstantaneo = null;
+        }
+        recuperar();
+        this.agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "brasisco-descarga-saldos");
+            thread.setDaemon(true);
+            return thread;
+        });
+        agendador.scheduleWithFixedDelay(this::descarregarAgendado, config.getIntervaloDescargaMs(),
+                config.getIntervaloDescargaMs(), TimeUnit.MILLISECONDS);
+        if (arquivoInstantaneo != null) {
+            agendador.scheduleWithFixedDelay(this::gravarInstantaneoAgendado, config.getIntervaloInstantaneoMs(),
+                    config.getIntervaloInstantaneoMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void recuperar() throws SQLException {
+        long checkpoint;
+        long aPartirDe;
+        long confirmadasDesde;
+        Set<Long> confirmadas;
+        // contas lidas do SQLite quando há instantâneo; o saldo delas é o do checkpoint, não o do instantâneo
+        Set<String> doSqlite = new HashSet<>();
+        InstantaneoSaldos instantaneo;
+        try (ConexaoPool conn = pool.obterLeitura()) {
+            try (ResultSet rs = conn.preparar("SELECT seq FROM saldos_checkpoint WHERE id = 1").executeQuery()) {
+                checkpoint = rs.next() ? rs.getLong(1) : 0;
+            }
+            instantaneo = carregarInstantaneo(conn, doSqlite);
+            if (instantaneo != null) {
+                cobertaNoInstantaneo = instantaneo.getSequencia();
+                // reaplicar desde o menor dos dois é seguro (os registros são saldos absolutos) e cobre contas
+                // que entraram no SQLite antes do instantâneo mas não chegaram a ser lidas por ele
+                aPartirDe = Math.min(checkpoint, instantaneo.getSequencia());
+            } else {
+                carregarContas(conn, "SELECT email, nome, saldo FROM usuarios", 0, null);
+                aPartirDe = checkpoint;
+            }
+            confirmadasDesde = ReaplicacaoSaldos.lerConfirmadasDesde(conn.getConexao());
+            confirmadas = ReaplicacaoSaldos.lerConfirmadas(conn.getConexao(), aPartirDe);
+        }
+        cobertaNoSqlite = checkpoint;
+        long coberturaInstantaneo = instantaneo == null ? checkpoint : instantaneo.getSequencia();
+        ReaplicacaoSaldos reaplicacao = new ReaplicacaoSaldos(confirmadas, confirmadasDesde,
+                email -> {
+                    Usuario conta = contas.get(email);
+                    return conta == null ? null : conta.getSaldo();
+                },
+                email -> doSqlite.contains(email) ? checkpoint : coberturaInstantaneo);
+        long maior;
+        try {
+            maior = registro.recuperar(aPartirDe, reaplicacao);
+        } catch (IOException e) {
+            throw new SQLException("Erro ao ler registro de saldos: " + e.getMessage(), e);
+        }
+        reaplicacao.entregar((email, saldo) -> {
+            contas.get(email).definirSaldo(saldo);
+            sujas.add(email);
+        });
+        if (reaplicacao.getDescartados() > 0) {
+            System.out.println("Saldos do Brasisco recuperados sem " + reaplicacao.getDescartados()
+                    + " alteração(ões) de transações não confirmadas.");
+        }
+        if (confirmadasDesde == Long.MAX_VALUE) {
+            // daqui em diante todo registro gravado em transação tem confirmação
+            try (ConexaoPool conn = pool.obterEscrita()) {
+                PreparedStatement stmt = conn.preparar("UPDATE saldos_checkpoint SET confirmadas_desde = ? WHERE id = 1");
+                stmt.setLong(1, maior);
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Carrega as contas do instantâneo e completa com as criadas depois dele
+     * @param doSqlite Recebe as contas que não estavam no instantâneo
+     * @return null se não há instantâneo válido; nesse caso 'contas' fica vazio
+     */
+    private InstantaneoSaldos carregarInstantaneo(ConexaoPool conn, Set<String> doSqlite) throws SQLException {
+        if (arquivoInstantaneo == null) {
+            return null;
+        }
+        InstantaneoSaldos instantaneo;
+        try {
+            instantaneo = InstantaneoSaldos.ler(arquivoInstantaneo,
+                    (email, nome, saldo) -> contas.put(email, new Usuario(nome, saldo)));
+        } catch (IOException e) {
+            System.out.println("Erro ao ler instantâneo de saldos do Brasisco: " + e.getMessage());
+            instantaneo = null;
+        }
+        if (instantaneo == null) {
+            contas.clear();
+            return null;
+        }
+        carregarContas(conn, "SELECT email, nome, saldo FROM usuarios WHERE rowid > ?", instantaneo.getMaiorRowid(),
+                doSqlite);
+        try (ResultSet rs = conn.preparar("SELECT COUNT(*) FROM usuarios").executeQuery()) {
+            if (rs.next() && rs.getLong(1) != contas.size()) {
+                // conta criada no SQLite e perdida antes de entrar na memória: relê todas as contas
+                carregarContas(conn, "SELECT email, nome, saldo FROM usuarios", 0, doSqlite);
+            }
+        }
+        return instantaneo;
+    }
+
+    /**
+     * @param novas Recebe as contas que ainda não estavam em memória, ou null
+     */
+    private void carregarContas(ConexaoPool conn, String sql, long rowid, Set<String> novas) throws SQLException {
+        PreparedStatement stmt = conn.preparar(sql);
+        if (sql.indexOf('?') >= 0) {
+            stmt.setLong(1, rowid);
+        }
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String email = rs.getString("email");
+                if (contas.putIfAbsent(email, new Usuario(rs.getString("nome"), rs.getDouble("saldo"))) == null
+                        && novas != null) {
+                    novas.add(email);
+                }
+            }
+        }
+    }
+
+    public boolean existe(String email) {
+        return contas.containsKey(email);
+    }
+
+    /**
+     * @return Saldo em memória, ou 0.0 se a conta não existir (mesmo comportamento da consulta no SQLite)
+     */
+    public double consultar(String email) {
+        Usuario conta = contas.get(email);
+        return conta == null ? 0.0 : conta.getSaldo();
+    }
+
+    /**
+     * Passa a acompanhar uma conta recém-criada no SQLite
+     */
+    public void adicionarConta(String email, String nome, double saldo) {
+        contas.putIfAbsent(email, new Usuario(nome, saldo));
+    }
+
+    /**
+     * Soma 'valor' (positivo ou negativo) ao saldo, sem checar saldo suficiente
+     * @param conn Conexão de escrita com a transação que grava a operação; desfazê-la desfaz o ajuste
+     * @return false se a conta não existir
+     */
+    public boolean ajustar(ConexaoPool conn, String email, double valor) throws SQLException {
+        long seq = ajustar(email, valor);
+        if (seq < 0) {
+            return false;
+        }
+        confirmar(conn, seq, () -> ajustar(email, -valor));
+        return true;
+    }
+
+    /**
+     * @return Sequência do registro no log, ou -1 se a conta não existir
+     */
+    private long ajustar(String email, double valor) {
+        Usuario conta = contas.get(email);
+        if (conta == null) {
+            return -1;
+        }
+        long seq;
+        travaDescarga.readLock().lock();
+        try {
+            double novo = conta.getSaldo() + valor;
+            seq = registrar(new String[] { email }, new double[] { novo });
+            conta.definirSaldo(novo);
+            sujas.add(email);
+        } finally {
+            travaDescarga.readLock().unlock();
+        }
+        return seq;
+    }
+
+    /**
+     * Debita a origem e credita o destino atomicamente, se houver saldo
+     * @param conn Conexão de escrita com a transação que grava a operação; desfazê-la desfaz a transferência
+     */
+    public ResultadoTransferencia transferir(ConexaoPool conn, String emailOrigem, String emailDestino, double valor)
+            throws SQLException {
+        return mover(conn, emailOrigem, emailDestino, valor, true);
+    }
+
+    /**
+     * Move 'valor' entre as contas sem checar saldo (reversões)
+     * @param conn Conexão de escrita com a transação que grava a operação; desfazê-la desfaz o estorno
+     */
+    public ResultadoTransferencia estornar(ConexaoPool conn, String emailOrigem, String emailDestino, double valor)
+            throws SQLException {
+        return mover(conn, emailOrigem, emailDestino, valor, false);
+    }
+
+    private ResultadoTransferencia mover(ConexaoPool conn, String emailOrigem, String emailDestino, double valor,
+                                         boolean exigirSaldo) throws SQLException {
+        long[] seq = { -1 };
+        ResultadoTransferencia resultado = mover(emailOrigem, emailDestino, valor, exigirSaldo, seq);
+        if (seq[0] >= 0) {
+            confirmar(conn, seq[0], () -> mover(emailDestino, emailOrigem, valor, false, new long[1]));
+        }
+        return resultado;
+    }
+
+    /**
+     * @param seq Recebe a sequência do registro no log; fica como está se nada foi alterado
+     */
+    private ResultadoTransferencia mover(String emailOrigem, String emailDestino, double valor, boolean exigirSaldo,
+                                         long[] seq) {
+        if (!(valor > 0)) {
+            return ResultadoTransferencia.VALOR_INVALIDO;
+        }
+        Usuario origem = contas.get(emailOrigem);
+        Usuario destino = contas.get(emailDestino);
+        if (origem == null || destino == null) {
+            return ResultadoTransferencia.CONTA_INEXISTENTE;
+        }
+        if (origem == destino) {
+            return !exigirSaldo || origem.getSaldo() >= valor ? ResultadoTransferencia.SUCESSO
+                    : ResultadoTransferencia.SALDO_INSUFICIENTE;
+        }
+        travaDescarga.readLock().lock();
+        try {
+            if (exigirSaldo && origem.getSaldo() < valor) {
+                return ResultadoTransferencia.SALDO_INSUFICIENTE;
+            }
+            double novoOrigem = origem.getSaldo() - valor;
+            double novoDestino = destino.getSaldo() + valor;
+            seq[0] = registrar(new String[] { emailOrigem, emailDestino }, new double[] { novoOrigem, novoDestino });
+            origem.definirSaldo(novoOrigem);
+            destino.definirSaldo(novoDestino);
+            sujas.add(emailOrigem);
+            sujas.add(emailDestino);
+        } finally {
+            travaDescarga.readLock().unlock();
+        }
+        return ResultadoTransferencia.SUCESSO;
+    }
+
+    private long registrar(String[] emails, double[] saldos) {
+        try {
+            return registro.registrar(emails, saldos);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao gravar registro de saldos", e);
+        }
+    }
+
+    /**
+     * Grava a sequência do registro na transação de 'conn' e deixa a alteração para ser desfeita com ela
+     * O desfazer é registrado antes do INSERT, então uma falha no próprio INSERT também é desfeita
+     */
+    private static void confirmar(ConexaoPool conn, long seq, Runnable desfazer) throws SQLException {
+        conn.aoDesfazer(desfazer);
+        PreparedStatement stmt = conn.preparar("INSERT INTO saldos_confirmados (seq) VALUES (?)");
+        stmt.setLong(1, seq);
+        stmt.executeUpdate();
+    }
+
+    /**
+     * Grava no SQLite os saldos das contas alteradas desde a última descarga
+     * Com a conexão de escrita em mãos nenhuma transação está aberta, então o checkpoint fica num ponto
+     * em que cada alteração do log está confirmada ou já foi desfeita
+     */
+    public void descarregar() throws SQLException {
+        try (ConexaoPool conn = pool.obterEscrita()) {
+            Set<String> lote;
+            Map<String, Double> saldos = new HashMap<>();
+            long sequenciaCoberta;
+            travaDescarga.writeLock().lock();
+            try {
+                lote = sujas;
+                if (lote.isEmpty()) {
+                    return;
+                }
+                sujas = ConcurrentHashMap.newKeySet();
+                sequenciaCoberta = registro.rotacionar();
+                for (String email : lote) {
+                    saldos.put(email, consultar(email));
+                }
+            } catch (IOException e) {
+                throw new SQLException("Erro ao rotacionar registro de saldos: " + e.getMessage(), e);
+            } finally {
+                travaDescarga.writeLock().unlock();
+            }
+
+            conn.setAutoCommit(false);
+            try {
+                PreparedStatement update = conn.preparar("UPDATE usuarios SET saldo = ? WHERE email = ?");
+                for (Map.Entry<String, Double> saldo : saldos.entrySet()) {
+                    update.setDouble(1, saldo.getValue());
+                    update.setString(2, saldo.getKey());
+                    update.addBatch();
+                }
+                update.executeBatch();
+                PreparedStatement checkpoint = conn.preparar("UPDATE saldos_checkpoint SET seq = ? WHERE id = 1");
+                checkpoint.setLong(1, sequenciaCoberta);
+                checkpoint.executeUpdate();
+                // a recuperação lê confirmações a partir do menor entre checkpoint e instantâneo
+                long instantaneo = cobertaNoInstantaneo;
+                PreparedStatement confirmadas = conn.preparar("DELETE FROM saldos_confirmados WHERE seq <= ?");
+                confirmadas.setLong(1, instantaneo < 0 ? sequenciaCoberta : Math.min(sequenciaCoberta, instantaneo));
+                confirmadas.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                sujas.addAll(lote);
+                conn.rollback();
+                throw e;
+            }
+            cobertaNoSqlite = sequenciaCoberta;
+        }
+        descartarCobertos();
+    }
+
+    /**
+     * Grava todos os saldos em um instantâneo (modo diário), para que a próxima inicialização reaplique
+     * apenas os registros posteriores a ele
+     * Os saldos são copiados com a conexão de escrita e a trava exclusiva em mãos, como na descarga; o
+     * arquivo é gravado depois, já sem travar as escritas
+     */
+    public void gravarInstantaneo() throws SQLException {
+        if (arquivoInstantaneo == null) {
+            return;
+        }
+        long maiorRowid;
+        long sequenciaCoberta;
+        Map<String, Usuario> copia = new HashMap<>(contas.size() * 4 / 3 + 1);
+        try (ConexaoPool conn = pool.obterEscrita()) {
+            try (ResultSet rs = conn.preparar("SELECT COALESCE(MAX(rowid), 0) FROM usuarios").executeQuery()) {
+                maiorRowid = rs.next() ? rs.getLong(1) : 0;
+            }
+            travaDescarga.writeLock().lock();
+            try {
+                sequenciaCoberta = registro.rotacionar();
+                for (Map.Entry<String, Usuario> conta : contas.entrySet()) {
+                    copia.put(conta.getKey(), new Usuario(conta.getValue().getNome(), conta.getValue().getSaldo()));
+                }
+            } catch (IOException e) {
+                throw new SQLException("Erro ao rotacionar diário de saldos: " + e.getMessage(), e);
+            } finally {
+                travaDescarga.writeLock().unlock();
+            }
+        }
+        try {
+            InstantaneoSaldos.gravar(arquivoInstantaneo, sequenciaCoberta, maiorRowid, copia);
+        } catch (IOException e) {
+            throw new SQLException("Erro ao gravar instantâneo de saldos: " + e.getMessage(), e);
+        }
+        cobertaNoInstantaneo = sequenciaCoberta;
+        descartarCobertos();
+    }
+
+    /**
+     * Um segmento só pode sair quando está coberto pelo SQLite e pelo instantâneo, já que a
+     * inicialização pode partir de qualquer um dos dois
+     */
+    private void descartarCobertos() {
+        long instantaneo = cobertaNoInstantaneo;
+        registro.descartarAte(instantaneo < 0 ? cobertaNoSqlite : Math.min(cobertaNoSqlite, instantaneo));
+    }
+
+    private void gravarInstantaneoAgendado() {
+        try {
+            gravarInstantaneo();
+        } catch (SQLException e) {
+            System.out.println("Erro ao gravar instantâneo de saldos no Brasisco: " + e.getMessage());
+        }
+    }
+
+    private void descarregarAgendado() {
+        try {
+            descarregar();
+        } catch (SQLException e) {
+            System.out.println("Erro ao gravar saldos no Brasisco: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Para a descarga periódica e grava os saldos pendentes
+     */
+    @Override
+    public void close() {
+        agendador.shutdown();
+        try {
+            agendador.awaitTermination(10, TimeUnit.SECONDS);
+            descarregar();
+            gravarInstantaneo();
+            registro.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException | IOException e) {
+            System.out.println("Erro ao encerrar saldos em memória do Brasisco: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,583 @@
+package com.exemplo;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servidor TCP do Banco com o protocolo binário de ProtocoloBanco, para muitos clientes ao mesmo tempo
+ *
+ * Uma única thread (brasisco-servidor) faz todo o I/O com sockets não bloqueantes e um Selector: aceita
+ * conexões, decodifica as requisições e escreve as respostas. As operações vão para um BancoAsync, que
+ * limita o acesso ao SQLite; quando terminam, a resposta entra na fila de saída da conexão e o Selector
+ * é acordado para enviá-la. Uma conexão ociosa custa um buffer de 512 bytes e nenhuma thread
+ *
+ * O login vale para a conexão: as operações seguintes usam a sessão aberta por ele, e fechar a conexão
+ * encerra a sessão. Enquanto um login está em andamento as requisições seguintes da mesma conexão
+ * esperam, para não serem avaliadas sem sessão; as demais podem terminar fora da ordem de envio
+ *
+ * Cada conexão pode ter até MAXIMO_EM_ANDAMENTO requisições em andamento e LIMITE_SAIDA bytes de
+ * respostas não enviadas; acima disso o servidor para de ler dela até que as respostas saiam
+ */
+public class ServidorBanco implements AutoCloseable {
+    private static final int MAXIMO_EM_ANDAMENTO = 128;
+    private static final int LIMITE_SAIDA = 1 << 20;
+    private static final int BUFFER_INICIAL = 512;
+    private static final int MAXIMO_PAGINA = 100;
+    private static final int BUFFERS_POR_ESCRITA = 64;
+
+    private final Banco banco;
+    private final BancoAsync async;
+    private final ServerSocketChannel canalServidor;
+    private final Selector seletor;
+    private final Thread laco;
+    private final int maximoConexoes;
+    private final Queue<Conexao> prontas = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger conexoes = new AtomicInteger();
+    private final AtomicLong requisicoes = new AtomicLong();
+    // usado só pela thread do Selector para juntar as respostas de uma conexão numa escrita
+    private final ByteBuffer[] lote = new ByteBuffer[BUFFERS_POR_ESCRITA];
+    private volatile boolean ativo = true;
+
+    /**
+     * Abre a porta e começa a aceitar conexões
+     * @param banco Banco já aberto; não é fechado pelo close do servidor
+     * @param config Endereço, porta e limite de conexões, além das vagas e prazos do BancoAsync
+     */
+    public ServidorBanco(Banco banco, ConfiguracaoBanco config) throws IOException {
+        this.banco = banco;
+        this.maximoConexoes = config.getMaximoConexoesServidor();
+        this.seletor = Selector.open();
+        this.canalServidor = ServerSocketChannel.open();
+        try {
+            canalServidor.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            canalServidor.bind(new InetSocketAddress(config.getEnderecoServidor(), config.getPortaServidor()), 1024);
+            canalServidor.configureBlocking(false);
+            canalServidor.register(seletor, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            canalServidor.close();
+            seletor.close();
+            throw e;
+        }
+        this.async = new BancoAsync(banco, config);
+        this.laco = new Thread(this::executar, "brasisco-servidor");
+        laco.start();
+    }
+
+    /**
+     * @return Endereço em que o servidor escuta (com a porta real, se a configurada era 0)
+     */
+    public InetSocketAddress getEndereco() {
+        try {
+            return (InetSocketAddress) canalServidor.getLocalAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public int getConexoes() {
+        return conexoes.get();
+    }
+
+    /**
+     * @return Requisições decodificadas desde o início
+     */
+    public long getRequisicoes() {
+        return requisicoes.get();
+    }
+
+    /**
+     * Bloqueia até o servidor ser fechado
+     */
+    public void aguardar() throws InterruptedException {
+        laco.join();
+    }
+
+    /**
+     * Para de aceitar conexões, fecha as abertas e espera as operações em andamento; o Banco continua aberto
+     */
+    @Override
+    public void close() {
+        ativo = false;
+        seletor.wakeup();
+        try {
+            laco.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        async.close();
+    }
+
+    private void executar() {
+        while (ativo) {
+            try {
+                seletor.select();
+                Iterator<SelectionKey> chaves = seletor.selectedKeys().iterator();
+                while (chaves.hasNext()) {
+                    SelectionKey chave = chaves.next();
+                    chaves.remove();
+                    if (!chave.isValid()) {
+                        continue;
+                    }
+                    if (chave.isAcceptable()) {
+                        aceitar();
+                        continue;
+                    }
+                    Conexao conexao = (Conexao) chave.attachment();
+                    if (chave.isReadable()) {
+                        ler(conexao);
+                    }
+                    if (chave.isValid() && chave.isWritable()) {
+                        escrever(conexao);
+                    }
+                    if (!conexao.fechada) {
+                        atualizarInteresse(conexao);
+                    }
+                }
+                Conexao conexao;
+                while ((conexao = prontas.poll()) != null) {
+                    conexao.agendada.set(false);
+                    if (!conexao.fechada) {
+                        escrever(conexao);
+                    }
+                    if (!conexao.fechada) {
+                        // retoma quadros que ficaram no buffer enquanto a conexão estava pausada
+                        processar(conexao);
+                    }
+                    if (!conexao.fechada) {
+                        atualizarInteresse(conexao);
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Erro no laço do servidor do Brasisco: " + e.getMessage());
+            }
+        }
+        for (SelectionKey chave : seletor.keys()) {
+            if (chave.attachment() instanceof Conexao) {
+                fechar((Conexao) chave.attachment());
+            }
+        }
+        try {
+            canalServidor.close();
+            seletor.close();
+        } catch (IOException e) {
+            System.out.println("Erro ao fechar o servidor do Brasisco: " + e.getMessage());
+        }
+    }
+
+    private void aceitar() throws IOException {
+        SocketChannel canal;
+        while ((canal = canalServidor.accept()) != null) {
+            if (conexoes.get() >= maximoConexoes) {
+                canal.close();
+                continue;
+            }
+            canal.configureBlocking(false);
+            canal.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Conexao conexao = new Conexao(canal);
+            conexao.chave = canal.register(seletor, SelectionKey.OP_READ, conexao);
+            conexoes.incrementAndGet();
+        }
+    }
+
+    private void ler(Conexao conexao) {
+        int lidos;
+        try {
+            lidos = conexao.canal.read(conexao.entrada);
+        } catch (IOException e) {
+            fechar(conexao);
+            return;
+        }
+        if (lidos < 0) {
+            fechar(conexao);
+            return;
+        }
+        processar(conexao);
+    }
+
+    /**
+     * Decodifica os quadros completos do buffer de entrada enquanto a conexão puder receber mais trabalho
+     */
+    private void processar(Conexao conexao) {
+        ByteBuffer entrada = conexao.entrada;
+        entrada.flip();
+        while (podeLer(conexao) && entrada.remaining() >= 4) {
+            int tamanho = entrada.getInt(entrada.position());
+            if (tamanho < 5 || tamanho > ProtocoloBanco.MAXIMO_QUADRO) {
+                fechar(conexao);
+                return;
+            }
+            if (entrada.remaining() < 4 + tamanho) {
+                if (entrada.capacity() < 4 + tamanho) {
+                    ByteBuffer maior = ByteBuffer.allocate(4 + tamanho);
+                    maior.put(entrada);
+                    conexao.entrada = maior;
+                    return;
+                }
+                break;
+            }
+            int fim = entrada.position() + 4 + tamanho;
+            int limite = entrada.limit();
+            entrada.position(entrada.position() + 4);
+            int id = entrada.getInt();
+            byte operacao = entrada.get();
+            entrada.limit(fim);
+            ByteBuffer corpo = entrada.slice();
+            entrada.limit(limite);
+            entrada.position(fim);
+            requisicoes.incrementAndGet();
+            conexao.emAndamento.incrementAndGet();
+            try {
+                despachar(conexao, id, operacao, corpo);
+            } catch (ProtocoloBanco.CorpoInvalido e) {
+                responder(conexao, situacao(id, ProtocoloBanco.INVALIDA, e.getMessage()));
+            }
+        }
+        entrada.compact();
+        if (entrada.position() == 0 && entrada.capacity() > BUFFER_INICIAL) {
+            conexao.entrada = ByteBuffer.allocate(BUFFER_INICIAL);
+        }
+    }
+
+    private boolean podeLer(Conexao conexao) {
+        return !conexao.fechada && !conexao.aguardandoLogin
+                && conexao.emAndamento.get() < MAXIMO_EM_ANDAMENTO && conexao.bytesSaida.get() < LIMITE_SAIDA;
+    }
+
+    private void atualizarInteresse(Conexao conexao) {
+        int interesse = (podeLer(conexao) ? SelectionKey.OP_READ : 0)
+                | (conexao.saida.isEmpty() ? 0 : SelectionKey.OP_WRITE);
+        if (conexao.chave.interestOps() != interesse) {
+            conexao.chave.interestOps(interesse);
+        }
+    }
+
+    private void despachar(Conexao conexao, int id, byte operacao, ByteBuffer corpo) {
+        switch (operacao) {
+            case ProtocoloBanco.REGISTRAR: {
+                String email = ProtocoloBanco.lerTexto(corpo);
+                String nome = ProtocoloBanco.lerTexto(corpo);
+                String senha = ProtocoloBanco.lerTexto(corpo);
+                if (email == null || nome == null || senha == null || email.isEmpty()) {
+                    throw new ProtocoloBanco.CorpoInvalido("Email, nome e senha são obrigatórios");
+                }
+                aoConcluir(conexao, id, async.adicionarUsuarioAsync(email, nome, senha), ServidorBanco::booleano);
+                return;
+            }
+            case ProtocoloBanco.LOGIN: {
+                String email = ProtocoloBanco.lerTexto(corpo);
+                String senha = ProtocoloBanco.lerTexto(corpo);
+                if (email == null || senha == null) {
+                    throw new ProtocoloBanco.CorpoInvalido("Email e senha são obrigatórios");
+                }
+                conexao.aguardandoLogin = true;
+                aoConcluir(conexao, id, async.loginAsync(email, senha), true, (idResposta, sessao) -> {
+                    if (sessao == null) {
+                        return situacao(idResposta, ProtocoloBanco.FALHA, null);
+                    }
+                    String anterior = conexao.token;
+                    conexao.token = sessao.getToken();
+                    if (anterior != null) {
+                        banco.encerrarSessao(anterior);
+                    }
+                    return new ProtocoloBanco.Quadro(idResposta, ProtocoloBanco.OK, 64)
+                            .putTexto(sessao.getNome()).putByte(sessao.isAdmin() ? 1 : 0).concluir();
+                });
+                return;
+            }
+            case ProtocoloBanco.LOGOUT:
+                encerrarSessao(conexao);
+                responder(conexao, situacao(id, ProtocoloBanco.OK, null));
+                return;
+            default:
+                break;
+        }
+
+        Sessao sessao = conexao.token != null ? banco.validarSessao(conexao.token) : null;
+        if (sessao == null) {
+            conexao.token = null;
+            responder(conexao, situacao(id, ProtocoloBanco.NAO_AUTENTICADO, "Faça login nesta conexão"));
+            return;
+        }
+        String email = sessao.getEmail();
+        switch (operacao) {
+            case ProtocoloBanco.SALDO:
+                aoConcluir(conexao, id, async.consultarSaldoAsync(email), (idResposta, saldo) ->
+                        new ProtocoloBanco.Quadro(idResposta, ProtocoloBanco.OK, 8).putDouble(saldo).concluir());
+                return;
+            case ProtocoloBanco.DEPOSITAR: {
+                double valor = lerValor(corpo);
+                aoConcluir(conexao, id, async.depositarAsync(email, valor), ServidorBanco::booleano);
+                return;
+            }
+            case ProtocoloBanco.TRANSFERIR: {
+                String destino = ProtocoloBanco.lerTexto(corpo);
+                double valor = lerValor(corpo);
+                if (destino == null || destino.equals(email)) {
+                    throw new ProtocoloBanco.CorpoInvalido("Conta de destino inválida");
+                }
+                aoConcluir(conexao, id, async.transferirAsync(email, destino, valor), ServidorBanco::booleano);
+                return;
+            }
+            case ProtocoloBanco.HISTORICO: {
+                CursorHistorico cursor = ProtocoloBanco.lerCursor(corpo);
+                int tamanho = lerTamanhoPagina(corpo);
+                aoConcluir(conexao, id, async.consultarHistoricoUsuarioAsync(email, cursor, tamanho),
+                        ServidorBanco::pagina);
+                return;
+            }
+            case ProtocoloBanco.DENUNCIAR: {
+                int idTransacao = ProtocoloBanco.lerInt(corpo);
+                String descricao = ProtocoloBanco.lerTexto(corpo);
+                if (descricao == null) {
+                    throw new ProtocoloBanco.CorpoInvalido("Descrição obrigatória");
+                }
+                aoConcluir(conexao, id, async.registrarDenunciaAsync(idTransacao, email, descricao),
+                        ServidorBanco::booleano);
+                return;
+            }
+            default:
+                break;
+        }
+
+        if (!sessao.isAdmin()) {
+            responder(conexao, situacao(id, ProtocoloBanco.PROIBIDO, "Operação de administrador"));
+            return;
+        }
+        switch (operacao) {
+            case ProtocoloBanco.HISTORICO_GERAL: {
+                CursorHistorico cursor = ProtocoloBanco.lerCursor(corpo);
+                int tamanho = lerTamanhoPagina(corpo);
+                aoConcluir(conexao, id, async.consultarHistoricoAsync(cursor, tamanho), ServidorBanco::pagina);
+                return;
+            }
+            case ProtocoloBanco.RESERVAR_DENUNCIAS: {
+                byte prioridade = ProtocoloBanco.lerByte(corpo);
+                int quantidade = ProtocoloBanco.lerShort(corpo);
+                long duracaoMs = ProtocoloBanco.lerLong(corpo);
+                if (prioridade < 0 || prioridade >= PrioridadeDenuncia.values().length
+                        || quantidade < 1 || quantidade > MAXIMO_PAGINA || duracaoMs <= 0) {
+                    throw new ProtocoloBanco.CorpoInvalido("Prioridade, quantidade ou duração inválida");
+                }
+                PrioridadeDenuncia ordem = PrioridadeDenuncia.values()[prioridade];
+                aoConcluir(conexao, id, async.executarEscrita(b -> b.reservarDenuncias(email, ordem, quantidade,
+                        duracaoMs)), ServidorBanco::denuncias);
+                return;
+            }
+            case ProtocoloBanco.REJEITAR_DENUNCIA: {
+                int idDenuncia = ProtocoloBanco.lerInt(corpo);
+                aoConcluir(conexao, id, async.executarEscrita(b -> b.rejeitarDenuncia(email, idDenuncia)),
+                        ServidorBanco::booleano);
+                return;
+            }
+            case ProtocoloBanco.LIBERAR_RESERVA: {
+                int idDenuncia = ProtocoloBanco.lerInt(corpo);
+                aoConcluir(conexao, id, async.executarEscrita(b -> b.liberarReserva(email, idDenuncia)),
+                        ServidorBanco::booleano);
+                return;
+            }
+            case ProtocoloBanco.REVERTER: {
+                int idDenuncia = ProtocoloBanco.lerInt(corpo);
+                aoConcluir(conexao, id, async.executarEscrita(b -> b.reverter(email, idDenuncia)),
+                        ServidorBanco::booleano);
+                return;
+            }
+            default:
+                throw new ProtocoloBanco.CorpoInvalido("Operação desconhecida: " + operacao);
+        }
+    }
+
+    private static double lerValor(ByteBuffer corpo) {
+        double valor = ProtocoloBanco.lerDouble(corpo);
+        if (!(valor > 0) || Double.isInfinite(valor)) {
+            throw new ProtocoloBanco.CorpoInvalido("Valor deve ser positivo");
+        }
+        return valor;
+    }
+
+    private static int lerTamanhoPagina(ByteBuffer corpo) {
+        int tamanho = ProtocoloBanco.lerShort(corpo);
+        if (tamanho < 1 || tamanho > MAXIMO_PAGINA) {
+            throw new ProtocoloBanco.CorpoInvalido("Tamanho de página entre 1 e " + MAXIMO_PAGINA);
+        }
+        return tamanho;
+    }
+
+    private static ByteBuffer booleano(int id, Boolean sucesso) {
+        return situacao(id, sucesso ? ProtocoloBanco.OK : ProtocoloBanco.FALHA, null);
+    }
+
+    private static ByteBuffer pagina(int id, PaginaHistorico pagina) {
+        ProtocoloBanco.Quadro quadro = new ProtocoloBanco.Quadro(id, ProtocoloBanco.OK, 256)
+                .putByte(pagina.temMais() ? 1 : 0)
+                .putCursor(pagina.getProximo())
+                .putInt(pagina.getTransacoes().size());
+        for (Transacao t : pagina.getTransacoes()) {
+            quadro.putTransacao(t);
+        }
+        return quadro.concluir();
+    }
+
+    private static ByteBuffer denuncias(int id, List<Denuncia> denuncias) {
+        ProtocoloBanco.Quadro quadro = new ProtocoloBanco.Quadro(id, ProtocoloBanco.OK, 512)
+                .putInt(denuncias.size());
+        for (Denuncia d : denuncias) {
+            quadro.putDenuncia(d);
+        }
+        return quadro.concluir();
+    }
+
+    private static ByteBuffer situacao(int id, byte situacao, String motivo) {
+        ProtocoloBanco.Quadro quadro = new ProtocoloBanco.Quadro(id, situacao, 16);
+        if (situacao != ProtocoloBanco.OK && situacao != ProtocoloBanco.FALHA) {
+            quadro.putTexto(motivo);
+        }
+        return quadro.concluir();
+    }
+
+    /**
+     * Converte o resultado de uma operação em resposta quando ela terminar (na thread que a executou)
+     */
+    private <T> void aoConcluir(Conexao conexao, int id, CompletableFuture<T> futuro, Codificador<T> codificador) {
+        aoConcluir(conexao, id, futuro, false, codificador);
+    }
+
+    /**
+     * @param login Se true, libera a leitura da conexão depois que o codificador registrou a sessão
+     */
+    private <T> void aoConcluir(Conexao conexao, int id, CompletableFuture<T> futuro, boolean login,
+                                Codificador<T> codificador) {
+        futuro.whenComplete((valor, erro) -> {
+            ByteBuffer resposta;
+            if (erro != null) {
+                Throwable causa = erro instanceof CompletionException && erro.getCause() != null ? erro.getCause() : erro;
+                boolean sobrecarga = causa instanceof RejectedExecutionException || causa instanceof TimeoutException;
+                resposta = situacao(id, sobrecarga ? ProtocoloBanco.SOBRECARGA : ProtocoloBanco.ERRO,
+                        String.valueOf(causa.getMessage()));
+            } else {
+                try {
+                    resposta = codificador.codificar(id, valor);
+                } catch (RuntimeException e) {
+                    resposta = situacao(id, ProtocoloBanco.ERRO, String.valueOf(e.getMessage()));
+                }
+            }
+            if (login) {
+                conexao.aguardandoLogin = false;
+            }
+            responder(conexao, resposta);
+        });
+    }
+
+    /**
+     * Enfileira a resposta e agenda a conexão para o laço do Selector; pode ser chamado de qualquer thread
+     */
+    private void responder(Conexao conexao, ByteBuffer resposta) {
+        conexao.bytesSaida.addAndGet(resposta.remaining());
+        conexao.saida.add(resposta);
+        conexao.emAndamento.decrementAndGet();
+        if (conexao.agendada.compareAndSet(false, true)) {
+            prontas.add(conexao);
+            if (Thread.currentThread() != laco) {
+                seletor.wakeup();
+            }
+        }
+    }
+
+    private void escrever(Conexao conexao) {
+        while (!conexao.saida.isEmpty()) {
+            int quantidade = 0;
+            for (ByteBuffer buffer : conexao.saida) {
+                lote[quantidade++] = buffer;
+                if (quantidade == lote.length) {
+                    break;
+                }
+            }
+            try {
+                conexao.canal.write(lote, 0, quantidade);
+            } catch (IOException e) {
+                fechar(conexao);
+                return;
+            }
+            boolean completo = true;
+            for (int i = 0; i < quantidade; i++) {
+                if (lote[i].hasRemaining()) {
+                    completo = false;
+                    break;
+                }
+                conexao.saida.poll();
+                conexao.bytesSaida.addAndGet(-lote[i].limit());
+            }
+            Arrays.fill(lote, 0, quantidade, null);
+            if (!completo) {
+                // socket cheio: o resto sai quando o Selector indicar OP_WRITE
+                return;
+            }
+        }
+    }
+
+    private void encerrarSessao(Conexao conexao) {
+        String token = conexao.token;
+        conexao.token = null;
+        if (token != null) {
+            banco.encerrarSessao(token);
+        }
+    }
+
+    private void fechar(Conexao conexao) {
+        if (conexao.fechada) {
+            return;
+        }
+        conexao.fechada = true;
+        conexoes.decrementAndGet();
+        encerrarSessao(conexao);
+        if (conexao.chave != null) {
+            conexao.chave.cancel();
+        }
+        try {
+            conexao.canal.close();
+        } catch (IOException e) {
+            System.out.println("Erro ao fechar conexão no Brasisco: " + e.getMessage());
+        }
+    }
+
+    private interface Codificador<T> {
+        ByteBuffer codificar(int id, T valor);
+    }
+
+    /**
+     * Estado de uma conexão; entrada, chave e fechada só são usados pela thread do Selector
+     */
+    private static final class Conexao {
+        final SocketChannel canal;
+        final Queue<ByteBuffer> saida = new ConcurrentLinkedQueue<>();
+        final AtomicLong bytesSaida = new AtomicLong();
+        final AtomicInteger emAndamento = new AtomicInteger();
+        final AtomicBoolean agendada = new AtomicBoolean();
+        ByteBuffer entrada = ByteBuffer.allocate(BUFFER_INICIAL);
+        SelectionKey chave;
+        boolean fechada;
+        volatile boolean aguardandoLogin;
+        volatile String token;
+
+        Conexao(SocketChannel canal) {
+            this.canal = canal;
+        }
+    }
+}
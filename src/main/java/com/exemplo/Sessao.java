@@ -0,0 +1,45 @@
+package com.exemplo;
+
+/**
+ * Sessão aberta por um login bem sucedido
+ * Guarda os dados do usuário que as telas precisam, para que não seja necessário consultar o SQLite de novo
+ */
+public class Sessao {
+    private final String token;
+    private final String email;
+    private final String nome;
+    private final boolean admin;
+    private volatile long expiraEmNanos;
+
+    public Sessao(String token, String email, String nome, boolean admin, long expiraEmNanos) {
+        this.token = token;
+        this.email = email;
+        this.nome = nome;
+        this.admin = admin;
+        this.expiraEmNanos = expiraEmNanos;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public boolean isAdmin() {
+        return admin;
+    }
+
+    boolean expirou(long agoraNanos) {
+        return agoraNanos - expiraEmNanos > 0;
+    }
+
+    void renovar(long expiraEmNanos) {
+        this.expiraEmNanos = expiraEmNanos;
+    }
+}
@@ -0,0 +1,281 @@
+package com.exemplo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gerador de carga sem interface: cria usuários sintéticos e executa, a partir de várias threads,
+ * uma mistura configurável de operações do Banco por um tempo fixo
+ * Ao final mostra vazão, latências (p50/p99/p999) e erros por operação, e confere se o total
+ * de dinheiro no sistema é o saldo inicial mais os depósitos
+ *
+ * Uso: java com.exemplo.SimuladorCarga [--usuarios 1000] [--threads 16] [--duracao 30]
+ *      [--db arquivo.db] [--mix login=10,saldo=30,deposito=15,transferencia=30,historico=13,denuncia=2]
+ *      [--saldos-memoria] [--diario] [--escrita-agrupada] [--metricas]
+ */
+public class SimuladorCarga {
+    private static final double SALDO_INICIAL = 1000.0;
+    private static final String SENHA = "senha123";
+
+    enum Operacao {
+        LOGIN, SALDO, DEPOSITO, TRANSFERENCIA, HISTORICO, DENUNCIA
+    }
+
+    private final Banco banco;
+    private final int usuarios;
+    private final int threads;
+    private final long duracaoSegundos;
+    private final Operacao[] sorteio;
+    private final Map<Operacao, HistogramaLatencia> latencias = new EnumMap<>(Operacao.class);
+    private final Map<Operacao, LongAdder> erros = new EnumMap<>(Operacao.class);
+    private final Map<Operacao, LongAdder> recusadas = new EnumMap<>(Operacao.class);
+    private final DoubleAdder totalDepositado = new DoubleAdder();
+
+    public SimuladorCarga(Banco banco, int usuarios, int threads, long duracaoSegundos, Map<Operacao, Integer> mix) {
+        this.banco = banco;
+        this.usuarios = usuarios;
+        this.threads = threads;
+        this.duracaoSegundos = duracaoSegundos;
+        List<Operacao> pesos = new ArrayList<>();
+        for (Map.Entry<Operacao, Integer> peso : mix.entrySet()) {
+            for (int i = 0; i < peso.getValue(); i++) {
+                pesos.add(peso.getKey());
+            }
+        }
+        if (pesos.isEmpty()) {
+            throw new IllegalArgumentException("A mistura de operações está vazia");
+        }
+        this.sorteio = pesos.toArray(new Operacao[0]);
+        for (Operacao operacao : Operacao.values()) {
+            latencias.put(operacao, new HistogramaLatencia());
+            erros.put(operacao, new LongAdder());
+            recusadas.put(operacao, new LongAdder());
+        }
+    }
+
+    private static String email(int i) {
+        return "sim" + i + "@carga.com";
+    }
+
+    public void criarUsuarios() {
+        for (int i = 0; i < usuarios; i++) {
+            banco.adicionarUsuario(email(i), "Simulado " + i, SENHA);
+        }
+    }
+
+    /**
+     * Executa a carga e imprime o relatório
+     * @return true se o invariante de conservação do dinheiro foi respeitado
+     */
+    public boolean executar() throws InterruptedException {
+        double totalInicial = somarSaldos();
+        long falhasAntes = somarFalhasBanco();
+        long inicio = System.nanoTime();
+        long fim = inicio + TimeUnit.SECONDS.toNanos(duracaoSegundos);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                while (System.nanoTime() < fim) {
+                    executarOperacao(sorteio[ThreadLocalRandom.current().nextInt(sorteio.length)]);
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(duracaoSegundos + 60, TimeUnit.SECONDS);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        imprimirRelatorio(segundos, somarFalhasBanco() - falhasAntes);
+        double esperado = totalInicial + totalDepositado.sum();
+        double obtido = somarSaldos();
+        boolean conservado = Math.abs(esperado - obtido) < 0.005 * Math.max(1.0, usuarios);
+        System.out.println(String.format("Dinheiro no sistema: esperado R$ %.2f, obtido R$ %.2f -> %s",
+                esperado, obtido, conservado ? "OK" : "VIOLADO"));
+        return conservado;
+    }
+
+    private void executarOperacao(Operacao operacao) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String conta = email(random.nextInt(usuarios));
+        long inicio = System.nanoTime();
+        try {
+            switch (operacao) {
+                case LOGIN:
+                    if (!banco.autenticar(conta, SENHA)) {
+                        erros.get(operacao).increment();
+                    }
+                    break;
+                case SALDO:
+                    banco.consultarSaldo(conta);
+                    break;
+                case DEPOSITO:
+                    double valor = 1 + random.nextInt(100);
+                    if (banco.depositar(conta, valor)) {
+                        totalDepositado.add(valor);
+                    } else {
+                        recusadas.get(operacao).increment();
+                    }
+                    break;
+                case TRANSFERENCIA:
+                    if (!banco.transferir(conta, email(random.nextInt(usuarios)), 1 + random.nextInt(200))) {
+                        recusadas.get(operacao).increment();
+                    }
+                    break;
+                case HISTORICO:
+                    banco.consultarHistoricoUsuario(conta, CursorHistorico.INICIO, 20);
+                    break;
+                case DENUNCIA:
+                    PaginaHistorico pagina = banco.consultarHistoricoUsuario(conta, CursorHistorico.INICIO, 5);
+                    if (pagina.isEmpty()) {
+                        recusadas.get(operacao).increment();
+                    } else if (!banco.registrarDenuncia(pagina.getTransacoes().get(0).getId(), conta, "simulada")) {
+                        erros.get(operacao).increment();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (RuntimeException e) {
+            erros.get(operacao).increment();
+        }
+        latencias.get(operacao).registrar(System.nanoTime() - inicio);
+    }
+
+    private double somarSaldos() {
+        double total = 0;
+        for (int i = 0; i < usuarios; i++) {
+            total += banco.consultarSaldo(email(i));
+        }
+        return total;
+    }
+
+    /**
+     * @return Falhas registradas pelo Banco nas suas métricas, somando todas as operações
+     */
+    private long somarFalhasBanco() {
+        long falhas = 0;
+        for (OperacaoBanco operacao : OperacaoBanco.values()) {
+            falhas += banco.getMetricas().get(operacao).getFalhas();
+        }
+        return falhas;
+    }
+
+    private void imprimirRelatorio(double segundos, long falhasBanco) {
+        System.out.println(String.format("%n=== Simulação de carga - Brasisco (%d usuários, %d threads, %.1f s) ===",
+                usuarios, threads, segundos));
+        System.out.println(String.format("%-14s %10s %10s %10s %10s %10s %10s %8s %9s",
+                "Operação", "Total", "Ops/s", "p50 ms", "p99 ms", "p999 ms", "máx ms", "Erros", "Recusadas"));
+        long totalOperacoes = 0;
+        for (Operacao operacao : Operacao.values()) {
+            HistogramaLatencia h = latencias.get(operacao);
+            if (h.getContagem() == 0) {
+                continue;
+            }
+            totalOperacoes += h.getContagem();
+            System.out.println(String.format("%-14s %10d %10.0f %10.3f %10.3f %10.3f %10.3f %8d %9d",
+                    operacao, h.getContagem(), h.getContagem() / segundos,
+                    h.percentilNanos(50) / 1e6, h.percentilNanos(99) / 1e6, h.percentilNanos(99.9) / 1e6,
+                    h.getMaximoNanos() / 1e6, erros.get(operacao).sum(), recusadas.get(operacao).sum()));
+        }
+        System.out.println(String.format("Total: %d operações, %.0f ops/s; falhas nas métricas do Banco: %d",
+                totalOperacoes, totalOperacoes / segundos, falhasBanco));
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int usuarios = 1000;
+        int threads = 16;
+        long duracao = 30;
+        String db = null;
+        String mix = "login=10,saldo=30,deposito=15,transferencia=30,historico=13,denuncia=2";
+        boolean metricas = false;
+        ConfiguracaoBanco config = new ConfiguracaoBanco();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--usuarios":
+                    usuarios = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--duracao":
+                    duracao = Long.parseLong(args[++i]);
+                    break;
+                case "--db":
+                    db = args[++i];
+                    break;
+                case "--mix":
+                    mix = args[++i];
+                    break;
+                case "--saldos-memoria":
+                    config.setSaldosEmMemoria(true);
+                    break;
+                case "--diario":
+                    config.setSaldosEmMemoria(true);
+                    config.setDiarioMapeado(true);
+                    break;
+                case "--escrita-agrupada":
+                    config.setEscritaAgrupada(true);
+                    break;
+                case "--metricas":
+                    metricas = true;
+                    break;
+                default:
+                    System.out.println("Opção desconhecida: " + args[i]);
+                    return;
+            }
+        }
+
+        File diretorio = null;
+        if (db == null) {
+            diretorio = Files.createTempDirectory("brasisco-carga").toFile();
+            db = new File(diretorio, "carga.db").getAbsolutePath();
+        }
+        config.setUrl("jdbc:sqlite:" + db);
+        config.setArquivoRegistroSaldos(db + "-saldos.log");
+
+        boolean conservado;
+        try (Banco banco = new Banco(config)) {
+            SimuladorCarga simulador = new SimuladorCarga(banco, usuarios, threads, duracao, lerMix(mix));
+            System.out.println("Criando " + usuarios + " usuários...");
+            simulador.criarUsuarios();
+            System.out.println("Executando carga por " + duracao + " s...");
+            conservado = simulador.executar();
+            if (metricas) {
+                System.out.println();
+                System.out.println(banco.getMetricas().formatarTexto());
+            }
+        } finally {
+            if (diretorio != null) {
+                File[] arquivos = diretorio.listFiles();
+                if (arquivos != null) {
+                    for (File arquivo : arquivos) {
+                        arquivo.delete();
+                    }
+                }
+                diretorio.delete();
+            }
+        }
+        if (!conservado) {
+            System.exit(1);
+        }
+    }
+
+    private static Map<Operacao, Integer> lerMix(String mix) {
+        Map<Operacao, Integer> pesos = new EnumMap<>(Operacao.class);
+        for (String parte : mix.split(",")) {
+            String[] chaveValor = parte.split("=");
+            pesos.put(Operacao.valueOf(chaveValor[0].trim().toUpperCase()), Integer.parseInt(chaveValor[1].trim()));
+        }
+        return pesos;
+    }
+}
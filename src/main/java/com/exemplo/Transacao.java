@@ -53,6 +53,30 @@ public class Transacao {
         return tipo;
     }
 
+    public String getEmailOrigem() {
+        return emailOrigem;
+    }
+
+    public String getEmailDestino() {
+        return emailDestino;
+    }
+
+    public String getNomeOrigem() {
+        return nomeOrigem;
+    }
+
+    public String getNomeDestino() {
+        return nomeDestino;
+    }
+
+    public double getValor() {
+        return valor;
+    }
+
+    public Timestamp getData() {
+        return data;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
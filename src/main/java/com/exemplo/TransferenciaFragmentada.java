@@ -0,0 +1,246 @@
+package com.exemplo;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lado de um fragmento numa transferência entre fragmentos (tabela transferencias_fragmentos)
+ *
+ * Preparar (fase 1) debita a origem na hora, com checagem de saldo, ou só confere que o destino existe;
+ * a linha fica PREPARADA. Confirmar (fase 2) credita o destino e grava a transação no historico do
+ * fragmento; desfazer devolve o débito. Os dois passos rodam na transação de quem chamou e são
+ * idempotentes: uma linha que não está mais PREPARADA não é alterada de novo
+ */
+final class TransferenciaFragmentada {
+    static final String DEBITO = "DEBITO";
+    static final String CREDITO = "CREDITO";
+
+    private final String idGlobal;
+    private final String papel;
+    private final String email;
+    private final String contraparte;
+    private final double valor;
+    private final String tipo;
+    private final Integer reversaoDe;
+    private final String estado;
+    private final Integer idHistorico;
+
+    TransferenciaFragmentada(String idGlobal, String papel, String email, String contraparte, double valor,
+                             String tipo, Integer reversaoDe, String estado, Integer idHistorico) {
+        this.idGlobal = idGlobal;
+        this.papel = papel;
+        this.email = email;
+        this.contraparte = contraparte;
+        this.valor = valor;
+        this.tipo = tipo;
+        this.reversaoDe = reversaoDe;
+        this.estado = estado;
+        this.idHistorico = idHistorico;
+    }
+
+    String getIdGlobal() {
+        return idGlobal;
+    }
+
+    String getPapel() {
+        return papel;
+    }
+
+    String getEmail() {
+        return email;
+    }
+
+    String getContraparte() {
+        return contraparte;
+    }
+
+    double getValor() {
+        return valor;
+    }
+
+    String getTipo() {
+        return tipo;
+    }
+
+    /**
+     * @return ID, no historico deste fragmento, da transação que esta reverte, ou null
+     */
+    Integer getReversaoDe() {
+        return reversaoDe;
+    }
+
+    String getEstado() {
+        return estado;
+    }
+
+    /**
+     * @return ID da transação no historico deste fragmento depois de confirmada, ou null
+     */
+    Integer getIdHistorico() {
+        return idHistorico;
+    }
+
+    /**
+     * Fase 1 neste fragmento
+     * @param exigirSaldo Se false, o débito pode deixar o saldo negativo (reversões, como em reverterTransferencia)
+     * @return false se a conta não existe, o saldo não basta, ou a transação a reverter já foi revertida ou tem
+     *         denúncia pendente reservada por um revisor
+     */
+    static boolean preparar(ConexaoPool conn, TransferenciaFragmentada t, boolean exigirSaldo) throws SQLException {
+        if (t.reversaoDe != null) {
+            // como em Banco.reverterTransferencia, que também reverte sem revisor
+            if (Banco.reservadaPorOutro(conn, null, t.reversaoDe)) {
+                return false;
+            }
+            PreparedStatement jaRevertida = conn.preparar("SELECT 1 FROM historico WHERE reversao_de = ? " +
+                    "UNION ALL SELECT 1 FROM transferencias_fragmentos WHERE reversao_de = ? AND estado = 'PREPARADA'");
+            jaRevertida.setInt(1, t.reversaoDe);
+            jaRevertida.setInt(2, t.reversaoDe);
+            try (ResultSet rs = jaRevertida.executeQuery()) {
+                if (rs.next()) {
+                    return false;
+                }
+            }
+        }
+        if (DEBITO.equals(t.papel)) {
+            PreparedStatement debito = conn.preparar(
+                    "UPDATE usuarios SET saldo = saldo - ? WHERE email = ? AND (saldo >= ? OR ? = 0)");
+            debito.setDouble(1, t.valor);
+            debito.setString(2, t.email);
+            debito.setDouble(3, t.valor);
+            debito.setInt(4, exigirSaldo ? 1 : 0);
+            if (debito.executeUpdate() == 0) {
+                return false;
+            }
+        } else {
+            PreparedStatement existe = conn.preparar("SELECT 1 FROM usuarios WHERE email = ?");
+            existe.setString(1, t.email);
+            try (ResultSet rs = existe.executeQuery()) {
+                if (!rs.next()) {
+                    return false;
+                }
+            }
+        }
+        PreparedStatement stmt = conn.preparar("INSERT INTO transferencias_fragmentos " +
+                "(id_global, papel, email, contraparte, valor, tipo, reversao_de, estado) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, 'PREPARADA')");
+        stmt.setString(1, t.idGlobal);
+        stmt.setString(2, t.papel);
+        stmt.setString(3, t.email);
+        stmt.setString(4, t.contraparte);
+        stmt.setDouble(5, t.valor);
+        stmt.setString(6, t.tipo);
+        if (t.reversaoDe != null) {
+            stmt.setInt(7, t.reversaoDe);
+        } else {
+            stmt.setNull(7, Types.INTEGER);
+        }
+        stmt.executeUpdate();
+        return true;
+    }
+
+    /**
+     * Fase 2 neste fragmento
+     * @param confirmar true aplica a transferência, false a desfaz
+     * @return false se a linha não existe ou já foi concluída antes
+     */
+    static boolean concluir(ConexaoPool conn, String idGlobal, boolean confirmar) throws SQLException {
+        TransferenciaFragmentada t = carregar(conn, idGlobal);
+        if (t == null || !"PREPARADA".equals(t.estado)) {
+            return false;
+        }
+        boolean debito = DEBITO.equals(t.papel);
+        Integer idHistorico = null;
+        if (confirmar) {
+            if (!debito) {
+                PreparedStatement credito = conn.preparar("UPDATE usuarios SET saldo = saldo + ? WHERE email = ?");
+                credito.setDouble(1, t.valor);
+                credito.setString(2, t.email);
+                credito.executeUpdate();
+            }
+            PreparedStatement historico = conn.preparar("INSERT INTO historico " +
+                    "(email_origem, email_destino, tipo, valor, reversao_de) VALUES (?, ?, ?, ?, ?)");
+            historico.setString(1, debito ? t.email : t.contraparte);
+            historico.setString(2, debito ? t.contraparte : t.email);
+            historico.setString(3, t.tipo);
+            historico.setDouble(4, t.valor);
+            if (t.reversaoDe != null) {
+                historico.setInt(5, t.reversaoDe);
+            } else {
+                historico.setNull(5, Types.INTEGER);
+            }
+            historico.executeUpdate();
+            try (ResultSet rs = conn.preparar("SELECT last_insert_rowid()").executeQuery()) {
+                idHistorico = rs.next() ? rs.getInt(1) : null;
+            }
+            if (t.reversaoDe != null) {
+                Banco.resolverDenuncias(conn, null, t.reversaoDe);
+            }
+        } else if (debito) {
+            PreparedStatement devolucao = conn.preparar("UPDATE usuarios SET saldo = saldo + ? WHERE email = ?");
+            devolucao.setDouble(1, t.valor);
+            devolucao.setString(2, t.email);
+            devolucao.executeUpdate();
+        }
+        PreparedStatement estado = conn.preparar(
+                "UPDATE transferencias_fragmentos SET estado = ?, id_historico = ? WHERE id_global = ?");
+        estado.setString(1, confirmar ? "CONFIRMADA" : "DESFEITA");
+        if (idHistorico != null) {
+            estado.setInt(2, idHistorico);
+        } else {
+            estado.setNull(2, Types.INTEGER);
+        }
+        estado.setString(3, idGlobal);
+        estado.executeUpdate();
+        return true;
+    }
+
+    static TransferenciaFragmentada carregar(ConexaoPool conn, String idGlobal) throws SQLException {
+        PreparedStatement stmt = conn.preparar("SELECT * FROM transferencias_fragmentos WHERE id_global = ?");
+        stmt.setString(1, idGlobal);
+        return lerUma(stmt);
+    }
+
+    /**
+     * @return A transferência entre fragmentos gravada no historico com este ID, ou null se a transação
+     *         do historico é local ao fragmento
+     */
+    static TransferenciaFragmentada porHistorico(ConexaoPool conn, int idHistorico) throws SQLException {
+        PreparedStatement stmt = conn.preparar("SELECT * FROM transferencias_fragmentos WHERE id_historico = ?");
+        stmt.setInt(1, idHistorico);
+        return lerUma(stmt);
+    }
+
+    /**
+     * @return IDs globais das transferências ainda na fase 1 neste fragmento
+     */
+    static List<String> preparadas(ConexaoPool conn) throws SQLException {
+        List<String> ids = new ArrayList<>();
+        try (ResultSet rs = conn.preparar(
+                "SELECT id_global FROM transferencias_fragmentos WHERE estado = 'PREPARADA'").executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getString(1));
+            }
+        }
+        return ids;
+    }
+
+    private static TransferenciaFragmentada lerUma(PreparedStatement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            if (!rs.next()) {
+                return null;
+            }
+            int reversaoDe = rs.getInt("reversao_de");
+            Integer reversao = rs.wasNull() ? null : reversaoDe;
+            int idHistorico = rs.getInt("id_historico");
+            Integer historico = rs.wasNull() ? null : idHistorico;
+            return new TransferenciaFragmentada(rs.getString("id_global"), rs.getString("papel"),
+                    rs.getString("email"), rs.getString("contraparte"), rs.getDouble("valor"), rs.getString("tipo"),
+                    reversao, rs.getString("estado"), historico);
+        }
+    }
+}
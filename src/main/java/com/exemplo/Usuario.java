@@ -1,5 +1,10 @@
 package com.exemplo;
 
+/**
+ * Conta mantida em memória
+ * Os métodos são sincronizados na própria instância só para publicar o saldo entre threads; as
+ * alterações já chegam serializadas pela conexão de escrita do Banco (ver SaldosMemoria)
+ */
 public class Usuario {
     private String nome;
     private double saldo;
@@ -13,21 +18,28 @@ public class Usuario {
         return nome;
     }
 
-    public double getSaldo() {
+    public synchronized double getSaldo() {
         return saldo;
     }
 
-    public void depositar(double valor) {
+    public synchronized void depositar(double valor) {
         if (valor > 0) {
             saldo += valor;
         }
     }
 
-    public boolean sacar(double valor) {
+    public synchronized boolean sacar(double valor) {
         if (valor > 0 && saldo >= valor) {
             saldo -= valor;
             return true;
         }
         return false;
     }
-} 
\ No newline at end of file
+
+    /**
+     * Define o saldo diretamente, sem checagem (usado pelo SaldosMemoria e na recuperação)
+     */
+    synchronized void definirSaldo(double novoSaldo) {
+        this.saldo = novoSaldo;
+    }
+}
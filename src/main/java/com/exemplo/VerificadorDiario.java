@@ -0,0 +1,179 @@
+package com.exemplo;
+
+import org.sqlite.SQLiteConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ferramenta offline que confere o diário de saldos (modo diário) contra as tabelas do SQLite
+ * Com o Banco parado: valida o instantâneo e cada segmento (CRC, sequência contínua, cauda rasgada),
+ * reconstrói os saldos como a inicialização faria e compara com usuarios.saldo
+ * Depois de um encerramento normal não deve haver divergências; depois de uma queda o SQLite pode estar
+ * atrás do diário, e a próxima inicialização é que aplica a diferença
+ *
+ * Uso: java com.exemplo.VerificadorDiario [--db banco.db] [--registro banco-saldos.log]
+ * Sai com código 1 se encontrar corrupção ou divergência
+ */
+public class VerificadorDiario {
+    private static final double TOLERANCIA = 0.005;
+
+    public static void main(String[] args) throws IOException, SQLException {
+        String db = "banco.db";
+        String registro = "banco-saldos.log";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--db":
+                    db = args[++i];
+                    break;
+                case "--registro":
+                    registro = args[++i];
+                    break;
+                default:
+                    System.out.println("Opção desconhecida: " + args[i]);
+                    return;
+            }
+        }
+        if (!verificar(db, registro)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return true se o diário está íntegro e bate com o SQLite
+     */
+    public static boolean verificar(String db, String arquivoRegistro) throws IOException, SQLException {
+        long inicio = System.nanoTime();
+        int problemas = 0;
+        Map<String, Double> saldos = new HashMap<>();
+
+        File instantaneoArquivo = new File(arquivoRegistro + InstantaneoSaldos.SUFIXO);
+        InstantaneoSaldos instantaneo = InstantaneoSaldos.ler(instantaneoArquivo,
+                (email, nome, saldo) -> saldos.put(email, saldo));
+        if (instantaneo != null) {
+            System.out.println(String.format("Instantâneo: %d contas até a sequência %d",
+                    instantaneo.getContas(), instantaneo.getSequencia()));
+        } else {
+            saldos.clear();
+            if (instantaneoArquivo.exists()) {
+                System.out.println("Instantâneo corrompido: " + instantaneoArquivo);
+                problemas++;
+            } else {
+                System.out.println("Sem instantâneo");
+            }
+        }
+
+        SQLiteConfig sqliteConfig = new SQLiteConfig();
+        sqliteConfig.setReadOnly(true);
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + db, sqliteConfig.toProperties());
+             Statement stmt = conn.createStatement()) {
+            long checkpoint;
+            try (ResultSet rs = stmt.executeQuery("SELECT seq FROM saldos_checkpoint WHERE id = 1")) {
+                checkpoint = rs.next() ? rs.getLong(1) : 0;
+            }
+            System.out.println("Checkpoint do SQLite: sequência " + checkpoint);
+
+            // contas fora do instantâneo entram com o saldo do SQLite, como na inicialização
+            Map<String, Double> saldosSqlite = new HashMap<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT email, saldo FROM usuarios")) {
+                while (rs.next()) {
+                    saldosSqlite.put(rs.getString(1), rs.getDouble(2));
+                }
+            }
+            Set<String> doSqlite = new HashSet<>();
+            for (Map.Entry<String, Double> conta : saldosSqlite.entrySet()) {
+                if (saldos.putIfAbsent(conta.getKey(), conta.getValue()) == null) {
+                    doSqlite.add(conta.getKey());
+                }
+            }
+
+            long aPartirDe = instantaneo != null ? Math.min(checkpoint, instantaneo.getSequencia()) : checkpoint;
+            long coberturaInstantaneo = instantaneo != null ? instantaneo.getSequencia() : checkpoint;
+            ReaplicacaoSaldos reaplicacao = new ReaplicacaoSaldos(ReaplicacaoSaldos.lerConfirmadas(conn, aPartirDe),
+                    ReaplicacaoSaldos.lerConfirmadasDesde(conn), saldos::get,
+                    email -> doSqlite.contains(email) ? checkpoint : coberturaInstantaneo);
+            File base = new File(arquivoRegistro).getAbsoluteFile();
+            String prefixo = base.getName() + DiarioSaldos.SUFIXO;
+            List<File> segmentos = DiarioSaldos.segmentos(base.getParentFile(), prefixo);
+            long esperada = -1;
+            long registros = 0;
+            for (int i = 0; i < segmentos.size(); i++) {
+                File segmento = segmentos.get(i);
+                DiarioSaldos.Leitura leitura;
+                try (FileChannel canal = new RandomAccessFile(segmento, "r").getChannel()) {
+                    MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+                    leitura = DiarioSaldos.ler(buffer, aPartirDe, reaplicacao);
+                }
+                registros += leitura.registros;
+                long nomeada = DiarioSaldos.primeiraSequencia(segmento, prefixo);
+                if (leitura.registros > 0 && leitura.primeiraSequencia != nomeada) {
+                    System.out.println(String.format("%s: começa na sequência %d, esperado %d",
+                            segmento.getName(), leitura.primeiraSequencia, nomeada));
+                    problemas++;
+                }
+                if (esperada >= 0 && nomeada != esperada) {
+                    System.out.println(String.format("%s: lacuna na sequência (esperado %d)", segmento.getName(), esperada));
+                    problemas++;
+                }
+                esperada = leitura.registros > 0 ? leitura.ultimaSequencia + 1 : nomeada;
+                if (leitura.lixo) {
+                    boolean ultimo = i == segmentos.size() - 1;
+                    System.out.println(String.format("%s: dados inválidos a partir do byte %d%s", segmento.getName(),
+                            leitura.fim, ultimo ? " (cauda rasgada, descartada na inicialização)" : ""));
+                    if (!ultimo) {
+                        problemas++;
+                    }
+                }
+            }
+            reaplicacao.entregar(saldos::put);
+            long ultimaSequencia = esperada - 1;
+            System.out.println(String.format("Diário: %d segmentos, %d registros, última sequência %d, %d saldos reaplicados",
+                    segmentos.size(), registros, ultimaSequencia, reaplicacao.getReaplicados()));
+            if (reaplicacao.getDescartados() > 0) {
+                System.out.println(String.format("%d registros sem confirmação no SQLite tiveram o efeito descontado",
+                        reaplicacao.getDescartados()));
+            }
+            if (!segmentos.isEmpty() && DiarioSaldos.primeiraSequencia(segmentos.get(0), prefixo) > aPartirDe + 1) {
+                System.out.println("O primeiro segmento começa depois da sequência " + (aPartirDe + 1)
+                        + ": registros necessários para a recuperação foram apagados");
+                problemas++;
+            }
+            if (!segmentos.isEmpty() && checkpoint > ultimaSequencia) {
+                System.out.println("O checkpoint do SQLite está adiante do diário");
+                problemas++;
+            }
+
+            int divergentes = 0;
+            for (Map.Entry<String, Double> conta : saldosSqlite.entrySet()) {
+                double reconstruido = saldos.get(conta.getKey());
+                if (Math.abs(reconstruido - conta.getValue()) > TOLERANCIA) {
+                    if (divergentes < 20) {
+                        System.out.println(String.format("  %s: SQLite R$ %.2f, diário R$ %.2f",
+                                conta.getKey(), conta.getValue(), reconstruido));
+                    }
+                    divergentes++;
+                }
+            }
+            int soNoDiario = saldos.size() - saldosSqlite.size();
+            System.out.println(String.format("Contas: %d no SQLite, %d divergentes, %d só no instantâneo",
+                    saldosSqlite.size(), divergentes, soNoDiario));
+            problemas += divergentes + Math.max(0, soNoDiario);
+        }
+        System.out.println(String.format("Verificação em %.2f s: %s", (System.nanoTime() - inicio) / 1e9,
+                problemas == 0 ? "OK" : problemas + " problema(s)"));
+        return problemas == 0;
+    }
+}
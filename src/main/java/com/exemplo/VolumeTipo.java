@@ -0,0 +1,33 @@
+package com.exemplo;
+
+/**
+ * Quantidade e volume de transações de um tipo (deposito, transferencia, reversao), lidos dos agregados
+ */
+public class VolumeTipo {
+    private final String tipo;
+    private final long quantidade;
+    private final double volume;
+
+    public VolumeTipo(String tipo, long quantidade, double volume) {
+        this.tipo = tipo;
+        this.quantidade = quantidade;
+        this.volume = volume;
+    }
+
+    public String getTipo() {
+        return tipo;
+    }
+
+    public long getQuantidade() {
+        return quantidade;
+    }
+
+    public double getVolume() {
+        return volume;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d transações, R$ %.2f", tipo, quantidade, volume);
+    }
+}
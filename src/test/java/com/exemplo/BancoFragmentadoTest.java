@@ -0,0 +1,198 @@
+package com.exemplo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Transferências entre fragmentos confirmadas e desfeitas, recuperação depois de uma queda entre a fase 1
+ * e a decisão, reversão com denúncia reservada e a conversão entre IDs globais e locais
+ */
+class BancoFragmentadoTest {
+    private static final double SALDO_INICIAL = 1000.0;
+
+    @TempDir
+    Path diretorio;
+
+    // contas em fragmentos diferentes: origem no fragmento 0 e destino no fragmento 1
+    private String origem;
+    private String destino;
+
+    @BeforeEach
+    void escolherContas() {
+        try (BancoFragmentado banco = new BancoFragmentado(configuracao())) {
+            for (int i = 0; origem == null || destino == null; i++) {
+                String email = "conta" + i + "@brasisco.com";
+                if (banco.fragmentoDe(email) == 0 && origem == null) {
+                    origem = email;
+                } else if (banco.fragmentoDe(email) == 1 && destino == null) {
+                    destino = email;
+                }
+            }
+            assertTrue(banco.adicionarUsuario(origem, "Origem", "senha123"));
+            assertTrue(banco.adicionarUsuario(destino, "Destino", "senha123"));
+        }
+    }
+
+    @Test
+    void transferenciaEntreFragmentosEConfirmadaNosDois() {
+        try (BancoFragmentado banco = new BancoFragmentado(configuracao())) {
+            assertTrue(banco.transferir(origem, destino, 150));
+
+            assertEquals(SALDO_INICIAL - 150, banco.consultarSaldo(origem), 1e-9);
+            assertEquals(SALDO_INICIAL + 150, banco.consultarSaldo(destino), 1e-9);
+            List<Transacao> daOrigem = banco.consultarHistoricoUsuario(origem);
+            List<Transacao> doDestino = banco.consultarHistoricoUsuario(destino);
+            assertEquals(1, daOrigem.size());
+            assertEquals(1, doDestino.size());
+            assertEquals(150, daOrigem.get(0).getValor(), 1e-9);
+            assertEquals(destino, daOrigem.get(0).getEmailDestino());
+            assertEquals(origem, doDestino.get(0).getEmailOrigem());
+            assertEquals(0, banco.fragmentoDoId(daOrigem.get(0).getId()));
+            assertEquals(1, banco.fragmentoDoId(doDestino.get(0).getId()));
+        }
+    }
+
+    @Test
+    void transferenciaRecusadaNaoDeixaNadaPreparado() throws SQLException {
+        try (BancoFragmentado banco = new BancoFragmentado(configuracao())) {
+            assertFalse(banco.transferir(origem, destino, SALDO_INICIAL + 1));
+            assertFalse(banco.transferir(origem, "ninguem-" + destino, 100));
+
+            assertEquals(SALDO_INICIAL, banco.consultarSaldo(origem), 1e-9);
+            assertEquals(SALDO_INICIAL, banco.consultarSaldo(destino), 1e-9);
+            assertTrue(banco.consultarHistoricoUsuario(origem).isEmpty());
+            for (int i = 0; i < banco.getNumeroFragmentos(); i++) {
+                assertTrue(banco.getFragmento(i).listarFragmentosPreparados().isEmpty());
+            }
+        }
+    }
+
+    @Test
+    void faseUmSemDecisaoEDesfeitaAoReabrir() throws SQLException {
+        String idGlobal = UUID.randomUUID().toString();
+        try (BancoFragmentado banco = new BancoFragmentado(configuracao())) {
+            assertTrue(banco.getFragmento(0).prepararFragmento(debito(idGlobal, 200), true));
+            assertTrue(banco.getFragmento(1).prepararFragmento(credito(idGlobal, 200), true));
+            assertEquals(SALDO_INICIAL - 200, banco.consultarSaldo(origem), 1e-9);
+            // fechado aqui, como uma queda antes de o coordenador gravar a decisão
+        }
+        try (BancoFragmentado banco = new BancoFragmentado(configuracao())) {
+            assertEquals(2, banco.getTransferenciasRecuperadas());
+            assertEquals(SALDO_INICIAL, banco.consultarSaldo(origem), 1e-9);
+            assertEquals(SALDO_INICIAL, banco.consultarSaldo(destino), 1e-9);
+            assertTrue(banco.consultarHistoricoUsuario(origem).isEmpty());
+            assertTrue(banco.getFragmento(0).listarFragmentosPreparados().isEmpty());
+            assertTrue(banco.getFragmento(1).listarFragmentosPreparados().isEmpty());
+        }
+    }
+
+    @Test
+    void decisaoGravadaEConcluidaAoReabrir() throws SQLException {
+        String idGlobal = UUID.randomUUID().toString();
+        try (BancoFragmentado banco = new BancoFragmentado(configuracao())) {
+            assertTrue(banco.getFragmento(0).prepararFragmento(debito(idGlobal, 200), true));
+            assertTrue(banco.getFragmento(1).prepararFragmento(credito(idGlobal, 200), true));
+        }
+        ConfiguracaoBanco decisoes = configuracao();
+        decisoes.setUrl("jdbc:sqlite:" + diretorio.resolve("banco-coordenador.db"));
+        try (CoordenadorFragmentos coordenador = new CoordenadorFragmentos(decisoes)) {
+            coordenador.registrarConfirmacao(idGlobal, 0, 1);
+        }
+        try (BancoFragmentado banco = new BancoFragmentado(configuracao())) {
+            assertEquals(1, banco.getTransferenciasRecuperadas());
+            assertEquals(SALDO_INICIAL - 200, banco.consultarSaldo(origem), 1e-9);
+            assertEquals(SALDO_INICIAL + 200, banco.consultarSaldo(destino), 1e-9);
+            assertEquals(1, banco.consultarHistoricoUsuario(origem).size());
+            assertEquals(1, banco.consultarHistoricoUsuario(destino).size());
+            assertTrue(banco.getFragmento(0).listarFragmentosPreparados().isEmpty());
+        }
+        try (CoordenadorFragmentos coordenador = new CoordenadorFragmentos(decisoes)) {
+            assertTrue(coordenador.pendentes().isEmpty());
+        }
+    }
+
+    @Test
+    void reversaoRespeitaEDepoisLimpaAReservaDaDenuncia() throws SQLException, InterruptedException {
+        try (BancoFragmentado banco = new BancoFragmentado(configuracao())) {
+            assertTrue(banco.transferir(origem, destino, 100));
+            int idTransacao = banco.consultarHistoricoUsuario(origem).get(0).getId();
+            assertTrue(banco.registrarDenuncia(idTransacao, origem, "não reconheço"));
+            List<Denuncia> reservadas = banco.reservarDenuncias("revisor@brasisco.com", PrioridadeDenuncia.IDADE, 1,
+                    60_000);
+            assertEquals(1, reservadas.size());
+
+            assertFalse(banco.reverterTransferencia(idTransacao));
+            assertEquals(SALDO_INICIAL - 100, banco.consultarSaldo(origem), 1e-9);
+
+            // reserva vencida não bloqueia, mas continua gravada até a denúncia ser resolvida
+            assertTrue(banco.renovarReserva("revisor@brasisco.com", reservadas.get(0).getId(), 1));
+            Thread.sleep(20);
+            assertTrue(banco.reverterTransferencia(idTransacao));
+            assertEquals(SALDO_INICIAL, banco.consultarSaldo(origem), 1e-9);
+            assertEquals(SALDO_INICIAL, banco.consultarSaldo(destino), 1e-9);
+            assertTrue(banco.consultarDenuncias().isEmpty());
+        }
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + diretorio.resolve("banco-fragmento-0.db"));
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT status, reservado_por, reservado_ate FROM denuncias")) {
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals("RESOLVIDA", rs.getString(1));
+                assertNull(rs.getString(2));
+                assertNull(rs.getObject(3));
+            }
+        }
+    }
+
+    @Test
+    void idGlobalIdaEVoltaEEstouro() {
+        try (BancoFragmentado banco = new BancoFragmentado(configuracao())) {
+            for (int fragmento = 0; fragmento < banco.getNumeroFragmentos(); fragmento++) {
+                for (long local : new long[] { 1, 2, 12_345, Integer.MAX_VALUE / 2 }) {
+                    int global = banco.idGlobal(fragmento, local);
+                    assertEquals(fragmento, banco.fragmentoDoId(global));
+                    assertEquals(local, global / banco.getNumeroFragmentos());
+                }
+            }
+            assertNotEquals(banco.idGlobal(0, 7), banco.idGlobal(1, 7));
+            assertEquals(-1, banco.fragmentoDoId(-5));
+            assertThrows(IllegalStateException.class, () -> banco.idGlobal(0, Integer.MAX_VALUE / 2 + 1));
+            assertThrows(IllegalStateException.class, () -> banco.idGlobal(0, Integer.MAX_VALUE));
+        }
+    }
+
+    private TransferenciaFragmentada debito(String idGlobal, double valor) {
+        return new TransferenciaFragmentada(idGlobal, TransferenciaFragmentada.DEBITO, origem, destino, valor,
+                "transferencia", null, null, null);
+    }
+
+    private TransferenciaFragmentada credito(String idGlobal, double valor) {
+        return new TransferenciaFragmentada(idGlobal, TransferenciaFragmentada.CREDITO, destino, origem, valor,
+                "transferencia", null, null, null);
+    }
+
+    private ConfiguracaoBanco configuracao() {
+        ConfiguracaoBanco config = new ConfiguracaoBanco();
+        config.setUrl("jdbc:sqlite:" + diretorio.resolve("banco.db"));
+        config.setNumeroFragmentos(2);
+        config.setIntervaloRecuperacaoFragmentosMs(0);
+        return config;
+    }
+}
@@ -0,0 +1,148 @@
+package com.exemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Repetições com a mesma chave de idempotência: devolvem o resultado original sem transferir de novo,
+ * também depois de reabrir o banco (filtro de Bloom reconstruído a partir do SQLite), e chamadas
+ * simultâneas com a mesma chave executam a operação uma vez só
+ */
+class ChavesIdempotenciaTest {
+    private static final double SALDO_INICIAL = 1000.0;
+    private static final int THREADS = 8;
+
+    @TempDir
+    Path diretorio;
+
+    @ParameterizedTest
+    @ValueSource(strings = { "sqlite", "agrupada", "memoria" })
+    void repeticaoDevolveOResultadoOriginal(String modo) {
+        ConfiguracaoBanco config = configuracao(modo);
+        int original;
+        try (Banco banco = new Banco(config)) {
+            assertTrue(banco.adicionarUsuario(email("a"), "Conta a", "senha123"));
+            assertTrue(banco.adicionarUsuario(email("b"), "Conta b", "senha123"));
+            original = banco.transferir("chave-1", email("a"), email("b"), 100);
+            assertTrue(original > 0);
+
+            assertEquals(original, banco.transferir("chave-1", email("a"), email("b"), 100));
+            assertEquals(-1, banco.transferir("chave-1", email("a"), email("b"), 200));
+            assertEquals(SALDO_INICIAL - 100, banco.consultarSaldo(email("a")), 1e-9);
+            assertEquals(1, banco.getMetricas().get(OperacaoBanco.REPETIR_IDEMPOTENTE).getSucessos());
+        }
+
+        try (Banco reaberto = new Banco(config)) {
+            assertEquals(original, reaberto.transferir("chave-1", email("a"), email("b"), 100));
+            assertEquals(SALDO_INICIAL - 100, reaberto.consultarSaldo(email("a")), 1e-9);
+            assertEquals(SALDO_INICIAL + 100, reaberto.consultarSaldo(email("b")), 1e-9);
+            assertEquals(1, reaberto.getMetricas().get(OperacaoBanco.REPETIR_IDEMPOTENTE).getSucessos());
+        }
+        assertEquals(1, contar("SELECT COUNT(*) FROM historico WHERE tipo = 'transferencia'"));
+    }
+
+    @Test
+    void recusaNaoGuardaAChave() {
+        try (Banco banco = new Banco(configuracao("sqlite"))) {
+            assertTrue(banco.adicionarUsuario(email("a"), "Conta a", "senha123"));
+            assertTrue(banco.adicionarUsuario(email("b"), "Conta b", "senha123"));
+            assertEquals(-1, banco.transferir("chave-1", email("a"), email("b"), SALDO_INICIAL + 50));
+            assertTrue(banco.depositar(email("a"), 100));
+
+            int id = banco.transferir("chave-1", email("a"), email("b"), SALDO_INICIAL + 50);
+            assertTrue(id > 0);
+            assertEquals(id, banco.transferir("chave-1", email("a"), email("b"), SALDO_INICIAL + 50));
+            assertEquals(50, banco.consultarSaldo(email("a")), 1e-9);
+        }
+    }
+
+    @Test
+    void chamadasSimultaneasExecutamUmaVez() throws Exception {
+        ConfiguracaoBanco config = configuracao("sqlite");
+        new Banco(config).close();
+        AtomicInteger execucoes = new AtomicInteger();
+        AtomicInteger aoMesmoTempo = new AtomicInteger();
+        AtomicInteger maiorConcorrencia = new AtomicInteger();
+        try (PoolConexoes pool = new PoolConexoes(config)) {
+            ChavesIdempotencia chaves = new ChavesIdempotencia(pool,
+                    new MetricasBanco(pool.getEstatisticas()), config);
+            CyclicBarrier largada = new CyclicBarrier(THREADS);
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            try {
+                List<Future<Integer>> resultados = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    resultados.add(executor.submit(() -> {
+                        largada.await();
+                        return chaves.executar("chave-1", "transferencia|a|b|100.0", () -> {
+                            maiorConcorrencia.accumulateAndGet(aoMesmoTempo.incrementAndGet(), Math::max);
+                            try {
+                                // segura a chave em andamento enquanto as outras threads chegam
+                                Thread.sleep(200);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            aoMesmoTempo.decrementAndGet();
+                            return 42 + execucoes.getAndIncrement();
+                        });
+                    }));
+                }
+                for (Future<Integer> resultado : resultados) {
+                    assertEquals(42, resultado.get());
+                }
+            } finally {
+                executor.shutdown();
+            }
+            assertEquals(1, execucoes.get());
+            assertEquals(1, maiorConcorrencia.get());
+            assertThrows(IllegalArgumentException.class,
+                    () -> chaves.executar("chave-1", "transferencia|a|b|200.0", () -> 7));
+            assertEquals(43, chaves.executar("chave-2", "transferencia|a|b|100.0", () -> 43));
+        }
+    }
+
+    private long contar(String sql) {
+        try (Connection conn = DriverManager.getConnection(url());
+             ResultSet rs = conn.createStatement().executeQuery(sql)) {
+            assertTrue(rs.next());
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ConfiguracaoBanco configuracao(String modo) {
+        ConfiguracaoBanco config = new ConfiguracaoBanco();
+        config.setUrl(url());
+        config.setEscritaAgrupada(modo.equals("agrupada"));
+        config.setSaldosEmMemoria(modo.equals("memoria"));
+        config.setArquivoRegistroSaldos(diretorio.resolve("saldos.log").toString());
+        return config;
+    }
+
+    private String url() {
+        return "jdbc:sqlite:" + diretorio.resolve("banco.db");
+    }
+
+    private static String email(String conta) {
+        return conta + "@brasisco.com";
+    }
+}
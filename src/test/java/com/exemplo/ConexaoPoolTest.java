@@ -0,0 +1,83 @@
+package com.exemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cache de statements da conexão: passar do tamanho durante um empréstimo não fecha statements que
+ * quem chamou preparar ainda segura; o excesso sai quando a conexão volta ao pool
+ */
+class ConexaoPoolTest {
+    private static final int TAMANHO_CACHE = 2;
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void statementsSeguradosSobrevivemAoEstouroDoCache() throws SQLException {
+        try (PoolConexoes pool = new PoolConexoes(configuracao())) {
+            PreparedStatement seguro;
+            try (ConexaoPool conn = pool.obterLeitura()) {
+                seguro = conn.preparar("SELECT ? + 1");
+                for (int i = 0; i < TAMANHO_CACHE * 10; i++) {
+                    consultar(conn.preparar("SELECT " + i + " + ?"), 1);
+                }
+                // o primeiro statement virou o menos usado do cache, mas continua aberto
+                assertEquals(42, consultar(seguro, 41));
+                assertSame(seguro, conn.preparar("SELECT ? + 1"));
+            }
+            try (ConexaoPool conn = pool.obterLeitura()) {
+                for (int i = 0; i < TAMANHO_CACHE * 10; i++) {
+                    consultar(conn.preparar("SELECT " + i + " + ?"), 1);
+                }
+            }
+            // com o pool de um leitor só, a devolução aparou o mesmo cache
+            assertTrue(seguro.isClosed());
+        }
+    }
+
+    @Test
+    void devolucaoMantemOsMaisUsados() throws SQLException {
+        try (PoolConexoes pool = new PoolConexoes(configuracao())) {
+            PreparedStatement quente;
+            PreparedStatement frio;
+            try (ConexaoPool conn = pool.obterLeitura()) {
+                frio = conn.preparar("SELECT ? + 2");
+                quente = conn.preparar("SELECT ? + 3");
+                conn.preparar("SELECT ? + 4");
+                conn.preparar("SELECT ? + 3");
+            }
+            assertTrue(frio.isClosed());
+            assertFalse(quente.isClosed());
+            try (ConexaoPool conn = pool.obterLeitura()) {
+                assertSame(quente, conn.preparar("SELECT ? + 3"));
+            }
+        }
+    }
+
+    private static int consultar(PreparedStatement stmt, int parametro) throws SQLException {
+        stmt.setInt(1, parametro);
+        try (ResultSet rs = stmt.executeQuery()) {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+
+    private ConfiguracaoBanco configuracao() {
+        ConfiguracaoBanco config = new ConfiguracaoBanco();
+        config.setUrl("jdbc:sqlite:" + diretorio.resolve("banco.db"));
+        config.setNumeroLeitores(1);
+        config.setTamanhoCacheStatements(TAMANHO_CACHE);
+        return config;
+    }
+}
@@ -0,0 +1,187 @@
+package com.exemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Filtros do HistoricoColunar conferidos contra o histórico lido pelo Banco, transações novas vistas na
+ * consulta seguinte e o tamanho em memória comparado ao de uma List&lt;Transacao&gt; com as mesmas linhas
+ */
+class HistoricoColunarTest {
+    private static final int CONTAS = 200;
+    private static final long BASE = Timestamp.valueOf("2025-01-01 00:00:00").getTime();
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void filtrosConferemComOHistoricoDoBanco() throws SQLException {
+        popular(20_000, "deposito", "transferencia");
+        try (Banco banco = new Banco(configuracao())) {
+            HistoricoColunar colunar = banco.getHistoricoColunar();
+            List<Transacao> todas = banco.consultarHistorico();
+            String conta = email(7);
+            Timestamp inicio = new Timestamp(BASE + 5_000 * 60_000L);
+            Timestamp fim = new Timestamp(BASE + 9_000 * 60_000L);
+
+            conferir(colunar, todas, new FiltroHistorico(null, null, null, null), t -> true);
+            conferir(colunar, todas, new FiltroHistorico(conta, null, null, null),
+                    t -> conta.equals(t.getEmailOrigem()) || conta.equals(t.getEmailDestino()));
+            conferir(colunar, todas, new FiltroHistorico(null, inicio, fim, null),
+                    t -> !t.getData().before(inicio) && t.getData().before(fim));
+            conferir(colunar, todas, new FiltroHistorico(conta, inicio, null, 2500.0),
+                    t -> (conta.equals(t.getEmailOrigem()) || conta.equals(t.getEmailDestino()))
+                            && !t.getData().before(inicio) && t.getValor() >= 2500);
+            assertEquals(0, colunar.contar(new FiltroHistorico("ninguem@brasisco.com", null, null, null)));
+        }
+    }
+
+    @Test
+    void transacoesConfirmadasEntramNaConsultaSeguinte() throws SQLException {
+        try (Banco banco = new Banco(configuracao())) {
+            assertTrue(banco.adicionarUsuario(email(0), "Conta 0", "senha123"));
+            assertTrue(banco.adicionarUsuario(email(1), "Conta 1", "senha123"));
+            HistoricoColunar colunar = banco.getHistoricoColunar();
+            assertEquals(0, colunar.contar(new FiltroHistorico(email(1), null, null, null)));
+            assertTrue(banco.transferir(email(0), email(1), 40));
+            assertTrue(banco.depositar(email(1), 15));
+            List<Transacao> recentes = colunar.filtrar(new FiltroHistorico(email(1), null, null, null), 10);
+            assertEquals(2, recentes.size());
+            assertEquals(55, colunar.somarValores(new FiltroHistorico(email(1), null, null, null)), 1e-9);
+            assertEquals("Conta 0", recentes.stream().filter(t -> t.getTipo().equals("transferencia"))
+                    .findFirst().orElseThrow().getNomeOrigem());
+        }
+    }
+
+    @Test
+    void muitosTiposDistintosNaoEstouramODicionario() throws SQLException {
+        String[] tipos = new String[200];
+        for (int i = 0; i < tipos.length; i++) {
+            tipos[i] = "tipo" + i;
+        }
+        popular(tipos.length * 2, tipos);
+        try (Banco banco = new Banco(configuracao())) {
+            List<Transacao> colunar = banco.getHistoricoColunar().filtrar(new FiltroHistorico(null, null, null, null),
+                    tipos.length * 2);
+            List<Transacao> esperadas = banco.consultarHistorico();
+            assertEquals(esperadas.size(), colunar.size());
+            for (int i = 0; i < esperadas.size(); i++) {
+                assertEquals(esperadas.get(i).getId(), colunar.get(i).getId());
+                assertEquals(esperadas.get(i).getTipo(), colunar.get(i).getTipo());
+            }
+        }
+    }
+
+    @Test
+    void ocupaPeloMenosCincoVezesMenosQueAListaDeTransacoes() throws SQLException {
+        popular(100_000, "deposito", "transferencia");
+        try (Banco banco = new Banco(configuracao())) {
+            HistoricoColunar colunar = banco.getHistoricoColunar();
+            // mesma contabilidade do getBytesEstimados: Transacao (12 de cabeçalho, 2 ints, 7 referências e um
+            // double, 56 com alinhamento), Timestamp (32) e um String por campo de texto, como o JDBC entrega
+            long lista = 16 + 4L * colunar.getLinhas();
+            for (Transacao t : banco.consultarHistorico()) {
+                lista += 4 + 56 + 32 + bytesTexto(t.getEmailOrigem()) + bytesTexto(t.getEmailDestino())
+                        + bytesTexto(t.getNomeOrigem()) + bytesTexto(t.getNomeDestino()) + bytesTexto(t.getTipo());
+            }
+            long colunas = colunar.getBytesEstimados();
+            assertTrue(colunas * 5 <= lista, "colunar " + colunas + " bytes, lista " + lista + " bytes");
+        }
+    }
+
+    private static void conferir(HistoricoColunar colunar, List<Transacao> todas, FiltroHistorico filtro,
+                                 Predicate<Transacao> condicao) {
+        List<Transacao> esperadas = todas.stream().filter(condicao)
+                .sorted(Comparator.comparing(Transacao::getData).thenComparingInt(Transacao::getId).reversed())
+                .collect(Collectors.toList());
+        assertEquals(esperadas.size(), colunar.contar(filtro));
+        assertEquals(esperadas.stream().mapToDouble(Transacao::getValor).sum(), colunar.somarValores(filtro), 1e-6);
+        List<Transacao> recentes = colunar.filtrar(filtro, 25);
+        assertEquals(Math.min(25, esperadas.size()), recentes.size());
+        for (int i = 0; i < recentes.size(); i++) {
+            Transacao esperada = esperadas.get(i);
+            Transacao obtida = recentes.get(i);
+            assertEquals(esperada.getId(), obtida.getId());
+            assertEquals(esperada.getEmailOrigem(), obtida.getEmailOrigem());
+            assertEquals(esperada.getEmailDestino(), obtida.getEmailDestino());
+            assertEquals(esperada.getNomeDestino(), obtida.getNomeDestino());
+            assertEquals(esperada.getTipo(), obtida.getTipo());
+            assertEquals(esperada.getValor(), obtida.getValor(), 1e-9);
+            assertEquals(esperada.getData(), obtida.getData());
+        }
+    }
+
+    /**
+     * Cria as contas e grava o histórico direto no SQLite, uma transação por minuto a partir de BASE
+     * Depósitos ficam só com a conta em email_origem, como os do Banco; os demais tipos vão de uma conta
+     * para outra
+     */
+    private void popular(int transacoes, String... tipos) throws SQLException {
+        new Banco(configuracao(false)).close();
+        try (Connection conn = DriverManager.getConnection(url())) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement usuarios = conn.prepareStatement(
+                    "INSERT INTO usuarios (email, nome, senha, saldo) VALUES (?, ?, 'x', 0)")) {
+                for (int i = 0; i < CONTAS; i++) {
+                    usuarios.setString(1, email(i));
+                    usuarios.setString(2, "Conta " + i);
+                    usuarios.addBatch();
+                }
+                usuarios.executeBatch();
+            }
+            Random aleatorio = new Random(42);
+            try (PreparedStatement historico = conn.prepareStatement(
+                    "INSERT INTO historico (email_origem, email_destino, tipo, valor, data) VALUES (?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < transacoes; i++) {
+                    String tipo = tipos[i % tipos.length];
+                    historico.setString(1, email(aleatorio.nextInt(CONTAS)));
+                    historico.setString(2, tipo.equals("deposito") ? null : email(aleatorio.nextInt(CONTAS)));
+                    historico.setString(3, tipo);
+                    historico.setDouble(4, 1 + aleatorio.nextInt(5000));
+                    historico.setString(5, new Timestamp(BASE + i * 60_000L).toString().substring(0, 19));
+                    historico.addBatch();
+                }
+                historico.executeBatch();
+            }
+            conn.commit();
+        }
+    }
+
+    private static long bytesTexto(String texto) {
+        return texto == null ? 0 : 40 + texto.length();
+    }
+
+    private ConfiguracaoBanco configuracao() {
+        return configuracao(true);
+    }
+
+    private ConfiguracaoBanco configuracao(boolean colunar) {
+        ConfiguracaoBanco config = new ConfiguracaoBanco();
+        config.setUrl(url());
+        config.setHistoricoColunar(colunar);
+        return config;
+    }
+
+    private String url() {
+        return "jdbc:sqlite:" + diretorio.resolve("banco.db");
+    }
+
+    private static String email(int conta) {
+        return "conta" + conta + "@brasisco.com";
+    }
+}
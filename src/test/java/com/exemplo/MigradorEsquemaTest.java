@@ -0,0 +1,109 @@
+package com.exemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Esquema criado pelas migrações: as consultas quentes usam os índices delas, as chaves dos upserts
+ * existem, e uma migração que falha impede o Banco de subir
+ */
+class MigradorEsquemaTest {
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void historicoDoUsuarioUsaIndicesPorContaEData() throws SQLException {
+        try (Connection conn = bancoMigrado()) {
+            String plano = plano(conn, Banco.sqlHistoricoUsuario("historico"));
+            assertTrue(plano.contains("USING INDEX idx_historico_origem_data (email_origem=?"), plano);
+            assertTrue(plano.contains("USING INDEX idx_historico_destino_data (email_destino=?"), plano);
+            assertTrue(plano.contains("idx_denuncias_transacao (id_transacao=?)"), plano);
+            assertFalse(plano.contains("SCAN historico"), plano);
+        }
+    }
+
+    @Test
+    void denunciasPendentesUsamIndicePorStatusEData() throws SQLException {
+        try (Connection conn = bancoMigrado()) {
+            String plano = plano(conn, Banco.SQL_DENUNCIAS_PENDENTES);
+            assertTrue(plano.contains("USING INDEX idx_denuncias_status_data (status=?)"), plano);
+            assertFalse(plano.contains("USE TEMP B-TREE FOR ORDER BY"), plano);
+        }
+    }
+
+    @Test
+    void checkpointDaImportacaoSeparaTipos() throws SQLException {
+        try (Connection conn = bancoMigrado()) {
+            for (String tipo : new String[] { "usuarios", "transacoes", "usuarios" }) {
+                try (PreparedStatement stmt = conn.prepareStatement(ImportacaoCsv.SQL_GRAVAR_CHECKPOINT)) {
+                    stmt.setString(1, "/dados/carga.csv");
+                    stmt.setLong(2, 100);
+                    stmt.setLong(3, 1);
+                    stmt.setString(4, tipo);
+                    stmt.setLong(5, 10);
+                    stmt.setInt(6, 0);
+                    stmt.executeUpdate();
+                }
+            }
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM importacao_checkpoint")) {
+                assertTrue(rs.next());
+                assertEquals(2, rs.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    void falhaNaMigracaoImpedeInicializacao() throws SQLException {
+        // banco que diz estar na versão 4 mas já tem a coluna que a migração 5 acrescenta
+        try (Connection conn = DriverManager.getConnection(url());
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE versao_esquema (versao INTEGER PRIMARY KEY, descricao TEXT NOT NULL, " +
+                    "aplicada_em TIMESTAMP)");
+            stmt.execute("INSERT INTO versao_esquema (versao, descricao) VALUES (4, 'manual')");
+            stmt.execute("CREATE TABLE historico (id INTEGER PRIMARY KEY AUTOINCREMENT, email_origem TEXT, " +
+                    "email_destino TEXT, tipo TEXT NOT NULL, valor REAL NOT NULL, data TIMESTAMP, reversao_de INTEGER)");
+        }
+        ConfiguracaoBanco config = new ConfiguracaoBanco();
+        config.setUrl(url());
+        assertThrows(IllegalStateException.class, () -> new Banco(config).close());
+    }
+
+    private Connection bancoMigrado() throws SQLException {
+        ConfiguracaoBanco config = new ConfiguracaoBanco();
+        config.setUrl(url());
+        new Banco(config).close();
+        return DriverManager.getConnection(url());
+    }
+
+    /**
+     * @return Coluna de detalhe de cada passo do EXPLAIN QUERY PLAN, uma por linha
+     */
+    private static String plano(Connection conn, String sql) throws SQLException {
+        StringBuilder plano = new StringBuilder();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (rs.next()) {
+                plano.append(rs.getString("detail")).append('\n');
+            }
+        }
+        return plano.toString();
+    }
+
+    private String url() {
+        return "jdbc:sqlite:" + diretorio.resolve("banco.db");
+    }
+}
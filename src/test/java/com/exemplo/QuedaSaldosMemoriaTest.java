@@ -0,0 +1,163 @@
+package com.exemplo;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Saldos em memória depois de uma parada sem close: os arquivos são copiados com o Banco ainda aberto
+ * (sem descarga nem instantâneo desde a última abertura), a cauda do log ganha um registro rasgado e a
+ * cópia é reaberta. Cada saldo recuperado tem de bater com o que o historico diz
+ */
+class QuedaSaldosMemoriaTest {
+    private static final int CONTAS = 6;
+    private static final double SALDO_INICIAL = 1000.0;
+
+    @TempDir
+    Path diretorio;
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void saldosRecuperadosBatemComOHistorico(boolean diarioMapeado) throws IOException {
+        Path origem = Files.createDirectories(diretorio.resolve("origem"));
+        Path copia = Files.createDirectories(diretorio.resolve("copia"));
+        Random aleatorio = new Random(7);
+
+        try (Banco banco = new Banco(configuracao(origem, diarioMapeado))) {
+            for (int i = 0; i < CONTAS; i++) {
+                assertTrue(banco.adicionarUsuario(email(i), "Conta " + i, "senha123"));
+            }
+            movimentar(banco, aleatorio, 200);
+        }
+
+        Banco interrompido = new Banco(configuracao(origem, diarioMapeado));
+        try {
+            // depois do close acima: a recuperação parte de um checkpoint e reaplica só o que veio depois
+            movimentar(interrompido, aleatorio, 300);
+            copiar(origem, copia);
+        } finally {
+            interrompido.close();
+        }
+        rasgarCauda(copia, diarioMapeado);
+
+        try (Banco reaberto = new Banco(configuracao(copia, diarioMapeado))) {
+            Map<String, Double> esperados = saldosPeloHistorico(reaberto);
+            double soma = 0;
+            for (int i = 0; i < CONTAS; i++) {
+                assertEquals(esperados.get(email(i)), reaberto.consultarSaldo(email(i)), 1e-6,
+                        "saldo de " + email(i));
+                soma += reaberto.consultarSaldo(email(i));
+            }
+            double depositos = reaberto.consultarHistorico().stream()
+                    .filter(t -> t.getTipo().equals("deposito")).mapToDouble(Transacao::getValor).sum();
+            assertEquals(CONTAS * SALDO_INICIAL + depositos, soma, 1e-6);
+        }
+    }
+
+    /**
+     * Depósitos e transferências ao acaso; algumas transferências são recusadas por falta de saldo
+     */
+    private static void movimentar(Banco banco, Random aleatorio, int operacoes) {
+        for (int k = 0; k < operacoes; k++) {
+            int conta = aleatorio.nextInt(CONTAS);
+            if (k % 5 == 0) {
+                assertTrue(banco.depositar(email(conta), 1 + aleatorio.nextInt(100)));
+            } else {
+                banco.transferir(email(conta), email((conta + 1 + aleatorio.nextInt(CONTAS - 1)) % CONTAS),
+                        1 + aleatorio.nextInt(600));
+            }
+        }
+    }
+
+    private static Map<String, Double> saldosPeloHistorico(Banco banco) {
+        Map<String, Double> saldos = new HashMap<>();
+        for (int i = 0; i < CONTAS; i++) {
+            saldos.put(email(i), SALDO_INICIAL);
+        }
+        for (Transacao t : banco.consultarHistorico()) {
+            if (t.getTipo().equals("deposito")) {
+                // o Banco grava o depósito com a conta em email_origem
+                saldos.merge(t.getEmailOrigem(), t.getValor(), Double::sum);
+            } else {
+                saldos.merge(t.getEmailOrigem(), -t.getValor(), Double::sum);
+                saldos.merge(t.getEmailDestino(), t.getValor(), Double::sum);
+            }
+        }
+        return saldos;
+    }
+
+    /**
+     * Copia o SQLite (arquivo e WAL) e o log de saldos como estão no disco, sem passar pelo close
+     */
+    private static void copiar(Path origem, Path copia) throws IOException {
+        try (Stream<Path> arquivos = Files.list(origem)) {
+            for (Path arquivo : arquivos.collect(Collectors.toList())) {
+                if (!arquivo.getFileName().toString().endsWith("-shm")) {
+                    Files.copy(arquivo, copia.resolve(arquivo.getFileName()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Deixa no fim do último segmento do log um registro começado e não terminado, como numa queda
+     * no meio da gravação
+     */
+    private static void rasgarCauda(Path copia, boolean diarioMapeado) throws IOException {
+        String prefixo = diarioMapeado ? "saldos.log" + DiarioSaldos.SUFIXO : "saldos.log.";
+        List<Path> segmentos;
+        try (Stream<Path> arquivos = Files.list(copia)) {
+            segmentos = arquivos.filter(p -> p.getFileName().toString().startsWith(prefixo)
+                            && Character.isDigit(p.getFileName().toString().charAt(prefixo.length())))
+                    .sorted().collect(Collectors.toList());
+        }
+        assertFalse(segmentos.isEmpty());
+        try (RandomAccessFile arquivo = new RandomAccessFile(segmentos.get(segmentos.size() - 1).toFile(), "rw")) {
+            long fim = arquivo.length();
+            if (diarioMapeado) {
+                // segmento pré-alocado: o fim dos registros é o primeiro tamanho 0
+                fim = 0;
+                arquivo.seek(0);
+                for (int tamanho = arquivo.readInt(); tamanho > 0; tamanho = arquivo.readInt()) {
+                    fim += 8 + tamanho;
+                    arquivo.seek(fim);
+                }
+            }
+            arquivo.seek(fim);
+            arquivo.writeInt(64);
+            arquivo.writeInt(0x1234_5678);
+            arquivo.writeLong(Long.MAX_VALUE);
+        }
+    }
+
+    private static ConfiguracaoBanco configuracao(Path pasta, boolean diarioMapeado) {
+        ConfiguracaoBanco config = new ConfiguracaoBanco();
+        config.setUrl("jdbc:sqlite:" + pasta.resolve("banco.db"));
+        config.setSaldosEmMemoria(true);
+        config.setDiarioMapeado(diarioMapeado);
+        config.setArquivoRegistroSaldos(pasta.resolve("saldos.log").toString());
+        // nada de descarga nem instantâneo enquanto o teste copia os arquivos
+        config.setIntervaloDescargaMs(3_600_000);
+        config.setIntervaloInstantaneoMs(3_600_000);
+        return config;
+    }
+
+    private static String email(int conta) {
+        return "conta" + conta + "@brasisco.com";
+    }
+}
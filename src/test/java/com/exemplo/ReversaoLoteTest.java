@@ -0,0 +1,192 @@
+package com.exemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reversão em lote: variações somadas por conta, transações já revertidas puladas, transações arquivadas
+ * devolvidas à tabela quente e denúncias reservadas por outro revisor respeitadas
+ */
+class ReversaoLoteTest {
+    private static final double SALDO_INICIAL = 1000.0;
+
+    @TempDir
+    Path diretorio;
+
+    @ParameterizedTest
+    @ValueSource(strings = { "sqlite", "memoria" })
+    void variacoesSaoSomadasPorConta(String modo) {
+        try (Banco banco = new Banco(configuracao(modo))) {
+            criarContas(banco, "a", "b", "c");
+            int ab = banco.transferir("k1", email("a"), email("b"), 100);
+            int ba = banco.transferir("k2", email("b"), email("a"), 30);
+            int ac = banco.transferir("k3", email("a"), email("c"), 20);
+            int deposito = banco.depositar("k4", email("c"), 5);
+
+            RelatorioReversao relatorio = banco.reverterTransferencias(null,
+                    Arrays.asList(ab, ba, ac, deposito, 999_999, ab));
+
+            assertEquals(5, relatorio.getSolicitadas());
+            assertEquals(3, relatorio.getRevertidas());
+            assertEquals(1, relatorio.getIgnoradas());
+            assertEquals(1, relatorio.getNaoEncontradas());
+            assertEquals(0, relatorio.getFalhas());
+            assertEquals(1, relatorio.getLotes());
+            assertEquals(150, relatorio.getValorTotal(), 1e-9);
+            assertEquals(90, relatorio.getVariacaoPorConta().get(email("a")), 1e-9);
+            assertEquals(-70, relatorio.getVariacaoPorConta().get(email("b")), 1e-9);
+            assertEquals(-20, relatorio.getVariacaoPorConta().get(email("c")), 1e-9);
+            assertEquals(SALDO_INICIAL, banco.consultarSaldo(email("a")), 1e-9);
+            assertEquals(SALDO_INICIAL, banco.consultarSaldo(email("b")), 1e-9);
+            assertEquals(SALDO_INICIAL + 5, banco.consultarSaldo(email("c")), 1e-9);
+        }
+        assertEquals(3, contar("SELECT COUNT(*) FROM historico WHERE tipo = 'reversao' AND reversao_de IS NOT NULL"));
+    }
+
+    @Test
+    void transacoesJaRevertidasSaoPuladas() {
+        try (Banco banco = new Banco(configuracao("sqlite"))) {
+            criarContas(banco, "a", "b");
+            int primeira = banco.transferir("k1", email("a"), email("b"), 100);
+            int segunda = banco.transferir("k2", email("a"), email("b"), 50);
+            assertTrue(banco.reverterTransferencia(primeira));
+
+            RelatorioReversao relatorio = banco.reverterTransferencias(null, Arrays.asList(primeira, segunda));
+            assertEquals(1, relatorio.getJaRevertidas());
+            assertEquals(1, relatorio.getRevertidas());
+
+            RelatorioReversao repetido = banco.reverterTransferencias(null, Arrays.asList(primeira, segunda));
+            assertEquals(2, repetido.getJaRevertidas());
+            assertEquals(0, repetido.getRevertidas());
+            assertTrue(repetido.getVariacaoPorConta().isEmpty());
+            assertEquals(SALDO_INICIAL, banco.consultarSaldo(email("a")), 1e-9);
+            assertEquals(SALDO_INICIAL, banco.consultarSaldo(email("b")), 1e-9);
+        }
+    }
+
+    @Test
+    void transacoesArquivadasVoltamParaATabelaQuente() throws SQLException {
+        try (Banco banco = new Banco(configuracao("sqlite"))) {
+            criarContas(banco, "a", "b");
+            int primeira = banco.transferir("k1", email("a"), email("b"), 100);
+            int segunda = banco.transferir("k2", email("b"), email("a"), 40);
+            try (Connection conn = DriverManager.getConnection(url());
+                 PreparedStatement stmt = conn.prepareStatement(
+                         "UPDATE historico SET data = '2024-01-15 10:00:00' WHERE id IN (?, ?)")) {
+                stmt.setInt(1, primeira);
+                stmt.setInt(2, segunda);
+                assertEquals(2, stmt.executeUpdate());
+            }
+            assertEquals(2, banco.arquivarHistorico(Timestamp.valueOf("2024-06-01 00:00:00")).getMovidas());
+            assertEquals(0, contar("SELECT COUNT(*) FROM historico WHERE tipo = 'transferencia'"));
+
+            RelatorioReversao relatorio = banco.reverterTransferencias(null, Arrays.asList(primeira, segunda));
+            assertEquals(2, relatorio.getRevertidas());
+            assertEquals(SALDO_INICIAL, banco.consultarSaldo(email("a")), 1e-9);
+            assertEquals(SALDO_INICIAL, banco.consultarSaldo(email("b")), 1e-9);
+            assertEquals(2, contar("SELECT COUNT(*) FROM historico WHERE tipo = 'transferencia'"));
+            assertEquals(0, banco.getParticoesHistorico().get(0).getLinhas());
+        }
+    }
+
+    @Test
+    void denunciaReservadaPorOutroRevisorNaoEResolvida() throws SQLException {
+        try (Banco banco = new Banco(configuracao("sqlite"))) {
+            criarContas(banco, "a", "b");
+            int reservada = banco.transferir("k1", email("a"), email("b"), 100);
+            int livre = banco.transferir("k2", email("a"), email("b"), 50);
+            assertTrue(banco.registrarDenuncia(reservada, email("a"), "não reconheço"));
+            assertTrue(banco.registrarDenuncia(livre, email("a"), "não reconheço"));
+            List<Denuncia> doOutro = banco.reservarDenuncias("revisor2@brasisco.com", PrioridadeDenuncia.IDADE, 1,
+                    60_000);
+            assertEquals(1, doOutro.size());
+            assertEquals(reservada, doOutro.get(0).getIdTransacao());
+
+            RelatorioReversao relatorio = banco.reverterTransferencias("revisor1@brasisco.com",
+                    Arrays.asList(reservada, livre));
+            assertEquals(1, relatorio.getReservadas());
+            assertEquals(1, relatorio.getRevertidas());
+            assertEquals(SALDO_INICIAL - 100, banco.consultarSaldo(email("a")), 1e-9);
+            assertEquals("PENDENTE", statusDenuncia(reservada));
+            assertEquals("revisor2@brasisco.com", reservadoPor(reservada));
+            assertEquals("RESOLVIDA", statusDenuncia(livre));
+            assertFalse(banco.reverterTransferencia(reservada));
+
+            RelatorioReversao doDono = banco.reverterTransferencias("revisor2@brasisco.com",
+                    Arrays.asList(reservada));
+            assertEquals(1, doDono.getRevertidas());
+            assertEquals("RESOLVIDA", statusDenuncia(reservada));
+            assertNull(reservadoPor(reservada));
+            assertEquals(SALDO_INICIAL, banco.consultarSaldo(email("a")), 1e-9);
+        }
+    }
+
+    private static void criarContas(Banco banco, String... contas) {
+        for (String conta : contas) {
+            assertTrue(banco.adicionarUsuario(email(conta), "Conta " + conta, "senha123"));
+        }
+    }
+
+    private String statusDenuncia(int idTransacao) throws SQLException {
+        return denuncia("status", idTransacao);
+    }
+
+    private String reservadoPor(int idTransacao) throws SQLException {
+        return denuncia("reservado_por", idTransacao);
+    }
+
+    private String denuncia(String coluna, int idTransacao) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url());
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT " + coluna + " FROM denuncias WHERE id_transacao = ?")) {
+            stmt.setInt(1, idTransacao);
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getString(1);
+            }
+        }
+    }
+
+    private long contar(String sql) {
+        try (Connection conn = DriverManager.getConnection(url());
+             ResultSet rs = conn.createStatement().executeQuery(sql)) {
+            assertTrue(rs.next());
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ConfiguracaoBanco configuracao(String modo) {
+        ConfiguracaoBanco config = new ConfiguracaoBanco();
+        config.setUrl(url());
+        config.setSaldosEmMemoria(modo.equals("memoria"));
+        config.setArquivoRegistroSaldos(diretorio.resolve("saldos.log").toString());
+        return config;
+    }
+
+    private String url() {
+        return "jdbc:sqlite:" + diretorio.resolve("banco.db");
+    }
+
+    private static String email(String conta) {
+        return conta + "@brasisco.com";
+    }
+}
@@ -0,0 +1,153 @@
+package com.exemplo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ServidorBanco e ClienteBanco ligados pela interface de loopback: login e transferência, quadros maiores
+ * que o buffer inicial da conexão e quadros malformados ou grandes demais, que derrubam só a conexão que
+ * os enviou e deixam a thread do Selector atendendo as demais
+ */
+class ServidorBancoTest {
+    private static final double SALDO_INICIAL = 1000.0;
+
+    @TempDir
+    Path diretorio;
+
+    private Banco banco;
+    private ServidorBanco servidor;
+
+    @BeforeEach
+    void abrir() throws IOException {
+        ConfiguracaoBanco config = new ConfiguracaoBanco();
+        config.setUrl("jdbc:sqlite:" + diretorio.resolve("banco.db"));
+        config.setEnderecoServidor("127.0.0.1");
+        config.setPortaServidor(0);
+        banco = new Banco(config);
+        servidor = new ServidorBanco(banco, config);
+    }
+
+    @AfterEach
+    void fechar() {
+        servidor.close();
+        banco.close();
+    }
+
+    @Test
+    void loginETransferencia() throws IOException {
+        try (ClienteBanco cliente = new ClienteBanco(servidor.getEndereco())) {
+            assertTrue(cliente.registrar(email("a"), "Conta a", "senha123").join());
+            assertTrue(cliente.registrar(email("b"), "Conta b", "senha123").join());
+            assertFalse(cliente.registrar(email("a"), "Outra", "senha123").join());
+
+            assertRecusada(cliente.consultarSaldo()::join, "NAO_AUTENTICADO");
+            assertNull(cliente.login(email("a"), "errada").join());
+            Sessao sessao = cliente.login(email("a"), "senha123").join();
+            assertNotNull(sessao);
+            assertEquals("Conta a", sessao.getNome());
+
+            assertTrue(cliente.transferir(email("b"), 250).join());
+            assertFalse(cliente.transferir(email("b"), SALDO_INICIAL).join());
+            assertEquals(SALDO_INICIAL - 250, cliente.consultarSaldo().join(), 1e-9);
+            PaginaHistorico pagina = cliente.consultarHistorico(CursorHistorico.INICIO, 10).join();
+            assertEquals(1, pagina.getTransacoes().size());
+            assertEquals(email("b"), pagina.getTransacoes().get(0).getEmailDestino());
+        }
+        assertEquals(SALDO_INICIAL + 250, banco.consultarSaldo(email("b")), 1e-9);
+    }
+
+    @Test
+    void quadroMaiorQueOBufferInicial() throws IOException {
+        String nome = "Conta com nome comprido ".repeat(400);
+        try (ClienteBanco cliente = new ClienteBanco(servidor.getEndereco())) {
+            assertTrue(cliente.registrar(email("a"), nome, "senha123").join());
+            Sessao sessao = cliente.login(email("a"), "senha123").join();
+            assertEquals(nome, sessao.getNome());
+            // depois do quadro grande a conexão continua decodificando os pequenos
+            assertEquals(SALDO_INICIAL, cliente.consultarSaldo().join(), 1e-9);
+        }
+        assertEquals(nome, banco.getNomeUsuario(email("a")));
+    }
+
+    @Test
+    void quadrosInvalidosNaoDerrubamOServidor() throws IOException {
+        try (ClienteBanco cliente = new ClienteBanco(servidor.getEndereco())) {
+            assertTrue(cliente.registrar(email("a"), "Conta a", "senha123").join());
+            assertNotNull(cliente.login(email("a"), "senha123").join());
+
+            // corpo inválido: a requisição é recusada e a conexão segue aberta
+            assertRecusada(cliente.depositar(-5)::join, "INVALIDA");
+            assertRecusada(cliente.transferir(email("a"), 10)::join, "INVALIDA");
+
+            // tamanho abaixo do cabeçalho e acima do máximo: o servidor fecha só aquela conexão
+            assertEquals(-1, enviarCru(ByteBuffer.allocate(4).putInt(2).array()));
+            assertEquals(-1, enviarCru(ByteBuffer.allocate(9).putInt(ProtocoloBanco.MAXIMO_QUADRO + 1)
+                    .putInt(1).put(ProtocoloBanco.SALDO).array()));
+            // quadro de login sem corpo: responde INVALIDA
+            byte[] incompleto = ByteBuffer.allocate(9).putInt(5).putInt(7).put(ProtocoloBanco.LOGIN).array();
+            assertEquals(ProtocoloBanco.INVALIDA, enviarCru(incompleto));
+
+            assertTrue(cliente.depositar(5).join());
+            assertEquals(SALDO_INICIAL + 5, cliente.consultarSaldo().join(), 1e-9);
+        }
+        try (ClienteBanco novo = new ClienteBanco(servidor.getEndereco())) {
+            assertNotNull(novo.login(email("a"), "senha123").join());
+        }
+    }
+
+    /**
+     * Envia bytes por um socket comum e lê a primeira resposta
+     * @return Situação da resposta, ou -1 se o servidor fechou a conexão sem responder
+     */
+    private int enviarCru(byte[] bytes) throws IOException {
+        try (Socket socket = new Socket(servidor.getEndereco().getAddress(), servidor.getEndereco().getPort())) {
+            socket.setSoTimeout(5000);
+            DataOutputStream saida = new DataOutputStream(socket.getOutputStream());
+            saida.write(bytes);
+            saida.flush();
+            InputStream entrada = socket.getInputStream();
+            byte[] cabecalho = new byte[9];
+            int lidos = 0;
+            while (lidos < cabecalho.length) {
+                int n = entrada.read(cabecalho, lidos, cabecalho.length - lidos);
+                if (n < 0) {
+                    return -1;
+                }
+                lidos += n;
+            }
+            return cabecalho[8];
+        } catch (SocketException e) {
+            // fechamento com bytes ainda não lidos pelo servidor chega como reset
+            return -1;
+        }
+    }
+
+    private static void assertRecusada(Runnable operacao, String situacao) {
+        CompletionException erro = assertThrows(CompletionException.class, operacao::run);
+        assertInstanceOf(IllegalStateException.class, erro.getCause());
+        assertTrue(erro.getCause().getMessage().contains(situacao), erro.getCause().getMessage());
+    }
+
+    private static String email(String conta) {
+        return conta + "@brasisco.com";
+    }
+}
@@ -0,0 +1,177 @@
+package com.exemplo;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lote de transferências: instruções recusadas no meio do lote (saldo insuficiente, conta inexistente,
+ * valor inválido) não afetam as demais, cada conta recebe um único UPDATE com a variação líquida e as
+ * linhas gravadas no historico correspondem, na ordem, às instruções aceitas
+ */
+class TransferenciaLoteTest {
+    private static final double SALDO_INICIAL = 1000.0;
+
+    @TempDir
+    Path diretorio;
+
+    @ParameterizedTest
+    @ValueSource(strings = { "sqlite", "memoria" })
+    void recusasNoMeioDoLoteESaldosLiquidos(String modo) throws SQLException {
+        List<InstrucaoTransferencia> instrucoes = Arrays.asList(
+                new InstrucaoTransferencia(email("a"), email("b"), 600),
+                new InstrucaoTransferencia(email("a"), email("c"), 500),
+                new InstrucaoTransferencia(email("b"), email("a"), 300),
+                new InstrucaoTransferencia(email("a"), email("c"), 500),
+                new InstrucaoTransferencia(email("c"), email("ninguem"), 10),
+                new InstrucaoTransferencia(email("a"), email("b"), -1),
+                new InstrucaoTransferencia(email("b"), email("c"), 1000),
+                new InstrucaoTransferencia(email("b"), email("a"), 301),
+                new InstrucaoTransferencia(email("d"), email("e"), 100),
+                new InstrucaoTransferencia(email("e"), email("d"), 100));
+
+        List<ResultadoTransferencia> resultados;
+        try (Banco banco = new Banco(configuracao(modo))) {
+            for (String conta : new String[] { "a", "b", "c", "d", "e" }) {
+                assertTrue(banco.adicionarUsuario(email(conta), "Conta " + conta, "senha123"));
+            }
+            contarAtualizacoesDeSaldo();
+
+            resultados = banco.transferirLote(instrucoes);
+
+            assertEquals(Arrays.asList(
+                    ResultadoTransferencia.SUCESSO,
+                    ResultadoTransferencia.SALDO_INSUFICIENTE,
+                    ResultadoTransferencia.SUCESSO,
+                    ResultadoTransferencia.SUCESSO,
+                    ResultadoTransferencia.CONTA_INEXISTENTE,
+                    ResultadoTransferencia.VALOR_INVALIDO,
+                    ResultadoTransferencia.SUCESSO,
+                    ResultadoTransferencia.SALDO_INSUFICIENTE,
+                    ResultadoTransferencia.SUCESSO,
+                    ResultadoTransferencia.SUCESSO), resultados);
+            assertEquals(200, banco.consultarSaldo(email("a")), 1e-9);
+            assertEquals(300, banco.consultarSaldo(email("b")), 1e-9);
+            assertEquals(2500, banco.consultarSaldo(email("c")), 1e-9);
+            assertEquals(SALDO_INICIAL, banco.consultarSaldo(email("d")), 1e-9);
+            assertEquals(SALDO_INICIAL, banco.consultarSaldo(email("e")), 1e-9);
+
+            Map<String, Integer> atualizacoes = atualizacoesDeSaldo();
+            if (modo.equals("sqlite")) {
+                // uma por conta com variação; d e e se anulam e não são tocadas
+                Map<String, Integer> esperadas = new HashMap<>();
+                esperadas.put(email("a"), 1);
+                esperadas.put(email("b"), 1);
+                esperadas.put(email("c"), 1);
+                assertEquals(esperadas, atualizacoes);
+            } else {
+                // em memória a tabela usuarios só é gravada na descarga
+                assertTrue(atualizacoes.isEmpty(), atualizacoes.toString());
+            }
+        }
+
+        List<InstrucaoTransferencia> aceitas = new ArrayList<>();
+        for (int i = 0; i < instrucoes.size(); i++) {
+            if (resultados.get(i) == ResultadoTransferencia.SUCESSO) {
+                aceitas.add(instrucoes.get(i));
+            }
+        }
+        List<String> gravadas = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        try (Connection conn = DriverManager.getConnection(url());
+             ResultSet rs = conn.createStatement().executeQuery(
+                     "SELECT id, email_origem, email_destino, tipo, valor FROM historico ORDER BY id")) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+                gravadas.add(rs.getString(2) + ">" + rs.getString(3) + ":" + rs.getString(4) + ":" + rs.getDouble(5));
+            }
+        }
+        List<String> esperadas = new ArrayList<>();
+        for (InstrucaoTransferencia instrucao : aceitas) {
+            esperadas.add(instrucao.getEmailOrigem() + ">" + instrucao.getEmailDestino() + ":transferencia:"
+                    + instrucao.getValor());
+        }
+        assertEquals(esperadas, gravadas);
+        // IDs consecutivos: o lote gravou as linhas das instruções aceitas, na ordem do lote, e nada mais
+        for (int i = 1; i < ids.size(); i++) {
+            assertEquals(ids.get(i - 1) + 1, ids.get(i));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "sqlite", "memoria" })
+    void saldoRecebidoNoLoteCobreInstrucoesSeguintes(String modo) {
+        try (Banco banco = new Banco(configuracao(modo))) {
+            assertTrue(banco.adicionarUsuario(email("a"), "Conta a", "senha123"));
+            assertTrue(banco.adicionarUsuario(email("b"), "Conta b", "senha123"));
+            List<InstrucaoTransferencia> instrucoes = new ArrayList<>();
+            // b só consegue devolver 1500 porque recebeu de a antes, no mesmo lote
+            instrucoes.add(new InstrucaoTransferencia(email("a"), email("b"), 1000));
+            instrucoes.add(new InstrucaoTransferencia(email("b"), email("a"), 1500));
+            instrucoes.add(new InstrucaoTransferencia(email("b"), email("a"), 501));
+
+            List<ResultadoTransferencia> resultados = banco.transferirLote(instrucoes);
+
+            assertEquals(Arrays.asList(ResultadoTransferencia.SUCESSO, ResultadoTransferencia.SUCESSO,
+                    ResultadoTransferencia.SALDO_INSUFICIENTE), resultados);
+            assertEquals(1500, banco.consultarSaldo(email("a")), 1e-9);
+            assertEquals(500, banco.consultarSaldo(email("b")), 1e-9);
+            assertEquals(2, banco.consultarHistorico().size());
+        }
+    }
+
+    /**
+     * Gatilho que anota cada alteração de saldo na tabela usuarios, para contar os UPDATEs do lote
+     */
+    private void contarAtualizacoesDeSaldo() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url());
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE atualizacoes_saldo (email TEXT)");
+            stmt.execute("CREATE TRIGGER anotar_saldo AFTER UPDATE OF saldo ON usuarios " +
+                    "BEGIN INSERT INTO atualizacoes_saldo (email) VALUES (new.email); END");
+        }
+    }
+
+    private Map<String, Integer> atualizacoesDeSaldo() throws SQLException {
+        Map<String, Integer> atualizacoes = new HashMap<>();
+        try (Connection conn = DriverManager.getConnection(url());
+             ResultSet rs = conn.createStatement().executeQuery("SELECT email FROM atualizacoes_saldo")) {
+            while (rs.next()) {
+                atualizacoes.merge(rs.getString(1), 1, Integer::sum);
+            }
+        }
+        return atualizacoes;
+    }
+
+    private ConfiguracaoBanco configuracao(String modo) {
+        ConfiguracaoBanco config = new ConfiguracaoBanco();
+        config.setUrl(url());
+        config.setSaldosEmMemoria(modo.equals("memoria"));
+        config.setArquivoRegistroSaldos(diretorio.resolve("saldos.log").toString());
+        config.setIntervaloDescargaMs(3_600_000);
+        return config;
+    }
+
+    private String url() {
+        return "jdbc:sqlite:" + diretorio.resolve("banco.db");
+    }
+
+    private static String email(String conta) {
+        return conta + "@brasisco.com";
+    }
+}
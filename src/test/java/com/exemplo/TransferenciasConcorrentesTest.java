@@ -0,0 +1,119 @@
+package com.exemplo;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Transferências cruzadas (A para B e B para A ao mesmo tempo) entre poucas contas, de várias threads
+ * Nenhum saldo pode ficar negativo e a soma dos saldos não pode mudar, nem em memória nem depois de
+ * reabrir o banco. Recusas por conta de origem inexistente não se confundem com saldo insuficiente
+ */
+class TransferenciasConcorrentesTest {
+    private static final int CONTAS = 4;
+    private static final int THREADS = 16;
+    private static final int TRANSFERENCIAS_POR_THREAD = 250;
+    private static final double SALDO_INICIAL = 1000.0;
+
+    @TempDir
+    Path diretorio;
+
+    @ParameterizedTest
+    @ValueSource(strings = { "sqlite", "agrupada", "memoria" })
+    void saldosNaoFicamNegativosESomaSeConserva(String modo) throws Exception {
+        ConfiguracaoBanco config = configuracao(modo);
+        double[] saldos;
+        try (Banco banco = new Banco(config)) {
+            for (int i = 0; i < CONTAS; i++) {
+                assertTrue(banco.adicionarUsuario(email(i), "Conta " + i, "senha123"));
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            try {
+                List<Future<?>> tarefas = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    int thread = t;
+                    tarefas.add(executor.submit(() -> transferirCruzado(banco, thread)));
+                }
+                for (Future<?> tarefa : tarefas) {
+                    tarefa.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+            saldos = conferir(banco);
+        }
+
+        try (Banco reaberto = new Banco(config)) {
+            double[] persistidos = conferir(reaberto);
+            for (int i = 0; i < CONTAS; i++) {
+                assertEquals(saldos[i], persistidos[i], 1e-6, "saldo de " + email(i) + " depois de reabrir");
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "sqlite", "agrupada", "memoria" })
+    void origemInexistenteNaoViraSaldoInsuficiente(String modo) {
+        try (Banco banco = new Banco(configuracao(modo))) {
+            assertTrue(banco.adicionarUsuario(email(0), "Conta 0", "senha123"));
+            assertFalse(banco.transferir("ninguem@brasisco.com", email(0), 10));
+            assertFalse(banco.transferir(email(0), email(0), SALDO_INICIAL + 1));
+
+            Map<String, Long> causas = banco.getMetricas().get(OperacaoBanco.TRANSFERIR).getFalhasPorCausa();
+            assertEquals(1L, causas.get(ResultadoTransferencia.CONTA_INEXISTENTE.name()));
+            assertEquals(1L, causas.get(ResultadoTransferencia.SALDO_INSUFICIENTE.name()));
+            assertEquals(SALDO_INICIAL, banco.consultarSaldo(email(0)), 1e-9);
+        }
+    }
+
+    /**
+     * Threads vizinhas usam os mesmos pares em sentidos opostos; os valores chegam a passar do saldo
+     * inicial, então há recusas por saldo insuficiente no meio
+     */
+    private static void transferirCruzado(Banco banco, int thread) {
+        Random aleatorio = new Random(thread);
+        for (int k = 0; k < TRANSFERENCIAS_POR_THREAD; k++) {
+            int origem = (thread + k) % CONTAS;
+            int destino = thread % 2 == 0 ? (origem + 1) % CONTAS : (origem + CONTAS - 1) % CONTAS;
+            banco.transferir(email(origem), email(destino), 1 + aleatorio.nextInt(1200));
+        }
+    }
+
+    private static double[] conferir(Banco banco) {
+        double[] saldos = new double[CONTAS];
+        double soma = 0;
+        for (int i = 0; i < CONTAS; i++) {
+            saldos[i] = banco.consultarSaldo(email(i));
+            assertTrue(saldos[i] >= 0, "saldo negativo em " + email(i) + ": " + saldos[i]);
+            soma += saldos[i];
+        }
+        assertEquals(CONTAS * SALDO_INICIAL, soma, 1e-6, "soma dos saldos");
+        return saldos;
+    }
+
+    private ConfiguracaoBanco configuracao(String modo) {
+        ConfiguracaoBanco config = new ConfiguracaoBanco();
+        config.setUrl("jdbc:sqlite:" + diretorio.resolve("banco.db"));
+        config.setEscritaAgrupada(modo.equals("agrupada"));
+        config.setSaldosEmMemoria(modo.equals("memoria"));
+        config.setArquivoRegistroSaldos(diretorio.resolve("saldos.log").toString());
+        return config;
+    }
+
+    private static String email(int conta) {
+        return "conta" + conta + "@brasisco.com";
+    }
+}